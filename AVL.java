@@ -1,51 +1,675 @@
 package tree;
 
-import java.util.Stack;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class AVL<T extends Comparable<T>> {
+public class AVL<T extends Comparable<T>> implements Iterable<T> {
     private Node root;
     private Node hot;//指向当前节点的父节点
     private int count;
+    private int epoch;//节点离开本树（remove、split、clear）的次数，Finger据此判断所记的节点是否还在树中
     private boolean isLeftChild;//true表示当前节点是父节点的左孩子
+    private final Comparator<? super T> comparator;
+    private final ToLongFunction<? super T> keyPrefix;//为null表示不缓存前缀，此时所有节点的prefix都是0
     private class Node{
         private T val;
+        private long prefix;//val的规范化前缀，见KeyPrefix
         private Node parent, left, right;
         private int height;
+        private int size;//以该节点为根的子树的规模
         public Node(T val, Node parent) {
             this.parent = parent;
             this.val = val;
+            this.prefix = prefixOf(val);
             this.height = 0;
+            this.size = 1;
             this.left = null;
             this.right = null;
         }
     }
 
+    public AVL() {
+        this(Comparator.naturalOrder(), null);
+    }
+
+    public AVL(Comparator<? super T> comparator) {
+        this(comparator, null);
+    }
+
+    /**
+     * @param comparator 关键码的次序
+     * @param keyPrefix 关键码的规范化前缀，须与comparator一致，见KeyPrefix；为null表示不缓存
+     */
+    public AVL(Comparator<? super T> comparator, ToLongFunction<? super T> keyPrefix) {
+        if (comparator == null) throw new NullPointerException("comparator");
+        this.comparator = comparator;
+        this.keyPrefix = keyPrefix;
+    }
+
     public int size() {
         return count;
     }
+
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    private long prefixOf(T val) {
+        return (keyPrefix == null) ? 0 : keyPrefix.applyAsLong(val);
+    }
+
+    /**
+     * 比较val与节点x的关键码，p为val的前缀：前缀不同即可定序，相同时才调用比较器。
+     * 不缓存前缀时两边的前缀都是0，总是调用比较器
+     */
+    private int compare(T val, long p, Node x) {
+        if (p != x.prefix) return Long.compareUnsigned(p, x.prefix);
+        return comparator.compare(val, x.val);
+    }
+
+    private int compare(T a, T b) {
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * 两棵树之间的join和集合运算要求二者的次序相同，节点中缓存的前缀才能通用
+     */
+    private static void checkSameOrder(AVL<?> a, AVL<?> b) {
+        if (!a.comparator.equals(b.comparator) || a.keyPrefix != b.keyPrefix)
+            throw new IllegalArgumentException("trees are ordered differently");
+    }
+
+    /**
+     * 由严格递增的序列直接构造AVL树，O(n)时间。
+     * 每次取区间中点作为子树根，左右子树的规模至多相差1，因此处处理想平衡；
+     * 高度在回溯时自底向上算出，既不需要逐个search和insert，也不会触发旋转。
+     * @param sorted 严格递增的关键码序列
+     */
+    public static <T extends Comparable<T>> AVL<T> fromSorted(List<? extends T> sorted) {
+        return fromSorted(sorted, Comparator.naturalOrder(), null);
+    }
+
+    /**
+     * 同fromSorted(sorted)，sorted按comparator严格递增
+     */
+    public static <T extends Comparable<T>> AVL<T> fromSorted(List<? extends T> sorted, Comparator<? super T> comparator,
+                                                            ToLongFunction<? super T> keyPrefix) {
+        AVL<T> avl = new AVL<>(comparator, keyPrefix);
+        Object[] keys = sorted.toArray();
+        for (int i = 1; i < keys.length; i++)
+            if (avl.compare((T) keys[i - 1], (T) keys[i]) >= 0)
+                throw new IllegalArgumentException("keys are not strictly ascending at index " + i);
+        avl.root = avl.build(keys, 0, keys.length, null);
+        avl.count = keys.length;
+        return avl;
+    }
+
+    /**
+     * 由keys[lo, hi)构造子树，返回子树根
+     */
+    private Node build(Object[] keys, int lo, int hi, Node parent) {
+        if (lo >= hi) return null;
+        int mi = (lo + hi) >>> 1;
+        Node x = new Node((T) keys[mi], parent);
+        x.left = build(keys, lo, mi, x);
+        x.right = build(keys, mi + 1, hi, x);
+        updateHeight(x);
+        return x;
+    }
+
+    private static final int UNION = 0, INTERSECTION = 1, DIFFERENCE = 2;
+    //子树高度不低于此值时才把左右两半拆成并行任务，更小的子树直接在当前线程中递归
+    private static final int PARALLEL_HEIGHT = 12;
+
+    /**
+     * 以key为分隔把left和right接成一棵树：left中的关键码都小于key，right中的都大于key。
+     * 沿较高一棵树的侧链下行到高度与另一棵相差不超过1的位置接入，回溯时至多做一次（3+4）重构，O(|高度差|)。
+     * left、right的节点被直接复用，调用后二者都变为空树。
+     */
+    public static <T extends Comparable<T>> AVL<T> join(AVL<T> left, T key, AVL<T> right) {
+        if (left == right) throw new IllegalArgumentException("cannot join a tree with itself");
+        checkSameOrder(left, right);
+        if (left.root != null && left.compare(left.last().val, key) >= 0 ||
+                right.root != null && right.compare(right.first().val, key) <= 0)
+            throw new IllegalArgumentException("keys of left must be less than " + key + " and keys of right greater");
+        AVL<T> t = new AVL<>(left.comparator, left.keyPrefix);
+        t.root = t.join(left.root, t.new Node(key, null), right.root);
+        t.root.parent = null;
+        t.count = left.count + right.count + 1;
+        left.clear();
+        right.clear();
+        return t;
+    }
+
+    /**
+     * 分裂：小于key的关键码留在本树中，不小于key的关键码移到返回的新树中。
+     * 分裂本身沿查找路径做O(log n)次join，新树的规模即其树根的子树规模。
+     */
+    public AVL<T> split(T key) {
+        epoch++;
+        Split s = split(root, key);
+        AVL<T> t = new AVL<>(comparator, keyPrefix);
+        t.root = (s.mid == null) ? s.right : join(null, s.mid, s.right);
+        if (t.root != null) t.root.parent = null;
+        root = s.left;
+        if (root != null) root.parent = null;
+        t.count = sizeOf(t.root);
+        count -= t.count;
+        return t;
+    }
+
+    /**
+     * 并集：返回包含a、b全部关键码的新树，a、b的节点被直接复用，调用后二者都变为空树。
+     * 以a的树根为界分裂b，两边各自递归求并集后再join回来；规模为m ≤ n的两棵树只需O(m log(n/m + 1))的工作量，
+     * 两边的递归在ForkJoinPool中并行执行。
+     */
+    public static <T extends Comparable<T>> AVL<T> union(AVL<T> a, AVL<T> b) {
+        return setOperation(UNION, a, b);
+    }
+
+    /**
+     * 交集，做法同union，a的树根只在b中也存在时才作为分隔保留
+     */
+    public static <T extends Comparable<T>> AVL<T> intersection(AVL<T> a, AVL<T> b) {
+        return setOperation(INTERSECTION, a, b);
+    }
+
+    /**
+     * 差集a - b：以b的树根为界分裂a，丢掉与之相等的关键码，两边各自递归
+     */
+    public static <T extends Comparable<T>> AVL<T> difference(AVL<T> a, AVL<T> b) {
+        return setOperation(DIFFERENCE, a, b);
+    }
+
+    private static <T extends Comparable<T>> AVL<T> setOperation(int op, AVL<T> a, AVL<T> b) {
+        if (a == b) throw new IllegalArgumentException("operands must be different trees");
+        checkSameOrder(a, b);
+        AVL<T> t = new AVL<>(a.comparator, a.keyPrefix);
+        LongAdder shared = new LongAdder();//两棵树中都有的关键码个数
+        t.root = ForkJoinPool.commonPool().invoke(t.new SetOperation(op, a.root, b.root, shared));
+        if (t.root != null) t.root.parent = null;
+        int common = shared.intValue();
+        t.count = (op == UNION) ? a.count + b.count - common : (op == INTERSECTION) ? common : a.count - common;
+        a.clear();
+        b.clear();
+        return t;
+    }
+
+    private class SetOperation extends RecursiveTask<Node> {
+        private final int op;
+        private final Node a, b;
+        private final LongAdder shared;
+
+        SetOperation(int op, Node a, Node b, LongAdder shared) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.shared = shared;
+        }
+
+        @Override
+        protected Node compute() {
+            return setOperation(op, a, b, shared);
+        }
+    }
+
+    private Node setOperation(int op, Node a, Node b, LongAdder shared) {
+        if (a == null) return (op == UNION) ? b : null;
+        if (b == null) return (op == INTERSECTION) ? null : a;
+        Node la, lb, ra, rb;
+        Node sep;//留作分隔的节点，为null时左右两半直接拼接
+        Split s;
+        if (op == DIFFERENCE) {
+            s = split(a, b.val);
+            la = s.left; lb = b.left; ra = s.right; rb = b.right;
+            sep = null;
+        } else {
+            s = split(b, a.val);
+            la = a.left; lb = s.left; ra = a.right; rb = s.right;
+            sep = (op == UNION || s.mid != null) ? a : null;
+        }
+        if (s.mid != null) shared.increment();
+        Node l, r;
+        if (Math.max(stature(a), stature(b)) >= PARALLEL_HEIGHT) {
+            SetOperation left = new SetOperation(op, la, lb, shared);
+            left.fork();
+            r = setOperation(op, ra, rb, shared);
+            l = left.join();
+        } else {
+            l = setOperation(op, la, lb, shared);
+            r = setOperation(op, ra, rb, shared);
+        }
+        return (sep != null) ? join(l, sep, r) : join2(l, r);
+    }
+
+    /**
+     * 分裂的结果：left中的关键码都小于分裂点，right中的都大于分裂点，mid是等于分裂点的节点（没有则为null）
+     */
+    private class Split {
+        Node left, mid, right;
+    }
+
+    /**
+     * 沿查找路径分裂子树t：路径左侧的部分逐个join成left，右侧的逐个join成right
+     */
+    private Split split(Node t, T key) {
+        if (t == null) return new Split();
+        int cmp = compare(key, t.val);
+        Node l = t.left, r = t.right;
+        if (cmp == 0) {
+            Split s = new Split();
+            s.left = l; s.mid = t; s.right = r;
+            return s;
+        }
+        if (cmp < 0) {
+            Split s = split(l, key);
+            s.right = join(s.right, t, r);
+            return s;
+        }
+        Split s = split(r, key);
+        s.left = join(l, t, s.left);
+        return s;
+    }
+
+    /**
+     * 以节点k为分隔接起子树l和r，返回新子树根
+     */
+    private Node join(Node l, Node k, Node r) {
+        if (stature(l) > stature(r) + 1) return joinRight(l, k, r);
+        if (stature(r) > stature(l) + 1) return joinLeft(l, k, r);
+        return link(l, k, r);
+    }
+
+    /**
+     * l比r高出2以上：沿l的右侧链下行，找到高度与r相差不超过1的子树c，由k接起c和r后挂回原处；
+     * 回溯途中遇到失衡的祖先，与insert一样做一次（3+4）重构
+     */
+    private Node joinRight(Node l, Node k, Node r) {
+        Node c = l.right;
+        Node t = (stature(c) <= stature(r) + 1) ? link(c, k, r) : joinRight(c, k, r);
+        l.right = t; t.parent = l;
+        updateHeight(l);
+        return avlIsBalance(l) ? l : rotateAt(tallerChild(tallerChild(l)));
+    }
+
+    private Node joinLeft(Node l, Node k, Node r) {
+        Node c = r.left;
+        Node t = (stature(c) <= stature(l) + 1) ? link(l, k, c) : joinLeft(l, k, c);
+        r.left = t; t.parent = r;
+        updateHeight(r);
+        return avlIsBalance(r) ? r : rotateAt(tallerChild(tallerChild(r)));
+    }
+
+    private Node link(Node l, Node k, Node r) {
+        k.left = l; if (l != null) l.parent = k;
+        k.right = r; if (r != null) r.parent = k;
+        updateHeight(k);
+        return k;
+    }
+
+    /**
+     * 没有分隔节点时拼接l和r：摘下l中的最大节点作为分隔
+     */
+    private Node join2(Node l, Node r) {
+        if (l == null) return r;
+        Split s = splitLast(l);
+        return join(s.left, s.mid, r);
+    }
+
+    /**
+     * 摘下子树t中的最大节点，放在mid中，其余部分放在left中
+     */
+    private Split splitLast(Node t) {
+        if (t.right == null) {
+            Split s = new Split();
+            s.left = t.left; s.mid = t;
+            return s;
+        }
+        Split s = splitLast(t.right);
+        s.left = join(t.left, t, s.left);
+        return s;
+    }
+
+    private Node first() {
+        Node x = root;
+        if (x != null) while (x.left != null) x = x.left;
+        return x;
+    }
+
+    private Node last() {
+        Node x = root;
+        if (x != null) while (x.right != null) x = x.right;
+        return x;
+    }
+
+    private void clear() {
+        root = null;
+        epoch++;
+        count = 0;
+    }
+
     
+    /**
+     * 树中小于val的关键码个数（val不必在树中），沿查找路径累加左子树的规模，O(log n)
+     */
+    public int rank(T val) {
+        int r = 0;
+        long p = prefixOf(val);
+        for (Node x = root; x != null; ) {
+            if (compare(val, p, x) <= 0) x = x.left;
+            else {
+                r += sizeOf(x.left) + 1;
+                x = x.right;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * 第k小（从0开始计）的关键码，rank(select(k)) == k，O(log n)
+     */
+    public T select(int k) {
+        if (k < 0 || k >= sizeOf(root)) throw new IndexOutOfBoundsException("rank " + k + " out of [0, " + sizeOf(root) + ")");
+        Node x = root;
+        for (;;) {
+            int l = sizeOf(x.left);
+            if (k < l) x = x.left;
+            else if (k == l) return x.val;
+            else {
+                k -= l + 1;
+                x = x.right;
+            }
+        }
+    }
+
+    /**
+     * 落在[lo, hi)中的关键码个数，即两次rank之差，O(log n)
+     */
+    public int countRange(T lo, T hi) {
+        if (compare(lo, hi) >= 0) return 0;
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * 升序迭代器：从最小节点出发，每次沿succ()走到直接后继，不借助辅助栈，也不复制关键码。
+     * 遍历期间修改树，结果未定义
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Ascending(first(), null);
+    }
+
+    /**
+     * 降序迭代器，沿pred()走到直接前驱
+     */
+    public Iterator<T> descendingIterator() {
+        return new Descending(last());
+    }
+
+    /**
+     * 全部关键码按降序排列
+     */
+    public Iterable<T> descending() {
+        return this::descendingIterator;
+    }
+
+    /**
+     * 落在[lo, hi)中的关键码，按升序排列；从lo的查找位置出发惰性地走到hi为止
+     */
+    public Iterable<T> range(T lo, T hi) {
+        return () -> new Ascending(ceiling(lo), hi);
+    }
+
+    /**
+     * 小于hi的关键码，按升序排列
+     */
+    public Iterable<T> headSet(T hi) {
+        return () -> new Ascending(first(), hi);
+    }
+
+    /**
+     * 不小于lo的关键码，按升序排列
+     */
+    public Iterable<T> tailSet(T lo) {
+        return () -> new Ascending(ceiling(lo), null);
+    }
+
+    /**
+     * 可分裂的Spliterator，stream().parallel()按子树把关键码分给多个线程
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(first(), null, 0, size());
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    private class Ascending implements Iterator<T> {
+        private Node next;
+        private final T hi;//不含，为null表示没有上界
+
+        Ascending(Node from, T hi) {
+            this.hi = hi;
+            this.next = bounded(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T val = next.val;
+            next = bounded(succ(next));
+            return val;
+        }
+
+        private Node bounded(Node x) {
+            return (x == null || hi == null || compare(x.val, hi) < 0) ? x : null;
+        }
+    }
+
+    private class Descending implements Iterator<T> {
+        private Node next;
+
+        Descending(Node from) {
+            this.next = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T val = next.val;
+            next = pred(next);
+            return val;
+        }
+    }
+
+    /**
+     * 覆盖[current, fence)中节点的Spliterator，分裂方式同java.util.TreeMap：
+     * 第一次以树根为界分成两半；此后右半部分以current的右孩子为界，左半部分以fence的左孩子为界。
+     * 分裂点都直接取自树的结构，每次大致对半分开，不需要栈，也不需要预先遍历
+     */
+    private class TreeSpliterator implements Spliterator<T> {
+        private Node current;
+        private final Node fence;//不含，为null表示一直到最大节点
+        private int side;//0：尚未分裂，1：分裂后留下的右半部分，-1：分出去的左半部分
+        private long est;//剩余规模的估计，尚未分裂时是准确值
+
+        TreeSpliterator(Node current, Node fence, int side, long est) {
+            this.current = current;
+            this.fence = fence;
+            this.side = side;
+            this.est = est;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Node e = current, f = fence;
+            Node s = (e == null || e == f) ? null :
+                    (side == 0) ? root :
+                    (side > 0) ? e.right :
+                    (f != null) ? f.left : null;
+            if (s != null && s != e && s != f && compare(e.val, s.val) < 0 &&
+                    (f == null || compare(s.val, f.val) < 0)) {
+                side = 1;
+                current = s;
+                return new TreeSpliterator(e, s, -1, est >>>= 1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Node e = current;
+            if (e == null || e == fence) return false;
+            current = succ(e);
+            action.accept(e.val);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Node f = fence;
+            for (Node e = current; e != null && e != f; e = succ(e)) action.accept(e.val);
+            current = f;
+        }
+
+        @Override
+        public long estimateSize() {
+            return est;
+        }
+
+        @Override
+        public int characteristics() {
+            return (side == 0 ? Spliterator.SIZED : 0) |
+                    Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return (comparator == Comparator.naturalOrder()) ? null : comparator;
+        }
+    }
+
+    /**
+     * 不小于lo的最小节点，没有则为null
+     */
+    private Node ceiling(T lo) {
+        Node c = null;
+        long p = prefixOf(lo);
+        for (Node x = root; x != null; ) {
+            if (compare(lo, p, x) <= 0) {
+                c = x;
+                x = x.left;
+            } else x = x.right;
+        }
+        return c;
+    }
+
     public Node search(T val) {
         return search(root, val);
     }
 
+    /**
+     * 新建一个查找游标，见Finger
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * 查找游标：记住上一次查找到达的节点，下一次从那里出发，先沿parent上行到目标必然落在其中的子树，再向下查找。
+     * 目标大于所记节点时，上行到某个作为左孩子、且父亲大于目标的节点为止（目标小于所记节点时对称），
+     * 此时子树的下界不大于所记节点、上界即父亲，目标一定落在其中。
+     * 连续查找的关键码在秩上相差d时，上下两段路径通常只有O(log d)；有序扫描时均摊每次O(1)。
+     * 游标不改动树的hot，各个游标互不干扰，可以每个线程或每个扫描各持有一个，但树本身仍不支持并发修改。
+     * 有节点离开树（remove、split等）之后，游标所记的节点可能已不在树中，下一次查找自动从树根开始。
+     */
+    public class Finger {
+        private Node last;//上一次查找到达的节点：命中的节点，或查找失败时最后访问的节点
+        private int epoch;
+
+        private Finger() {
+            this.epoch = AVL.this.epoch;
+        }
+
+        public Node search(T val) {
+            long p = prefixOf(val);
+            Node x = start(val, p);
+            while (x != null) {
+                int cmp = compare(val, p, x);
+                last = x;
+                if (cmp == 0) return x;
+                x = (cmp < 0) ? x.left : x.right;
+            }
+            return null;
+        }
+
+        /**
+         * 下行的起点：所记节点的某个祖先，val一定落在以它为根的子树中
+         */
+        private Node start(T val, long p) {
+            if (last == null || epoch != AVL.this.epoch) {
+                epoch = AVL.this.epoch;
+                last = null;
+                return root;
+            }
+            Node u = last;
+            int cmp = compare(val, p, u);
+            if (cmp > 0) {
+                while (u.parent != null && !(u == u.parent.left && compare(val, p, u.parent) < 0)) u = u.parent;
+            } else if (cmp < 0) {
+                while (u.parent != null && !(u == u.parent.right && compare(val, p, u.parent) > 0)) u = u.parent;
+            }
+            return u;
+        }
+    }
+
+
+    /**
+     * 查找路径上的每一层先比较缓存的前缀，前缀相同时才调用比较器
+     */
     private Node search(Node root, T val) {
-        if (root == null || val == root.val) {
+        long p = prefixOf(val);
+        if (root == null || compare(val, p, root) == 0) {
             hot = null;
             return root;
         }
         for (hot = root;;) {
-            int cmp = val.compareTo(hot.val);
+            int cmp = compare(val, p, hot);
             Node currentNode = null;
             if (cmp < 0) {
                 isLeftChild = true;
                 currentNode = hot.left;
-            } else if (cmp > 0) {
+            } else {
                 isLeftChild = false;
                 currentNode = hot.right;
-            } else {
-                return hot;
             }
-            if (null == currentNode) 
+            if (null == currentNode || compare(val, p, currentNode) == 0)
                 return currentNode;
             hot = currentNode;
         }
@@ -62,6 +686,13 @@ public class AVL<T extends Comparable<T>> {
     public Node insert(T val) {
         Node node = search(val);
         if (node != null) return node;
+        return insertAtHot(val);
+    }
+
+    /**
+     * 在search留下的hot处接入val并重新平衡，调用前须确认val不在树中
+     */
+    private Node insertAtHot(T val) {
         Node newNode = new Node(val, hot);
         count++;
         if (root == null) {
@@ -73,6 +704,7 @@ public class AVL<T extends Comparable<T>> {
                 hot.left = newNode;
             else
                 hot.right = newNode;
+            updateSizeAbove(hot, 1);
             //newNode的父亲hot若增高，则其祖父有可能失衡
             Node g = hot;
             while (g != null) {
@@ -158,7 +790,16 @@ public class AVL<T extends Comparable<T>> {
     public boolean remove(T val) {
         Node node = search(val);
         if (node == null) return false;
-        removeAt(node, hot);
+        removeNode(node);
+        return true;
+    }
+
+    /**
+     * 删除树中的节点node并重新平衡
+     */
+    private void removeNode(Node node) {
+        removeAt(node);
+        epoch++;
         Node g = hot;
         while (g != null) {
             if (!avlIsBalance(g)) {
@@ -185,10 +826,64 @@ public class AVL<T extends Comparable<T>> {
             g = g.parent;
         }
         count--;
-        return true;
     }
 
-    private void removeAt(Node x, Node hot) {
+    /**
+     * 批量操作中查找的起点：从上一次操作留下的节点finger出发向上回溯，直到val必然落在当前子树中。
+     * 批量操作按升序进行，只要finger.val不大于val，子树的下界就一定小于val，只需检查上界：
+     * 当前节点是父亲的左孩子且val小于父亲时，val就在当前子树中。finger.val大于val时直接从根出发。
+     */
+    private Node climb(Node finger, T val) {
+        if (finger == null || compare(finger.val, val) > 0) return root;
+        Node u = finger;
+        while (u.parent != null && !(u == u.parent.left && compare(val, u.parent.val) < 0)) u = u.parent;
+        return u;
+    }
+
+    /**
+     * 批量插入：先把batch排序，再按升序逐个插入。
+     * 每个关键码的查找从上一个关键码所在的节点回溯出发，相邻关键码共享的那段路径不必从根重走。
+     * @return 实际插入的关键码个数
+     */
+    public int insertAll(Collection<? extends T> batch) {
+        Object[] keys = batch.toArray();
+        Arrays.sort(keys, (Comparator<Object>) comparator);
+        Node finger = null;
+        int inserted = 0;
+        for (Object k : keys) {
+            T val = (T) k;
+            Node x = search(climb(finger, val), val);
+            if (x == null) {
+                x = insertAtHot(val);
+                inserted++;
+            }
+            finger = x;
+        }
+        return inserted;
+    }
+
+    /**
+     * 批量删除，做法同insertAll；删除后以hot作为下一个关键码的起点
+     * @return 实际删除的关键码个数
+     */
+    public int removeAll(Collection<? extends T> batch) {
+        Object[] keys = batch.toArray();
+        Arrays.sort(keys, (Comparator<Object>) comparator);
+        Node finger = null;
+        int removed = 0;
+        for (Object k : keys) {
+            T val = (T) k;
+            Node x = search(climb(finger, val), val);
+            if (x != null) {
+                removeNode(x);
+                removed++;
+            }
+            finger = hot;
+        }
+        return removed;
+    }
+
+    private void removeAt(Node x) {
         Node w = x; //实际被删除的节点
         Node succ = null; //实际被删除节点的接替者
         if (!hasLeftChild(x)) {
@@ -199,6 +894,7 @@ public class AVL<T extends Comparable<T>> {
             w = succ(x);
             Node tmp = x;
             x.val = w.val;
+            x.prefix = w.prefix;
             w.val = tmp.val;
             Node u = w.parent;
             if (u == x) succ = w.right;
@@ -206,7 +902,8 @@ public class AVL<T extends Comparable<T>> {
         }
         hot = w.parent;
         if (succ != null) succ.parent = hot;
-        if (hot.left == w) hot.left = succ;
+        if (hot == null) root = succ;
+        else if (hot.left == w) hot.left = succ;
         else hot.right = succ;
     }
 
@@ -227,7 +924,7 @@ public class AVL<T extends Comparable<T>> {
     }
 
     /**
-     * 当前节点的直接后继节点 
+     * 当前节点的直接后继节点，x为最大节点时返回null 
      */
     private Node succ(Node x) {
         Node s = null;
@@ -236,8 +933,24 @@ public class AVL<T extends Comparable<T>> {
             while (s.left != null) s = s.left; 
         } else {
             s = x;
-            while (s.parent.right == s) s = s.parent;
-            s = s.parent; 
+            while (s.parent != null && s.parent.right == s) s = s.parent;
+            s = s.parent;
+        }
+        return s;
+    }
+
+    /**
+     * 当前节点的直接前驱节点，x为最小节点时返回null
+     */
+    private Node pred(Node x) {
+        Node s = null;
+        if (hasLeftChild(x)) {
+            s = x.left;
+            while (s.right != null) s = s.right;
+        } else {
+            s = x;
+            while (s.parent != null && s.parent.left == s) s = s.parent;
+            s = s.parent;
         }
         return s;
     }
@@ -248,48 +961,92 @@ public class AVL<T extends Comparable<T>> {
      * 因此，前序遍历和后序遍历没有实现。
      */
     public void inOrderTraversal() {
-        Stack<Node> stack = new Stack();
-        Node nodePosi = root;
-        System.out.println("root : " + root.val);
-        while (true) {
-            if (nodePosi != null) {
-                stack.push(nodePosi);
-                nodePosi = nodePosi.left;
-            } else if (!stack.isEmpty()) {
-                StringBuilder print = new StringBuilder();
-                Node x = stack.pop();
-                print.append("val : ").append(x.val);
-                print.append("    height: ").append(x.height);
-
-                print.append("    lc : ");
-                if (x.left != null)
-                    print.append(x.left.val);
-                else print.append("  ");
+        if (root != null) System.out.println("root : " + root.val);
+        for (Node x = first(); x != null; x = succ(x)) {
+            StringBuilder print = new StringBuilder();
+            print.append("val : ").append(x.val);
+            print.append("    height: ").append(x.height);
 
-                print.append("    rc : ");
-                if (x.right != null)
-                    print.append(x.right.val);
-                else print.append("  ");
+            print.append("    lc : ");
+            if (x.left != null)
+                print.append(x.left.val);
+            else print.append("  ");
 
-                print.append("    p : ");
-                if (x.parent != null)
-                    print.append(x.parent.val);
+            print.append("    rc : ");
+            if (x.right != null)
+                print.append(x.right.val);
+            else print.append("  ");
 
-                nodePosi = x.right;
-                System.out.println(print);
-            } else break;
+            print.append("    p : ");
+            if (x.parent != null)
+                print.append(x.parent.val);
 
+            System.out.println(print);
         }
     }
 
+    /**
+     * 中序遍历，依次把每个元素交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        for (Node x = first(); x != null; x = succ(x)) visit.accept(x.val);
+    }
+
+    /**
+     * 当前全部关键码的只读快照，按Eytzinger次序存放，查找比本树快得多，见FrozenTree。
+     * 快照沿用本树的comparator和keyPrefix，之后对本树的修改不影响快照，O(n)
+     */
+    public FrozenTree<T> freeze() {
+        Object[] sorted = new Object[size()];
+        int i = 0;
+        for (Node x = first(); x != null; x = succ(x)) sorted[i++] = x.val;
+        return new FrozenTree<>(sorted, comparator, keyPrefix);
+    }
+
+    /**
+     * 从channel的当前位置起按TreeFile的紧凑格式写出全部关键码：只有中序的关键码序列，不含节点和形状，
+     * 每个关键码由codec参照前一个编码，O(n)
+     */
+    public void writeTo(FileChannel channel, KeyCodec<? super T> codec) {
+        TreeFile.write(channel, size(), 0, 1.0, this::inOrderTraversal, codec);
+    }
+
+    /**
+     * 把TreeFile格式的文件映射进内存，读出关键码后由fromSorted直接建成处处平衡的树，不做插入和旋转，O(n)
+     */
+    public static <T extends Comparable<T>> AVL<T> load(Path file, KeyCodec<T> codec) {
+        return load(file, codec, Comparator.naturalOrder(), null);
+    }
+
+    /**
+     * 同load(file, codec)，文件中的关键码须按comparator严格递增
+     */
+    public static <T extends Comparable<T>> AVL<T> load(Path file, KeyCodec<T> codec, Comparator<? super T> comparator,
+                                                        ToLongFunction<? super T> keyPrefix) {
+        return fromSorted(TreeFile.read(file, codec).keys, comparator, keyPrefix);
+    }
+
     private void updateHeight(Node x) {
         x.height = 1 + Math.max(stature(x.left), stature(x.right));
+        x.size = sizeOf(x.left) + sizeOf(x.right) + 1;
     }
 
     private int stature(Node x) {
         return (x != null) ? x.height : -1;
     }
 
+    private int sizeOf(Node x) {
+        return (x != null) ? x.size : 0;
+    }
+
+    /**
+     * 接入或摘下一个节点后，其父亲x及x的所有祖先的子树规模都变化了delta。
+     * 须在重新平衡之前调用：之后的（3+4）重构由孩子重新计算规模，要求孩子的规模已经正确
+     */
+    private void updateSizeAbove(Node x, int delta) {
+        for (; x != null; x = x.parent) x.size += delta;
+    }
+
     private void updateHeightAbove(Node x) {
         while(x != null) {
             updateHeight(x);
@@ -330,5 +1087,19 @@ public class AVL<T extends Comparable<T>> {
         avl.insert(20);
         avl.remove(18);
         avl.inOrderTraversal();
+        AVL<Integer> bulk = AVL.fromSorted(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        bulk.inOrderTraversal();
+        AVL<Integer> odd = AVL.fromSorted(Arrays.asList(1, 3, 5, 7, 9, 11));
+        AVL<Integer> all = AVL.union(bulk, odd);
+        AVL<Integer> big = all.split(6);
+        all.inOrderTraversal();
+        big.inOrderTraversal();
+        System.out.println("rank 8: " + big.rank(8) + "  select 2: " + big.select(2) + "  count [7, 10): " + big.countRange(7, 10));
+        for (Integer k : big.range(7, 10)) System.out.print(k + "   ");
+        System.out.println();
+        System.out.println("sum: " + big.stream().parallel().mapToInt(Integer::intValue).sum());
+        AVL<String> words = new AVL<>(Comparator.naturalOrder(), KeyPrefix.STRING);
+        for (String w : "delta alpha charlie bravo alphabet".split(" ")) words.insert(w);
+        System.out.println("words: " + String.join(" ", words) + "  rank(bravo): " + words.rank("bravo"));
     }
 }
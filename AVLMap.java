@@ -0,0 +1,80 @@
+package tree;
+
+/**
+ * 以AVL树实现的有序映射：节点中除关键码外还存放值，插入、删除后的重平衡与AVL完全相同。
+ * 查找、单次下行的put、remove、compute、merge等都在BinaryTreeMap中，这里只有重平衡。
+ */
+public class AVLMap<K extends Comparable<K>, V> extends BinaryTreeMap<K, V> {
+
+    /**
+     * x的父亲若增高，则其祖父有可能失衡；插入至多旋转一次
+     */
+    @Override
+    void afterInsert(Node x) {
+        for (Node g = x.parent; g != null; g = g.parent) {
+            if (!avlIsBalance(g)) {
+                rotateAndAttach(g);
+                break;
+            }
+            updateHeight(g);
+        }
+    }
+
+    /**
+     * 从被删除节点的父亲hot向上逐层检查；删除可能一路旋转到树根
+     */
+    @Override
+    void afterRemove(Node r) {
+        for (Node g = hot; g != null; g = g.parent) {
+            if (!avlIsBalance(g)) g = rotateAndAttach(g);
+            updateHeight(g);
+        }
+    }
+
+    /**
+     * 在失衡的g处做（3+4）重构，并把重构后的子树根接回g原来的位置
+     */
+    private Node rotateAndAttach(Node g) {
+        Node gg = g.parent;
+        Node r = rotateAt(tallerChild(tallerChild(g)));
+        fromParentTo(gg, g, r);
+        return r;
+    }
+
+    private Node tallerChild(Node x) {
+        int lHeight = stature(x.left);
+        int rHeight = stature(x.right);
+        if (lHeight > rHeight) return x.left;
+        else if (lHeight < rHeight) return x.right;
+        else return (x.parent.left == x) ? x.left : x.right;
+    }
+
+    @Override
+    void updateHeight(Node x) {
+        x.height = 1 + Math.max(stature(x.left), stature(x.right));
+    }
+
+    private int stature(Node x) {
+        return (x != null) ? x.height : -1;
+    }
+
+    private boolean avlIsBalance(Node x) {
+        int balance = stature(x.left) - stature(x.right);
+        return (-2 < balance) && (balance < 2);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("AVL Map API");
+        AVLMap<String, Integer> words = new AVLMap<>();
+        for (String w : "the quick brown fox jumps over the lazy dog the end".split(" "))
+            words.merge(w, 1, Integer::sum);
+        System.out.println(words);
+        System.out.println("the: " + words.get("the") + "  head before 'fox': " + words.headMap("fox") +
+                "  descending: " + words.descendingMap().keySet());
+        words.compute("dog", (k, v) -> null);
+        words.computeIfAbsent("cat", k -> 9);
+        System.out.println(words.subMap("b", "l"));
+        words.headMap("fox").clear();
+        System.out.println("after clearing head before 'fox': " + words);
+    }
+}
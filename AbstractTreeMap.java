@@ -0,0 +1,614 @@
+package tree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * AVLMap、RedBlackTreeMap、BTreeMap的公共部分：NavigableMap中与树的具体结构无关的方法，
+ * 以及subMap、headMap、tailMap、descendingMap、navigableKeySet等视图。
+ * 子类只需给出精确查找、定位前驱后继等几个基本操作；put、remove、compute、merge、putIfAbsent
+ * 由子类各自用一次下行完成：查找失败时停在插入位置，直接在那里接入新节点（AVLMap、RedBlackTreeMap共用BinaryTreeMap中的实现）。
+ *
+ * 视图也是AbstractTreeMap，记录关键码的上下界和方向，基本操作转交给原来的树，越界的关键码视作不存在。
+ * 与java.util.TreeMap一样，关键码不能为null，值可以为null；遍历期间修改树（迭代器自己的remove除外），结果未定义。
+ */
+public abstract class AbstractTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    //视图的下界lo和上界hi；fromStart、toEnd为true表示该侧不设界，descending为true表示按降序排列
+    final boolean fromStart, toEnd, loInclusive, hiInclusive, descending;
+    final K lo, hi;
+
+    protected AbstractTreeMap() {
+        this(true, null, true, true, null, true, false);
+    }
+
+    AbstractTreeMap(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * 关键码等于key的条目，没有则为null
+     */
+    abstract Entry<K, V> getEntry(K key);
+
+    /**
+     * 不小于key（inclusive为false时为大于key）的最小条目，没有则为null
+     */
+    abstract Entry<K, V> ceiling(K key, boolean inclusive);
+
+    /**
+     * 不大于key（inclusive为false时为小于key）的最大条目，没有则为null
+     */
+    abstract Entry<K, V> floor(K key, boolean inclusive);
+
+    abstract Entry<K, V> first();
+
+    abstract Entry<K, V> last();
+
+    /**
+     * 按关键码升序排列时e的后一个条目，e为最后一个时返回null
+     */
+    abstract Entry<K, V> successor(Entry<K, V> e);
+
+    abstract Entry<K, V> predecessor(Entry<K, V> e);
+
+    /**
+     * 视图所依附的原树
+     */
+    AbstractTreeMap<K, V> backing() {
+        return this;
+    }
+
+    @Override
+    public V get(Object key) {
+        Entry<K, V> e = entryInRange(key);
+        return (e == null) ? null : e.getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entryInRange(key) != null;
+    }
+
+    private Entry<K, V> entryInRange(Object key) {
+        K k = (K) key;
+        return inRange(k) ? getEntry(k) : null;
+    }
+
+    /**
+     * 视图的规模需要逐个数出来，原树直接返回记录的规模
+     */
+    @Override
+    public int size() {
+        int n = 0;
+        for (Entry<K, V> e = head(); e != null; e = step(e)) n++;
+        return n;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head() == null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return new KeySet<>(descendingMap());
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return snapshot(head());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return snapshot(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        return poll(head());
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        return poll(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(head());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return snapshot(descending ? absCeiling(key, false) : absFloor(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(descending ? absCeiling(key, false) : absFloor(key, false));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return snapshot(descending ? absCeiling(key, true) : absFloor(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(descending ? absCeiling(key, true) : absFloor(key, true));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return snapshot(descending ? absFloor(key, true) : absCeiling(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(descending ? absFloor(key, true) : absCeiling(key, true));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return snapshot(descending ? absFloor(key, false) : absCeiling(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(descending ? absFloor(key, false) : absCeiling(key, false));
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new View<>(backing(), fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+    }
+
+    /**
+     * 降序视图中fromKey、toKey的先后也按降序理解，即fromKey不小于toKey
+     */
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        K l = descending ? toKey : fromKey, h = descending ? fromKey : toKey;
+        boolean lInclusive = descending ? toInclusive : fromInclusive, hInclusive = descending ? fromInclusive : toInclusive;
+        if (l.compareTo(h) > 0) throw new IllegalArgumentException("fromKey > toKey");
+        checkBound(l, lInclusive);
+        checkBound(h, hInclusive);
+        return new View<>(backing(), false, l, lInclusive, false, h, hInclusive, descending);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        checkBound(toKey, inclusive);
+        return descending ?
+                new View<>(backing(), false, toKey, inclusive, toEnd, hi, hiInclusive, true) :
+                new View<>(backing(), fromStart, lo, loInclusive, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        checkBound(fromKey, inclusive);
+        return descending ?
+                new View<>(backing(), fromStart, lo, loInclusive, false, fromKey, inclusive, true) :
+                new View<>(backing(), false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * 按本视图的方向排在最前的条目
+     */
+    private Entry<K, V> head() {
+        return descending ? absHighest() : absLowest();
+    }
+
+    /**
+     * 按本视图的方向，e的下一个条目，越界则为null
+     */
+    private Entry<K, V> step(Entry<K, V> e) {
+        Entry<K, V> n = descending ? predecessor(e) : successor(e);
+        return (n == null || tooLow(n.getKey()) || tooHigh(n.getKey())) ? null : n;
+    }
+
+    //以下abs开头的方法都按关键码的升序理解，并限制在视图的界内
+    private Entry<K, V> absLowest() {
+        Entry<K, V> e = fromStart ? first() : ceiling(lo, loInclusive);
+        return (e == null || tooHigh(e.getKey())) ? null : e;
+    }
+
+    private Entry<K, V> absHighest() {
+        Entry<K, V> e = toEnd ? last() : floor(hi, hiInclusive);
+        return (e == null || tooLow(e.getKey())) ? null : e;
+    }
+
+    private Entry<K, V> absCeiling(K key, boolean inclusive) {
+        if (tooLow(key)) return absLowest();
+        Entry<K, V> e = ceiling(key, inclusive);
+        return (e == null || tooHigh(e.getKey())) ? null : e;
+    }
+
+    private Entry<K, V> absFloor(K key, boolean inclusive) {
+        if (tooHigh(key)) return absHighest();
+        Entry<K, V> e = floor(key, inclusive);
+        return (e == null || tooLow(e.getKey())) ? null : e;
+    }
+
+    private boolean tooLow(K key) {
+        if (fromStart) return false;
+        int c = key.compareTo(lo);
+        return c < 0 || (c == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(K key) {
+        if (toEnd) return false;
+        int c = key.compareTo(hi);
+        return c > 0 || (c == 0 && !hiInclusive);
+    }
+
+    final boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * 新视图的界必须落在本视图的界内：inclusive时key本身须在界内，否则key可以恰好等于开的边界
+     */
+    private void checkBound(K key, boolean inclusive) {
+        boolean ok = inclusive ? inRange(key) :
+                (fromStart || key.compareTo(lo) >= 0) && (toEnd || key.compareTo(hi) <= 0);
+        if (!ok) throw new IllegalArgumentException("key out of range: " + key);
+    }
+
+    private Entry<K, V> poll(Entry<K, V> e) {
+        if (e == null) return null;
+        Entry<K, V> s = snapshot(e);
+        remove(e.getKey());
+        return s;
+    }
+
+    private static <K, V> Entry<K, V> snapshot(Entry<K, V> e) {
+        return (e == null) ? null : new SimpleImmutableEntry<>(e);
+    }
+
+    private static <K> K keyOrNull(Entry<K, ?> e) {
+        return (e == null) ? null : e.getKey();
+    }
+
+    private static <K> K keyOrThrow(Entry<K, ?> e) {
+        if (e == null) throw new NoSuchElementException();
+        return e.getKey();
+    }
+
+    /**
+     * 比较两个条目，供子类实现Map.Entry的equals
+     */
+    static boolean entryEquals(Entry<?, ?> e, Object o) {
+        if (!(o instanceof Map.Entry)) return false;
+        Entry<?, ?> x = (Entry<?, ?>) o;
+        return e.getKey().equals(x.getKey()) &&
+                (e.getValue() == null ? x.getValue() == null : e.getValue().equals(x.getValue()));
+    }
+
+    static int entryHashCode(Entry<?, ?> e) {
+        return e.getKey().hashCode() ^ (e.getValue() == null ? 0 : e.getValue().hashCode());
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return AbstractTreeMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return AbstractTreeMap.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Entry<?, ?> x = (Entry<?, ?>) o;
+            Entry<K, V> e = entryInRange(x.getKey());
+            return e != null && entryEquals(e, x);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) return false;
+            AbstractTreeMap.this.remove(((Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            AbstractTreeMap.this.clear();
+        }
+    }
+
+    /**
+     * 沿successor（降序视图沿predecessor）逐个前进。
+     * remove之后树的结构可能已经调整，下一个条目按关键码重新定位
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private Entry<K, V> next = head(), lastReturned;
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            lastReturned = next;
+            next = step(next);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) throw new IllegalStateException();
+            K nextKey = (next == null) ? null : next.getKey();
+            AbstractTreeMap.this.remove(lastReturned.getKey());
+            next = (nextKey == null) ? null : getEntry(nextKey);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * 原树的一段或其降序排列
+     */
+    private static final class View<K extends Comparable<K>, V> extends AbstractTreeMap<K, V> {
+        private final AbstractTreeMap<K, V> m;
+
+        View(AbstractTreeMap<K, V> m, boolean fromStart, K lo, boolean loInclusive,
+             boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            super(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, descending);
+            this.m = m;
+        }
+
+        @Override
+        AbstractTreeMap<K, V> backing() {
+            return m;
+        }
+
+        @Override
+        Entry<K, V> getEntry(K key) {
+            return m.getEntry(key);
+        }
+
+        @Override
+        Entry<K, V> ceiling(K key, boolean inclusive) {
+            return m.ceiling(key, inclusive);
+        }
+
+        @Override
+        Entry<K, V> floor(K key, boolean inclusive) {
+            return m.floor(key, inclusive);
+        }
+
+        @Override
+        Entry<K, V> first() {
+            return m.first();
+        }
+
+        @Override
+        Entry<K, V> last() {
+            return m.last();
+        }
+
+        @Override
+        Entry<K, V> successor(Entry<K, V> e) {
+            return m.successor(e);
+        }
+
+        @Override
+        Entry<K, V> predecessor(Entry<K, V> e) {
+            return m.predecessor(e);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) throw new IllegalArgumentException("key out of range: " + key);
+            return m.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange((K) key) ? m.remove(key) : null;
+        }
+
+        /**
+         * 只删除界内的条目：经迭代器逐个删除，不能像原树那样直接置空树根
+         */
+        @Override
+        public void clear() {
+            for (Iterator<Entry<K, V>> it = entrySet().iterator(); it.hasNext(); ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 以NavigableMap的关键码构成的NavigableSet，各操作直接转交给map，做法同java.util.TreeMap.KeySet
+     */
+    private static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+        private final NavigableMap<K, ?> m;
+
+        KeySet(NavigableMap<K, ?> m) {
+            this.m = m;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keys(m.entrySet().iterator());
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return keys(m.descendingMap().entrySet().iterator());
+        }
+
+        private static <K> Iterator<K> keys(Iterator<? extends Entry<K, ?>> it) {
+            return new Iterator<K>() {
+                public boolean hasNext() { return it.hasNext(); }
+                public K next() { return it.next().getKey(); }
+                public void remove() { it.remove(); }
+            };
+        }
+
+        @Override
+        public int size() {
+            return m.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return m.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!m.containsKey(o)) return false;
+            m.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            m.clear();
+        }
+
+        @Override
+        public K lower(K e) { return m.lowerKey(e); }
+
+        @Override
+        public K floor(K e) { return m.floorKey(e); }
+
+        @Override
+        public K ceiling(K e) { return m.ceilingKey(e); }
+
+        @Override
+        public K higher(K e) { return m.higherKey(e); }
+
+        @Override
+        public K first() { return m.firstKey(); }
+
+        @Override
+        public K last() { return m.lastKey(); }
+
+        @Override
+        public Comparator<? super K> comparator() { return m.comparator(); }
+
+        @Override
+        public K pollFirst() {
+            Entry<K, ?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            Entry<K, ?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet<>(m.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return new KeySet<>(m.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return new KeySet<>(m.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return new KeySet<>(m.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package tree;
+
+import array.Vector;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * B+树：关键码全部存放在叶节点中，内部节点只存放分隔关键码，用于引导查找。
+ * 叶节点之间按关键码顺序双向链接，区间查找只需下行一次找到lo所在的叶节点，
+ * 此后沿next逐个叶节点线性扫描，不必像B_Tree那样经过parent和child在树中上下往返；
+ * 相邻叶节点若在外存中连续存放，扫描即为顺序读，有利于预读。
+ *
+ * 内部节点的第i个分隔关键码大于第i棵子树中的所有关键码，且不大于第i+1棵子树中的所有关键码。
+ * 分隔关键码只用于引导查找，删除时不必同步删除，即使对应的关键码已不在叶节点中，上述性质依然成立。
+ * 插入、删除的上溢、下溢处理与B_Tree相同，区别只在叶节点：
+ * 1, 叶节点分裂时，右半部分的最小关键码复制一份到父节点，而不是移上去；
+ * 2, 叶节点向兄弟借关键码时直接移动，父节点中的分隔关键码改为右侧节点新的最小关键码；
+ * 3, 叶节点合并时直接丢掉父节点中的分隔关键码。
+ * @param <T>
+ */
+public class BPlusTree<T extends Comparable<T>> implements Iterable<T> {
+    private int size = 0;
+    private final int order;
+    private Node<T> root;
+    private Node<T> first, last;//最左、最右的叶节点
+
+    public BPlusTree() {
+        this(3);
+    }
+
+    /**
+     * @param order 阶次，即每个内部节点至多拥有的孩子数，也是每个叶节点至多存放的关键码数加一，至少为3
+     */
+    public BPlusTree(int order) {
+        if (order < 3) throw new IllegalArgumentException("order must be at least 3: " + order);
+        this.order = order;
+        this.root = this.first = this.last = new Node<>(true);
+    }
+
+    /**
+     * 由严格递增的序列自底向上构造B+树，O(n)时间。
+     * 先把关键码均匀切成若干叶节点并依次链接，再把每个叶节点的最小关键码作为上一层的分隔关键码，逐层向上，
+     * 直到只剩一个节点作为树根。同一层各节点的规模至多相差1，且不低于下限。
+     * @param sorted 严格递增的关键码序列
+     * @param order 阶次
+     * @param fillFactor 节点的目标填充率，取值(0, 1]，含义同B_Tree.bulkLoad
+     */
+    public static <T extends Comparable<T>> BPlusTree<T> bulkLoad(List<? extends T> sorted, int order, double fillFactor) {
+        if (!(fillFactor > 0 && fillFactor <= 1))
+            throw new IllegalArgumentException("fill factor must be in (0, 1]: " + fillFactor);
+        Object[] keys = sorted.toArray();
+        for (int i = 1; i < keys.length; i++)
+            if (((T) keys[i - 1]).compareTo((T) keys[i]) >= 0)
+                throw new IllegalArgumentException("keys are not strictly ascending at index " + i);
+        BPlusTree<T> tree = new BPlusTree<>(order);
+        if (keys.length > 0) tree.bulkBuild(keys, fillFactor);
+        return tree;
+    }
+
+    private void bulkBuild(Object[] keys, double fillFactor) {
+        //叶节点层：每个叶节点约target个关键码
+        int min = minKeys();
+        int target = Math.max(Math.max(min, 1), Math.min(order - 1, (int) Math.round(fillFactor * (order - 1))));
+        int n = keys.length;
+        int leaves = groups(n, target, min);
+        List<Node<T>> level = new ArrayList<>(leaves);
+        List<T> lowest = new ArrayList<>(leaves);//每个节点子树中的最小关键码
+        for (int i = 0, k = 0; i < leaves; i++) {
+            int cnt = n / leaves + (i < n % leaves ? 1 : 0);
+            Node<T> v = new Node<>(true);
+            for (int j = 0; j < cnt; j++) v.key.insert(j, (T) keys[k++]);
+            if (i > 0) {
+                Node<T> u = level.get(i - 1);
+                u.next = v;
+                v.prev = u;
+            }
+            level.add(v);
+            lowest.add(v.key.get(0));
+        }
+        first = level.get(0);
+        last = level.get(leaves - 1);
+        size = n;
+        //内部节点层：每个节点约target个孩子，分隔关键码取各孩子（第0个除外）子树中的最小关键码
+        target = Math.max(min + 1, Math.min(order, (int) Math.round(fillFactor * order)));
+        while (level.size() > 1) {
+            int m = level.size();
+            int nodes = groups(m, target, min + 1);
+            List<Node<T>> upper = new ArrayList<>(nodes);
+            List<T> upperLowest = new ArrayList<>(nodes);
+            for (int i = 0, c = 0; i < nodes; i++) {
+                int cnt = m / nodes + (i < m % nodes ? 1 : 0);
+                Node<T> v = new Node<>(false);
+                upperLowest.add(lowest.get(c));
+                for (int j = 0; j < cnt; j++, c++) {
+                    if (j > 0) v.key.insert(j - 1, lowest.get(c));
+                    v.child.insert(j, level.get(c));
+                    level.get(c).parent = v;
+                }
+                upper.add(v);
+            }
+            level = upper;
+            lowest = upperLowest;
+        }
+        root = level.get(0);
+    }
+
+    /**
+     * 把m个元素均匀分成若干组，每组约target个；若平均数不足下限min则减少组数
+     */
+    private static int groups(int m, int target, int min) {
+        int g = (m + target - 1) / target;
+        while (g > 1 && m / g < min) g--;
+        return g;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int order() {
+        return order;
+    }
+
+    public boolean search(T e) {
+        Node<T> v = leafOf(e);
+        int r = v.key.search(e);
+        return (0 <= r) && (compare(e, v.key.get(r)) == 0);
+    }
+
+    /**
+     * 从根下行到e所在的叶节点；e不在树中时即为e应插入的叶节点。
+     * 内部节点中与e相等的分隔关键码不代表查找成功，必须一直走到叶节点
+     */
+    private Node<T> leafOf(T e) {
+        Node<T> v = root;
+        while (!v.isLeaf()) v = v.child.get(v.key.search(e) + 1);
+        return v;
+    }
+
+    public boolean insert(T e) {
+        Node<T> v = leafOf(e);
+        int r = v.key.search(e);
+        if ( (0 <= r) && (compare(e, v.key.get(r)) == 0) ) return false;
+        v.key.insert(r + 1, e);
+        size++;
+        solveOverflow(v);
+        return true;
+    }
+
+    public boolean remove(T e) {
+        Node<T> v = leafOf(e);
+        int r = v.key.search(e);
+        if ( (r < 0) || (compare(e, v.key.get(r)) != 0) ) return false;
+        v.key.remove(r);
+        size--;
+        solveUnderflow(v);
+        return true;
+    }
+
+    private int compare(T a, T b) {
+        return a.compareTo(b);
+    }
+
+    /**
+     * 非根节点至少拥有的关键码数
+     */
+    private int minKeys() {
+        return (order + 1) / 2 - 1;
+    }
+
+    /**
+     * v是p的第几个孩子
+     */
+    private int indexOf(Node<T> p, Node<T> v) {
+        int r = 0;
+        while (p.child.get(r) != v) r++;
+        return r;
+    }
+
+    //通过分裂解决上溢
+    private void solveOverflow(Node<T> v) {
+        if (v.key.getSize() < order) return;//当前节点未溢出：叶节点至多order-1个关键码，内部节点至多order个孩子
+        int s = order >> 1;
+        Node<T> u = new Node<>(v.isLeaf());
+        T separator;
+        if (v.isLeaf()) {
+            //[s, order)移入u，u的最小关键码复制一份到父节点，u接在v之后
+            while (v.key.getSize() > s) u.key.insert(u.key.getSize(), v.key.remove(s));
+            separator = u.key.get(0);
+            u.prev = v;
+            u.next = v.next;
+            if (v.next != null) v.next.prev = u;
+            else last = u;
+            v.next = u;
+        } else {
+            //与B_Tree相同：第s个关键码移到父节点，其右侧的关键码和孩子移入u
+            while (v.key.getSize() > s + 1) u.key.insert(u.key.getSize(), v.key.remove(s + 1));
+            while (v.child.getSize() > s + 1) {
+                Node<T> c = v.child.remove(s + 1);
+                u.child.insert(u.child.getSize(), c);
+                c.parent = u;
+            }
+            separator = v.key.remove(s);
+        }
+        Node<T> p = v.parent;
+        if (p == null) {
+            p = new Node<>(false);
+            p.child.insert(0, v);
+            v.parent = p;
+            root = p;
+        }
+        int r = indexOf(p, v);
+        p.key.insert(r, separator);
+        p.child.insert(r + 1, u);
+        u.parent = p;
+        solveOverflow(p);
+    }
+
+    /**
+     * 通过旋转或合并解决下溢
+     */
+    private void solveUnderflow(Node<T> v) {
+        Node<T> p = v.parent;
+        if (p == null) {
+            //树根的最后一个分隔关键码被合并下去之后，唯一的孩子成为新的树根
+            if (!v.isLeaf() && v.key.getSize() == 0) {
+                root = v.child.get(0);
+                root.parent = null;
+            }
+            return;
+        }
+        int min = minKeys();
+        if (v.key.getSize() >= min) return;//节点未发生下溢
+        int r = indexOf(p, v);
+        Node<T> ls = (r > 0) ? p.child.get(r - 1) : null;
+        Node<T> rs = (r < p.child.getSize() - 1) ? p.child.get(r + 1) : null;
+        if (v.isLeaf()) {
+            //1, 向左兄弟借最大关键码，它也是v新的最小关键码
+            if (ls != null && ls.key.getSize() > min) {
+                v.key.insert(0, ls.key.remove(ls.key.getSize() - 1));
+                p.key.remove(r - 1);
+                p.key.insert(r - 1, v.key.get(0));
+                return;
+            }
+            //2, 向右兄弟借最小关键码，右兄弟新的最小关键码成为分隔
+            if (rs != null && rs.key.getSize() > min) {
+                v.key.insert(v.key.getSize(), rs.key.remove(0));
+                p.key.remove(r);
+                p.key.insert(r, rs.key.get(0));
+                return;
+            }
+            //3, 并入左兄弟，丢掉二者之间的分隔关键码
+            if (ls != null) {
+                while (v.key.getSize() > 0) ls.key.insert(ls.key.getSize(), v.key.remove(0));
+                p.key.remove(r - 1);
+            }
+            //4, 并入右兄弟
+            else {
+                while (v.key.getSize() > 0) rs.key.insert(0, v.key.remove(v.key.getSize() - 1));
+                p.key.remove(r);
+            }
+            p.child.remove(r);
+            unlink(v);
+        } else {
+            //内部节点与B_Tree相同，分隔关键码随旋转、合并在父子之间移动
+            //1, 右旋
+            if (ls != null && ls.key.getSize() > min) {
+                v.key.insert(0, p.key.remove(r - 1));
+                p.key.insert(r - 1, ls.key.remove(ls.key.getSize() - 1));
+                Node<T> c = ls.child.remove(ls.child.getSize() - 1);
+                v.child.insert(0, c);
+                c.parent = v;
+                return;
+            }
+            //2, 左旋
+            if (rs != null && rs.key.getSize() > min) {
+                v.key.insert(v.key.getSize(), p.key.remove(r));
+                p.key.insert(r, rs.key.remove(0));
+                Node<T> c = rs.child.remove(0);
+                v.child.insert(v.child.getSize(), c);
+                c.parent = v;
+                return;
+            }
+            //3, 与左兄弟合并
+            if (ls != null) {
+                ls.key.insert(ls.key.getSize(), p.key.remove(r - 1));
+                while (v.key.getSize() > 0) ls.key.insert(ls.key.getSize(), v.key.remove(0));
+                while (v.child.getSize() > 0) {
+                    Node<T> c = v.child.remove(0);
+                    ls.child.insert(ls.child.getSize(), c);
+                    c.parent = ls;
+                }
+            }
+            //4, 与右兄弟合并
+            else {
+                rs.key.insert(0, p.key.remove(r));
+                while (v.key.getSize() > 0) rs.key.insert(0, v.key.remove(v.key.getSize() - 1));
+                while (v.child.getSize() > 0) {
+                    Node<T> c = v.child.remove(v.child.getSize() - 1);
+                    rs.child.insert(0, c);
+                    c.parent = rs;
+                }
+            }
+            p.child.remove(r);
+        }
+        solveUnderflow(p);
+    }
+
+    /**
+     * 把合并掉的叶节点v从叶节点链表中摘下
+     */
+    private void unlink(Node<T> v) {
+        if (v.prev != null) v.prev.next = v.next;
+        else first = v.next;
+        if (v.next != null) v.next.prev = v.prev;
+        else last = v.prev;
+    }
+
+    /**
+     * 升序迭代器，沿叶节点链表逐个扫描
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Ascending(first, 0, null);
+    }
+
+    /**
+     * 降序迭代器，沿叶节点链表反向扫描
+     */
+    public Iterator<T> descendingIterator() {
+        return new Descending(last, last.key.getSize() - 1);
+    }
+
+    /**
+     * 全部关键码按降序排列
+     */
+    public Iterable<T> descending() {
+        return this::descendingIterator;
+    }
+
+    /**
+     * 落在[lo, hi)中的关键码，按升序排列：下行一次找到lo所在的叶节点，此后只沿叶节点链表前进
+     */
+    public Iterable<T> range(T lo, T hi) {
+        return () -> ceiling(lo, hi);
+    }
+
+    /**
+     * 小于hi的关键码，按升序排列
+     */
+    public Iterable<T> headSet(T hi) {
+        return () -> new Ascending(first, 0, hi);
+    }
+
+    /**
+     * 不小于lo的关键码，按升序排列
+     */
+    public Iterable<T> tailSet(T lo) {
+        return () -> ceiling(lo, null);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), size,
+                Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * 中序遍历，依次把每个关键码交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        for (Node<T> v = first; v != null; v = v.next)
+            for (int i = 0; i < v.key.getSize(); i++) visit.accept(v.key.get(i));
+    }
+
+    /**
+     * 从不小于lo的第一个关键码开始的升序迭代器
+     */
+    private Ascending ceiling(T lo, T hi) {
+        Node<T> v = leafOf(lo);
+        int r = v.key.search(lo);
+        boolean hit = (0 <= r) && (compare(lo, v.key.get(r)) == 0);
+        return new Ascending(v, hit ? r : r + 1, hi);
+    }
+
+    private class Ascending implements Iterator<T> {
+        private Node<T> leaf;
+        private int index;
+        private final T hi;//不含，为null表示没有上界
+
+        Ascending(Node<T> leaf, int index, T hi) {
+            this.leaf = leaf;
+            this.index = index;
+            this.hi = hi;
+            skipExhausted();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null && (hi == null || compare(leaf.key.get(index), hi) < 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T e = leaf.key.get(index++);
+            skipExhausted();
+            return e;
+        }
+
+        /**
+         * 当前叶节点已扫描完，转入下一个叶节点；只有空树的树根是空的叶节点
+         */
+        private void skipExhausted() {
+            while (leaf != null && index >= leaf.key.getSize()) {
+                leaf = leaf.next;
+                index = 0;
+            }
+        }
+    }
+
+    private class Descending implements Iterator<T> {
+        private Node<T> leaf;
+        private int index;
+
+        Descending(Node<T> leaf, int index) {
+            this.leaf = leaf;
+            this.index = index;
+            skipExhausted();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        public T next() {
+            if (leaf == null) throw new NoSuchElementException();
+            T e = leaf.key.get(index--);
+            skipExhausted();
+            return e;
+        }
+
+        private void skipExhausted() {
+            while (leaf != null && index < 0) {
+                leaf = leaf.prev;
+                if (leaf != null) index = leaf.key.getSize() - 1;
+            }
+        }
+    }
+
+    private static class Node<T> {
+        Node<T> parent = null;
+        final Vector<T> key = new Vector<>();
+        final Vector<Node<T>> child;//叶节点为null
+        Node<T> prev, next;//叶节点链表中的前驱、后继，内部节点不用
+
+        Node(boolean leaf) {
+            this.child = leaf ? null : new Vector<>();
+        }
+
+        boolean isLeaf() {
+            return child == null;
+        }
+    }
+
+    public static void main(String args[]) {
+        System.out.println("B+ Tree API");
+        BPlusTree<Integer> tree = new BPlusTree<>(4);
+        for (int i = 0; i < 20; i++) tree.insert(i);
+        tree.remove(3);
+        tree.remove(10);
+        for (Integer k : tree.range(5, 15)) System.out.print(k + "   ");
+        System.out.println();
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) sorted.add(i);
+        BPlusTree<Integer> bulk = BPlusTree.bulkLoad(sorted, 8, 0.75);
+        System.out.println("bulk loaded size: " + bulk.size() + "  search 500: " + bulk.search(500) +
+                "  keys >= 995: " + bulk.stream().filter(k -> k >= 995).count());
+    }
+}
@@ -1,11 +1,19 @@
 package tree;
 
-import java.util.Stack;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class BST<T extends Comparable<T>> {
+public class BST<T extends Comparable<T>> implements Iterable<T> {
     private Node root;
     private Node hot;
     private int count;
+    private int epoch;//节点离开本树的次数，Finger据此判断所记的节点是否还在树中
+    private final Comparator<? super T> comparator;
     private class Node{
         private T val;
         private Node parent, left, right;
@@ -19,23 +27,291 @@ public class BST<T extends Comparable<T>> {
         }
     }
 
+    public BST() {
+        this(Comparator.naturalOrder());
+    }
+
+    /**
+     * @param comparator 关键码的次序
+     */
+    public BST(Comparator<? super T> comparator) {
+        if (comparator == null) throw new NullPointerException("comparator");
+        this.comparator = comparator;
+    }
+
     public int size() {
         return count;
     }
+
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    private int compare(T a, T b) {
+        return comparator.compare(a, b);
+    }
     
+    private Node first() {
+        Node x = root;
+        if (x != null) while (x.left != null) x = x.left;
+        return x;
+    }
+
+    private Node last() {
+        Node x = root;
+        if (x != null) while (x.right != null) x = x.right;
+        return x;
+    }
+
+    /**
+     * 升序迭代器：从最小节点出发，每次沿succ()走到直接后继，不借助辅助栈，也不复制关键码。
+     * 遍历期间修改树，结果未定义
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Ascending(first(), null);
+    }
+
+    /**
+     * 降序迭代器，沿pred()走到直接前驱
+     */
+    public Iterator<T> descendingIterator() {
+        return new Descending(last());
+    }
+
+    /**
+     * 全部关键码按降序排列
+     */
+    public Iterable<T> descending() {
+        return this::descendingIterator;
+    }
+
+    /**
+     * 落在[lo, hi)中的关键码，按升序排列；从lo的查找位置出发惰性地走到hi为止
+     */
+    public Iterable<T> range(T lo, T hi) {
+        return () -> new Ascending(ceiling(lo), hi);
+    }
+
+    /**
+     * 小于hi的关键码，按升序排列
+     */
+    public Iterable<T> headSet(T hi) {
+        return () -> new Ascending(first(), hi);
+    }
+
+    /**
+     * 不小于lo的关键码，按升序排列
+     */
+    public Iterable<T> tailSet(T lo) {
+        return () -> new Ascending(ceiling(lo), null);
+    }
+
+    /**
+     * 可分裂的Spliterator，stream().parallel()按子树把关键码分给多个线程
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(first(), null, 0, size());
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    private class Ascending implements Iterator<T> {
+        private Node next;
+        private final T hi;//不含，为null表示没有上界
+
+        Ascending(Node from, T hi) {
+            this.hi = hi;
+            this.next = bounded(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T val = next.val;
+            next = bounded(succ(next));
+            return val;
+        }
+
+        private Node bounded(Node x) {
+            return (x == null || hi == null || compare(x.val, hi) < 0) ? x : null;
+        }
+    }
+
+    private class Descending implements Iterator<T> {
+        private Node next;
+
+        Descending(Node from) {
+            this.next = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T val = next.val;
+            next = pred(next);
+            return val;
+        }
+    }
+
+    /**
+     * 覆盖[current, fence)中节点的Spliterator，分裂方式同java.util.TreeMap：
+     * 第一次以树根为界分成两半；此后右半部分以current的右孩子为界，左半部分以fence的左孩子为界。
+     * 分裂点都直接取自树的结构，每次大致对半分开，不需要栈，也不需要预先遍历
+     */
+    private class TreeSpliterator implements Spliterator<T> {
+        private Node current;
+        private final Node fence;//不含，为null表示一直到最大节点
+        private int side;//0：尚未分裂，1：分裂后留下的右半部分，-1：分出去的左半部分
+        private long est;//剩余规模的估计，尚未分裂时是准确值
+
+        TreeSpliterator(Node current, Node fence, int side, long est) {
+            this.current = current;
+            this.fence = fence;
+            this.side = side;
+            this.est = est;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Node e = current, f = fence;
+            Node s = (e == null || e == f) ? null :
+                    (side == 0) ? root :
+                    (side > 0) ? e.right :
+                    (f != null) ? f.left : null;
+            if (s != null && s != e && s != f && compare(e.val, s.val) < 0 &&
+                    (f == null || compare(s.val, f.val) < 0)) {
+                side = 1;
+                current = s;
+                return new TreeSpliterator(e, s, -1, est >>>= 1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Node e = current;
+            if (e == null || e == fence) return false;
+            current = succ(e);
+            action.accept(e.val);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Node f = fence;
+            for (Node e = current; e != null && e != f; e = succ(e)) action.accept(e.val);
+            current = f;
+        }
+
+        @Override
+        public long estimateSize() {
+            return est;
+        }
+
+        @Override
+        public int characteristics() {
+            return (side == 0 ? Spliterator.SIZED : 0) |
+                    Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return (comparator == Comparator.naturalOrder()) ? null : comparator;
+        }
+    }
+
+    /**
+     * 不小于lo的最小节点，没有则为null
+     */
+    private Node ceiling(T lo) {
+        Node c = null;
+        for (Node x = root; x != null; ) {
+            if (compare(lo, x.val) <= 0) {
+                c = x;
+                x = x.left;
+            } else x = x.right;
+        }
+        return c;
+    }
+
     public Node search(T val) {
         return search(root, val);
     }
 
+    /**
+     * 新建一个查找游标，见Finger
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * 查找游标，做法同AVL.Finger：从上一次查找到达的节点上行到目标所在的子树，再向下查找。
+     * BST不保证平衡，上下两段路径的长度取决于树的形状；有节点被remove之后，下一次查找自动从树根开始。
+     */
+    public class Finger {
+        private Node last;//上一次查找到达的节点：命中的节点，或查找失败时最后访问的节点
+        private int epoch;
+
+        private Finger() {
+            this.epoch = BST.this.epoch;
+        }
+
+        public Node search(T val) {
+            Node x = start(val);
+            while (x != null) {
+                int cmp = compare(val, x.val);
+                last = x;
+                if (cmp == 0) return x;
+                x = (cmp < 0) ? x.left : x.right;
+            }
+            return null;
+        }
+
+        /**
+         * 下行的起点：所记节点的某个祖先，val一定落在以它为根的子树中
+         */
+        private Node start(T val) {
+            if (last == null || epoch != BST.this.epoch) {
+                epoch = BST.this.epoch;
+                last = null;
+                return root;
+            }
+            Node u = last;
+            int cmp = compare(val, u.val);
+            if (cmp > 0) {
+                while (u.parent != null && !(u == u.parent.left && compare(val, u.parent.val) < 0)) u = u.parent;
+            } else if (cmp < 0) {
+                while (u.parent != null && !(u == u.parent.right && compare(val, u.parent.val) > 0)) u = u.parent;
+            }
+            return u;
+        }
+    }
+
+
     private Node search(Node root, T val) {
-        if (root == null || val == root.val) {
+        if (root == null || compare(val, root.val) == 0) {
             hot = null;
             return root;
         }
         for (hot = root;;) {
-            int cmp = val.compareTo(hot.val);
+            int cmp = compare(val, hot.val);
             Node currentNode = (cmp < 0) ? hot.left : hot.right;
-            if (null == currentNode || val == currentNode.val) 
+            if (null == currentNode || compare(val, currentNode.val) == 0)
                 return currentNode;
             hot = currentNode;
         }
@@ -47,7 +323,7 @@ public class BST<T extends Comparable<T>> {
         node = new Node(val, hot);
         if (root == null) root = node;
         if (hot != null) {
-            int cmp = val.compareTo(hot.val);
+            int cmp = compare(val, hot.val);
             if (cmp < 0)
                 hot.left = node;
             else
@@ -62,13 +338,14 @@ public class BST<T extends Comparable<T>> {
     public boolean remove(T val) {
         Node node = search(val);
         if (node == null) return false;
-        removeAt(node, hot);
+        removeAt(node);
+        epoch++;
         count--;
-        updateHeightAbove(node);
+        updateHeightAbove(hot);
         return true;
     }
 
-    private void removeAt(Node x, Node hot) {
+    private void removeAt(Node x) {
         Node w = x; //实际被删除的节点
         Node succ = null; //实际被删除节点的接替者
         if (!hasLeftChild(x)) {
@@ -86,7 +363,8 @@ public class BST<T extends Comparable<T>> {
         }
         hot = w.parent;
         if (succ != null) succ.parent = hot;
-        if (hot.left == w) hot.left = succ;
+        if (hot == null) root = succ;
+        else if (hot.left == w) hot.left = succ;
         else hot.right = succ;
     }
 
@@ -101,7 +379,7 @@ public class BST<T extends Comparable<T>> {
     }
 
     /**
-     * 当前节点的直接后继节点 
+     * 当前节点的直接后继节点，x为最大节点时返回null 
      */
     private Node succ(Node x) {
         Node s = null;
@@ -110,8 +388,24 @@ public class BST<T extends Comparable<T>> {
             while (s.left != null) s = s.left; 
         } else {
             s = x;
-            while (s.parent.right == s) s = s.parent;
-            s = s.parent; 
+            while (s.parent != null && s.parent.right == s) s = s.parent;
+            s = s.parent;
+        }
+        return s;
+    }
+
+    /**
+     * 当前节点的直接前驱节点，x为最小节点时返回null
+     */
+    private Node pred(Node x) {
+        Node s = null;
+        if (hasLeftChild(x)) {
+            s = x.left;
+            while (s.right != null) s = s.right;
+        } else {
+            s = x;
+            while (s.parent != null && s.parent.left == s) s = s.parent;
+            s = s.parent;
         }
         return s;
     }
@@ -120,22 +414,18 @@ public class BST<T extends Comparable<T>> {
      * 中序遍历
      */
     public void inOrderTraversal() {
-        Stack<BST.Node> stack = new Stack();
-        Node nodePosi = root;
-        System.out.println(root.left.val);
-        while (true) {
-            if (nodePosi != null) {
-                stack.push(nodePosi);
-                nodePosi = nodePosi.left;
-            } else if (!stack.isEmpty()) {
-                Node x = stack.pop();
-                System.out.print(x.val + "   ");
-                nodePosi = x.right;
-            } else break;
-        }
+        for (Node x = first(); x != null; x = succ(x))
+            System.out.print(x.val + "   ");
         System.out.println();
     }
 
+    /**
+     * 中序遍历，依次把每个元素交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        for (Node x = first(); x != null; x = succ(x)) visit.accept(x.val);
+    }
+
     private void updateHeight(Node x) {
         x.height = 1 + Math.max(stature(x.left), stature(x.right));
     }
@@ -169,6 +459,14 @@ public class BST<T extends Comparable<T>> {
         System.out.println(bst.search(20).parent.val);
         System.out.println(bst.search(20).left);
         System.out.println(bst.search(20).right.val);
+        for (Integer k : bst.descending()) System.out.print(k + "   ");
+        System.out.println();
+        for (Integer k : bst.tailSet(17)) System.out.print(k + "   ");
+        System.out.println();
+        BST<Integer> reversed = new BST<>(Comparator.<Integer>reverseOrder());
+        for (int k : new int[]{15, 9, 10, 13, 18}) reversed.insert(k);
+        for (Integer k : reversed) System.out.print(k + "   ");
+        System.out.println();
     }
 
 }
@@ -0,0 +1,516 @@
+package tree;
+
+import array.Vector;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 以B+树实现的有序映射，节点的组织与BPlusTree相同：内部节点只存放分隔关键码，
+ * 关键码及其值全部存放在叶节点中，叶节点之间双向链接。值只在叶节点里出现一次，
+ * 替换值时不必关心内部节点，视图和迭代沿叶节点链表进行。
+ *
+ * put、remove、compute、merge、putIfAbsent都只下行一次：leafOf找到叶节点hot，
+ * 再在叶节点内查找得到rank，命中则就地修改值，未命中则直接在hot的rank+1处插入。
+ */
+public class BTreeMap<K extends Comparable<K>, V> extends AbstractTreeMap<K, V> {
+    private final int order;
+    private Node<K, V> root;
+    private Node<K, V> first, last;//最左、最右的叶节点
+    private Node<K, V> hot;//最近一次search所到达的叶节点
+    private int rank;//最近一次search在hot中得到的秩：不大于key的最后一个关键码
+    private int count;
+    private int modCount;//结构修改次数，用于发现compute、merge的函数中对本映射的修改
+
+    public BTreeMap() {
+        this(3);
+    }
+
+    /**
+     * @param order 阶次，含义同BPlusTree，至少为3
+     */
+    public BTreeMap(int order) {
+        if (order < 3) throw new IllegalArgumentException("order must be at least 3: " + order);
+        this.order = order;
+        this.root = this.first = this.last = new Node<>(true);
+    }
+
+    /**
+     * 叶节点中的一个位置，作为Map.Entry交给视图和迭代器；树的结构发生变化之后不再有效
+     */
+    private class Cursor implements Map.Entry<K, V> {
+        private final Node<K, V> leaf;
+        private final int index;
+
+        Cursor(Node<K, V> leaf, int index) {
+            this.leaf = leaf;
+            this.index = index;
+        }
+
+        @Override
+        public K getKey() {
+            return leaf.key.get(index);
+        }
+
+        @Override
+        public V getValue() {
+            return leaf.value.get(index);
+        }
+
+        @Override
+        public V setValue(V value) {
+            return replace(leaf, index, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return entryEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return entryHashCode(this);
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    public int order() {
+        return order;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        root = first = last = new Node<>(true);
+        count = 0;
+        modCount++;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (search(key)) return replace(hot, rank, value);
+        insertAtHot(key, value);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (!search(key)) {
+            insertAtHot(key, value);
+            return null;
+        }
+        V old = hot.value.get(rank);
+        if (old != null) return old;
+        replace(hot, rank, value);
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!search((K) key)) return null;
+        return removeAtHot();
+    }
+
+    /**
+     * 查找一次：找到则以新值替换（新值为null时删除），找不到且新值不为null时在hot处插入
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        boolean found = search(key);
+        Node<K, V> v = hot;
+        int r = rank;
+        V value = applyChecked(remapping, key, found ? v.value.get(r) : null);
+        hot = v;
+        rank = r;
+        if (value == null) {
+            if (found) removeAtHot();
+        } else if (found) {
+            replace(v, r, value);
+        } else {
+            insertAtHot(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        boolean found = search(key);
+        if (found && hot.value.get(rank) != null) return hot.value.get(rank);
+        Node<K, V> v = hot;
+        int r = rank;
+        int expected = modCount;
+        V value = mapping.apply(key);
+        if (modCount != expected) throw new ConcurrentModificationException();
+        if (value == null) return null;
+        if (found) replace(v, r, value);
+        else {
+            hot = v;
+            rank = r;
+            insertAtHot(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        if (!search(key)) return null;
+        Node<K, V> v = hot;
+        int r = rank;
+        V old = v.value.get(r);
+        if (old == null) return null;
+        V value = applyChecked(remapping, key, old);
+        if (value == null) {
+            hot = v;
+            rank = r;
+            removeAtHot();
+        } else replace(v, r, value);
+        return value;
+    }
+
+    /**
+     * 查找一次：不存在（或值为null）时放入value，否则与旧值合并，合并结果为null时删除
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        if (value == null) throw new NullPointerException();
+        if (!search(key)) {
+            insertAtHot(key, value);
+            return value;
+        }
+        Node<K, V> v = hot;
+        int r = rank;
+        V old = v.value.get(r);
+        if (old == null) {
+            replace(v, r, value);
+            return value;
+        }
+        int expected = modCount;
+        V merged = remapping.apply(old, value);
+        if (modCount != expected) throw new ConcurrentModificationException();
+        if (merged == null) {
+            hot = v;
+            rank = r;
+            removeAtHot();
+        } else replace(v, r, merged);
+        return merged;
+    }
+
+    private V applyChecked(BiFunction<? super K, ? super V, ? extends V> f, K key, V old) {
+        int expected = modCount;
+        V value = f.apply(key, old);
+        if (modCount != expected) throw new ConcurrentModificationException();
+        return value;
+    }
+
+    @Override
+    Map.Entry<K, V> getEntry(K key) {
+        return search(key) ? new Cursor(hot, rank) : null;
+    }
+
+    @Override
+    Map.Entry<K, V> ceiling(K key, boolean inclusive) {
+        Node<K, V> v = leafOf(key);
+        int r = v.key.search(key);
+        boolean hit = (0 <= r) && (key.compareTo(v.key.get(r)) == 0);
+        return at(v, (hit && inclusive) ? r : r + 1);
+    }
+
+    @Override
+    Map.Entry<K, V> floor(K key, boolean inclusive) {
+        Node<K, V> v = leafOf(key);
+        int r = v.key.search(key);
+        boolean hit = (0 <= r) && (key.compareTo(v.key.get(r)) == 0);
+        return at(v, (hit && !inclusive) ? r - 1 : r);
+    }
+
+    @Override
+    Map.Entry<K, V> first() {
+        return at(first, 0);
+    }
+
+    @Override
+    Map.Entry<K, V> last() {
+        return at(last, last.key.getSize() - 1);
+    }
+
+    @Override
+    Map.Entry<K, V> successor(Map.Entry<K, V> e) {
+        Cursor c = (Cursor) e;
+        return at(c.leaf, c.index + 1);
+    }
+
+    @Override
+    Map.Entry<K, V> predecessor(Map.Entry<K, V> e) {
+        Cursor c = (Cursor) e;
+        return at(c.leaf, c.index - 1);
+    }
+
+    /**
+     * 叶节点v中秩为r的位置；r越过v的两端时沿叶节点链表转入相邻的叶节点，越过整个链表则为null。
+     * 非根的叶节点都不空，所以至多转移一次
+     */
+    private Cursor at(Node<K, V> v, int r) {
+        if (r < 0) {
+            v = v.prev;
+            if (v == null) return null;
+            r = v.key.getSize() - 1;
+        } else if (r >= v.key.getSize()) {
+            v = v.next;
+            if (v == null || v.key.getSize() == 0) return null;
+            r = 0;
+        }
+        return new Cursor(v, r);
+    }
+
+    /**
+     * 从根下行到key所在的叶节点hot，并在hot中查找；返回是否命中，rank为不大于key的最后一个关键码的秩
+     */
+    private boolean search(K key) {
+        hot = leafOf(key);
+        rank = hot.key.search(key);
+        return (0 <= rank) && (key.compareTo(hot.key.get(rank)) == 0);
+    }
+
+    /**
+     * 内部节点中与key相等的分隔关键码不代表查找成功，必须一直走到叶节点
+     */
+    private Node<K, V> leafOf(K key) {
+        Node<K, V> v = root;
+        while (!v.isLeaf()) v = v.child.get(v.key.search(key) + 1);
+        return v;
+    }
+
+    /**
+     * 在search留下的hot、rank处插入新的关键码和值，调用前须确认key不在映射中
+     */
+    private void insertAtHot(K key, V value) {
+        hot.key.insert(rank + 1, key);
+        hot.value.insert(rank + 1, value);
+        count++;
+        modCount++;
+        solveOverflow(hot);
+    }
+
+    /**
+     * 删除search命中的hot、rank处的关键码，返回其值
+     */
+    private V removeAtHot() {
+        hot.key.remove(rank);
+        V old = hot.value.remove(rank);
+        count--;
+        modCount++;
+        solveUnderflow(hot);
+        return old;
+    }
+
+    /**
+     * 替换叶节点v中秩为r的值，不改变树的结构
+     */
+    private V replace(Node<K, V> v, int r, V value) {
+        V old = v.value.remove(r);
+        v.value.insert(r, value);
+        return old;
+    }
+
+    /**
+     * 非根节点至少拥有的关键码数
+     */
+    private int minKeys() {
+        return (order + 1) / 2 - 1;
+    }
+
+    /**
+     * v是p的第几个孩子
+     */
+    private int indexOf(Node<K, V> p, Node<K, V> v) {
+        int r = 0;
+        while (p.child.get(r) != v) r++;
+        return r;
+    }
+
+    //通过分裂解决上溢，同BPlusTree.solveOverflow，叶节点的值随关键码一起移动
+    private void solveOverflow(Node<K, V> v) {
+        if (v.key.getSize() < order) return;
+        int s = order >> 1;
+        Node<K, V> u = new Node<>(v.isLeaf());
+        K separator;
+        if (v.isLeaf()) {
+            while (v.key.getSize() > s) {
+                u.key.insert(u.key.getSize(), v.key.remove(s));
+                u.value.insert(u.value.getSize(), v.value.remove(s));
+            }
+            separator = u.key.get(0);
+            u.prev = v;
+            u.next = v.next;
+            if (v.next != null) v.next.prev = u;
+            else last = u;
+            v.next = u;
+        } else {
+            while (v.key.getSize() > s + 1) u.key.insert(u.key.getSize(), v.key.remove(s + 1));
+            while (v.child.getSize() > s + 1) {
+                Node<K, V> c = v.child.remove(s + 1);
+                u.child.insert(u.child.getSize(), c);
+                c.parent = u;
+            }
+            separator = v.key.remove(s);
+        }
+        Node<K, V> p = v.parent;
+        if (p == null) {
+            p = new Node<>(false);
+            p.child.insert(0, v);
+            v.parent = p;
+            root = p;
+        }
+        int r = indexOf(p, v);
+        p.key.insert(r, separator);
+        p.child.insert(r + 1, u);
+        u.parent = p;
+        solveOverflow(p);
+    }
+
+    /**
+     * 通过旋转或合并解决下溢，同BPlusTree.solveUnderflow，叶节点的值随关键码一起移动
+     */
+    private void solveUnderflow(Node<K, V> v) {
+        Node<K, V> p = v.parent;
+        if (p == null) {
+            if (!v.isLeaf() && v.key.getSize() == 0) {
+                root = v.child.get(0);
+                root.parent = null;
+            }
+            return;
+        }
+        int min = minKeys();
+        if (v.key.getSize() >= min) return;
+        int r = indexOf(p, v);
+        Node<K, V> ls = (r > 0) ? p.child.get(r - 1) : null;
+        Node<K, V> rs = (r < p.child.getSize() - 1) ? p.child.get(r + 1) : null;
+        if (v.isLeaf()) {
+            //1, 向左兄弟借最大关键码
+            if (ls != null && ls.key.getSize() > min) {
+                v.key.insert(0, ls.key.remove(ls.key.getSize() - 1));
+                v.value.insert(0, ls.value.remove(ls.value.getSize() - 1));
+                p.key.remove(r - 1);
+                p.key.insert(r - 1, v.key.get(0));
+                return;
+            }
+            //2, 向右兄弟借最小关键码
+            if (rs != null && rs.key.getSize() > min) {
+                v.key.insert(v.key.getSize(), rs.key.remove(0));
+                v.value.insert(v.value.getSize(), rs.value.remove(0));
+                p.key.remove(r);
+                p.key.insert(r, rs.key.get(0));
+                return;
+            }
+            //3, 并入左兄弟
+            if (ls != null) {
+                while (v.key.getSize() > 0) {
+                    ls.key.insert(ls.key.getSize(), v.key.remove(0));
+                    ls.value.insert(ls.value.getSize(), v.value.remove(0));
+                }
+                p.key.remove(r - 1);
+            }
+            //4, 并入右兄弟
+            else {
+                while (v.key.getSize() > 0) {
+                    rs.key.insert(0, v.key.remove(v.key.getSize() - 1));
+                    rs.value.insert(0, v.value.remove(v.value.getSize() - 1));
+                }
+                p.key.remove(r);
+            }
+            p.child.remove(r);
+            unlink(v);
+        } else {
+            //1, 右旋
+            if (ls != null && ls.key.getSize() > min) {
+                v.key.insert(0, p.key.remove(r - 1));
+                p.key.insert(r - 1, ls.key.remove(ls.key.getSize() - 1));
+                Node<K, V> c = ls.child.remove(ls.child.getSize() - 1);
+                v.child.insert(0, c);
+                c.parent = v;
+                return;
+            }
+            //2, 左旋
+            if (rs != null && rs.key.getSize() > min) {
+                v.key.insert(v.key.getSize(), p.key.remove(r));
+                p.key.insert(r, rs.key.remove(0));
+                Node<K, V> c = rs.child.remove(0);
+                v.child.insert(v.child.getSize(), c);
+                c.parent = v;
+                return;
+            }
+            //3, 与左兄弟合并
+            if (ls != null) {
+                ls.key.insert(ls.key.getSize(), p.key.remove(r - 1));
+                while (v.key.getSize() > 0) ls.key.insert(ls.key.getSize(), v.key.remove(0));
+                while (v.child.getSize() > 0) {
+                    Node<K, V> c = v.child.remove(0);
+                    ls.child.insert(ls.child.getSize(), c);
+                    c.parent = ls;
+                }
+            }
+            //4, 与右兄弟合并
+            else {
+                rs.key.insert(0, p.key.remove(r));
+                while (v.key.getSize() > 0) rs.key.insert(0, v.key.remove(v.key.getSize() - 1));
+                while (v.child.getSize() > 0) {
+                    Node<K, V> c = v.child.remove(v.child.getSize() - 1);
+                    rs.child.insert(0, c);
+                    c.parent = rs;
+                }
+            }
+            p.child.remove(r);
+        }
+        solveUnderflow(p);
+    }
+
+    /**
+     * 把合并掉的叶节点v从叶节点链表中摘下
+     */
+    private void unlink(Node<K, V> v) {
+        if (v.prev != null) v.prev.next = v.next;
+        else first = v.next;
+        if (v.next != null) v.next.prev = v.prev;
+        else last = v.prev;
+    }
+
+    private static class Node<K, V> {
+        Node<K, V> parent = null;
+        final Vector<K> key = new Vector<>();
+        final Vector<V> value;//与key一一对应，内部节点为null
+        final Vector<Node<K, V>> child;//叶节点为null
+        Node<K, V> prev, next;//叶节点链表中的前驱、后继，内部节点不用
+
+        Node(boolean leaf) {
+            this.value = leaf ? new Vector<>() : null;
+            this.child = leaf ? null : new Vector<>();
+        }
+
+        boolean isLeaf() {
+            return child == null;
+        }
+    }
+
+    public static void main(String args[]) {
+        System.out.println("B+ Tree Map API");
+        BTreeMap<Integer, Integer> squares = new BTreeMap<>(4);
+        for (int i = 0; i < 20; i++) squares.put(i, i * i);
+        squares.remove(3);
+        squares.merge(4, 100, Integer::sum);
+        System.out.println(squares.subMap(2, true, 8, false));
+        System.out.println("higher(10): " + squares.higherEntry(10) + "  lower(4): " + squares.lowerKey(4) +
+                "  last three: " + squares.descendingMap().headMap(16));
+        squares.subMap(5, 15).keySet().clear();
+        System.out.println("after clearing [5, 15): " + squares);
+    }
+}
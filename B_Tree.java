@@ -2,6 +2,15 @@ package tree;
 
 import array.Vector;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
 
 /**
  * B树插入，删除，查询。
@@ -17,16 +26,149 @@ public class B_Tree<T extends Comparable<T>> {
     private int order;
     private Node<T> root = null;
     private Node<T> hot = null;
+    private final Comparator<? super T> comparator;
+
+    /**
+     * 子节点引用的字节数（开启压缩指针时为4）
+     */
+    private static final int REF_BYTES = 4;
 
     public B_Tree() {
+        this(3);
+    }
+
+    /**
+     * @param order 阶次，即每个节点至多拥有的孩子数，至少为3
+     */
+    public B_Tree(int order) {
+        this(order, Comparator.naturalOrder());
+    }
+
+    /**
+     * @param order 阶次
+     * @param comparator 关键码的次序
+     */
+    public B_Tree(int order, Comparator<? super T> comparator) {
+        if (order < 3) throw new IllegalArgumentException("order must be at least 3: " + order);
+        if (comparator == null) throw new NullPointerException("comparator");
         this.root = new Node();
-        this.order = 3;
+        this.order = order;
+        this.comparator = comparator;
+    }
+
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * 按目标节点大小推算阶次：m个孩子引用加m-1个关键码恰好不超过nodeBytes。
+     * 例如以64字节缓存行或4KB页作为一个节点。
+     * @param nodeBytes 节点的目标字节数
+     * @param keyBytes 每个关键码的字节数
+     */
+    public static <T extends Comparable<T>> B_Tree<T> withNodeSize(int nodeBytes, int keyBytes) {
+        return new B_Tree<>(orderFor(nodeBytes, keyBytes));
+    }
+
+    public static int orderFor(int nodeBytes, int keyBytes) {
+        return Math.max(3, (nodeBytes + keyBytes) / (keyBytes + REF_BYTES));
+    }
+
+    public int order() {
+        return order;
+    }
+
+    /**
+     * 由严格递增的序列自底向上构造B树，O(n)时间。
+     * 先把关键码切成若干叶节点，相邻叶节点之间留出一个关键码作为分隔；
+     * 这些分隔关键码就是上一层的关键码序列，叶节点则依次成为它们的孩子。逐层重复，直到只剩一个节点作为树根。
+     * 同一层各节点的关键码数至多相差1，且不少于⌈order/2⌉-1，得到的是一棵合法的B树。
+     * @param sorted 严格递增的关键码序列
+     * @param order 阶次
+     * @param fillFactor 节点的目标填充率，取值(0, 1]。1表示尽量装满，适合只读的索引；
+     *                   较小的值为之后的插入预留空间，避免一开始就连续分裂
+     */
+    public static <T extends Comparable<T>> B_Tree<T> bulkLoad(List<? extends T> sorted, int order, double fillFactor) {
+        return bulkLoad(sorted, order, fillFactor, Comparator.naturalOrder());
+    }
+
+    /**
+     * 同bulkLoad(sorted, order, fillFactor)，sorted按comparator严格递增
+     */
+    public static <T extends Comparable<T>> B_Tree<T> bulkLoad(List<? extends T> sorted, int order, double fillFactor,
+                                                             Comparator<? super T> comparator) {
+        if (!(fillFactor > 0 && fillFactor <= 1))
+            throw new IllegalArgumentException("fill factor must be in (0, 1]: " + fillFactor);
+        B_Tree<T> tree = new B_Tree<T>(order, comparator);
+        Object[] keys = sorted.toArray();
+        for (int i = 1; i < keys.length; i++)
+            if (tree.compare((T) keys[i - 1], (T) keys[i]) >= 0)
+                throw new IllegalArgumentException("keys are not strictly ascending at index " + i);
+        if (keys.length > 0) tree.bulkBuild(keys, fillFactor);
+        return tree;
+    }
+
+    private void bulkBuild(Object[] keys, double fillFactor) {
+        int maxKeys = order - 1;
+        int minKeys = (order + 1) / 2 - 1;
+        int target = Math.max(Math.max(minKeys, 1), Math.min(maxKeys, (int) Math.round(fillFactor * maxKeys)));
+        Object[] level = keys;
+        List<Node<T>> children = null;//下一层的节点，叶节点层为null
+        size = keys.length;
+        for (;;) {
+            int n = level.length;
+            //节点数：每个节点约target个关键码，节点之间各夹一个分隔关键码；若平均数不足下限则减少节点
+            int nodes = (n + target + 1) / (target + 1);
+            while (nodes > 1 && (n - nodes + 1) / nodes < minKeys) nodes--;
+            int inNodes = n - (nodes - 1);
+            List<Node<T>> built = new ArrayList<>(nodes);
+            Object[] separators = new Object[nodes - 1];
+            int k = 0, c = 0;
+            for (int i = 0; i < nodes; i++) {
+                int cnt = inNodes / nodes + (i < inNodes % nodes ? 1 : 0);
+                Node<T> v = new Node<>();
+                if (children != null) attach(v, 0, children.get(c++));
+                for (int j = 0; j < cnt; j++) {
+                    v.key.insert(j, (T) level[k++]);
+                    v.child.insert(j + 1, null);
+                    if (children != null) attach(v, j + 1, children.get(c++));
+                }
+                built.add(v);
+                if (i < nodes - 1) separators[i] = level[k++];
+            }
+            if (nodes == 1) {
+                root = built.get(0);
+                return;
+            }
+            level = separators;
+            children = built;
+        }
+    }
+
+    /**
+     * 把c作为v的第r个孩子
+     */
+    private void attach(Node<T> v, int r, Node<T> c) {
+        v.child.remove(r);
+        v.child.insert(r, c);
+        c.parent = v;
+    }
+
+    public int size() {
+        return size;
     }
 
     public Node search(T e) {
-        Node v = root; hot = null;
+        return search(root, e);
+    }
+
+    /**
+     * 从v开始向下查找e，查找失败时hot为最后访问的节点
+     */
+    private Node search(Node v, T e) {
+        hot = null;
         while (v != null) {
-            int index = v.key.search(e);
+            int index = search(v.key, e);
             if ( (0 <= index) && (compare(e, (T) v.key.get(index)) == 0) ) {
                 return v;
             }
@@ -36,29 +178,107 @@ public class B_Tree<T extends Comparable<T>> {
         return null;
     }
 
+    /**
+     * 中序遍历，依次把每个关键码交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        inOrderTraversal(root, visit);
+    }
+
+    private void inOrderTraversal(Node<T> v, Consumer<? super T> visit) {
+        if (v == null) return;
+        for (int i = 0; i < v.key.getSize(); i++) {
+            inOrderTraversal(v.child.get(i), visit);
+            visit.accept(v.key.get(i));
+        }
+        inOrderTraversal(v.child.get(v.key.getSize()), visit);
+    }
+
+    /**
+     * 从channel的当前位置起按TreeFile的紧凑格式写出全部关键码，并记下阶次和节点的平均填充率；
+     * 节点本身不写出，重新装入时由bulkLoad按同样的阶次和填充率自底向上建树，O(n)
+     */
+    public void writeTo(FileChannel channel, KeyCodec<? super T> codec) {
+        double fill = (size == 0) ? 1.0 : Math.min(1.0, (double) size / nodeCount(root) / (order - 1));
+        TreeFile.write(channel, size, order, fill, this::inOrderTraversal, codec);
+    }
+
+    private int nodeCount(Node<T> v) {
+        if (v == null) return 0;
+        int n = 1;
+        for (int i = 0; i <= v.key.getSize(); i++) n += nodeCount(v.child.get(i));
+        return n;
+    }
+
+    /**
+     * 把TreeFile格式的文件映射进内存，读出关键码后以写出时的阶次和填充率bulkLoad，不做任何一次分裂
+     */
+    public static <T extends Comparable<T>> B_Tree<T> load(Path file, KeyCodec<T> codec) {
+        return load(file, codec, Comparator.naturalOrder());
+    }
+
+    /**
+     * 同load(file, codec)，文件中的关键码须按comparator严格递增
+     */
+    public static <T extends Comparable<T>> B_Tree<T> load(Path file, KeyCodec<T> codec, Comparator<? super T> comparator) {
+        TreeFile.Contents<T> contents = TreeFile.read(file, codec);
+        if (contents.order < 3) throw new IllegalArgumentException(file + " was not written by a B-tree");
+        return bulkLoad(contents.keys, contents.order, contents.fill, comparator);
+    }
+
     private int compare(T a, T b) {
-        return a.compareTo(b);
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * 节点内的查找，语义同Vector.search：不大于e的最后一个关键码的秩，没有则为-1。
+     * Vector.search只认自然序，这里按comparator二分
+     */
+    private int search(Vector<T> key, T e) {
+        int lo = 0, hi = key.getSize();
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            if (compare(e, key.get(mi)) < 0) hi = mi;
+            else lo = mi + 1;
+        }
+        return lo - 1;
     }
 
     public Node insert(T e) {
         Node v = search(e);
         if ( v != null) return v;
-        int index = hot.key.search(e);
+        insertAtHot(e);
+        return root;
+    }
+
+    /**
+     * 在search留下的叶节点hot中插入e并解决上溢，调用前须确认e不在树中
+     */
+    private void insertAtHot(T e) {
+        int index = search(hot.key, e);
         hot.key.insert(index+1, e);
         hot.child.insert(index + 2, null);
         size++;
         //解决上溢缺陷
         solveOverflow(hot);
-        return root;
     }
 
     public boolean remove(T e){
         Node v = search(e);
         if (v == null) return false;
-        int r = v.key.search(e);
+        removeFrom(v, e);
+        return true;
+    }
+
+    /**
+     * 从节点v中删除e并解决下溢，返回实际删除关键码的叶节点
+     */
+    private Node removeFrom(Node v, T e) {
+        int r = search(v.key, e);
         if (v.child.get(0) != null) {
             Node<T> u = (Node<T>) v.child.get(r + 1);
-            while (u != null) u = u.child.get(0);//找出e的后继
+            while (u.child.get(0) != null) u = u.child.get(0);//找出e的后继
+            v.key.remove(r);
             v.key.insert(r, u.key.get(0));//交换v和u
             v = u; r = 0;
         }
@@ -66,7 +286,69 @@ public class B_Tree<T extends Comparable<T>> {
         v.child.remove(r + 1);
         size--;
         solveUnderflow(v);//通过旋转和合并处理下溢问题
-        return true;
+        return v;
+    }
+
+    /**
+     * 批量操作中查找的起点：从上一次操作所在的节点v出发向上回溯，直到e必然落在当前子树中。
+     * v的最小关键码不大于e时，子树的下界一定小于e，只需检查上界：v是父亲的第r个孩子且e小于父亲的第r个关键码时即可停下。
+     * v已被合并掉（关键码为空）或最小关键码大于e时直接从根出发。
+     */
+    private Node climb(Node v, T e) {
+        if (v == null || v.key.getSize() == 0 || compare((T) v.key.get(0), e) > 0) return root;
+        while (v.parent != null) {
+            Node p = v.parent;
+            int r = search(p.key, (T) v.key.get(0)) + 1;//v是p的第r个孩子
+            if (r < p.key.getSize() && compare(e, (T) p.key.get(r)) < 0) break;
+            v = p;
+        }
+        return v;
+    }
+
+    /**
+     * 批量插入：先把batch排序，再按升序逐个插入。
+     * 每个关键码的查找从上一个关键码所在的节点回溯出发，相邻关键码多半落在同一个叶节点，不必每次都从根走一遍。
+     * @return 实际插入的关键码个数
+     */
+    public int insertAll(Collection<? extends T> batch) {
+        Object[] keys = batch.toArray();
+        Arrays.sort(keys, (Comparator<Object>) comparator);
+        Node finger = null;
+        int inserted = 0;
+        for (Object k : keys) {
+            T e = (T) k;
+            Node v = search(climb(finger, e), e);
+            if (v == null) {
+                insertAtHot(e);
+                inserted++;
+                finger = hot;//分裂后hot保留较小的一半，最小关键码仍不大于e
+            } else {
+                finger = v;
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * 批量删除，做法同insertAll
+     * @return 实际删除的关键码个数
+     */
+    public int removeAll(Collection<? extends T> batch) {
+        Object[] keys = batch.toArray();
+        Arrays.sort(keys, (Comparator<Object>) comparator);
+        Node finger = null;
+        int removed = 0;
+        for (Object k : keys) {
+            T e = (T) k;
+            Node v = search(climb(finger, e), e);
+            if (v != null) {
+                finger = removeFrom(v, e);
+                removed++;
+            } else {
+                finger = hot;
+            }
+        }
+        return removed;
     }
 
     /**
@@ -96,17 +378,19 @@ public class B_Tree<T extends Comparable<T>> {
                 v.child.insert(0, ls.child.remove(ls.child.getSize() - 1));
                 if ( v.child.get(0) != null )
                     ((Node)v.child.get(0)).parent = v;
+                return;
             }
         }
         //2, 左旋
         if (p.child.getSize() - 1 > r) {
             Node rs = (Node)p.child.get(r + 1);
-            if ( (order + 2) / 2 < rs.child.getSize() ) {
-                v.key.insert(v.key.getSize(), p.key.get(r));
+            if ( (order + 1) / 2 < rs.child.getSize() ) {
+                v.key.insert(v.key.getSize(), p.key.remove(r));
                 p.key.insert(r, rs.key.remove(0));
                 v.child.insert(v.child.getSize(), rs.child.remove(0));
                 if (v.child.get(v.child.getSize()-1) != null)
-                    ((Node)v.child.get(v.child.getSize())).parent = v;
+                    ((Node)v.child.get(v.child.getSize()-1)).parent = v;
+                return;
             }
         }
         //3, 与左兄弟合并
@@ -115,13 +399,13 @@ public class B_Tree<T extends Comparable<T>> {
             ls.key.insert(ls.key.getSize(), p.key.remove(r - 1));
             p.child.remove(r);
             ls.child.insert(ls.child.getSize(), v.child.remove(0));
-            if ( ls.child.get(ls.child.getSize()) != null )
-                ((Node)ls.child.get(ls.child.getSize())).parent = ls;
-            if ( v.key.getSize() > 0 ) {
+            if ( ls.child.get(ls.child.getSize() - 1) != null )
+                ((Node)ls.child.get(ls.child.getSize() - 1)).parent = ls;
+            while ( v.key.getSize() > 0 ) {
                 ls.key.insert(ls.key.getSize(), v.key.remove(0));
                 ls.child.insert(ls.child.getSize(), v.child.remove(0));
                 if (ls.child.get(ls.child.getSize() -1) != null)
-                    ((Node)ls.child.get(ls.child.getSize() - 1)).parent = v;
+                    ((Node)ls.child.get(ls.child.getSize() - 1)).parent = ls;
             }
         }
         //4, 与右兄弟合并
@@ -146,10 +430,10 @@ public class B_Tree<T extends Comparable<T>> {
         int s = order >> 1;
         Node rightNode = new Node();
         for ( int j = 0; j < order-s-1; j++ ) {
-            rightNode.child.remove(j);
             rightNode.child.insert(j, v.child.remove(s+1));
             rightNode.key.insert(j, v.key.remove(s+1));
         }
+        rightNode.child.remove(order-s-1);
         rightNode.child.insert(order-s-1, v.child.remove(s+1));
         if (rightNode.child.get(0) != null) {
             for (int j = 0; j < order-s; j++) {
@@ -164,7 +448,7 @@ public class B_Tree<T extends Comparable<T>> {
             p.child.insert(0, v);
             v.parent = p;
         }
-        int r = 1 + p.key.search(v.key.get(0));
+        int r = 1 + search(p.key, (T) v.key.get(0));
         p.key.insert(r, v.key.remove(s));
         p.child.insert(r+1, rightNode);
         rightNode.parent = p;
@@ -213,5 +497,11 @@ public class B_Tree<T extends Comparable<T>> {
         btree.insert(2);
         btree.insert(3);
         btree.remove(3);
+        B_Tree<Integer> page = B_Tree.withNodeSize(4096, 4);
+        System.out.println("order for 4KB page: " + page.order());
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) sorted.add(i);
+        B_Tree<Integer> bulk = B_Tree.bulkLoad(sorted, 8, 0.75);
+        System.out.println("bulk loaded size: " + bulk.size() + "  search 500: " + (bulk.search(500) != null));
     }
 }
@@ -0,0 +1,391 @@
+package tree;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * AVLMap、RedBlackTreeMap的公共部分：以二叉搜索树存放条目，查找、定位前驱后继、删除节点、（3+4）重构都在这里。
+ * put、remove、compute、merge、putIfAbsent都只沿查找路径下行一次：
+ * search失败时hot停在新节点的父亲处，需要插入就直接在hot下接入，不必再查找一遍。
+ * 子类只给出重平衡的几个钩子：afterInsert、afterRemove以及维护节点高度的updateHeight。
+ */
+public abstract class BinaryTreeMap<K extends Comparable<K>, V> extends AbstractTreeMap<K, V> {
+    Node root;
+    Node hot;//查找失败时为新节点的父亲，删除后为实际被删除节点的父亲
+    int count;
+    int modCount;//结构修改次数，用于发现compute、merge的函数中对本映射的修改
+
+    class Node implements Map.Entry<K, V> {
+        K key;
+        V value;
+        Node parent, left, right;
+        int height;//AVLMap中为高度，RedBlackTreeMap中为黑高度
+        boolean color;//只有RedBlackTreeMap使用
+
+        Node(K key, V value, Node parent) {
+            this.key = key;
+            this.value = value;
+            this.parent = parent;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return entryEquals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return entryHashCode(this);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * 新节点x已接在hot之下（或成为树根），由此向上恢复平衡
+     */
+    abstract void afterInsert(Node x);
+
+    /**
+     * 节点已摘除，hot为实际被删除节点的父亲，r为接替它的孩子（可能为null），由此向上恢复平衡
+     */
+    abstract void afterRemove(Node r);
+
+    /**
+     * 孩子变动后重新计算x的高度，（3+4）重构时调用
+     */
+    abstract void updateHeight(Node x);
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        count = 0;
+        modCount++;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Node x = search(key);
+        if (x != null) return x.setValue(value);
+        insertAtHot(key, value);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Node x = search(key);
+        if (x == null) {
+            insertAtHot(key, value);
+            return null;
+        }
+        if (x.value != null) return x.value;
+        x.value = value;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node x = search((K) key);
+        if (x == null) return null;
+        V old = x.value;
+        removeNode(x);
+        return old;
+    }
+
+    /**
+     * 查找一次：找到则以新值替换（新值为null时删除），找不到且新值不为null时在hot处插入
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Node x = search(key);
+        Node parent = hot;
+        V value = applyChecked(remapping, key, x == null ? null : x.value);
+        if (value == null) {
+            if (x != null) removeNode(x);
+        } else if (x != null) {
+            x.value = value;
+        } else {
+            hot = parent;
+            insertAtHot(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        Node x = search(key);
+        if (x != null && x.value != null) return x.value;
+        Node parent = hot;
+        int expected = modCount;
+        V value = mapping.apply(key);
+        if (modCount != expected) throw new ConcurrentModificationException();
+        if (value == null) return null;
+        if (x != null) x.value = value;
+        else {
+            hot = parent;
+            insertAtHot(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Node x = search(key);
+        if (x == null || x.value == null) return null;
+        V value = applyChecked(remapping, key, x.value);
+        if (value == null) removeNode(x);
+        else x.value = value;
+        return value;
+    }
+
+    /**
+     * 查找一次：不存在（或值为null）时放入value，否则与旧值合并，合并结果为null时删除
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        if (value == null) throw new NullPointerException();
+        Node x = search(key);
+        if (x == null) {
+            insertAtHot(key, value);
+            return value;
+        }
+        if (x.value == null) {
+            x.value = value;
+            return value;
+        }
+        int expected = modCount;
+        V merged = remapping.apply(x.value, value);
+        if (modCount != expected) throw new ConcurrentModificationException();
+        if (merged == null) removeNode(x);
+        else x.value = merged;
+        return merged;
+    }
+
+    private V applyChecked(BiFunction<? super K, ? super V, ? extends V> f, K key, V old) {
+        int expected = modCount;
+        V value = f.apply(key, old);
+        if (modCount != expected) throw new ConcurrentModificationException();
+        return value;
+    }
+
+    @Override
+    Map.Entry<K, V> getEntry(K key) {
+        return search(key);
+    }
+
+    @Override
+    Map.Entry<K, V> ceiling(K key, boolean inclusive) {
+        Node c = null;
+        for (Node x = root; x != null; ) {
+            int cmp = key.compareTo(x.key);
+            if (cmp < 0 || (cmp == 0 && inclusive)) {
+                c = x;
+                x = x.left;
+            } else x = x.right;
+        }
+        return c;
+    }
+
+    @Override
+    Map.Entry<K, V> floor(K key, boolean inclusive) {
+        Node f = null;
+        for (Node x = root; x != null; ) {
+            int cmp = key.compareTo(x.key);
+            if (cmp > 0 || (cmp == 0 && inclusive)) {
+                f = x;
+                x = x.right;
+            } else x = x.left;
+        }
+        return f;
+    }
+
+    @Override
+    Map.Entry<K, V> first() {
+        Node x = root;
+        if (x != null) while (x.left != null) x = x.left;
+        return x;
+    }
+
+    @Override
+    Map.Entry<K, V> last() {
+        Node x = root;
+        if (x != null) while (x.right != null) x = x.right;
+        return x;
+    }
+
+    @Override
+    Map.Entry<K, V> successor(Map.Entry<K, V> e) {
+        return succ((Node) e);
+    }
+
+    @Override
+    Map.Entry<K, V> predecessor(Map.Entry<K, V> e) {
+        Node x = (Node) e;
+        if (x.left != null) {
+            x = x.left;
+            while (x.right != null) x = x.right;
+            return x;
+        }
+        while (x.parent != null && x.parent.left == x) x = x.parent;
+        return x.parent;
+    }
+
+    private Node search(K key) {
+        hot = null;
+        for (Node x = root; x != null; ) {
+            int cmp = key.compareTo(x.key);
+            if (cmp == 0) return x;
+            hot = x;
+            x = (cmp < 0) ? x.left : x.right;
+        }
+        return null;
+    }
+
+    /**
+     * 在search留下的hot处接入新节点并重新平衡，调用前须确认key不在映射中
+     */
+    private void insertAtHot(K key, V value) {
+        Node x = new Node(key, value, hot);
+        count++;
+        modCount++;
+        if (hot == null) root = x;
+        else if (key.compareTo(hot.key) < 0) hot.left = x;
+        else hot.right = x;
+        afterInsert(x);
+    }
+
+    /**
+     * 删除节点x并重新平衡
+     */
+    private void removeNode(Node x) {
+        Node r = removeAt(x);
+        count--;
+        modCount++;
+        afterRemove(r);
+    }
+
+    /**
+     * 摘除节点x（有两个孩子时先与直接后继交换关键码和值，转为删除后继），
+     * hot置为实际被删除节点的父亲，返回接替它的孩子
+     */
+    private Node removeAt(Node x) {
+        Node w = x; //实际被删除的节点
+        Node succ; //实际被删除节点的接替者
+        if (x.left == null) {
+            succ = x.right;
+        } else if (x.right == null) {
+            succ = x.left;
+        } else {
+            w = succ(x);
+            K k = x.key; x.key = w.key; w.key = k;
+            V v = x.value; x.value = w.value; w.value = v;
+            succ = w.right;
+        }
+        hot = w.parent;
+        if (succ != null) succ.parent = hot;
+        if (hot == null) root = succ;
+        else if (hot.left == w) hot.left = succ;
+        else hot.right = succ;
+        return succ;
+    }
+
+    /**
+     * 当前节点的直接后继节点，x为最大节点时返回null
+     */
+    private Node succ(Node x) {
+        if (x.right != null) {
+            x = x.right;
+            while (x.left != null) x = x.left;
+            return x;
+        }
+        while (x.parent != null && x.parent.right == x) x = x.parent;
+        return x.parent;
+    }
+
+    /**                           b
+     * （3+4) - 重构            ↙    ↘︎
+     *                       a       c
+     *                     ↙︎  ↘︎     ↙︎ ↘︎
+     *                    t0  t1  t2   t3
+     */
+    private Node connect34(Node a, Node b, Node c,
+                           Node t0, Node t1, Node t2, Node t3) {
+        a.left  = t0; if (t0 != null) t0.parent = a;
+        a.right = t1; if (t1 != null) t1.parent = a;
+        c.left  = t2; if (t2 != null) t2.parent = c;
+        c.right = t3; if (t3 != null) t3.parent = c;
+        b.left  = a; a.parent = b;
+        b.right = c; c.parent = b;
+        updateHeight(a); updateHeight(c); updateHeight(b);
+        return b;
+    }
+
+    /**
+     * 对孙子v、父亲p、祖父g做（3+4）重构，返回子树的新根，其parent已指向g原来的父亲；
+     * 四种场景同AVL.rotateAt。g原来的父亲中的孩子指针由调用者用fromParentTo改接
+     */
+    Node rotateAt(Node v) {
+        Node p = v.parent, g = p.parent;
+        if (isLeftChild(p)) {
+            if (isLeftChild(v)) {
+                p.parent = g.parent;
+                return connect34(v, p, g, v.left, v.right, p.right, g.right);
+            } else {
+                v.parent = g.parent;
+                return connect34(p, v, g, p.left, v.left, v.right, g.right);
+            }
+        } else {
+            if (isRightChild(v)) {
+                p.parent = g.parent;
+                return connect34(g, p, v, g.left, p.left, v.left, v.right);
+            } else {
+                v.parent = g.parent;
+                return connect34(g, v, p, g.left, v.left, v.right, p.right);
+            }
+        }
+    }
+
+    /**
+     * 旋转后由子树新根r替换原子树根g在父节点gg中的位置，gg为空则r成为树根
+     */
+    void fromParentTo(Node gg, Node g, Node r) {
+        if (gg == null) root = r;
+        else if (gg.left == g) gg.left = r;
+        else gg.right = r;
+    }
+
+    boolean isLeftChild(Node x) {
+        return x.parent.left == x;
+    }
+
+    boolean isRightChild(Node x) {
+        return x.parent.right == x;
+    }
+}
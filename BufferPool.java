@@ -0,0 +1,247 @@
+package tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓冲池：把文件按固定大小的页映射到有限个内存帧中。
+ * 页被fetch后处于钉住（pin）状态，不会被换出，用完后必须unpin。
+ * 帧不够时用CLOCK算法淘汰一个未被钉住的页，脏页在淘汰或flush时写回文件。
+ */
+public class BufferPool implements Closeable {
+    private final FileChannel channel;
+    private final int pageSize;
+    private final ByteBuffer[] frames;
+    private final int[] pageOf;//帧中存放的页号，-1表示空闲
+    private final int[] pinCount;
+    private final boolean[] dirty;
+    private final boolean[] referenced;//CLOCK的访问位
+    private final Map<Integer, Integer> pageTable = new HashMap<>();
+    private int clockHand = 0;
+    private int pageCount;//文件中的页数
+    private long reads = 0, writes = 0;
+    private WriteBackListener listener;
+    private long tearAfter = -1;//模拟崩溃：再写回这么多页之后，下一页只写前一半，-1表示不启用
+
+    /**
+     * 模拟写回途中的崩溃抛出的异常，此后缓冲池只能abandon()
+     */
+    static final class SimulatedCrash extends RuntimeException {
+        SimulatedCrash(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 脏页写回文件之前的回调，预写日志借此保证页镜像先于页落盘
+     */
+    public interface WriteBackListener {
+        void beforeWriteBack(int[] pageIds);
+    }
+
+    public BufferPool(Path file, int pageSize, int capacity) {
+        if (capacity < 4) throw new IllegalArgumentException("capacity must be at least 4 frames");
+        this.pageSize = pageSize;
+        this.frames = new ByteBuffer[capacity];
+        this.pageOf = new int[capacity];
+        this.pinCount = new int[capacity];
+        this.dirty = new boolean[capacity];
+        this.referenced = new boolean[capacity];
+        for (int f = 0; f < capacity; f++) {
+            frames[f] = ByteBuffer.allocateDirect(pageSize);
+            pageOf[f] = -1;
+        }
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.pageCount = (int) (channel.size() / pageSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void setWriteBackListener(WriteBackListener listener) {
+        this.listener = listener;
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * 从文件读入的页数
+     */
+    public long reads() {
+        return reads;
+    }
+
+    /**
+     * 写回文件的页数
+     */
+    public long writes() {
+        return writes;
+    }
+
+    /**
+     * 取得页pageId并钉住
+     */
+    public ByteBuffer fetch(int pageId) {
+        Integer f = pageTable.get(pageId);
+        if (f != null) {
+            pinCount[f]++;
+            referenced[f] = true;
+            return frames[f];
+        }
+        int frame = victim();
+        ByteBuffer buf = frames[frame];
+        buf.clear();
+        try {
+            long pos = (long) pageId * pageSize;
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, pos + buf.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        while (buf.hasRemaining()) buf.put((byte) 0);
+        buf.clear();
+        reads++;
+        install(frame, pageId);
+        return buf;
+    }
+
+    /**
+     * 在文件末尾追加一个全零的新页并钉住
+     */
+    public int allocate() {
+        int pageId = pageCount++;
+        int frame = victim();
+        ByteBuffer buf = frames[frame];
+        buf.clear();
+        while (buf.hasRemaining()) buf.put((byte) 0);
+        buf.clear();
+        install(frame, pageId);
+        dirty[frame] = true;
+        return pageId;
+    }
+
+    /**
+     * 解除钉住，isDirty表示调用者修改过该页
+     */
+    public void unpin(int pageId, boolean isDirty) {
+        Integer f = pageTable.get(pageId);
+        if (f == null || pinCount[f] == 0)
+            throw new IllegalStateException("page " + pageId + " is not pinned");
+        pinCount[f]--;
+        if (isDirty) dirty[f] = true;
+    }
+
+    /**
+     * 把所有脏页写回并刷盘
+     */
+    public void flush() {
+        if (listener != null) {
+            int n = 0;
+            int[] pageIds = new int[frames.length];
+            for (int f = 0; f < frames.length; f++)
+                if (pageOf[f] >= 0 && dirty[f]) pageIds[n++] = pageOf[f];
+            listener.beforeWriteBack(Arrays.copyOf(pageIds, n));
+        }
+        for (int f = 0; f < frames.length; f++)
+            if (pageOf[f] >= 0 && dirty[f]) writeBack(f);
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 模拟崩溃：不写回脏页，直接关闭文件
+     */
+    void abandon() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 模拟写回途中的崩溃：再正常写回writes页之后，下一页只写入前一半，然后抛出SimulatedCrash
+     */
+    void tearAfterWrites(long writes) {
+        this.tearAfter = writes;
+    }
+
+    private void install(int frame, int pageId) {
+        pageOf[frame] = pageId;
+        pinCount[frame] = 1;
+        dirty[frame] = false;
+        referenced[frame] = true;
+        pageTable.put(pageId, frame);
+    }
+
+    /**
+     * CLOCK淘汰：指针扫过的帧若访问位为1则清零给第二次机会，否则选中。
+     */
+    private int victim() {
+        for (int step = 0; step < 2 * frames.length; step++) {
+            int f = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+            if (pageOf[f] < 0) return f;
+            if (pinCount[f] > 0) continue;
+            if (referenced[f]) {
+                referenced[f] = false;
+                continue;
+            }
+            if (dirty[f]) {
+                if (listener != null) listener.beforeWriteBack(new int[]{pageOf[f]});
+                writeBack(f);
+            }
+            pageTable.remove(pageOf[f]);
+            pageOf[f] = -1;
+            return f;
+        }
+        throw new IllegalStateException("all " + frames.length + " frames are pinned");
+    }
+
+    private void writeBack(int f) {
+        ByteBuffer buf = frames[f].duplicate();
+        buf.clear();
+        boolean tear = (tearAfter == 0);
+        if (tearAfter >= 0) tearAfter--;
+        if (tear) buf.limit(pageSize / 2);
+        try {
+            long pos = (long) pageOf[f] * pageSize;
+            while (buf.hasRemaining()) channel.write(buf, pos + buf.position());
+            if (tear) throw new SimulatedCrash("torn write of page " + pageOf[f]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty[f] = false;
+        writes++;
+    }
+}
@@ -0,0 +1,541 @@
+package tree;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 支持并发访问的AVL树，思路来自Bronson等人的 “A Practical Concurrent Binary Search Tree”。
+ *
+ * 与AVL的区别：
+ * 1, 不再有共享的hot/isLeftChild，查找路径上的状态都放在局部变量里。
+ * 2, 查找不加锁。每个节点带一个版本号version，节点因旋转而“缩小”（部分关键码被移出其子树）时，
+ *    旋转者先置SHRINKING位，完成后版本号加一。读者沿路径手递手前进：读出孩子后再确认父节点的版本
+ *    没有变化，变了就退回上一层重试，因此不会因为并发旋转而走错子树。
+ * 3, 插入只锁新节点的父亲；删除有两个孩子的节点时只把它标记为路由节点（present = false），
+ *    不做后继交换，路由节点在孩子少于两个时再被摘除。
+ * 4, 平衡是“宽松”的：更新后沿parent向上修正高度，失衡时依次锁住 父亲 -> 节点 -> 孩子（-> 孙子），
+ *    做单旋或双旋，双旋即AVL中connect34的（3+4）重构。加锁总是自上而下，不会死锁。
+ */
+public class ConcurrentAVL<T extends Comparable<T>> {
+    private static final long UNLINKED = 1L;
+    private static final long SHRINKING = 2L;
+    private static final long SHRINK_COUNT_INCR = 4L;
+
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    private static final int SPIN_COUNT = 100;
+
+    //重试标记
+    private static final Object RETRY = new Object();
+
+    //哨兵，右孩子是真正的树根，自身从不参与旋转
+    private final Node rootHolder = new Node(null, 0, false, null);
+    private final LongAdder count = new LongAdder();
+
+    private final class Node {
+        private final T val;
+        private volatile int height;
+        private volatile long version;
+        private volatile boolean present;//false表示路由节点或已被摘除
+        private volatile Node parent, left, right;
+
+        private Node(T val, int height, boolean present, Node parent) {
+            this.val = val;
+            this.height = height;
+            this.present = present;
+            this.parent = parent;
+        }
+
+        private Node child(int cmp) {
+            return cmp < 0 ? left : right;
+        }
+
+        private void setChild(int cmp, Node c) {
+            if (cmp < 0) left = c;
+            else right = c;
+        }
+
+        /**
+         * 等待正在进行的旋转结束：先自旋，再借助旋转者持有的锁阻塞
+         */
+        private void waitUntilShrinkCompleted(long ovl) {
+            if (!isShrinking(ovl)) return;
+            for (int i = 0; i < SPIN_COUNT; i++) {
+                if (version != ovl) return;
+                Thread.onSpinWait();
+            }
+            synchronized (this) {
+                //旋转在持有本节点锁时完成
+            }
+        }
+    }
+
+    public int size() {
+        return count.intValue();
+    }
+
+    public boolean search(T val) {
+        while (true) {
+            Node right = rootHolder.right;
+            if (right == null) return false;
+            int cmp = val.compareTo(right.val);
+            if (cmp == 0) return right.present;
+            long ovl = right.version;
+            if (isShrinkingOrUnlinked(ovl)) {
+                right.waitUntilShrinkCompleted(ovl);
+            } else if (right == rootHolder.right) {
+                Object r = attemptGet(val, right, cmp, ovl);
+                if (r != RETRY) return (Boolean) r;
+            }
+        }
+    }
+
+    /**
+     * 在node的cmp一侧继续查找；node的版本号一旦与nodeOVL不符就返回RETRY
+     */
+    private Object attemptGet(T val, Node node, int cmp, long nodeOVL) {
+        while (true) {
+            Node child = node.child(cmp);
+            if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+            if (child == null) return Boolean.FALSE;
+            int childCmp = val.compareTo(child.val);
+            if (childCmp == 0) return child.present;
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)) {
+                child.waitUntilShrinkCompleted(childOVL);
+                if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+            } else if (child != node.child(cmp)) {
+                if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+            } else {
+                if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+                Object r = attemptGet(val, child, childCmp, childOVL);
+                if (r != RETRY) return r;
+            }
+        }
+    }
+
+    public boolean insert(T val) {
+        return update(val, true);
+    }
+
+    public boolean remove(T val) {
+        return update(val, false);
+    }
+
+    /**
+     * insert为true时插入，否则删除；返回树是否因此改变
+     */
+    private boolean update(T val, boolean insert) {
+        while (true) {
+            Node right = rootHolder.right;
+            if (right == null) {
+                if (!insert) return false;
+                synchronized (rootHolder) {
+                    if (rootHolder.right == null) {
+                        rootHolder.right = new Node(val, 1, true, rootHolder);
+                        rootHolder.height = 2;
+                        count.increment();
+                        return true;
+                    }
+                }
+            } else {
+                long ovl = right.version;
+                if (isShrinkingOrUnlinked(ovl)) {
+                    right.waitUntilShrinkCompleted(ovl);
+                } else if (right == rootHolder.right) {
+                    Object r = attemptUpdate(val, insert, rootHolder, right, ovl);
+                    if (r != RETRY) return (Boolean) r;
+                }
+            }
+        }
+    }
+
+    private Object attemptUpdate(T val, boolean insert, Node parent, Node node, long nodeOVL) {
+        int cmp = val.compareTo(node.val);
+        if (cmp == 0) return attemptNodeUpdate(insert, parent, node);
+        while (true) {
+            Node child = node.child(cmp);
+            if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+            if (child == null) {
+                if (!insert) return Boolean.FALSE;
+                Node damaged;
+                synchronized (node) {
+                    if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+                    if (node.child(cmp) != null) continue;//被别的线程抢先插入，重试
+                    node.setChild(cmp, new Node(val, 1, true, node));
+                    damaged = fixHeight(node);
+                }
+                count.increment();
+                fixHeightAndRebalance(damaged);
+                return Boolean.TRUE;
+            }
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)) {
+                child.waitUntilShrinkCompleted(childOVL);
+            } else if (child == node.child(cmp)) {
+                if (hasShrunkOrUnlinked(nodeOVL, node.version)) return RETRY;
+                Object r = attemptUpdate(val, insert, node, child, childOVL);
+                if (r != RETRY) return r;
+            }
+        }
+    }
+
+    /**
+     * 已找到关键码所在的节点node
+     */
+    private Object attemptNodeUpdate(boolean insert, Node parent, Node node) {
+        if (insert) {
+            if (node.present) return Boolean.FALSE;
+            synchronized (node) {
+                if (isUnlinked(node.version)) return RETRY;
+                if (node.present) return Boolean.FALSE;
+                node.present = true;
+            }
+            count.increment();
+            return Boolean.TRUE;
+        }
+        if (!node.present) return Boolean.FALSE;
+        if (node.left != null && node.right != null) {
+            //有两个孩子：只标记为路由节点
+            synchronized (node) {
+                if (isUnlinked(node.version)) return RETRY;
+                if (node.left != null && node.right != null) {
+                    if (!node.present) return Boolean.FALSE;
+                    node.present = false;
+                    count.decrement();
+                    return Boolean.TRUE;
+                }
+            }
+        }
+        Node damaged;
+        synchronized (parent) {
+            if (isUnlinked(parent.version) || node.parent != parent) return RETRY;
+            synchronized (node) {
+                if (!node.present) return Boolean.FALSE;
+                if (!attemptUnlink(parent, node)) return RETRY;
+            }
+            damaged = fixHeight(parent);
+        }
+        count.decrement();
+        fixHeightAndRebalance(damaged);
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 摘除至多只有一个孩子的节点，调用者持有parent和node的锁
+     */
+    private boolean attemptUnlink(Node parent, Node node) {
+        Node parentL = parent.left, parentR = parent.right;
+        if (parentL != node && parentR != node) return false;
+        Node left = node.left, right = node.right;
+        if (left != null && right != null) return false;
+        Node splice = (left != null) ? left : right;
+        if (parentL == node) parent.left = splice;
+        else parent.right = splice;
+        if (splice != null) splice.parent = parent;
+        node.version = UNLINKED;
+        node.present = false;
+        return true;
+    }
+
+    /**
+     * 判断节点需要做什么：摘除、重平衡、更新为新高度，或者什么都不用做
+     */
+    private int nodeCondition(Node node) {
+        Node nL = node.left, nR = node.right;
+        if ((nL == null || nR == null) && !node.present) return UNLINK_REQUIRED;
+        int hN = node.height;
+        int hL = height(nL), hR = height(nR);
+        int hNRepl = 1 + Math.max(hL, hR);
+        int bal = hL - hR;
+        if (bal < -1 || bal > 1) return REBALANCE_REQUIRED;
+        return hN != hNRepl ? hNRepl : NOTHING_REQUIRED;
+    }
+
+    /**
+     * 沿parent向上修正高度，遇到失衡或可摘除的路由节点就加锁处理
+     */
+    private void fixHeightAndRebalance(Node node) {
+        //旋转后若还要先处理下层节点，旋转点的父亲记在这里，下层处理完再回来修正它的高度
+        ArrayDeque<Node> pending = null;
+        for (;;) {
+            if (node == null || node.parent == null || isUnlinked(node.version)) {
+                if (pending == null || pending.isEmpty()) return;
+                node = pending.pop();
+                continue;
+            }
+            int condition = nodeCondition(node);
+            if (condition == NOTHING_REQUIRED) {
+                node = null;
+            } else if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED) {
+                synchronized (node) {
+                    node = fixHeight(node);
+                }
+            } else {
+                Node nParent = node.parent;
+                synchronized (nParent) {
+                    if (!isUnlinked(nParent.version) && node.parent == nParent) {
+                        synchronized (node) {
+                            node = rebalance(nParent, node);
+                        }
+                        if (node != null && node != nParent && node != nParent.parent) {
+                            if (pending == null) pending = new ArrayDeque<>();
+                            pending.push(nParent);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 调用者持有node的锁；返回接下来需要处理的节点
+     */
+    private Node fixHeight(Node node) {
+        int c = nodeCondition(node);
+        switch (c) {
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = c;
+                return node.parent;
+        }
+    }
+
+    /**
+     * 调用者持有nParent和n的锁
+     */
+    private Node rebalance(Node nParent, Node n) {
+        Node nL = n.left, nR = n.right;
+        if ((nL == null || nR == null) && !n.present) {
+            if (attemptUnlink(nParent, n)) return fixHeight(nParent);
+            return n;
+        }
+        int hN = n.height;
+        int hL0 = height(nL), hR0 = height(nR);
+        int hNRepl = 1 + Math.max(hL0, hR0);
+        int bal = hL0 - hR0;
+        if (bal > 1) return rebalanceToRight(nParent, n, nL, hR0);
+        if (bal < -1) return rebalanceToLeft(nParent, n, nR, hL0);
+        if (hNRepl != hN) {
+            n.height = hNRepl;
+            return fixHeight(nParent);
+        }
+        return null;
+    }
+
+    private Node rebalanceToRight(Node nParent, Node n, Node nL, int hR0) {
+        synchronized (nL) {
+            int hL = nL.height;
+            if (hL - hR0 <= 1) return n;//失衡已被别的线程修正，重新判断
+            Node nLR = nL.right;
+            int hLL0 = height(nL.left);
+            int hLR0 = height(nLR);
+            if (hLL0 >= hLR0) return rotateRight(nParent, n, nL, hR0, hLL0, nLR, hLR0);
+            synchronized (nLR) {
+                int hLR = nLR.height;
+                if (hLL0 >= hLR) return rotateRight(nParent, n, nL, hR0, hLL0, nLR, hLR);
+                int hLRL = height(nLR.left);
+                int b = hLL0 - hLRL;
+                if (b >= -1 && b <= 1 && !((hLL0 == 0 || hLRL == 0) && !nL.present))
+                    return rotateRightOverLeft(nParent, n, nL, hR0, hLL0, nLR, hLRL);
+                //nL只是略偏右，左旋nL无事可做，直接单旋，留下的路由节点之后会被摘除
+                if (hLR - hLL0 <= 1) return rotateRight(nParent, n, nL, hR0, hLL0, nLR, hLR);
+            }
+            //双旋后nL仍会失衡，先把nL左旋，n留待下一轮处理
+            return rebalanceToLeft(n, nL, nLR, hLL0);
+        }
+    }
+
+    private Node rebalanceToLeft(Node nParent, Node n, Node nR, int hL0) {
+        synchronized (nR) {
+            int hR = nR.height;
+            if (hL0 - hR >= -1) return n;
+            Node nRL = nR.left;
+            int hRL0 = height(nRL);
+            int hRR0 = height(nR.right);
+            if (hRR0 >= hRL0) return rotateLeft(nParent, n, hL0, nR, nRL, hRL0, hRR0);
+            synchronized (nRL) {
+                int hRL = nRL.height;
+                if (hRR0 >= hRL) return rotateLeft(nParent, n, hL0, nR, nRL, hRL, hRR0);
+                int hRLR = height(nRL.right);
+                int b = hRR0 - hRLR;
+                if (b >= -1 && b <= 1 && !((hRR0 == 0 || hRLR == 0) && !nR.present))
+                    return rotateLeftOverRight(nParent, n, hL0, nR, nRL, hRR0, hRLR);
+                if (hRL - hRR0 <= 1) return rotateLeft(nParent, n, hL0, nR, nRL, hRL, hRR0);
+            }
+            return rebalanceToRight(n, nR, nRL, hRR0);
+        }
+    }
+
+    /**               n              nL
+     *  右单旋       ↙︎  ↘︎    =>     ↙︎  ↘︎
+     *             nL    R         LL   n
+     *            ↙︎ ↘︎                  ↙︎ ↘︎
+     *          LL  nLR              nLR  R
+     */
+    private Node rotateRight(Node nParent, Node n, Node nL, int hR, int hLL, Node nLR, int hLR) {
+        long nodeOVL = n.version;
+        Node nPL = nParent.left;
+        n.version = beginShrink(nodeOVL);
+        n.left = nLR; if (nLR != null) nLR.parent = n;
+        nL.right = n; n.parent = nL;
+        if (nPL == n) nParent.left = nL;
+        else nParent.right = nL;
+        nL.parent = nParent;
+        int hNRepl = 1 + Math.max(hLR, hR);
+        n.height = hNRepl;
+        nL.height = 1 + Math.max(hLL, hNRepl);
+        n.version = endShrink(nodeOVL);
+
+        int balN = hLR - hR;
+        if (balN < -1 || balN > 1) return n;
+        if ((nLR == null || hR == 0) && !n.present) return n;
+        int balL = hLL - hNRepl;
+        if (balL < -1 || balL > 1) return nL;
+        if (hLL == 0 && !nL.present) return nL;
+        return fixHeight(nParent);
+    }
+
+    private Node rotateLeft(Node nParent, Node n, int hL, Node nR, Node nRL, int hRL, int hRR) {
+        long nodeOVL = n.version;
+        Node nPL = nParent.left;
+        n.version = beginShrink(nodeOVL);
+        n.right = nRL; if (nRL != null) nRL.parent = n;
+        nR.left = n; n.parent = nR;
+        if (nPL == n) nParent.left = nR;
+        else nParent.right = nR;
+        nR.parent = nParent;
+        int hNRepl = 1 + Math.max(hL, hRL);
+        n.height = hNRepl;
+        nR.height = 1 + Math.max(hNRepl, hRR);
+        n.version = endShrink(nodeOVL);
+
+        int balN = hRL - hL;
+        if (balN < -1 || balN > 1) return n;
+        if ((nRL == null || hL == 0) && !n.present) return n;
+        int balR = hRR - hNRepl;
+        if (balR < -1 || balR > 1) return nR;
+        if (hRR == 0 && !nR.present) return nR;
+        return fixHeight(nParent);
+    }
+
+    /**
+     * 先左后右的双旋，即以nLR为新子树根的（3+4）重构：a = nL, b = nLR, c = n
+     */
+    private Node rotateRightOverLeft(Node nParent, Node n, Node nL, int hR, int hLL, Node nLR, int hLRL) {
+        long nodeOVL = n.version;
+        long leftOVL = nL.version;
+        Node nPL = nParent.left;
+        Node nLRL = nLR.left;
+        Node nLRR = nLR.right;
+        int hLRR = height(nLRR);
+        n.version = beginShrink(nodeOVL);
+        nL.version = beginShrink(leftOVL);
+        n.left = nLRR; if (nLRR != null) nLRR.parent = n;
+        nL.right = nLRL; if (nLRL != null) nLRL.parent = nL;
+        nLR.left = nL; nL.parent = nLR;
+        nLR.right = n; n.parent = nLR;
+        if (nPL == n) nParent.left = nLR;
+        else nParent.right = nLR;
+        nLR.parent = nParent;
+        int hNRepl = 1 + Math.max(hLRR, hR);
+        n.height = hNRepl;
+        int hLRepl = 1 + Math.max(hLL, hLRL);
+        nL.height = hLRepl;
+        nLR.height = 1 + Math.max(hLRepl, hNRepl);
+        n.version = endShrink(nodeOVL);
+        nL.version = endShrink(leftOVL);
+
+        int balN = hLRR - hR;
+        if (balN < -1 || balN > 1) return n;
+        if ((nLRR == null || hR == 0) && !n.present) return n;
+        int balLR = hLRepl - hNRepl;
+        if (balLR < -1 || balLR > 1) return nLR;
+        return fixHeight(nParent);
+    }
+
+    /**
+     * 先右后左的双旋，即以nRL为新子树根的（3+4）重构：a = n, b = nRL, c = nR
+     */
+    private Node rotateLeftOverRight(Node nParent, Node n, int hL, Node nR, Node nRL, int hRR, int hRLR) {
+        long nodeOVL = n.version;
+        long rightOVL = nR.version;
+        Node nPL = nParent.left;
+        Node nRLL = nRL.left;
+        Node nRLR = nRL.right;
+        int hRLL = height(nRLL);
+        n.version = beginShrink(nodeOVL);
+        nR.version = beginShrink(rightOVL);
+        n.right = nRLL; if (nRLL != null) nRLL.parent = n;
+        nR.left = nRLR; if (nRLR != null) nRLR.parent = nR;
+        nRL.right = nR; nR.parent = nRL;
+        nRL.left = n; n.parent = nRL;
+        if (nPL == n) nParent.left = nRL;
+        else nParent.right = nRL;
+        nRL.parent = nParent;
+        int hNRepl = 1 + Math.max(hL, hRLL);
+        n.height = hNRepl;
+        int hRRepl = 1 + Math.max(hRLR, hRR);
+        nR.height = hRRepl;
+        nRL.height = 1 + Math.max(hNRepl, hRRepl);
+        n.version = endShrink(nodeOVL);
+        nR.version = endShrink(rightOVL);
+
+        int balN = hRLL - hL;
+        if (balN < -1 || balN > 1) return n;
+        if ((nRLL == null || hL == 0) && !n.present) return n;
+        int balRL = hRRepl - hNRepl;
+        if (balRL < -1 || balRL > 1) return nRL;
+        return fixHeight(nParent);
+    }
+
+    private int height(Node x) {
+        return (x != null) ? x.height : 0;
+    }
+
+    private static boolean isShrinking(long ovl) {
+        return (ovl & SHRINKING) != 0;
+    }
+
+    private static boolean isUnlinked(long ovl) {
+        return (ovl & UNLINKED) != 0;
+    }
+
+    private static boolean isShrinkingOrUnlinked(long ovl) {
+        return (ovl & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    private static boolean hasShrunkOrUnlinked(long orig, long current) {
+        return orig != current;
+    }
+
+    private static long beginShrink(long ovl) {
+        return ovl | SHRINKING;
+    }
+
+    private static long endShrink(long ovl) {
+        return (ovl | SHRINKING) + SHRINK_COUNT_INCR - SHRINKING;
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        System.out.println("Concurrent AVL API");
+        ConcurrentAVL<Integer> avl = new ConcurrentAVL<>();
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = id; i < 100000; i += workers.length) avl.insert(i);
+                for (int i = id; i < 100000; i += 2 * workers.length) avl.remove(i);
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        System.out.println("size: " + avl.size() + "  search 1: " + avl.search(1) + "  search 4: " + avl.search(4));
+    }
+}
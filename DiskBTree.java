@@ -0,0 +1,534 @@
+package tree;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 外存B树：节点就是文件中的一页，经由缓冲池BufferPool按页读写。
+ * 插入、删除的上溢分裂和下溢旋转/合并与B_Tree一致，不同之处在于页中不保存parent，
+ * 下降时用path记录经过的页号和孩子秩，调整时沿path回溯。
+ * 树高为h时，一次search至多读h页，只要缓冲池能容纳树的上几层，实际读盘次数还会更少。
+ *
+ * 第0页为元数据页，其余每页布局为：
+ *   [0, 4)   关键码个数 n
+ *   [4, 8)   保留
+ *   [8, ...) 关键码 long × order（多出的一个位置用于暂存上溢）
+ *   之后     孩子页号 int × (order + 1)，0表示外部节点
+ * 阶次默认取一页能容纳的最大值 (pageSize - 12) / 12，4KB页时为340；也可以指定更小的阶次。
+ * 阶次写在元数据页中，重新打开文件时以文件为准。
+ */
+public class DiskBTree implements Closeable {
+    private static final long MAGIC = 0x4254524545L;//"BTREE"
+    private static final int KEYS = 8;
+    private static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final long CHECKPOINT_BYTES = 64L << 20;//日志超过64MB时自动做检查点
+
+    private final BufferPool pool;
+    private final int order;
+    private final int childOffset;
+    private int root;
+    private int height;//根到叶子经过的页数
+    private long size;
+    private int freeList;//被回收页组成的单链表
+    private final WriteAheadLog wal;
+    private boolean replaying;//正在重做日志，不再追加记录
+
+    /**
+     * 打开或新建文件，页大小4KB
+     */
+    public DiskBTree(Path file, int poolPages) {
+        this(file, DEFAULT_PAGE_SIZE, poolPages);
+    }
+
+    public DiskBTree(Path file, int pageSize, int poolPages) {
+        this(file, pageSize, maxOrder(pageSize), poolPages);
+    }
+
+    /**
+     * @param order 新建文件时使用的阶次，不超过maxOrder(pageSize)
+     */
+    public DiskBTree(Path file, int pageSize, int order, int poolPages) {
+        this(file, pageSize, order, poolPages, null, 1);
+    }
+
+    /**
+     * 带预写日志打开，日志中有上次崩溃留下的记录时先恢复，见WriteAheadLog
+     * @param log 日志文件，为null表示不记日志，此时只有close()、flush()之后的状态是持久的
+     * @param syncEvery 组提交的批量：每多少次插入、删除fsync一次日志
+     */
+    public DiskBTree(Path file, int pageSize, int order, int poolPages, Path log, int syncEvery) {
+        if (order < 3 || order > maxOrder(pageSize))
+            throw new IllegalArgumentException("order " + order + " does not fit a " + pageSize + " byte page");
+        //先把数据文件恢复到检查点的状态，再交给缓冲池
+        this.wal = (log != null) ? new WriteAheadLog(log, file, pageSize, syncEvery) : null;
+        this.pool = new BufferPool(file, pageSize, poolPages);
+        if (pool.pageCount() == 0) {
+            this.order = order;
+            pool.unpin(pool.allocate(), true);
+            root = pool.allocate();
+            pool.unpin(root, true);
+            height = 1;
+            writeMeta();
+        } else {
+            ByteBuffer meta = pool.fetch(0);
+            if (meta.getLong(0) != MAGIC || meta.getInt(8) != pageSize)
+                throw new IllegalArgumentException(file + " is not a B-tree file with page size " + pageSize);
+            root = meta.getInt(12);
+            height = meta.getInt(16);
+            size = meta.getLong(20);
+            freeList = meta.getInt(28);
+            this.order = meta.getInt(32);
+            pool.unpin(0, false);
+        }
+        this.childOffset = KEYS + 8 * this.order;
+        if (wal != null) {
+            pool.setWriteBackListener(wal::beforeWriteBack);
+            //重做检查点之后的插入、删除，完成后立即做检查点，恢复期间再崩溃也只需从头再来一次
+            replaying = true;
+            wal.replay(this::insert, this::remove);
+            replaying = false;
+            checkpoint();
+        }
+    }
+
+    /**
+     * 一页能容纳的最大阶次
+     */
+    public static int maxOrder(int pageSize) {
+        return (pageSize - 12) / 12;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int order() {
+        return order;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public BufferPool bufferPool() {
+        return pool;
+    }
+
+    public boolean search(long e) {
+        int v = root;
+        while (v != 0) {
+            ByteBuffer page = pool.fetch(v);
+            int r = searchKey(page, e);
+            boolean hit = 0 <= r && key(page, r) == e;
+            int next = child(page, r + 1);
+            pool.unpin(v, false);
+            if (hit) return true;
+            v = next;
+        }
+        return false;
+    }
+
+    public boolean insert(long e) {
+        int[] path = new int[height];
+        int[] rank = new int[height];
+        int depth = 0;
+        for (int v = root; v != 0; depth++) {
+            ByteBuffer page = pool.fetch(v);
+            int r = searchKey(page, e);
+            boolean hit = 0 <= r && key(page, r) == e;
+            int next = child(page, r + 1);
+            pool.unpin(v, false);
+            if (hit) return false;
+            path[depth] = v;
+            rank[depth] = r + 1;
+            v = next;
+        }
+        int hot = path[depth - 1];
+        ByteBuffer page = pool.fetch(hot);
+        insertAt(page, rank[depth - 1], e, 0);
+        pool.unpin(hot, true);
+        size++;
+        //解决上溢缺陷
+        solveOverflow(path, rank, depth - 1);
+        log(WriteAheadLog.INSERT, e);
+        return true;
+    }
+
+    public boolean remove(long e) {
+        int[] path = new int[height];
+        int[] rank = new int[height];
+        int depth = 0, r = -1;
+        boolean hit = false;
+        for (int v = root; v != 0 && !hit; depth++) {
+            ByteBuffer page = pool.fetch(v);
+            r = searchKey(page, e);
+            hit = 0 <= r && key(page, r) == e;
+            int next = child(page, r + 1);
+            pool.unpin(v, false);
+            path[depth] = v;
+            rank[depth] = r + 1;
+            v = next;
+        }
+        if (!hit) return false;
+        int v = path[depth - 1];
+        ByteBuffer page = pool.fetch(v);
+        if (child(page, 0) != 0) {//找出e的后继，与之交换
+            int u = child(page, r + 1);
+            while (true) {
+                path[depth] = u;
+                rank[depth++] = 0;
+                ByteBuffer up = pool.fetch(u);
+                int next = child(up, 0);
+                if (next == 0) {
+                    setKey(page, r, key(up, 0));
+                    pool.unpin(u, false);
+                    break;
+                }
+                pool.unpin(u, false);
+                u = next;
+            }
+            pool.unpin(v, true);
+            v = u; r = 0;
+            page = pool.fetch(v);
+        }
+        removeAt(page, r, r + 1);
+        pool.unpin(v, true);
+        size--;
+        //通过旋转和合并处理下溢问题
+        solveUnderflow(path, rank, depth - 1);
+        log(WriteAheadLog.REMOVE, e);
+        return true;
+    }
+
+    /**
+     * 写回元数据和所有脏页；带日志时即做一次检查点
+     */
+    public void flush() {
+        if (wal != null) {
+            checkpoint();
+            return;
+        }
+        writeMeta();
+        pool.flush();
+    }
+
+    /**
+     * 检查点：先fsync日志，再写回元数据和所有脏页并fsync数据文件，然后清空日志。
+     * 新日志的改名万一没有落盘，恢复时重做旧日志，旧日志因此要先包含此前的全部记录
+     */
+    public void checkpoint() {
+        if (wal == null) throw new IllegalStateException("no write-ahead log");
+        wal.sync();
+        writeMeta();
+        pool.flush();
+        wal.checkpoint(pool.pageCount());
+    }
+
+    /**
+     * fsync日志，此前的插入、删除都已持久；不带日志时同flush()
+     */
+    public void sync() {
+        if (wal != null) wal.sync();
+        else flush();
+    }
+
+    public WriteAheadLog writeAheadLog() {
+        return wal;
+    }
+
+    @Override
+    public void close() {
+        if (wal != null) {
+            checkpoint();
+            pool.close();
+            wal.close();
+            return;
+        }
+        writeMeta();
+        pool.close();
+    }
+
+    private void log(byte type, long e) {
+        if (wal == null || replaying) return;
+        wal.append(type, e);
+        if (wal.length() > CHECKPOINT_BYTES) checkpoint();
+    }
+
+    /**
+     * 模拟崩溃：脏页不写回，日志缓冲区中尚未fsync的记录丢失，此后本对象不能再使用
+     */
+    void crash() {
+        pool.abandon();
+        if (wal != null) wal.abandon();
+    }
+
+    //通过分裂解决上溢
+    private void solveOverflow(int[] path, int[] rank, int level) {
+        int v = path[level];
+        ByteBuffer page = pool.fetch(v);
+        if (count(page) < order) {//当前节点未溢出
+            pool.unpin(v, false);
+            return;
+        }
+        int s = order >> 1;
+        int u = allocate();
+        ByteBuffer right = pool.fetch(u);
+        int moved = order - s - 1;
+        for (int j = 0; j < moved; j++) {
+            setKey(right, j, key(page, s + 1 + j));
+            setChild(right, j, child(page, s + 1 + j));
+        }
+        setChild(right, moved, child(page, order));
+        setCount(right, moved);
+        long up = key(page, s);
+        setCount(page, s);
+        pool.unpin(u, true);
+        pool.unpin(v, true);
+        if (level == 0) {
+            int p = allocate();
+            ByteBuffer parent = pool.fetch(p);
+            setCount(parent, 1);
+            setKey(parent, 0, up);
+            setChild(parent, 0, v);
+            setChild(parent, 1, u);
+            pool.unpin(p, true);
+            root = p;
+            height++;
+            return;
+        }
+        int p = path[level - 1];
+        ByteBuffer parent = pool.fetch(p);
+        insertAt(parent, rank[level - 1], up, u);
+        pool.unpin(p, true);
+        solveOverflow(path, rank, level - 1);
+    }
+
+    /**
+     * 通过旋转或合并解决下溢
+     */
+    private void solveUnderflow(int[] path, int[] rank, int level) {
+        int minKeys = (order + 1) / 2 - 1;
+        int v = path[level];
+        ByteBuffer page = pool.fetch(v);
+        if (minKeys <= count(page)) {//节点未发生下溢
+            pool.unpin(v, false);
+            return;
+        }
+        if (level == 0) {//根节点为空且有唯一孩子，树高降低一层
+            int only = child(page, 0);
+            boolean empty = count(page) == 0 && only != 0;
+            pool.unpin(v, false);
+            if (empty) {
+                free(v);
+                root = only;
+                height--;
+            }
+            return;
+        }
+        int p = path[level - 1];
+        int r = rank[level - 1];//v是p的第r个孩子
+        ByteBuffer parent = pool.fetch(p);
+        //1, 右旋：向左兄弟借一个关键码
+        if (r > 0) {
+            int ls = child(parent, r - 1);
+            ByteBuffer left = pool.fetch(ls);
+            int n = count(left);
+            if (minKeys < n) {
+                insertAt(page, 0, key(parent, r - 1), child(left, n));
+                setChild(page, 1, child(page, 0));
+                setChild(page, 0, child(left, n));
+                setKey(parent, r - 1, key(left, n - 1));
+                setCount(left, n - 1);
+                pool.unpin(ls, true);
+                pool.unpin(p, true);
+                pool.unpin(v, true);
+                return;
+            }
+            pool.unpin(ls, false);
+        }
+        //2, 左旋：向右兄弟借一个关键码
+        if (r < count(parent)) {
+            int rs = child(parent, r + 1);
+            ByteBuffer right = pool.fetch(rs);
+            if (minKeys < count(right)) {
+                insertAt(page, count(page), key(parent, r), child(right, 0));
+                setKey(parent, r, key(right, 0));
+                setChild(right, 0, child(right, 1));
+                removeAt(right, 0, 1);
+                pool.unpin(rs, true);
+                pool.unpin(p, true);
+                pool.unpin(v, true);
+                return;
+            }
+            pool.unpin(rs, false);
+        }
+        //3, 与左兄弟合并；4, 否则与右兄弟合并
+        if (r > 0) {
+            int ls = child(parent, r - 1);
+            ByteBuffer left = pool.fetch(ls);
+            merge(left, key(parent, r - 1), page);
+            removeAt(parent, r - 1, r);
+            pool.unpin(ls, true);
+            pool.unpin(v, false);
+            free(v);
+        } else {
+            int rs = child(parent, r + 1);
+            ByteBuffer right = pool.fetch(rs);
+            merge(page, key(parent, r), right);
+            removeAt(parent, r, r + 1);
+            pool.unpin(rs, false);
+            pool.unpin(v, true);
+            free(rs);
+        }
+        pool.unpin(p, true);
+        solveUnderflow(path, rank, level - 1);
+    }
+
+    /**
+     * 把分隔关键码sep和right整体追加到left末尾
+     */
+    private void merge(ByteBuffer left, long sep, ByteBuffer right) {
+        int n = count(left), m = count(right);
+        setKey(left, n, sep);
+        for (int j = 0; j < m; j++) {
+            setKey(left, n + 1 + j, key(right, j));
+            setChild(left, n + 1 + j, child(right, j));
+        }
+        setChild(left, n + 1 + m, child(right, m));
+        setCount(left, n + 1 + m);
+    }
+
+    private int allocate() {
+        if (freeList == 0) {
+            int pageId = pool.allocate();
+            pool.unpin(pageId, true);
+            return pageId;
+        }
+        int pageId = freeList;
+        ByteBuffer page = pool.fetch(pageId);
+        freeList = page.getInt(4);
+        setCount(page, 0);
+        page.putInt(4, 0);
+        setChild(page, 0, 0);
+        pool.unpin(pageId, true);
+        return pageId;
+    }
+
+    private void free(int pageId) {
+        ByteBuffer page = pool.fetch(pageId);
+        setCount(page, 0);
+        page.putInt(4, freeList);
+        pool.unpin(pageId, true);
+        freeList = pageId;
+    }
+
+    private void writeMeta() {
+        ByteBuffer meta = pool.fetch(0);
+        meta.putLong(0, MAGIC);
+        meta.putInt(8, pool.pageSize());
+        meta.putInt(12, root);
+        meta.putInt(16, height);
+        meta.putLong(20, size);
+        meta.putInt(28, freeList);
+        meta.putInt(32, order);
+        pool.unpin(0, true);
+    }
+
+    /**
+     * 返回不大于e的最大关键码的秩，没有则返回-1
+     */
+    private int searchKey(ByteBuffer page, long e) {
+        int lo = 0, hi = count(page);
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            if (e < key(page, mi)) hi = mi;
+            else lo = mi + 1;
+        }
+        return lo - 1;
+    }
+
+    /**
+     * 在秩r处插入关键码e，其右侧孩子为c
+     */
+    private void insertAt(ByteBuffer page, int r, long e, int c) {
+        int n = count(page);
+        for (int j = n; j > r; j--) {
+            setKey(page, j, key(page, j - 1));
+            setChild(page, j + 1, child(page, j));
+        }
+        setKey(page, r, e);
+        setChild(page, r + 1, c);
+        setCount(page, n + 1);
+    }
+
+    /**
+     * 删除秩为r的关键码和秩为c（r或r+1）的孩子
+     */
+    private void removeAt(ByteBuffer page, int r, int c) {
+        int n = count(page);
+        for (int j = r; j < n - 1; j++) setKey(page, j, key(page, j + 1));
+        for (int j = c; j < n; j++) setChild(page, j, child(page, j + 1));
+        setCount(page, n - 1);
+    }
+
+    private int count(ByteBuffer page) {
+        return page.getInt(0);
+    }
+
+    private void setCount(ByteBuffer page, int n) {
+        page.putInt(0, n);
+    }
+
+    private long key(ByteBuffer page, int i) {
+        return page.getLong(KEYS + 8 * i);
+    }
+
+    private void setKey(ByteBuffer page, int i, long e) {
+        page.putLong(KEYS + 8 * i, e);
+    }
+
+    private int child(ByteBuffer page, int i) {
+        return page.getInt(childOffset + 4 * i);
+    }
+
+    private void setChild(ByteBuffer page, int i, int c) {
+        page.putInt(childOffset + 4 * i, c);
+    }
+
+    public static void main(String args[]) throws Exception {
+        System.out.println("Disk B-Tree API");
+        Path file = Files.createTempFile("btree", ".db");
+        try (DiskBTree btree = new DiskBTree(file, 512, 16)) {
+            for (long i = 0; i < 10000; i++) btree.insert(i * 7 % 10007);
+            for (long i = 0; i < 10000; i += 2) btree.remove(i * 7 % 10007);
+            System.out.println("size: " + btree.size() + "  height: " + btree.height()
+                    + "  order: " + btree.order());
+        }
+        try (DiskBTree btree = new DiskBTree(file, 512, 16)) {
+            long reads = btree.bufferPool().reads();
+            System.out.println("search 7: " + btree.search(7) + "  search 14: " + btree.search(14));
+            System.out.println("page reads: " + (btree.bufferPool().reads() - reads));
+        }
+        Files.delete(file);
+
+        System.out.println("Disk B-Tree with write-ahead log");
+        Path log = file.resolveSibling(file.getFileName() + ".wal");
+        DiskBTree wal = new DiskBTree(file, 512, maxOrder(512), 8, log, 100);
+        for (long i = 0; i < 10000; i++) wal.insert(i * 7 % 10007);
+        for (long i = 0; i < 10000; i += 2) wal.remove(i * 7 % 10007);
+        wal.sync();
+        for (long i = 10000; i < 10050; i++) wal.insert(i);//不满一批，崩溃时丢失
+        System.out.println("before crash  size: " + wal.size() + "  fsyncs: " + wal.writeAheadLog().syncs()
+                + "  page writes: " + wal.bufferPool().writes());
+        wal.crash();
+        try (DiskBTree btree = new DiskBTree(file, 512, maxOrder(512), 8, log, 100)) {
+            System.out.println("after recovery  size: " + btree.size() + "  height: " + btree.height());
+            System.out.println("search 7: " + btree.search(7) + "  search 14: " + btree.search(14)
+                    + "  search 10000: " + btree.search(10000));
+        }
+        Files.delete(file);
+        Files.delete(log);
+    }
+}
@@ -0,0 +1,202 @@
+package tree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+/**
+ * 只读快照：把一棵树的全部关键码按Eytzinger次序（即层次遍历次序）排进数组，由AVL.freeze()、RedBlackTree.freeze()生成。
+ * 下标从1开始，k的左右孩子是2k、2k+1，父亲是k/2，节点里不存任何指针；它是一棵完全二叉树，高度恰为⌊log n⌋。
+ * 越靠近树根的节点在数组中越集中，查找路径的前几层总落在开头的几条缓存行里，
+ * 而节点k往下第4层的16个后代在数组中是连续的[16k, 16k+16)，恰好占据一两条缓存行。
+ *
+ * 查找不在相等时提前退出：每层只看"keys[k] < val"是否成立，据此走向2k或2k+1，一直走出数组，
+ * 每次查找的层数相同，循环体里只有这一个比较。
+ * 走出数组后k的二进制末尾连续的1是最后几次右转，去掉它们和其上的一个0，剩下的就是最后一次左转处的节点，
+ * 即第一个不小于val的关键码（lower bound）；从未左转则k为0，表示val大于全部关键码。
+ *
+ * 这个比较有意写成分支而不是条件传送。Java没有预取指令，数组大到放不进缓存时，
+ * CPU沿猜测的方向提前发出下一层的读取，相当于预取了两个孩子中的一个，猜错的代价比逐层等待内存小；
+ * 写成条件传送则每层都要等上一层的读取完成。一万个关键码时两者相当，百万个关键码时分支写法约快四分之一。
+ *
+ * 构造时还按同样次序存下每个关键码的规范化前缀（见KeyPrefix）。若前缀两两不同，
+ * 下行时只比较long[]中的前缀，完全不访问关键码对象，最后用比较器校正一次即可：
+ * 前缀严格递增，与val前缀相等的关键码至多一个，只有它与val的次序可能没有被前缀决定。
+ * KeyPrefix.INTEGER、KeyPrefix.LONG对不同的关键码总给出不同的前缀，正是这种情形。
+ */
+public final class FrozenTree<T extends Comparable<T>> implements Iterable<T> {
+    private final int n;
+    private final Object[] keys;//keys[0]不用
+    private final long[] prefix;//keys[k]的前缀翻转符号位后的值，有符号比较即前缀的无符号次序；不缓存前缀时为null
+    private final boolean distinctPrefix;//前缀两两不同，下行时只比较前缀
+    private final Comparator<? super T> comparator;
+    private final ToLongFunction<? super T> keyPrefix;
+
+    /**
+     * @param sorted 按comparator严格递增的关键码，构造后不再引用
+     */
+    FrozenTree(Object[] sorted, Comparator<? super T> comparator, ToLongFunction<? super T> keyPrefix) {
+        this.n = sorted.length;
+        this.comparator = comparator;
+        this.keyPrefix = keyPrefix;
+        this.keys = new Object[n + 1];
+        this.prefix = (keyPrefix == null) ? null : new long[n + 1];
+        //按中序依次访问隐式树的各节点，把第i小的关键码放进中序第i个节点
+        int k = first();
+        for (Object key : sorted) {
+            keys[k] = key;
+            if (prefix != null) prefix[k] = keyPrefix.applyAsLong(key(k)) ^ Long.MIN_VALUE;
+            k = succ(k);
+        }
+        boolean distinct = (prefix != null);
+        for (int i = first(), j; distinct && (j = succ(i)) != 0; i = j) distinct = prefix[i] < prefix[j];
+        this.distinctPrefix = distinct;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T key(int k) {
+        return (T) keys[k];
+    }
+
+    /**
+     * 第一个不小于val的关键码所在的下标，没有则为0
+     */
+    private int lowerBound(T val) {
+        int k = 1;
+        if (distinctPrefix) {
+            long p = keyPrefix.applyAsLong(val) ^ Long.MIN_VALUE;
+            while (k <= n) {
+                if (prefix[k] < p) k = 2 * k + 1;
+                else k = 2 * k;
+            }
+            k >>= Integer.numberOfTrailingZeros(~k) + 1;
+            //k的前缀不小于p；恰好相等时它仍可能小于val，此时lower bound是它的后继
+            if (k != 0 && prefix[k] == p && comparator.compare(key(k), val) < 0) k = succ(k);
+        } else {
+            long p = (prefix == null) ? 0 : keyPrefix.applyAsLong(val) ^ Long.MIN_VALUE;
+            while (k <= n) {
+                if (less(k, val, p)) k = 2 * k + 1;
+                else k = 2 * k;
+            }
+            k >>= Integer.numberOfTrailingZeros(~k) + 1;
+        }
+        return k;
+    }
+
+    /**
+     * keys[k] < val，前缀不等时由前缀定序
+     */
+    private boolean less(int k, T val, long p) {
+        if (prefix != null && prefix[k] != p) return prefix[k] < p;
+        return comparator.compare(key(k), val) < 0;
+    }
+
+    public boolean contains(T val) {
+        int k = lowerBound(val);
+        return k != 0 && comparator.compare(key(k), val) == 0;
+    }
+
+    /**
+     * 不小于val的最小关键码，没有则为null
+     */
+    public T ceiling(T val) {
+        int k = lowerBound(val);
+        return (k != 0) ? key(k) : null;
+    }
+
+    /**
+     * 不大于val的最大关键码，没有则为null
+     */
+    public T floor(T val) {
+        int k = lowerBound(val);
+        if (k != 0 && comparator.compare(key(k), val) == 0) return key(k);
+        k = (k != 0) ? pred(k) : last();
+        return (k != 0) ? key(k) : null;
+    }
+
+    /**
+     * 中序第一个节点：一路向左
+     */
+    private int first() {
+        if (n == 0) return 0;
+        int k = 1;
+        while (2 * k <= n) k = 2 * k;
+        return k;
+    }
+
+    private int last() {
+        if (n == 0) return 0;
+        int k = 1;
+        while (2 * k + 1 <= n) k = 2 * k + 1;
+        return k;
+    }
+
+    /**
+     * 中序直接后继：有右孩子则取右子树的最左节点，否则沿右孩子一路上行（去掉末尾的1），再上一层，没有则为0
+     */
+    private int succ(int k) {
+        if (2 * k + 1 <= n) {
+            k = 2 * k + 1;
+            while (2 * k <= n) k = 2 * k;
+            return k;
+        }
+        return k >> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    /**
+     * 中序直接前驱，与succ对称，没有则为0
+     */
+    private int pred(int k) {
+        if (2 * k <= n) {
+            k = 2 * k;
+            while (2 * k + 1 <= n) k = 2 * k + 1;
+            return k;
+        }
+        return k >> (Integer.numberOfTrailingZeros(k) + 1);
+    }
+
+    /**
+     * 升序迭代器
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = first();
+
+            @Override
+            public boolean hasNext() {
+                return next != 0;
+            }
+
+            @Override
+            public T next() {
+                if (next == 0) throw new NoSuchElementException();
+                T val = key(next);
+                next = succ(next);
+                return val;
+            }
+        };
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Frozen Tree API");
+        AVL<Integer> avl = new AVL<>(Comparator.naturalOrder(), KeyPrefix.INTEGER);
+        for (int i = 1; i <= 10; i++) avl.insert(3 * i);
+        FrozenTree<Integer> frozen = avl.freeze();
+        avl.remove(15);
+        System.out.println("contains(15): " + frozen.contains(15) + "    contains(16): " + frozen.contains(16));
+        System.out.println("ceiling(16): " + frozen.ceiling(16) + "    floor(16): " + frozen.floor(16));
+        System.out.println("ceiling(31): " + frozen.ceiling(31) + "    floor(2): " + frozen.floor(2));
+        for (Integer k : frozen) System.out.print(k + "   ");
+        System.out.println();
+    }
+}
@@ -0,0 +1,48 @@
+package tree;
+
+import java.util.Arrays;
+
+/**
+ * 用堆上平行数组实现的节点池。
+ * 每个节点只占24字节，没有对象头，数组中也没有引用，GC无需逐个追踪节点。
+ */
+final class HeapNodePool extends NodePool {
+    private long[] key;
+    private int[] left, right, parent, meta;
+
+    HeapNodePool(int initialCapacity) {
+        int n = Math.max(2, initialCapacity + 1);
+        key = new long[n];
+        left = new int[n];
+        right = new int[n];
+        parent = new int[n];
+        meta = new int[n];
+    }
+
+    @Override
+    int slots() {
+        return key.length;
+    }
+
+    @Override
+    void grow() {
+        int n = key.length + (key.length >> 1) + 1;
+        key = Arrays.copyOf(key, n);
+        left = Arrays.copyOf(left, n);
+        right = Arrays.copyOf(right, n);
+        parent = Arrays.copyOf(parent, n);
+        meta = Arrays.copyOf(meta, n);
+    }
+
+    @Override long key(int x) { return key[x]; }
+    @Override int left(int x) { return left[x]; }
+    @Override int right(int x) { return right[x]; }
+    @Override int parent(int x) { return parent[x]; }
+    @Override int meta(int x) { return meta[x]; }
+
+    @Override void setKey(int x, long k) { key[x] = k; }
+    @Override void setLeft(int x, int c) { left[x] = c; }
+    @Override void setRight(int x, int c) { right[x] = c; }
+    @Override void setParent(int x, int p) { parent[x] = p; }
+    @Override void setMeta(int x, int m) { meta[x] = m; }
+}
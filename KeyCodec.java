@@ -0,0 +1,82 @@
+package tree;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 关键码的二进制编码，供TreeFile按中序写出、读回整棵树的关键码。
+ * 关键码按序写出，相邻的关键码往往很接近，编码时可以参照前一个关键码prev（写第一个关键码时为null）：
+ * 整数写出与prev之差的zigzag变长编码，字符串写出与prev的公共前缀长度和其余部分。
+ */
+public interface KeyCodec<T> {
+    void write(T prev, T key, TreeFile.Output out);
+
+    T read(T prev, TreeFile.Input in);
+
+    /**
+     * 与前一个关键码之差，按zigzag映射成非负数后以变长编码写出；升序的稠密关键码每个只占1字节
+     */
+    KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+        @Override
+        public void write(Integer prev, Integer key, TreeFile.Output out) {
+            out.writeVarLong(zigzag((prev == null) ? key : (long) key - prev));
+        }
+
+        @Override
+        public Integer read(Integer prev, TreeFile.Input in) {
+            long d = unzigzag(in.readVarLong());
+            return (int) ((prev == null) ? d : prev + d);
+        }
+    };
+
+    /**
+     * 同INTEGER；差值溢出时按二进制补码回绕，读回时同样回绕，结果不变
+     */
+    KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public void write(Long prev, Long key, TreeFile.Output out) {
+            out.writeVarLong(zigzag((prev == null) ? key : key - prev));
+        }
+
+        @Override
+        public Long read(Long prev, TreeFile.Input in) {
+            long d = unzigzag(in.readVarLong());
+            return (prev == null) ? d : prev + d;
+        }
+    };
+
+    /**
+     * 前端编码：与prev的公共前缀长度（UTF-16代码单元数），其余部分的UTF-8字节数，其余部分。
+     * 前缀不在代理对中间截断，否则其余部分以单独的低代理开头，无法编码成UTF-8
+     */
+    KeyCodec<String> STRING = new KeyCodec<String>() {
+        @Override
+        public void write(String prev, String key, TreeFile.Output out) {
+            int shared = 0;
+            if (prev != null) {
+                int n = Math.min(prev.length(), key.length());
+                while (shared < n && prev.charAt(shared) == key.charAt(shared)) shared++;
+                if (shared > 0 && Character.isHighSurrogate(key.charAt(shared - 1))) shared--;
+            }
+            byte[] rest = key.substring(shared).getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(shared);
+            out.writeVarLong(rest.length);
+            out.writeBytes(rest);
+        }
+
+        @Override
+        public String read(String prev, TreeFile.Input in) {
+            int shared = (int) in.readVarLong();
+            byte[] rest = in.readBytes((int) in.readVarLong());
+            String suffix = new String(rest, StandardCharsets.UTF_8);
+            return (shared == 0) ? suffix : prev.substring(0, shared).concat(suffix);
+        }
+    };
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
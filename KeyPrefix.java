@@ -0,0 +1,51 @@
+package tree;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 关键码的规范化前缀：把关键码开头的8个字节按大端拼成一个long，缓存在节点中。
+ * 前缀按无符号比较的次序必须与比较器一致：prefix(a) < prefix(b) 蕴含 a < b。
+ * 查找时先比较前缀，不等即可定序，只用一次整数比较；前缀相等时说明不了什么，才调用比较器比较完整的关键码。
+ * 关键码开头的区分度越高，回退到比较器的次数越少；大量关键码共享同一个长前缀时缓存就没有意义。
+ */
+public final class KeyPrefix {
+    private KeyPrefix() {
+    }
+
+    /**
+     * 与Integer.compareTo一致的前缀：翻转符号位后放在高32位，不同的关键码前缀一定不同
+     */
+    public static final ToLongFunction<Integer> INTEGER = k -> (long) (k ^ Integer.MIN_VALUE) << 32;
+
+    /**
+     * 与Long.compareTo一致的前缀：翻转符号位，不同的关键码前缀一定不同
+     */
+    public static final ToLongFunction<Long> LONG = k -> k ^ Long.MIN_VALUE;
+
+    /**
+     * 与String.compareTo一致的前缀：开头4个UTF-16代码单元，每个16位，不足的补0
+     */
+    public static final ToLongFunction<String> STRING = KeyPrefix::of;
+
+    /**
+     * 与Arrays.compareUnsigned一致的前缀：由f取出关键码的字节序列，开头8个字节视作无符号数，不足的补0
+     */
+    public static <T> ToLongFunction<T> bytes(Function<? super T, byte[]> f) {
+        return key -> of(f.apply(key));
+    }
+
+    public static long of(String s) {
+        long p = 0;
+        int n = Math.min(4, s.length());
+        for (int i = 0; i < n; i++) p |= (long) s.charAt(i) << (48 - 16 * i);
+        return p;
+    }
+
+    public static long of(byte[] b) {
+        long p = 0;
+        int n = Math.min(8, b.length);
+        for (int i = 0; i < n; i++) p |= (b[i] & 0xFFL) << (56 - 8 * i);
+        return p;
+    }
+}
@@ -0,0 +1,226 @@
+package tree;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 无锁跳表，作为多线程写入场景下红黑树的替代，接口与tree包中的树一致：insert、remove、search、size。
+ *
+ * 红黑树的solveDoubleRed/solveDoubleBlack可能一路调整到树根，只能整棵树加锁；
+ * 跳表没有全局的平衡操作，每个节点的高度在插入时随机决定，所有修改都是对单个next指针的CAS。
+ *
+ * next[level]中存的若是Mark，说明该节点在这一层已被逻辑删除，Mark里包着删除时的后继：
+ * 1, 删除先自顶向下把节点每一层的next换成Mark，最底层换成功的线程即为删除成功者。
+ * 2, find沿途遇到已标记的节点就用CAS把它从前驱处摘掉（物理删除），CAS失败则从头重试。
+ * 3, 插入先在最底层CAS接入（此时插入即生效），再逐层向上接入。
+ * 4, search只读不写，遇到已标记的节点直接跳过，不会被其他线程阻塞。
+ * 未标记时next直接指向后继节点，查找沿途不需要额外的间接访问，也不分配对象。
+ */
+public class LockFreeSkipList<T extends Comparable<T>> {
+    private static final int MAX_LEVEL = 31;
+    private static final VarHandle NEXT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    //head为负无穷，tail为正无穷，二者都有全部MAX_LEVEL + 1层
+    private final Node<T> head = new Node<>(null, MAX_LEVEL);
+    private final Node<T> tail = new Node<>(null, MAX_LEVEL);
+    private final LongAdder count = new LongAdder();
+    //已出现过的最高层数，只增不减；查找从这一层开始，不必每次都从MAX_LEVEL往下走
+    private final AtomicInteger levelHint = new AtomicInteger(0);
+
+    private static final class Node<T> {
+        final T val;
+        final Object[] next;//元素为Node或Mark
+
+        Node(T val, int topLevel) {
+            this.val = val;
+            this.next = new Object[topLevel + 1];
+        }
+
+        int topLevel() {
+            return next.length - 1;
+        }
+    }
+
+    /**
+     * 已删除标记，succ为标记时的后继
+     */
+    private static final class Mark {
+        final Node<?> succ;
+
+        Mark(Node<?> succ) {
+            this.succ = succ;
+        }
+    }
+
+    public LockFreeSkipList() {
+        for (int i = 0; i <= MAX_LEVEL; i++) head.next[i] = tail;
+    }
+
+    /**
+     * 并发修改进行中时只是近似值
+     */
+    public int size() {
+        return count.intValue();
+    }
+
+    public boolean search(T val) {
+        Node<T> pred = head, curr = null;
+        for (int level = levelHint.get(); level >= 0; level--) {
+            curr = strip(NEXT.getVolatile(pred.next, level));
+            for (;;) {
+                Object next = NEXT.getVolatile(curr.next, level);
+                while (next instanceof Mark) {//跳过已被删除的节点
+                    curr = strip(next);
+                    next = NEXT.getVolatile(curr.next, level);
+                }
+                if (less(curr, val)) {
+                    pred = curr;
+                    curr = strip(next);
+                } else break;
+            }
+        }
+        return curr != tail && curr.val.compareTo(val) == 0;
+    }
+
+    public boolean insert(T val) {
+        int topLevel = randomLevel();
+        if (topLevel > levelHint.get()) levelHint.accumulateAndGet(topLevel, Math::max);
+        Node<T>[] preds = newArray(), succs = newArray();
+        for (;;) {
+            if (find(val, preds, succs)) return false;
+            Node<T> node = new Node<>(val, topLevel);
+            for (int level = 0; level <= topLevel; level++) node.next[level] = succs[level];
+            //最底层接入成功，关键码即已在表中
+            if (!NEXT.compareAndSet(preds[0].next, 0, succs[0], node)) continue;
+            count.increment();
+            for (int level = 1; level <= topLevel; level++) {
+                for (;;) {
+                    Node<T> succ = succs[level];
+                    //node.next[level]可能已过时，先指向最新的后继；若已被标记说明node正在被删除，不必再往上接
+                    Object old = NEXT.getVolatile(node.next, level);
+                    if (old != succ && (old instanceof Mark || !NEXT.compareAndSet(node.next, level, old, succ)))
+                        return true;
+                    if (NEXT.compareAndSet(preds[level].next, level, succ, node)) break;
+                    find(val, preds, succs);
+                    if (succs[0] != node) return true;//node已被删除
+                }
+            }
+            return true;
+        }
+    }
+
+    public boolean remove(T val) {
+        Node<T>[] preds = newArray(), succs = newArray();
+        if (!find(val, preds, succs)) return false;
+        Node<T> node = succs[0];
+        //上层自顶向下打标记
+        for (int level = node.topLevel(); level >= 1; level--) {
+            Object next = NEXT.getVolatile(node.next, level);
+            while (!(next instanceof Mark)) {
+                NEXT.compareAndSet(node.next, level, next, new Mark((Node<?>) next));
+                next = NEXT.getVolatile(node.next, level);
+            }
+        }
+        //最底层的标记决定由谁完成删除
+        for (;;) {
+            Object next = NEXT.getVolatile(node.next, 0);
+            if (next instanceof Mark) return false;//被其他线程抢先删除
+            if (NEXT.compareAndSet(node.next, 0, next, new Mark((Node<?>) next))) {
+                count.decrement();
+                find(val, preds, succs);//顺带把node从各层摘下
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 按升序依次把每个关键码交给visit处理，并发修改时看到的是弱一致的结果
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        for (Node<T> x = strip(NEXT.getVolatile(head.next, 0)); x != tail; ) {
+            Object next = NEXT.getVolatile(x.next, 0);
+            if (!(next instanceof Mark)) visit.accept(x.val);
+            x = strip(next);
+        }
+    }
+
+    /**
+     * 找出每一层中val的前驱preds和后继succs（后继不小于val），并摘掉沿途已标记的节点。
+     * 返回最底层的后继是否就是val
+     */
+    private boolean find(T val, Node<T>[] preds, Node<T>[] succs) {
+        retry:
+        for (;;) {
+            Node<T> pred = head, curr = null;
+            for (int level = levelHint.get(); level >= 0; level--) {
+                Object first = NEXT.getVolatile(pred.next, level);
+                if (first instanceof Mark) continue retry;//pred刚被标记
+                curr = strip(first);
+                for (;;) {
+                    Object next = NEXT.getVolatile(curr.next, level);
+                    while (next instanceof Mark) {
+                        Node<T> succ = strip(next);
+                        if (!NEXT.compareAndSet(pred.next, level, curr, succ)) continue retry;
+                        curr = succ;
+                        next = NEXT.getVolatile(curr.next, level);
+                    }
+                    if (less(curr, val)) {
+                        pred = curr;
+                        curr = strip(next);
+                    } else break;
+                }
+                preds[level] = pred;
+                succs[level] = curr;
+            }
+            return curr != tail && curr.val.compareTo(val) == 0;
+        }
+    }
+
+    /**
+     * next中存放的后继节点，不论是否带标记
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T> strip(Object next) {
+        return (Node<T>) (next instanceof Mark ? ((Mark) next).succ : next);
+    }
+
+    /**
+     * x的关键码是否小于val；tail视为正无穷
+     */
+    private boolean less(Node<T> x, T val) {
+        return x != tail && x.val.compareTo(val) < 0;
+    }
+
+    /**
+     * 几何分布的随机层数：第i层以1/2^i的概率出现
+     */
+    private static int randomLevel() {
+        int r = ThreadLocalRandom.current().nextInt();
+        return Math.min(Integer.numberOfTrailingZeros(r), MAX_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newArray() {
+        return (Node<T>[]) new Node[MAX_LEVEL + 1];
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        System.out.println("Lock-Free Skip List API");
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = id; i < 100000; i += workers.length) list.insert(i);
+                for (int i = id; i < 100000; i += 2 * workers.length) list.remove(i);
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        System.out.println("size: " + list.size() + "  search 1: " + list.search(1) + "  search 4: " + list.search(4));
+    }
+}
@@ -0,0 +1,307 @@
+package tree;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 关键码为long的AVL树，结构与AVL完全相同。
+ * 关键码直接存放在节点中，比较用 < 和 ==，插入和查找不再装箱，也不经过compareTo的虚调用。
+ */
+public class LongAVL {
+    private Node root;
+    private Node hot;//指向当前节点的父节点
+    private int count;
+    private boolean isLeftChild;//true表示当前节点是父节点的左孩子
+    private class Node{
+        private long val;
+        private Node parent, left, right;
+        private int height;
+        public Node(long val, Node parent) {
+            this.parent = parent;
+            this.val = val;
+            this.height = 0;
+            this.left = null;
+            this.right = null;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+    
+    public Node search(long val) {
+        return search(root, val);
+    }
+
+    private Node search(Node root, long val) {
+        if (root == null || val == root.val) {
+            hot = null;
+            return root;
+        }
+        for (hot = root;;) {
+            Node currentNode = null;
+            if (val < hot.val) {
+                isLeftChild = true;
+                currentNode = hot.left;
+            } else {
+                isLeftChild = false;
+                currentNode = hot.right;
+            }
+            if (null == currentNode || val == currentNode.val)
+                return currentNode;
+            hot = currentNode;
+        }
+    }
+
+    private Node tallerChild(Node x) {
+        int lHeight = stature(x.left);
+        int rHeight = stature(x.right);
+        if (lHeight > rHeight) return x.left;
+        else if (lHeight < rHeight) return x.right;
+        else return isLeftChild(x) ? x.left : x.right;
+    }
+
+    public Node insert(long val) {
+        Node node = search(val);
+        if (node != null) return node;
+        Node newNode = new Node(val, hot);
+        count++;
+        if (root == null) {
+            root = newNode;
+            return root;
+        }
+        if (hot != null) {
+            if (isLeftChild)
+                hot.left = newNode;
+            else
+                hot.right = newNode;
+            //newNode的父亲hot若增高，则其祖父有可能失衡
+            Node g = hot;
+            while (g != null) {
+                if (!avlIsBalance(g)) {
+                    boolean isRoot = false;
+                    boolean isLC = false;
+                    Node gParent = null;
+                    if (g.parent == null) isRoot = true;
+                    else {
+                        //标记当前旋转子树属于父节点的左子树还是右子树
+                        if (isLeftChild(g))
+                            isLC = true;
+                        //记录当前旋转子树的父节点
+                        gParent = g.parent;
+                    }
+                    g = rotateAt(tallerChild(tallerChild(g)));
+                    //如果旋转操作触及到了根节点，就要替换根节点
+                    if (isRoot) root = g;
+                    else {
+                        if (isLC) gParent.left = g;
+                        else gParent.right = g;
+                    }
+                    break;
+                } else {
+                    updateHeight(g);
+                }
+                g = g.parent;
+            }
+        }
+        return newNode;
+    }
+
+    /**                           b
+     * （3+4) - 重构            ↙    ↘︎
+     *                       a       c
+     *                     ↙︎  ↘︎     ↙︎ ↘︎
+     *                    t0  t1  t2   t3
+     */
+    private Node connect34(Node a, Node b, Node c,
+            Node t0, Node t1, Node t2, Node t3 ) {
+        a.left  = t0; if (t0 != null) t0.parent = a;
+        a.right = t1; if (t1 != null) t1.parent = a;
+        c.left  = t2; if (t2 != null) t2.parent = c;
+        c.right = t3; if (t3 != null) t3.parent = c;
+        b.left  = a; a.parent = b;
+        b.right = c; c.parent = b;
+        updateHeight(a); updateHeight(c); updateHeight(b);
+        return b;
+    }
+
+    /**
+     * 需要（3+4）旋转重构的场景包括以下四种：
+     *                    场景一            场景二           场景三            场景四
+     *                      g               g               g                g
+     *                    ↙︎  ↘︎            ↙︎  ↘︎            ↙︎  ↘︎             ↙︎  ↘︎
+     * @param v          p   c3         p    c3          c0   p           c0   p
+     * @return         ↙︎  ↘︎           ↙︎  ↘︎                  ↙︎  ↘︎             ↙︎  ↘︎
+     *                v    c2       c0    v                c1   v           v   c3
+     *              ↙︎ ↘︎                 ↙︎  ↘︎                  ↙︎  ↘︎        ↙︎  ↘︎
+     *            c0  c1              c1   c2               c2    c3    c1   c2
+     */
+    private Node rotateAt(Node v) {
+        Node p = v.parent, g = p.parent;
+        if (isLeftChild(p)) {
+            if (isLeftChild(v)) {
+                p.parent = g.parent;
+                return connect34(v, p, g, v.left, v.right, p.right, g.right);
+            } else {
+                v.parent = g.parent;
+                return connect34(p, v, g, p.left, v.left, v.right, g.right);
+            }
+        } else {
+            if (isRightChild(v)) {
+                p.parent = g.parent;
+                return connect34(g, p, v, g.left, p.left, v.left, v.right);
+            } else {
+                v.parent = g.parent;
+                return connect34(g, v, p, g.left, v.left, v.right, p.right);
+            }
+        }
+    }
+
+    public boolean remove(long val) {
+        Node node = search(val);
+        if (node == null) return false;
+        removeAt(node);
+        Node g = hot;
+        while (g != null) {
+            if (!avlIsBalance(g)) {
+                boolean isRoot = false;
+                boolean isLC = false;
+                Node gParent = null;
+                if (g.parent == null) isRoot = true;
+                else {
+                    //标记当前旋转子树属于父节点的左子树还是右子树
+                    if (isLeftChild(g))
+                        isLC = true;
+                    //记录当前旋转子树的父节点
+                    gParent = g.parent;
+                }
+                g = rotateAt(tallerChild(tallerChild(g)));
+                //如果旋转操作触及到了根节点，就要替换根节点
+                if (isRoot) root = g;
+                else {
+                    if (isLC) gParent.left = g;
+                    else gParent.right = g;
+                }
+            }
+            updateHeight(g);
+            g = g.parent;
+        }
+        count--;
+        return true;
+    }
+
+    private void removeAt(Node x) {
+        Node w = x; //实际被删除的节点
+        Node succ = null; //实际被删除节点的接替者
+        if (!hasLeftChild(x)) {
+            succ = x.right;
+        } else if (!hasRightChild(x)) {
+            succ = x.left;
+        } else {
+            w = succ(x);
+            Node tmp = x;
+            x.val = w.val;
+            w.val = tmp.val;
+            Node u = w.parent;
+            if (u == x) succ = w.right;
+            else succ = w.right;
+        }
+        hot = w.parent;
+        if (succ != null) succ.parent = hot;
+        if (hot == null) root = succ;
+        else if (hot.left == w) hot.left = succ;
+        else hot.right = succ;
+    }
+
+    private boolean isLeftChild(Node x) {
+        return x.parent.left == x;
+    }
+
+    private boolean isRightChild(Node x) {
+        return x.parent.right == x;
+    }
+
+    private boolean hasLeftChild(Node x) {
+        return (x.left == null) ? false : true;
+    }
+
+    private boolean hasRightChild(Node x) {
+        return (x.right == null) ? false : true;
+    }
+
+    /**
+     * 当前节点的直接后继节点，x为最大节点时返回null
+     */
+    private Node succ(Node x) {
+        Node s = null;
+        if (hasRightChild(x)) {
+            s = x.right;
+            while (s.left != null) s = s.left; 
+        } else {
+            s = x;
+            while (s.parent != null && s.parent.right == s) s = s.parent;
+            s = s.parent; 
+        }
+        return s;
+    }
+
+    /**
+     * 中序遍历，沿succ逐个访问，不需要辅助栈
+     */
+    public void inOrderTraversal(LongConsumer visit) {
+        if (root == null) return;
+        Node x = root;
+        while (x.left != null) x = x.left;
+        for (; x != null; x = succ(x)) visit.accept(x.val);
+    }
+
+    private void updateHeight(Node x) {
+        x.height = 1 + Math.max(stature(x.left), stature(x.right));
+    }
+
+    private int stature(Node x) {
+        return (x != null) ? x.height : -1;
+    }
+
+    private void updateHeightAbove(Node x) {
+        while(x != null) {
+            updateHeight(x);
+            x = x.parent;
+        }
+    }
+    /**
+     * 理想平衡
+     */
+    private boolean balanced(Node x) {
+        return stature(x.left) == stature(x.right);
+    }
+
+    /**
+     * 平衡因子 
+     */
+    private int balanceFactory(Node x) {
+        return stature(x.left) - stature(x.right);
+    }
+
+    /**
+     * avl树的平衡条件
+     */
+    private boolean avlIsBalance(Node x) {
+        return (-2 < balanceFactory(x)) && (balanceFactory(x) < 2);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Long AVL API");
+        LongAVL avl = new LongAVL();
+        avl.insert(15);
+        avl.insert(13);
+        avl.insert(12);
+        avl.insert(16);
+        avl.insert(17);
+        avl.insert(18);
+        avl.insert(19);
+        avl.insert(20);
+        avl.remove(18);
+        avl.inOrderTraversal(x -> System.out.print(x + "   "));
+        System.out.println();
+    }
+}
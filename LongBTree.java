@@ -0,0 +1,243 @@
+package tree;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 关键码为long的B树，插入、删除的调整过程与B_Tree一致。
+ * 节点中的关键码和孩子分别放在定长的long[]和Node[]中（各多留一个位置暂存上溢），
+ * 节点内查找直接在long[]上进行，不再装箱，也不经过Vector和compareTo；查找由NodeSearch.rank完成，
+ * 默认为无分支的二分。
+ */
+public class LongBTree {
+    private int size = 0;
+    private final int order;
+    private Node root;
+    private Node hot = null;
+
+    public LongBTree() {
+        this(3);
+    }
+
+    /**
+     * @param order 阶次，即每个节点至多拥有的孩子数，至少为3
+     */
+    public LongBTree(int order) {
+        if (order < 3) throw new IllegalArgumentException("order must be at least 3: " + order);
+        this.order = order;
+        this.root = new Node();
+    }
+
+    /**
+     * 按目标节点大小推算阶次，关键码宽度为8字节
+     */
+    public static LongBTree withNodeSize(int nodeBytes) {
+        return new LongBTree(B_Tree.orderFor(nodeBytes, Long.BYTES));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int order() {
+        return order;
+    }
+
+    public Node search(long e) {
+        Node v = root; hot = null;
+        while (v != null) {
+            int index = searchKey(v, e);
+            if ( (0 <= index) && (v.key[index] == e) ) {
+                return v;
+            }
+            hot = v;
+            v = v.child[index + 1];
+        }
+        return null;
+    }
+
+    public Node insert(long e) {
+        Node v = search(e);
+        if ( v != null) return v;
+        int index = searchKey(hot, e);
+        insertAt(hot, index + 1, e, null);
+        size++;
+        //解决上溢缺陷
+        solveOverflow(hot);
+        return root;
+    }
+
+    public boolean remove(long e) {
+        Node v = search(e);
+        if (v == null) return false;
+        int r = searchKey(v, e);
+        if (v.child[0] != null) {
+            Node u = v.child[r + 1];
+            while (u.child[0] != null) u = u.child[0];//找出e的后继
+            v.key[r] = u.key[0];//交换v和u
+            v = u; r = 0;
+        }
+        removeAt(v, r, r + 1);
+        size--;
+        solveUnderflow(v);//通过旋转和合并处理下溢问题
+        return true;
+    }
+
+    /**
+     * 中序遍历，依次把每个关键码交给visit处理
+     */
+    public void inOrderTraversal(LongConsumer visit) {
+        inOrderTraversal(root, visit);
+    }
+
+    private void inOrderTraversal(Node v, LongConsumer visit) {
+        if (v == null) return;
+        for (int i = 0; i < v.n; i++) {
+            inOrderTraversal(v.child[i], visit);
+            visit.accept(v.key[i]);
+        }
+        inOrderTraversal(v.child[v.n], visit);
+    }
+
+    /**
+     * 通过旋转或合并解决下溢
+     */
+    private void solveUnderflow(Node v) {
+        if ( (order + 1) / 2 <= v.n + 1 ) return;//节点未发生下溢
+        Node p = v.parent;
+        if ( p == null ) {
+            if ( (v.n == 0) && (v.child[0] != null) ) {
+                root = v.child[0];
+                root.parent = null;
+            }
+            return;
+        }
+        //确定v是p的第几个孩子
+        int r = 0; while (p.child[r] != v) r++;
+        //1, 右旋
+        if ( r > 0 ) {
+            Node ls = p.child[r - 1];
+            if ( (order + 1) / 2 < ls.n + 1 ) {
+                Node c = ls.child[ls.n];
+                insertAt(v, 0, p.key[r - 1], v.child[0]);
+                v.child[0] = c;
+                if ( c != null ) c.parent = v;
+                p.key[r - 1] = ls.key[ls.n - 1];
+                ls.child[ls.n] = null;
+                ls.n--;
+                return;
+            }
+        }
+        //2, 左旋
+        if ( p.n > r ) {
+            Node rs = p.child[r + 1];
+            if ( (order + 1) / 2 < rs.n + 1 ) {
+                Node c = rs.child[0];
+                insertAt(v, v.n, p.key[r], c);
+                if ( c != null ) c.parent = v;
+                p.key[r] = rs.key[0];
+                rs.child[0] = rs.child[1];
+                removeAt(rs, 0, 1);
+                return;
+            }
+        }
+        //3, 与左兄弟合并
+        if ( r > 0 ) {
+            Node ls = p.child[r - 1];
+            merge(ls, p.key[r - 1], v);
+            removeAt(p, r - 1, r);
+        }
+        //4, 与右兄弟合并
+        else {
+            Node rs = p.child[r + 1];
+            merge(v, p.key[r], rs);
+            removeAt(p, r, r + 1);
+        }
+        solveUnderflow(p);
+    }
+
+    //通过分裂解决上溢
+    private void solveOverflow(Node v) {
+        if ( order > v.n ) return;//当前节点未溢出
+        int s = order >> 1;
+        Node rightNode = new Node();
+        int moved = order - s - 1;
+        System.arraycopy(v.key, s + 1, rightNode.key, 0, moved);
+        System.arraycopy(v.child, s + 1, rightNode.child, 0, moved + 1);
+        rightNode.n = moved;
+        if (rightNode.child[0] != null) {
+            for (int j = 0; j <= moved; j++) rightNode.child[j].parent = rightNode;
+        }
+        long up = v.key[s];
+        for (int j = s + 1; j <= order; j++) v.child[j] = null;
+        v.n = s;
+        Node p = v.parent;
+        if ( p == null ) {
+            p = new Node();
+            root = p;
+            p.child[0] = v;
+            v.parent = p;
+        }
+        int r = 1 + searchKey(p, up);
+        insertAt(p, r, up, rightNode);
+        rightNode.parent = p;
+        solveOverflow(p);
+    }
+
+    /**
+     * 把分隔关键码sep和right整体追加到left末尾
+     */
+    private void merge(Node left, long sep, Node right) {
+        int n = left.n;
+        left.key[n] = sep;
+        System.arraycopy(right.key, 0, left.key, n + 1, right.n);
+        System.arraycopy(right.child, 0, left.child, n + 1, right.n + 1);
+        left.n = n + 1 + right.n;
+        for (int j = n + 1; j <= left.n; j++)
+            if (left.child[j] != null) left.child[j].parent = left;
+    }
+
+    /**
+     * 返回不大于e的最大关键码的秩，没有则返回-1
+     */
+    private int searchKey(Node v, long e) {
+        return NodeSearch.rank(v.key, v.n, e);
+    }
+
+    /**
+     * 在秩r处插入关键码e，其右侧孩子为c
+     */
+    private void insertAt(Node v, int r, long e, Node c) {
+        System.arraycopy(v.key, r, v.key, r + 1, v.n - r);
+        System.arraycopy(v.child, r + 1, v.child, r + 2, v.n - r);
+        v.key[r] = e;
+        v.child[r + 1] = c;
+        v.n++;
+    }
+
+    /**
+     * 删除秩为r的关键码和秩为c（r或r+1）的孩子
+     */
+    private void removeAt(Node v, int r, int c) {
+        System.arraycopy(v.key, r + 1, v.key, r, v.n - r - 1);
+        System.arraycopy(v.child, c + 1, v.child, c, v.n - c);
+        v.child[v.n] = null;
+        v.n--;
+    }
+
+    private class Node {
+        Node parent = null;
+        int n = 0;//关键码个数，孩子个数为n+1
+        long[] key = new long[order];
+        Node[] child = new Node[order + 1];
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Long B-Tree API");
+        LongBTree btree = new LongBTree();
+        btree.insert(1);
+        btree.insert(2);
+        btree.insert(3);
+        btree.remove(3);
+        System.out.println("size: " + btree.size());
+    }
+}
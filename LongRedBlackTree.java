@@ -0,0 +1,336 @@
+package tree;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 关键码为long的红黑树，结构与RedBlackTree完全相同。
+ * 关键码直接存放在节点中，比较用 < 和 ==，插入和查找不再装箱，也不经过compareTo的虚调用。
+ */
+public class LongRedBlackTree {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+    private Node root;
+    private Node hot;
+    private int size;
+    private class Node{
+        private long val;
+        private Node parent, left, right;
+        private int height;
+        private boolean color;//
+        public Node(long val, Node parent, boolean color) {
+            this.parent = parent;
+            this.val = val;
+            this.height = 0;
+            this.color = color;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Node search(long val) {
+        return search(root, val);
+    }
+
+    private Node search(Node root, long val) {
+        if (root == null || val == root.val) {
+            hot = null;
+            return root;
+        }
+        for (hot = root;;) {
+            Node currentNode = (val < hot.val) ? hot.left : hot.right;
+            if (null == currentNode || val == currentNode.val)
+                return currentNode;
+            hot = currentNode;
+        }
+    }
+
+    public Node insert(long val) {
+        Node x = search(val);
+        if (x != null) return x;
+        x = new Node(val, hot, RED);
+        if (root == null) root = x;
+        if (hot != null) {
+            if (val < hot.val)
+                hot.left = x;
+            else
+                hot.right = x;
+        }
+        size++;
+        Node oldNode = x;
+        solveDoubleRed(x);
+        return oldNode;
+    }
+
+    private void solveDoubleRed(Node x) {
+        if (x.parent == null) {
+            x.color = BLACK; x.height += 1; return;
+        }
+        Node p = x.parent;
+        if ( isBlack(p) ) return;
+        Node g = p.parent;
+        Node u = uncle(x);
+        if ( isBlack(u) ) {//叔父节点是黑的情况
+            if (isLeftChild(x) == isLeftChild(p))
+                p.color = BLACK;
+            else
+                x.color = BLACK;
+            g.color = RED;
+            Node gg = g.parent;
+            Node r = rotateAt(x);
+            r.parent = gg;
+            fromParentTo(gg, g, r);
+        } else {//叔父节点是红的情况
+            p.color = BLACK; p.height++;
+            u.color = BLACK; u.height++;
+            if ( g.parent != null ) g.color = RED;
+            solveDoubleRed(g);
+        }
+    }
+
+    /**                           b
+     * （3+4) - 重构            ↙    ↘︎
+     *                       a       c
+     *                     ↙︎  ↘︎     ↙︎ ↘︎
+     *                    t0  t1  t2   t3
+     */
+    private Node connect34(Node a, Node b, Node c,
+                               Node t0, Node t1, Node t2, Node t3 ) {
+        a.left  = t0; if (t0 != null) t0.parent = a;
+        a.right = t1; if (t1 != null) t1.parent = a;
+        c.left  = t2; if (t2 != null) t2.parent = c;
+        c.right = t3; if (t3 != null) t3.parent = c;
+        b.left  = a; a.parent = b;
+        b.right = c; c.parent = b;
+        updateHeight(a); updateHeight(c); updateHeight(b);
+        return b;
+    }
+
+    /**
+     * 旋转后由子树新根r替换原子树根g在父节点gg中的位置，gg为空则r成为树根
+     */
+    private void fromParentTo(Node gg, Node g, Node r) {
+        if (gg == null) root = r;
+        else if (gg.left == g) gg.left = r;
+        else gg.right = r;
+    }
+
+    /**
+     * 需要（3+4）旋转重构的场景包括以下四种：
+     *                    场景一            场景二           场景三            场景四
+     *                      G               G               G                G
+     *                    ↙︎  ↘︎            ↙︎  ↘︎            ↙︎  ↘︎             ↙︎  ↘︎
+     * @param v          P   c3         P    c3          c0   P           c0   P
+     * @return         ↙︎  ↘︎           ↙︎  ↘︎                  ↙︎  ↘︎             ↙︎  ↘︎
+     *                V    c2       c0    V                c1   V           V   c3
+     *              ↙︎ ↘︎                 ↙︎  ↘︎                  ↙︎  ↘︎        ↙︎  ↘︎
+     *            c0  c1              c1   c2               c2    c3    c1   c2
+     */
+    private Node rotateAt(Node v) {
+        Node p = v.parent, g = p.parent;
+        if (isLeftChild(p)) {
+            if (isLeftChild(v)) {
+                p.parent = g.parent;
+                return connect34(v, p, g, v.left, v.right, p.right, g.right);
+            } else {
+                v.parent = g.parent;
+                return connect34(p, v, g, p.left, v.left, v.right, g.right);
+            }
+        } else {
+            if (isRightChild(v)) {
+                p.parent = g.parent;
+                return connect34(g, p, v, g.left, p.left, v.left, v.right);
+            } else {
+                v.parent = g.parent;
+                return connect34(g, v, p, g.left, v.left, v.right, p.right);
+            }
+        }
+    }
+
+    /**
+     * 用B树思想理解红黑树的删除，逻辑就会很清晰。红黑树就是（2， 4）B树。
+     * @param val
+     * @return
+     */
+    public boolean remove(long val) {
+        Node node = search(val);
+        if (node == null) return false;
+        //r 为被删除的节点的替代则。
+        Node r = removeAt(node);
+        size--;
+        //删除后树为空 结束
+        if ( size <= 0 )
+            return true;
+
+        //被删除的节点是根，则重新设置新根的颜色和更新树高。
+        if ( hot == null ) {
+            root.color = BLACK;
+            updateHeight(root);
+            return true;
+        }
+        //删除完成后,被删节点的父节点hot依然平衡，则整棵树的黑高度依然没有改变，则不调整。
+        if ( blackHeightUpdated(hot) ) return true;
+        if ( isRed(r) ) {
+            r.color = BLACK;
+            r.height++;
+            return true;
+        }
+        solveDoubleBlack(r);
+        return true;
+    }
+
+    private void solveDoubleBlack(Node r) {
+        Node p = ( r != null ) ? r.parent : hot;//获取r的父亲
+        if ( p == null ) return;
+        Node s = (r == p.left) ? p.right : p.left;
+        if ( isBlack(s) ) { //兄弟s为黑
+            Node t = null;
+            if ( isRed(s.right) ) t = s.right;
+            if ( isRed(s.left) ) t = s.left;
+            if ( t != null ) {//兄弟s有红孩子
+                boolean oldColor = p.color;
+                Node gg = p.parent;
+                Node b = rotateAt(t);
+                fromParentTo(gg, p, b);
+                if ( hasLeftChild(b) ) b.left.color = BLACK; updateHeight(b.left);
+                if ( hasRightChild(b) ) b.right.color = BLACK; updateHeight(b.right);
+                b.color = oldColor; updateHeight(b);
+            } else { //黑s无红孩子
+                s.color = RED; s.height--;
+                if ( isRed(p) ) { p.color = BLACK; updateHeight(p); }
+                else {
+                    p.height--;
+                    solveDoubleBlack(p);
+                }
+            }
+        } else { //兄弟s为红
+            s.color = BLACK; p.color = RED;
+            Node t = isLeftChild(s) ? s.left : s.right;
+            hot = p;
+            Node gg = p.parent;
+            fromParentTo(gg, p, rotateAt(t));
+            solveDoubleBlack(r);
+        }
+    }
+
+    private Node uncle(Node x) {
+        Node p = x.parent;
+        if (isLeftChild(p)) return p.parent.right;
+        return p.parent.left;
+    }
+
+    private Node removeAt(Node x) {
+        Node w = x; //实际被删除的节点
+        Node succ = null; //实际被删除节点的接替者
+        if (!hasLeftChild(x)) {
+            succ = x.right;
+        } else if (!hasRightChild(x)) {
+            succ = x.left;
+        } else {
+            w = succ(x);
+            Node tmp = x;
+            x.val = w.val;
+            w.val = tmp.val;
+            Node u = w.parent;
+            if (u == x) succ = w.right;
+            else succ = w.right;
+        }
+        hot = w.parent;
+        if (succ != null) succ.parent = hot;
+        if (hot == null) root = succ;
+        else if (hot.left == w) hot.left = succ;
+        else hot.right = succ;
+        return succ;
+    }
+
+    private boolean hasLeftChild(Node x) {
+        if (x.left == null) return false;
+        return true;
+    }
+
+    private boolean hasRightChild(Node x) {
+        if (x.right == null) return false;
+        return true;
+    }
+
+    private boolean isLeftChild(Node x) {
+        return x.parent.left == x;
+    }
+
+    private boolean isRightChild(Node x) {
+        return x.parent.right == x;
+    }
+
+    //外部节点（null）视作黑节点
+    private boolean isRed(Node x) {
+        return x != null && x.color == RED;
+    }
+    private boolean isBlack(Node x) {
+        return !isRed(x);
+    }
+
+    /**
+     * 当前节点的直接后继节点，x为最大节点时返回null
+     */
+    private Node succ(Node x) {
+        Node s = null;
+        if (hasRightChild(x)) {
+            s = x.right;
+            while (s.left != null) s = s.left;
+        } else {
+            s = x;
+            while (s.parent != null && s.parent.right == s) s = s.parent;
+            s = s.parent;
+        }
+        return s;
+    }
+
+    /**
+     * 中序遍历，沿succ逐个访问，不需要辅助栈
+     */
+    public void inOrderTraversal(LongConsumer visit) {
+        if (root == null) return;
+        Node x = root;
+        while (x.left != null) x = x.left;
+        for (; x != null; x = succ(x)) visit.accept(x.val);
+    }
+
+    private void updateHeight(Node x) {
+        x.height = Math.max(stature(x.left), stature(x.right));
+        if (isBlack(x)) x.height++;
+    }
+
+    private int stature(Node x) {
+        return (x != null) ? x.height : 0;
+    }
+
+    private boolean blackHeightUpdated(Node x) {
+        return stature(x.left) == stature(x.right) &&
+        ((x).height == (isRed(x) ? stature(x.left) : stature(x.left) + 1));
+    }
+
+
+    public static void main(String args[]) {
+        System.out.println("Long Red Black Tree API");
+        LongRedBlackTree bst = new LongRedBlackTree();
+        bst.insert(15);
+        bst.insert(9);
+        bst.insert(10);
+        bst.insert(13);
+        bst.insert(18);
+        bst.insert(17);
+        bst.insert(20);
+        bst.insert(19);
+        bst.insert(50);
+        //bst.inOrderTraversal();
+        bst.remove(18);
+        //bst.remove(17);
+        //bst.inOrderTraversal();
+        System.out.println(bst.search(20).parent.val);
+        System.out.println(bst.search(20).left);
+        System.out.println(bst.search(20).right.val);
+    }
+
+}
@@ -0,0 +1,652 @@
+package tree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LSM树（log-structured merge tree）：为写入吞吐量而设计的long关键码集合。
+ *
+ * 写入不就地修改任何磁盘结构：插入、删除都只是把 关键码 -> 是否存在 写进内存中的memtable（RedBlackTreeMap），
+ * 删除写入的是一个墓碑（false）。memtable达到memtableLimit条时被冻结，换上一个新的memtable继续接收写入，
+ * 后台的写出线程把冻结的memtable按序写成磁盘上一个不可变的有序段（Run），整个过程只有顺序写。
+ * 写出尚未完成而新的memtable又满了时，写者等待，这是第一道背压。
+ *
+ * 合并在另一个线程上进行，不占用写出线程：一次大的合并进行期间，memtable照常写出到L0，写者不会因此在rotate()中等待。
+ * 代价是合并跟不上时L0会超过fanout个段；达到L0_STOP * fanout个时写出线程暂停，等合并消化掉L0，这是第二道背压。
+ *
+ * 有序段分层存放，采用leveled合并，L0例外：
+ *   L0   刚写出的段，互相之间有重叠，达到fanout个就连同L1一起合并成新的L1
+ *   Li   (i >= 1) 只有一个段，容量为 memtableLimit * fanout^i 条，超出时与L(i+1)合并
+ * 合并是多路归并，同一关键码只保留最新的一条；合并到最底层时墓碑也可以丢弃了。
+ * 一次查找至多依次查看 memtable、冻结的memtable、L0的段（通常不超过fanout个）、每层一个段，读放大有界。
+ *
+ * 每个段在内存中有一个Bloom过滤器（每个关键码10位，误判率约1%）和稀疏索引（每个块的首关键码）：
+ * 过滤器否定即跳过该段，否则按索引只读一个块（BLOCK条记录）。
+ *
+ * 段文件布局：记录 (long 关键码, byte 是否存在) × n，Bloom过滤器的位数组，稀疏索引，
+ * 末尾 n long、索引长度 int、位数组长度 int、哈希函数个数 int、magic long。
+ * 现有的段记在MANIFEST中，每次写出或合并后以"写临时文件 + 原子改名"整体替换。
+ * 新段写完、MANIFEST改名之后都fsync目录，MANIFEST提到的段一定已在目录中，被合并的输入要等新MANIFEST落盘才删除；
+ * 重新打开时按MANIFEST加载，不在其中的段文件（崩溃时写了一半的输出或已被合并的输入）直接删除。
+ * memtable本身不记日志，崩溃时尚未写出的写入会丢失；需要时可以像DiskBTree那样配一个预写日志。
+ *
+ * 所有公开方法用本对象的锁串行化；两个后台线程只在取输入、安装输出时持锁，读写段文件时不持锁。
+ * 合并安装输出时只摘掉它取走的那些输入段，期间新写出到L0的段原样保留（它们比合并的结果新）。
+ */
+public class LsmTree implements Closeable {
+    private static final String MANIFEST = "MANIFEST";
+    private static final int BLOCK = 128;//稀疏索引每块的记录数
+    private static final int ENTRY = 9;
+    private static final int BITS_PER_KEY = 10;
+    private static final int L0_STOP = 2;//L0的段数达到 L0_STOP * fanout 时暂停写出，等待合并
+
+    private final Path dir;
+    private final int memtableLimit;
+    private final int fanout;
+    private RedBlackTreeMap<Long, Boolean> memtable = new RedBlackTreeMap<>();
+    private RedBlackTreeMap<Long, Boolean> immutable;//冻结的memtable，后台正在把它写成L0的段
+    private final List<List<Run>> levels = new ArrayList<>();//L0按从新到旧排列
+    private final ExecutorService flusher;//把冻结的memtable写成L0的段
+    private final ExecutorService compactor;//各层之间的合并，与写出互不阻塞
+    private long nextRun;//下一个段文件的编号
+    private long bytesWritten;//写出的段文件总字节数，除以写入的数据量即写放大
+    private volatile RuntimeException failure;//后台任务失败的原因，此后所有操作都抛出它
+
+    public LsmTree(Path dir) {
+        this(dir, 1 << 16, 8);
+    }
+
+    /**
+     * @param memtableLimit memtable的条数上限
+     * @param fanout L0的段数上限，也是相邻两层的容量比
+     */
+    public LsmTree(Path dir, int memtableLimit, int fanout) {
+        if (memtableLimit < 1 || fanout < 2) throw new IllegalArgumentException("memtableLimit >= 1, fanout >= 2");
+        this.dir = dir;
+        this.memtableLimit = memtableLimit;
+        this.fanout = fanout;
+        levels.add(new ArrayList<>());
+        try {
+            Files.createDirectories(dir);
+            loadManifest();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.flusher = Executors.newSingleThreadExecutor(r -> daemon(r, "lsm-flush"));
+        this.compactor = Executors.newSingleThreadExecutor(r -> daemon(r, "lsm-compaction"));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * 插入e，不检查e是否已存在
+     */
+    public synchronized void insert(long e) {
+        write(e, Boolean.TRUE);
+    }
+
+    /**
+     * 删除e：写入一个墓碑，不检查e是否存在
+     */
+    public synchronized void remove(long e) {
+        write(e, Boolean.FALSE);
+    }
+
+    public synchronized boolean contains(long e) {
+        checkFailure();
+        Boolean live = memtable.get(e);
+        if (live == null && immutable != null) live = immutable.get(e);
+        for (int i = 0; live == null && i < levels.size(); i++) {
+            for (Run run : levels.get(i)) {
+                live = run.get(e);
+                if (live != null) break;
+            }
+        }
+        return live != null && live;
+    }
+
+    /**
+     * 段的总数
+     */
+    public synchronized int runCount() {
+        int n = 0;
+        for (List<Run> level : levels) n += level.size();
+        return n;
+    }
+
+    /**
+     * 各层的段数，从L0开始
+     */
+    public synchronized int[] runsPerLevel() {
+        int[] n = new int[levels.size()];
+        for (int i = 0; i < n.length; i++) n[i] = levels.get(i).size();
+        return n;
+    }
+
+    public synchronized long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * 把memtable写出，并等待后台的写出与合并全部完成
+     */
+    public void flush() {
+        synchronized (this) {
+            checkFailure();
+            if (!memtable.isEmpty()) rotate();
+        }
+        //写出任务在结束前已把合并任务排进compactor，先等写出，再等合并
+        try {
+            flusher.submit(() -> { }).get();
+            compactor.submit(() -> { }).get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        flusher.shutdown();
+        compactor.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (List<Run> level : levels)
+                for (Run run : level) run.close();
+        }
+    }
+
+    private void write(long e, Boolean live) {
+        checkFailure();
+        memtable.put(e, live);
+        if (memtable.size() >= memtableLimit) rotate();
+    }
+
+    /**
+     * 冻结memtable并交给后台写出；上一个冻结的memtable还没写完时等待
+     */
+    private void rotate() {
+        while (immutable != null) {
+            checkFailure();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for a memtable flush");
+            }
+        }
+        immutable = memtable;
+        memtable = new RedBlackTreeMap<>();
+        flusher.execute(this::flushImmutable);
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * 写出线程：把冻结的memtable写成L0最新的段，然后交给合并线程；L0积压过多时先等合并
+     */
+    private void flushImmutable() {
+        try {
+            RedBlackTreeMap<Long, Boolean> m;
+            Path file;
+            synchronized (this) {
+                while (levels.get(0).size() >= L0_STOP * fanout) {
+                    checkFailure();
+                    wait();
+                }
+                m = immutable;
+                file = newRunFile();
+            }
+            RunWriter w = new RunWriter(file, m.size());
+            for (Map.Entry<Long, Boolean> entry : m.entrySet()) w.add(entry.getKey(), entry.getValue());
+            Run run = w.finish();
+            synchronized (this) {
+                levels.get(0).add(0, run);
+                bytesWritten += run.bytes;
+                immutable = null;
+                saveManifest();
+                notifyAll();
+            }
+            compactor.execute(this::compactQuietly);
+        } catch (RuntimeException | IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new IllegalStateException("interrupted while waiting for a compaction"));
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException | IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Exception e) {
+        synchronized (this) {
+            failure = (e instanceof RuntimeException) ? (RuntimeException) e
+                    : new UncheckedIOException((IOException) e);
+            notifyAll();
+        }
+    }
+
+    /**
+     * 合并线程：L0满了或某层超出容量时，与下一层合并，直到各层都在容量之内
+     */
+    private void compact() throws IOException {
+        while (true) {
+            List<Run> inputs = new ArrayList<>();
+            int target;
+            Path file;
+            boolean bottom;
+            synchronized (this) {
+                //L0按段数、其余各层按条数计算超出容量的倍数，先合并超出最多的一层。
+                //合并期间L0还在增长，总是先处理L0的话深层会一直轮不到，越积越大，每次合并都要整层重写
+                target = -1;
+                double worst = 1;
+                if (levels.get(0).size() >= fanout) {
+                    target = 1;
+                    worst = (double) levels.get(0).size() / fanout;
+                }
+                long capacity = memtableLimit;
+                for (int i = 1; i < levels.size(); i++) {
+                    capacity *= fanout;
+                    if (levels.get(i).isEmpty()) continue;
+                    double score = (double) levels.get(i).get(0).count / capacity;
+                    if (score > worst) {
+                        target = i + 1;
+                        worst = score;
+                    }
+                }
+                if (target < 0) return;
+                if (levels.size() <= target) levels.add(new ArrayList<>());
+                for (int i = (target == 1) ? 0 : target - 1; i <= target; i++) inputs.addAll(levels.get(i));
+                bottom = true;
+                for (int i = target + 1; i < levels.size(); i++) bottom &= levels.get(i).isEmpty();
+                file = newRunFile();
+            }
+            Run out = merge(inputs, file, bottom);
+            synchronized (this) {
+                //合并期间写出线程可能又往L0加了新段，只摘掉取走的输入
+                for (int i = (target == 1) ? 0 : target - 1; i <= target; i++) levels.get(i).removeAll(inputs);
+                if (out != null) {
+                    levels.get(target).add(out);
+                    bytesWritten += out.bytes;
+                }
+                saveManifest();
+                notifyAll();//唤醒因L0积压而暂停的写出线程
+            }
+            //读者查段时持锁，安装之后旧的段不会再被访问
+            for (Run run : inputs) {
+                run.close();
+                Files.deleteIfExists(run.file);
+            }
+        }
+    }
+
+    /**
+     * 多路归并inputs（按从新到旧排列），同一关键码只保留最新的一条；bottom为true时丢弃墓碑。
+     * 结果为空时返回null
+     */
+    private Run merge(List<Run> inputs, Path file, boolean bottom) throws IOException {
+        long total = 0;
+        for (Run run : inputs) total += run.count;
+        RunWriter w = new RunWriter(file, total);
+        PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) ->
+                (a.key != b.key) ? Long.compare(a.key, b.key) : Integer.compare(a.age, b.age));
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                Cursor c = new Cursor(inputs.get(i), i);
+                cursors.add(c);
+                if (c.advance()) heap.add(c);
+            }
+            boolean any = false;
+            long last = 0;
+            while (!heap.isEmpty()) {
+                Cursor c = heap.poll();
+                if (!any || c.key != last) {//同一关键码中最先出堆的来自最新的段
+                    if (c.live || !bottom) w.add(c.key, c.live);
+                    any = true;
+                    last = c.key;
+                }
+                if (c.advance()) heap.add(c);
+            }
+        } finally {
+            for (Cursor c : cursors) c.in.close();
+        }
+        if (w.count == 0) {
+            w.abort();
+            return null;
+        }
+        return w.finish();
+    }
+
+    private Path newRunFile() {
+        return dir.resolve(String.format("%08d.run", nextRun++));
+    }
+
+    /**
+     * 每行一个段：层号 文件名，L0按从新到旧排列
+     */
+    private void saveManifest() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < levels.size(); i++)
+            for (Run run : levels.get(i)) sb.append(i).append(' ').append(run.file.getFileName()).append('\n');
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try {
+            try (FileChannel c = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) c.write(buf);
+                c.force(true);
+            }
+            Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            WriteAheadLog.syncDirectory(tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void loadManifest() throws IOException {
+        Set<String> live = new HashSet<>();
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (line.isEmpty()) continue;
+                String[] parts = line.split(" ");
+                int level = Integer.parseInt(parts[0]);
+                while (levels.size() <= level) levels.add(new ArrayList<>());
+                levels.get(level).add(Run.open(dir.resolve(parts[1])));
+                live.add(parts[1]);
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.run")) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                nextRun = Math.max(nextRun, Long.parseLong(name.substring(0, name.indexOf('.'))) + 1);
+                if (!live.contains(name)) Files.delete(f);
+            }
+        }
+    }
+
+    /**
+     * 磁盘上一个不可变的有序段，Bloom过滤器和稀疏索引常驻内存
+     */
+    private static final class Run implements Closeable {
+        private static final long MAGIC = 0x4C534D52554EL;//"LSMRUN"
+        private static final int FOOTER = 8 + 4 + 4 + 4 + 8;
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long count;
+        private final long[] index;//第b块的首关键码
+        private final BloomFilter bloom;
+        private final long bytes;
+
+        private Run(Path file, FileChannel channel, long count, long[] index, BloomFilter bloom, long bytes) {
+            this.file = file;
+            this.channel = channel;
+            this.count = count;
+            this.index = index;
+            this.bloom = bloom;
+            this.bytes = bytes;
+        }
+
+        static Run open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            long size = channel.size();
+            ByteBuffer footer = read(channel, size - FOOTER, FOOTER);
+            long count = footer.getLong(0);
+            int indexLength = footer.getInt(8);
+            int bloomWords = footer.getInt(12);
+            int hashes = footer.getInt(16);
+            if (footer.getLong(20) != MAGIC) throw new IllegalStateException(file + " is not an LSM run");
+            ByteBuffer meta = read(channel, count * ENTRY, 8 * (bloomWords + indexLength));
+            long[] bits = new long[bloomWords];
+            for (int i = 0; i < bloomWords; i++) bits[i] = meta.getLong();
+            long[] index = new long[indexLength];
+            for (int i = 0; i < indexLength; i++) index[i] = meta.getLong();
+            return new Run(file, channel, count, index, new BloomFilter(bits, hashes), size);
+        }
+
+        /**
+         * e在本段中的状态：true存在，false是墓碑，null表示本段没有e
+         */
+        Boolean get(long e) {
+            if (!bloom.mightContain(e)) return null;
+            int lo = 0, hi = index.length;//找出首关键码不大于e的最后一块
+            while (lo < hi) {
+                int mi = (lo + hi) >>> 1;
+                if (e < index[mi]) hi = mi;
+                else lo = mi + 1;
+            }
+            int b = lo - 1;
+            if (b < 0) return null;
+            int n = (int) Math.min(BLOCK, count - (long) b * BLOCK);
+            ByteBuffer block;
+            try {
+                block = read(channel, (long) b * BLOCK * ENTRY, n * ENTRY);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            lo = 0;
+            hi = n;
+            while (lo < hi) {
+                int mi = (lo + hi) >>> 1;
+                long k = block.getLong(mi * ENTRY);
+                if (k == e) return block.get(mi * ENTRY + 8) != 0;
+                if (e < k) hi = mi;
+                else lo = mi + 1;
+            }
+            return null;
+        }
+
+        private static ByteBuffer read(FileChannel channel, long pos, int length) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, pos + buf.position()) < 0) throw new IOException("unexpected end of run");
+            }
+            buf.flip();
+            return buf;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * 顺序写出一个段：记录边写边进Bloom过滤器和稀疏索引，最后写过滤器、索引和末尾，fsync文件和目录
+     */
+    private static final class RunWriter {
+        private final Path file;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final BloomFilter bloom;
+        private long[] index = new long[16];
+        private long count;
+
+        RunWriter(Path file, long expected) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            this.bloom = new BloomFilter(expected, BITS_PER_KEY);
+        }
+
+        void add(long key, boolean live) throws IOException {
+            if (count % BLOCK == 0) {
+                int b = (int) (count / BLOCK);
+                if (b == index.length) index = Arrays.copyOf(index, 2 * b);
+                index[b] = key;
+            }
+            out.writeLong(key);
+            out.writeByte(live ? 1 : 0);
+            bloom.add(key);
+            count++;
+        }
+
+        Run finish() throws IOException {
+            int indexLength = (int) ((count + BLOCK - 1) / BLOCK);
+            for (long word : bloom.bits) out.writeLong(word);
+            for (int b = 0; b < indexLength; b++) out.writeLong(index[b]);
+            out.writeLong(count);
+            out.writeInt(indexLength);
+            out.writeInt(bloom.bits.length);
+            out.writeInt(bloom.hashes);
+            out.writeLong(Run.MAGIC);
+            out.flush();
+            channel.force(true);
+            WriteAheadLog.syncDirectory(file);
+            long bytes = channel.size();
+            channel.close();
+            return new Run(file, FileChannel.open(file, StandardOpenOption.READ), count,
+                    Arrays.copyOf(index, indexLength), bloom, bytes);
+        }
+
+        void abort() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * 归并时顺序读取一个段的游标；age为段在输入中的次序，越小越新
+     */
+    private static final class Cursor {
+        private final DataInputStream in;
+        private final int age;
+        private long remaining;
+        private long key;
+        private boolean live;
+
+        Cursor(Run run, int age) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), 1 << 16));
+            this.age = age;
+            this.remaining = run.count;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            key = in.readLong();
+            live = in.readByte() != 0;
+            return true;
+        }
+    }
+
+    /**
+     * Bloom过滤器：k个哈希由一个64位混合值的高低两半按 h1 + i*h2 派生
+     */
+    static final class BloomFilter {
+        private final long[] bits;
+        private final int hashes;
+
+        BloomFilter(long expected, int bitsPerKey) {
+            long m = Math.max(64, expected * bitsPerKey);
+            this.bits = new long[(int) ((m + 63) >>> 6)];
+            this.hashes = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2)));
+        }
+
+        BloomFilter(long[] bits, int hashes) {
+            this.bits = bits;
+            this.hashes = hashes;
+        }
+
+        void add(long key) {
+            long h = mix(key);
+            int h1 = (int) h, h2 = (int) (h >>> 32);
+            long m = (long) bits.length << 6;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, m);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(long key) {
+            long h = mix(key);
+            int h1 = (int) h, h2 = (int) (h >>> 32);
+            long m = (long) bits.length << 6;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, m);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        /**
+         * MurmurHash3的64位终结混合
+         */
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+        System.out.println("LSM Tree API");
+        Path dir = Files.createTempDirectory("lsm");
+        try (LsmTree lsm = new LsmTree(dir, 10000, 4)) {
+            for (long i = 0; i < 200000; i++) lsm.insert(i * 7919 % 200003);
+            for (long i = 0; i < 200000; i += 2) lsm.remove(i * 7919 % 200003);
+            lsm.flush();
+            System.out.println("runs per level: " + Arrays.toString(lsm.runsPerLevel())
+                    + "  write amplification: " + String.format("%.2f", lsm.bytesWritten() / (300000.0 * ENTRY)));
+        }
+        try (LsmTree lsm = new LsmTree(dir, 10000, 4)) {
+            System.out.println("contains(7919): " + lsm.contains(7919) + "  contains(0): " + lsm.contains(0));
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) Files.delete(f);
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,73 @@
+package tree;
+
+/**
+ * 节点池：二叉树的节点不再是独立的对象，而是池中的一个下标，每个节点有以下字段：
+ *   key     关键码
+ *   left    左孩子下标
+ *   right   右孩子下标
+ *   parent  父节点下标
+ *   meta    高度等附加信息，由具体的树决定如何使用（AVL存高度，红黑树把黑高度和颜色压在一起）
+ * 下标0是哨兵NIL，代表空节点，字段初始值0恰好表示“没有孩子/没有父亲”，NIL的meta始终为0。
+ * 被删除的节点经由left链成空闲链表，之后的插入优先复用。
+ * 字段放在哪里由子类决定：HeapNodePool用堆上的平行数组，OffHeapNodePool用堆外内存。
+ */
+abstract class NodePool {
+    static final int NIL = 0;
+
+    private int top = 1;//从未使用过的最小下标
+    private int freeList = NIL;
+    private int count = 0;
+
+    /**
+     * 池中存活的节点数
+     */
+    int count() {
+        return count;
+    }
+
+    int allocate(long k, int p) {
+        int x;
+        if (freeList != NIL) {
+            x = freeList;
+            freeList = left(x);
+        } else {
+            if (top == slots()) grow();
+            x = top++;
+        }
+        setKey(x, k);
+        setParent(x, p);
+        setLeft(x, NIL);
+        setRight(x, NIL);
+        setMeta(x, 0);
+        count++;
+        return x;
+    }
+
+    void free(int x) {
+        setLeft(x, freeList);
+        freeList = x;
+        count--;
+    }
+
+    /**
+     * 当前可用的槽位数（含NIL）
+     */
+    abstract int slots();
+
+    /**
+     * 扩充槽位，已有节点的下标保持不变
+     */
+    abstract void grow();
+
+    abstract long key(int x);
+    abstract int left(int x);
+    abstract int right(int x);
+    abstract int parent(int x);
+    abstract int meta(int x);
+
+    abstract void setKey(int x, long k);
+    abstract void setLeft(int x, int c);
+    abstract void setRight(int x, int c);
+    abstract void setParent(int x, int p);
+    abstract void setMeta(int x, int m);
+}
@@ -0,0 +1,81 @@
+package tree;
+
+/**
+ * B树节点内的查找：在long[]的前n个（严格递增的）关键码中找出不大于e的最后一个关键码的秩，没有则为-1。
+ * 三种实现，结果相同：
+ * 1, binary：普通的二分，每层一个难以预测的分支，猜错一次约损失十几个时钟周期；
+ * 2, branchless：每次把区间缩小一半，只根据比较结果选择新的起点，循环次数只取决于n，
+ *    JIT把选择编译为条件传送，没有需要预测的分支；
+ * 3, vector：先像branchless那样把区间缩小到几个向量宽度以内，再用Vector API一次比较一整个向量，
+ *    数出不大于e的关键码个数。关键码有序，窗口之前的都不大于e，个数加上窗口的起点就是答案。
+ *
+ * 16 ~ 256个关键码的节点上，branchless比binary快一倍多；vector与branchless相当（见NodeSearchBenchmark）：
+ * 缩小到窗口之前的几步与branchless相同，省下的最后几次比较又被掩码计数的开销抵消。
+ * 因此rank默认用branchless，以-Dtree.vectorNodeSearch=true启用vector。
+ * Vector API在JDK 17中仍是孵化模块，需要以--add-modules jdk.incubator.vector编译和运行，
+ * 运行时没有该模块则始终用branchless。
+ */
+public final class NodeSearch {
+    private static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    private static final boolean VECTOR = VECTOR_AVAILABLE && Boolean.getBoolean("tree.vectorNodeSearch");
+
+    private NodeSearch() {
+    }
+
+    /**
+     * rank是否使用向量化的实现
+     */
+    public static boolean vectorized() {
+        return VECTOR;
+    }
+
+    /**
+     * LongBTree使用的实现：branchless，或按上面的配置为vector
+     */
+    public static int rank(long[] key, int n, long e) {
+        return VECTOR ? VectorNodeSearch.rank(key, n, e) : branchless(key, n, e);
+    }
+
+    public static int binary(long[] key, int n, long e) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            if (e < key[mi]) hi = mi;
+            else lo = mi + 1;
+        }
+        return lo - 1;
+    }
+
+    /**
+     * 不大于e的关键码个数始终在[base, base + len]中：
+     * key[base + half - 1]不大于e时前half个都不大于e，起点右移half；否则个数不超过base + half - 1，起点不动。
+     * 两种情形区间长度都减去half，len为1时再比较一次key[base]即可确定
+     */
+    public static int branchless(long[] key, int n, long e) {
+        if (n == 0) return -1;
+        int base = 0, len = n;
+        while (len > 1) {
+            int half = len >>> 1;
+            base = (key[base + half - 1] <= e) ? base + half : base;
+            len -= half;
+        }
+        return base + ((key[base] <= e) ? 1 : 0) - 1;
+    }
+
+    /**
+     * 向量化的实现，没有Vector API时抛出UnsupportedOperationException
+     */
+    public static int vector(long[] key, int n, long e) {
+        if (!VECTOR_AVAILABLE) throw new UnsupportedOperationException("jdk.incubator.vector is not available");
+        return VectorNodeSearch.rank(key, n, e);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Node Search API");
+        long[] key = {3, 6, 9, 12, 15, 18, 21, 24, 27, 30, 33, 36, 39, 42, 45, 48, 51, 54, 57, 60};
+        System.out.println("vectorized: " + vectorized());
+        for (long e : new long[]{2, 3, 31, 60, 61})
+            System.out.println(e + ": binary " + binary(key, key.length, e) + "  branchless " + branchless(key, key.length, e)
+                    + "  rank " + rank(key, key.length, e));
+    }
+}
@@ -0,0 +1,79 @@
+package tree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 把节点放在堆外的节点池。
+ * 内存按块（chunk）分配，每块是一个直接ByteBuffer，容纳 2^CHUNK_BITS 个节点；
+ * 下标x的高位选块，低位乘以节点大小得到块内偏移，扩容只是追加新块，已有节点不搬动。
+ * 堆上只剩下每块一个ByteBuffer对象，GC的开销与节点数无关。
+ * 块计入JVM的直接内存，总量受 -XX:MaxDirectMemorySize 限制（默认与最大堆相同），超出时allocateDirect抛OutOfMemoryError。
+ *
+ * 节点布局（24字节，本机字节序）：
+ *   [0, 8)   key
+ *   [8, 12)  left
+ *   [12, 16) right
+ *   [16, 20) parent
+ *   [20, 24) meta
+ */
+final class OffHeapNodePool extends NodePool {
+    private static final int NODE_BYTES = 24;
+    private static final int KEY = 0, LEFT = 8, RIGHT = 12, PARENT = 16, META = 20;
+    private static final int CHUNK_BITS = 20;//每块约24MB
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int firstChunkNodes;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    OffHeapNodePool(int initialCapacity) {
+        //节点不多时不必一次申请一整块
+        this.firstChunkNodes = Math.min(1 << CHUNK_BITS, Integer.highestOneBit(Math.max(2, initialCapacity)) << 1);
+        while (slots() <= initialCapacity) grow();
+    }
+
+    @Override
+    int slots() {
+        return chunks.length == 0 ? 0 : ((chunks.length - 1) << CHUNK_BITS) + chunks[chunks.length - 1].capacity() / NODE_BYTES;
+    }
+
+    @Override
+    void grow() {
+        int last = chunks.length - 1;
+        if (last >= 0 && chunks[last].capacity() < NODE_BYTES << CHUNK_BITS) {
+            //最后一块还没满一整块，换成两倍大小的块
+            int nodes = Math.min(1 << CHUNK_BITS, chunks[last].capacity() / NODE_BYTES * 2);
+            ByteBuffer bigger = newChunk(nodes);
+            bigger.put(chunks[last].duplicate().clear());
+            chunks[last] = bigger;
+            return;
+        }
+        chunks = Arrays.copyOf(chunks, chunks.length + 1);
+        chunks[chunks.length - 1] = newChunk(chunks.length == 1 ? firstChunkNodes : 1 << CHUNK_BITS);
+    }
+
+    private static ByteBuffer newChunk(int nodes) {
+        return ByteBuffer.allocateDirect(nodes * NODE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer chunk(int x) {
+        return chunks[x >>> CHUNK_BITS];
+    }
+
+    private static int offset(int x) {
+        return (x & CHUNK_MASK) * NODE_BYTES;
+    }
+
+    @Override long key(int x) { return chunk(x).getLong(offset(x) + KEY); }
+    @Override int left(int x) { return chunk(x).getInt(offset(x) + LEFT); }
+    @Override int right(int x) { return chunk(x).getInt(offset(x) + RIGHT); }
+    @Override int parent(int x) { return chunk(x).getInt(offset(x) + PARENT); }
+    @Override int meta(int x) { return chunk(x).getInt(offset(x) + META); }
+
+    @Override void setKey(int x, long k) { chunk(x).putLong(offset(x) + KEY, k); }
+    @Override void setLeft(int x, int c) { chunk(x).putInt(offset(x) + LEFT, c); }
+    @Override void setRight(int x, int c) { chunk(x).putInt(offset(x) + RIGHT, c); }
+    @Override void setParent(int x, int p) { chunk(x).putInt(offset(x) + PARENT, p); }
+    @Override void setMeta(int x, int m) { chunk(x).putInt(offset(x) + META, m); }
+}
@@ -0,0 +1,367 @@
+package tree;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 可持久化红黑树：更新不修改任何已发布的节点，而是复制从树根到被改处的整条路径，
+ * 其余子树由新旧两个版本共享，每次更新只新建O(log n)个节点。snapshot()只需记下当时的树根，O(1)；
+ * 快照此后永远不变，长时间运行的读者拿着它遍历，既不会看到写者的中间状态，也不会阻塞写者。
+ *
+ * 与RedBlackTree的区别：
+ * 1, 节点被多个版本共享，不能有parent指针，也不能有共享的hot；查找路径放在递归栈里，迭代用显式的栈。
+ * 2, 采用左倾红黑树（Sedgewick的LLRB）：红链接只出现在左侧，插入、删除都是一趟自顶向下的递归，
+ *    回溯时以旋转和颜色翻转修正，修正只涉及路径上的节点及其孩子，正好与路径复制相合。
+ * 3, 每次更新带一个新的edit标记，本次新建或复制出的节点带同一个标记，可以就地修改；
+ *    标记不同的节点属于已发布的版本，修改前先复制（own）。同一节点在一次更新中至多复制一次。
+ *
+ * 版本即Snapshot：Snapshot.insert、Snapshot.remove返回新的版本，原版本不变，调用者自己决定保留哪些版本。
+ * 树本身是一个可以被多个线程共享的"当前版本"：insert、remove在当前版本上更新并发布，返回是否有改动；
+ * 写者之间用本对象的锁串行化，新版本构造完毕后写入volatile的root一次性发布；
+ * 读者只读root，不加锁，读到的总是某个完整的版本。
+ */
+public class PersistentRedBlackTree<T extends Comparable<T>> implements Iterable<T> {
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private volatile Node root;
+    private final Comparator<? super T> comparator;
+
+    private final class Node {
+        private T val;
+        private Node left, right;
+        private boolean color;
+        private int size;//以该节点为根的子树的规模
+        private final Object edit;//创建该节点的那次更新
+
+        private Node(T val, boolean color, int size, Object edit) {
+            this.val = val;
+            this.color = color;
+            this.size = size;
+            this.edit = edit;
+        }
+    }
+
+    public PersistentRedBlackTree() {
+        this(Comparator.naturalOrder());
+    }
+
+    public PersistentRedBlackTree(Comparator<? super T> comparator) {
+        if (comparator == null) throw new NullPointerException("comparator");
+        this.comparator = comparator;
+    }
+
+    /**
+     * 当前版本的只读快照，O(1)；之后的插入、删除不影响快照
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(root);
+    }
+
+    public int size() {
+        return sizeOf(root);
+    }
+
+    public boolean contains(T val) {
+        return search(root, val) != null;
+    }
+
+    /**
+     * 在当前版本中插入val并发布新版本，已存在时返回false，不产生新版本
+     */
+    public synchronized boolean insert(T val) {
+        Node r = insert(root, val);
+        if (r == root) return false;
+        root = r;
+        return true;
+    }
+
+    /**
+     * 在当前版本中删除val并发布新版本，不存在时返回false，不产生新版本
+     */
+    public synchronized boolean remove(T val) {
+        Node r = remove(root, val);
+        if (r == root) return false;
+        root = r;
+        return true;
+    }
+
+    /**
+     * 在以r为根的版本中插入val，返回新版本的树根；val已存在时原样返回r
+     */
+    private Node insert(Node r, T val) {
+        Object edit = new Object();
+        Node n = insertAt(r, val, edit);
+        if (n != r) n.color = BLACK;//n是本次新建或复制的节点
+        return n;
+    }
+
+    /**
+     * 在以r为根的版本中删除val，返回新版本的树根（可能为null）；val不存在时原样返回r
+     */
+    private Node remove(Node r, T val) {
+        if (search(r, val) == null) return r;
+        Object edit = new Object();
+        r = own(r, edit);
+        if (!isRed(r.left) && !isRed(r.right)) r.color = RED;
+        r = removeAt(r, val, edit);
+        if (r != null) r.color = BLACK;
+        return r;
+    }
+
+    private Node search(Node x, T val) {
+        while (x != null) {
+            int cmp = comparator.compare(val, x.val);
+            if (cmp == 0) return x;
+            x = (cmp < 0) ? x.left : x.right;
+        }
+        return null;
+    }
+
+    /**
+     * 在以h为根的子树中插入val，返回新的子树根；val已存在时原样返回h，路径上的节点都不复制。
+     * 以下各方法中的edit是本次更新的标记，带有它的节点可以就地修改
+     */
+    private Node insertAt(Node h, T val, Object edit) {
+        if (h == null) return new Node(val, RED, 1, edit);
+        int cmp = comparator.compare(val, h.val);
+        if (cmp == 0) return h;
+        if (cmp < 0) {
+            Node l = insertAt(h.left, val, edit);
+            if (l == h.left) return h;
+            h = own(h, edit);
+            h.left = l;
+        } else {
+            Node r = insertAt(h.right, val, edit);
+            if (r == h.right) return h;
+            h = own(h, edit);
+            h.right = r;
+        }
+        return balance(h, edit);
+    }
+
+    /**
+     * 在以h为根的子树中删除val（调用前已确认存在），h已属于本次更新；
+     * 下行时保证当前节点或其左孩子是红的，最终被摘掉的总是一个红色的底层节点
+     */
+    private Node removeAt(Node h, T val, Object edit) {
+        if (comparator.compare(val, h.val) < 0) {
+            if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h, edit);
+            h.left = removeAt(own(h.left, edit), val, edit);
+        } else {
+            if (isRed(h.left)) h = rotateRight(h, edit);
+            if (comparator.compare(val, h.val) == 0 && h.right == null) return null;
+            if (!isRed(h.right) && !isRed(h.right.left)) h = moveRedRight(h, edit);
+            if (comparator.compare(val, h.val) == 0) {
+                //用右子树的最小关键码顶替，再从右子树中删掉它
+                Node m = h.right;
+                while (m.left != null) m = m.left;
+                h.val = m.val;
+                h.right = removeMin(own(h.right, edit), edit);
+            } else {
+                h.right = removeAt(own(h.right, edit), val, edit);
+            }
+        }
+        return balance(h, edit);
+    }
+
+    private Node removeMin(Node h, Object edit) {
+        if (h.left == null) return null;
+        if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h, edit);
+        h.left = removeMin(own(h.left, edit), edit);
+        return balance(h, edit);
+    }
+
+    /**
+     * x属于本次更新时原样返回，否则返回它的副本；副本与x共享两个孩子
+     */
+    private Node own(Node x, Object edit) {
+        if (x.edit == edit) return x;
+        Node c = new Node(x.val, x.color, x.size, edit);
+        c.left = x.left;
+        c.right = x.right;
+        return c;
+    }
+
+    /**
+     * 回溯时的修正：右倾的红链接转到左侧，连续两条左红链接右旋，左右都红则翻转颜色（相当于4-节点分裂）
+     */
+    private Node balance(Node h, Object edit) {
+        if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h, edit);
+        if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h, edit);
+        if (isRed(h.left) && isRed(h.right)) flipColors(h, edit);
+        h.size = sizeOf(h.left) + sizeOf(h.right) + 1;
+        return h;
+    }
+
+    /**
+     * 借一个节点给左孩子：翻转颜色与兄弟合并，兄弟的左孩子是红的则经两次旋转借过来
+     */
+    private Node moveRedLeft(Node h, Object edit) {
+        flipColors(h, edit);
+        if (isRed(h.right.left)) {
+            h.right = rotateRight(h.right, edit);
+            h = rotateLeft(h, edit);
+            flipColors(h, edit);
+        }
+        return h;
+    }
+
+    private Node moveRedRight(Node h, Object edit) {
+        flipColors(h, edit);
+        if (isRed(h.left.left)) {
+            h = rotateRight(h, edit);
+            flipColors(h, edit);
+        }
+        return h;
+    }
+
+    private Node rotateLeft(Node h, Object edit) {
+        h = own(h, edit);
+        Node x = own(h.right, edit);
+        h.right = x.left;
+        x.left = h;
+        x.color = h.color;
+        h.color = RED;
+        x.size = h.size;
+        h.size = sizeOf(h.left) + sizeOf(h.right) + 1;
+        return x;
+    }
+
+    private Node rotateRight(Node h, Object edit) {
+        h = own(h, edit);
+        Node x = own(h.left, edit);
+        h.left = x.right;
+        x.right = h;
+        x.color = h.color;
+        h.color = RED;
+        x.size = h.size;
+        h.size = sizeOf(h.left) + sizeOf(h.right) + 1;
+        return x;
+    }
+
+    /**
+     * h及其两个孩子都改变颜色，h已属于本次更新
+     */
+    private void flipColors(Node h, Object edit) {
+        h.left = own(h.left, edit);
+        h.right = own(h.right, edit);
+        h.color = !h.color;
+        h.left.color = !h.left.color;
+        h.right.color = !h.right.color;
+    }
+
+    private boolean isRed(Node x) {
+        return x != null && x.color == RED;
+    }
+
+    private int sizeOf(Node x) {
+        return (x != null) ? x.size : 0;
+    }
+
+    /**
+     * 当前版本的升序迭代器，等同于snapshot().iterator()
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * 某一版本，只持有该版本的树根，与写者完全无关；版本本身不可变，更新得到的是新的版本
+     */
+    public final class Snapshot implements Iterable<T> {
+        private final Node root;
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        /**
+         * 插入val得到的新版本，与本版本共享未改动的子树；val已存在时返回本版本自身
+         */
+        public Snapshot insert(T val) {
+            Node r = PersistentRedBlackTree.this.insert(root, val);
+            return (r == root) ? this : new Snapshot(r);
+        }
+
+        /**
+         * 删除val得到的新版本；val不存在时返回本版本自身
+         */
+        public Snapshot remove(T val) {
+            Node r = PersistentRedBlackTree.this.remove(root, val);
+            return (r == root) ? this : new Snapshot(r);
+        }
+
+        public int size() {
+            return sizeOf(root);
+        }
+
+        public boolean contains(T val) {
+            return search(root, val) != null;
+        }
+
+        /**
+         * 升序迭代器：没有parent指针，沿途的祖先放在显式的栈里，栈深不超过树高
+         */
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private final ArrayDeque<Node> stack = new ArrayDeque<>();
+
+                {
+                    pushLeft(root);
+                }
+
+                private void pushLeft(Node x) {
+                    for (; x != null; x = x.left) stack.push(x);
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !stack.isEmpty();
+                }
+
+                @Override
+                public T next() {
+                    if (stack.isEmpty()) throw new NoSuchElementException();
+                    Node x = stack.pop();
+                    pushLeft(x.right);
+                    return x.val;
+                }
+            };
+        }
+
+        /**
+         * 中序遍历，依次把每个关键码交给visit处理
+         */
+        public void inOrderTraversal(Consumer<? super T> visit) {
+            for (T val : this) visit.accept(val);
+        }
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Persistent Red-Black Tree API");
+        PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+        for (int i = 1; i <= 10; i++) tree.insert(i);
+        PersistentRedBlackTree<Integer>.Snapshot v1 = tree.snapshot();
+        tree.remove(3);
+        tree.remove(7);
+        tree.insert(11);
+        System.out.print("snapshot: ");
+        for (Integer k : v1) System.out.print(k + "   ");
+        System.out.println();
+        System.out.print("current : ");
+        for (Integer k : tree) System.out.print(k + "   ");
+        System.out.println();
+        //不经过共享的当前版本，直接由一个版本得到另一个版本
+        PersistentRedBlackTree<Integer>.Snapshot v2 = v1.remove(1).insert(0);
+        System.out.print("v1 -1 +0: ");
+        for (Integer k : v2) System.out.print(k + "   ");
+        System.out.println();
+        System.out.println("v1 unchanged: " + v1.size() + " keys, v1.insert(5) == v1: " + (v1.insert(5) == v1));
+    }
+}
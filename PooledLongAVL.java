@@ -0,0 +1,229 @@
+package tree;
+
+import java.util.function.LongConsumer;
+
+import static tree.NodePool.NIL;
+
+/**
+ * 节点存放在NodePool中的AVL树，关键码为long。
+ * 算法与AVL逐行对应，只是把 x.left 换成 pool.left(x)，null 换成 NIL，meta中存放高度。
+ * 节点是数组下标而不是对象，删除的节点进入空闲链表，插入时复用。
+ */
+public class PooledLongAVL {
+    private final NodePool pool;
+    private int root = NIL;
+    private int hot;//指向当前节点的父节点
+    private boolean isLeftChild;//true表示当前节点是父节点的左孩子
+
+    public PooledLongAVL() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity 预先分配的节点数，已知规模时可避免扩容
+     */
+    public PooledLongAVL(int initialCapacity) {
+        this.pool = new HeapNodePool(initialCapacity);
+    }
+
+    public int size() {
+        return pool.count();
+    }
+
+    public boolean search(long val) {
+        return search(root, val) != NIL;
+    }
+
+    private int search(int root, long val) {
+        if (root == NIL || val == pool.key(root)) {
+            hot = NIL;
+            return root;
+        }
+        for (hot = root;;) {
+            int currentNode;
+            if (val < pool.key(hot)) {
+                isLeftChild = true;
+                currentNode = pool.left(hot);
+            } else {
+                isLeftChild = false;
+                currentNode = pool.right(hot);
+            }
+            if (NIL == currentNode || val == pool.key(currentNode))
+                return currentNode;
+            hot = currentNode;
+        }
+    }
+
+    private int tallerChild(int x) {
+        int lHeight = stature(pool.left(x));
+        int rHeight = stature(pool.right(x));
+        if (lHeight > rHeight) return pool.left(x);
+        else if (lHeight < rHeight) return pool.right(x);
+        else return isLeftChild(x) ? pool.left(x) : pool.right(x);
+    }
+
+    public boolean insert(long val) {
+        if (search(root, val) != NIL) return false;
+        int newNode = pool.allocate(val, hot);
+        if (root == NIL) {
+            root = newNode;
+            return true;
+        }
+        if (isLeftChild)
+            pool.setLeft(hot, newNode);
+        else
+            pool.setRight(hot, newNode);
+        //newNode的父亲hot若增高，则其祖父有可能失衡
+        for (int g = hot; g != NIL; g = pool.parent(g)) {
+            if (!avlIsBalance(g)) {
+                rebalance(g);
+                break;
+            }
+            updateHeight(g);
+        }
+        return true;
+    }
+
+    public boolean remove(long val) {
+        int node = search(root, val);
+        if (node == NIL) return false;
+        removeAt(node);
+        for (int g = hot; g != NIL; g = pool.parent(g)) {
+            if (!avlIsBalance(g)) g = rebalance(g);
+            updateHeight(g);
+        }
+        return true;
+    }
+
+    /**
+     * 对失衡的g做（3+4）重构，并把新的子树根接回原处
+     */
+    private int rebalance(int g) {
+        int gParent = pool.parent(g);
+        boolean isLC = gParent != NIL && pool.left(gParent) == g;
+        int r = rotateAt(tallerChild(tallerChild(g)));
+        //如果旋转操作触及到了根节点，就要替换根节点
+        if (gParent == NIL) root = r;
+        else if (isLC) pool.setLeft(gParent, r);
+        else pool.setRight(gParent, r);
+        return r;
+    }
+
+    /**                           b
+     * （3+4) - 重构            ↙    ↘︎
+     *                       a       c
+     *                     ↙︎  ↘︎     ↙︎ ↘︎
+     *                    t0  t1  t2   t3
+     */
+    private int connect34(int a, int b, int c, int t0, int t1, int t2, int t3) {
+        pool.setLeft(a, t0);  if (t0 != NIL) pool.setParent(t0, a);
+        pool.setRight(a, t1); if (t1 != NIL) pool.setParent(t1, a);
+        pool.setLeft(c, t2);  if (t2 != NIL) pool.setParent(t2, c);
+        pool.setRight(c, t3); if (t3 != NIL) pool.setParent(t3, c);
+        pool.setLeft(b, a);  pool.setParent(a, b);
+        pool.setRight(b, c); pool.setParent(c, b);
+        updateHeight(a); updateHeight(c); updateHeight(b);
+        return b;
+    }
+
+    /**
+     * 四种（3+4）重构场景见AVL.rotateAt
+     */
+    private int rotateAt(int v) {
+        int p = pool.parent(v), g = pool.parent(p);
+        if (isLeftChild(p)) {
+            if (isLeftChild(v)) {
+                pool.setParent(p, pool.parent(g));
+                return connect34(v, p, g, pool.left(v), pool.right(v), pool.right(p), pool.right(g));
+            } else {
+                pool.setParent(v, pool.parent(g));
+                return connect34(p, v, g, pool.left(p), pool.left(v), pool.right(v), pool.right(g));
+            }
+        } else {
+            if (!isLeftChild(v)) {
+                pool.setParent(p, pool.parent(g));
+                return connect34(g, p, v, pool.left(g), pool.left(p), pool.left(v), pool.right(v));
+            } else {
+                pool.setParent(v, pool.parent(g));
+                return connect34(g, v, p, pool.left(g), pool.left(v), pool.right(v), pool.right(p));
+            }
+        }
+    }
+
+    private void removeAt(int x) {
+        int w = x; //实际被删除的节点
+        int succ; //实际被删除节点的接替者
+        if (pool.left(x) == NIL) {
+            succ = pool.right(x);
+        } else if (pool.right(x) == NIL) {
+            succ = pool.left(x);
+        } else {
+            w = succ(x);
+            pool.setKey(x, pool.key(w));
+            succ = pool.right(w);
+        }
+        hot = pool.parent(w);
+        if (succ != NIL) pool.setParent(succ, hot);
+        if (hot == NIL) root = succ;
+        else if (pool.left(hot) == w) pool.setLeft(hot, succ);
+        else pool.setRight(hot, succ);
+        pool.free(w);
+    }
+
+    private boolean isLeftChild(int x) {
+        return pool.left(pool.parent(x)) == x;
+    }
+
+    /**
+     * 当前节点的直接后继节点，x为最大节点时返回NIL
+     */
+    private int succ(int x) {
+        int s;
+        if (pool.right(x) != NIL) {
+            s = pool.right(x);
+            while (pool.left(s) != NIL) s = pool.left(s);
+        } else {
+            s = x;
+            while (pool.parent(s) != NIL && pool.right(pool.parent(s)) == s) s = pool.parent(s);
+            s = pool.parent(s);
+        }
+        return s;
+    }
+
+    /**
+     * 中序遍历，沿succ逐个访问，不需要辅助栈
+     */
+    public void inOrderTraversal(LongConsumer visit) {
+        if (root == NIL) return;
+        int x = root;
+        while (pool.left(x) != NIL) x = pool.left(x);
+        for (; x != NIL; x = succ(x)) visit.accept(pool.key(x));
+    }
+
+    private void updateHeight(int x) {
+        pool.setMeta(x, 1 + Math.max(stature(pool.left(x)), stature(pool.right(x))));
+    }
+
+    private int stature(int x) {
+        return (x != NIL) ? pool.meta(x) : -1;
+    }
+
+    /**
+     * avl树的平衡条件
+     */
+    private boolean avlIsBalance(int x) {
+        int balanceFactor = stature(pool.left(x)) - stature(pool.right(x));
+        return (-2 < balanceFactor) && (balanceFactor < 2);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Pooled AVL API");
+        PooledLongAVL avl = new PooledLongAVL();
+        for (long i = 0; i < 20; i++) avl.insert(i * 7 % 20);
+        avl.remove(18);
+        avl.remove(3);
+        avl.inOrderTraversal(x -> System.out.print(x + "   "));
+        System.out.println();
+        System.out.println("size: " + avl.size() + "  search 7: " + avl.search(7));
+    }
+}
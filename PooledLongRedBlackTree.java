@@ -0,0 +1,317 @@
+package tree;
+
+import java.util.function.LongConsumer;
+
+import static tree.NodePool.NIL;
+
+/**
+ * 节点存放在NodePool中的红黑树，关键码为long。
+ * 算法与RedBlackTree逐行对应；meta的最低位是颜色（1为红），其余位是黑高度。
+ * NIL的meta为0，恰好就是“黑色、黑高度0”的外部节点。
+ * 节点默认放在堆上的HeapNodePool中，offHeap()得到的树则把节点放在堆外。
+ */
+public class PooledLongRedBlackTree {
+    private final NodePool pool;
+    private int root = NIL;
+    private int hot;
+
+    public PooledLongRedBlackTree() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity 预先分配的节点数，已知规模时可避免扩容
+     */
+    public PooledLongRedBlackTree(int initialCapacity) {
+        this(new HeapNodePool(initialCapacity));
+    }
+
+    private PooledLongRedBlackTree(NodePool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 节点放在堆外内存中的红黑树，插入、删除、查找的行为与堆上版本完全相同。
+     * 堆上只保留树对象和若干内存块的句柄，适合上亿个节点又不希望拖慢GC的场景。
+     */
+    public static PooledLongRedBlackTree offHeap(int initialCapacity) {
+        return new PooledLongRedBlackTree(new OffHeapNodePool(initialCapacity));
+    }
+
+    public int size() {
+        return pool.count();
+    }
+
+    public boolean search(long val) {
+        return search(root, val) != NIL;
+    }
+
+    private int search(int root, long val) {
+        if (root == NIL || val == pool.key(root)) {
+            hot = NIL;
+            return root;
+        }
+        for (hot = root;;) {
+            int currentNode = (val < pool.key(hot)) ? pool.left(hot) : pool.right(hot);
+            if (NIL == currentNode || val == pool.key(currentNode))
+                return currentNode;
+            hot = currentNode;
+        }
+    }
+
+    public boolean insert(long val) {
+        if (search(root, val) != NIL) return false;
+        int x = pool.allocate(val, hot);
+        setRed(x, true);
+        if (root == NIL) root = x;
+        if (hot != NIL) {
+            if (val < pool.key(hot))
+                pool.setLeft(hot, x);
+            else
+                pool.setRight(hot, x);
+        }
+        solveDoubleRed(x);
+        return true;
+    }
+
+    private void solveDoubleRed(int x) {
+        if (pool.parent(x) == NIL) {
+            setRed(x, false); setHeight(x, height(x) + 1); return;
+        }
+        int p = pool.parent(x);
+        if ( isBlack(p) ) return;
+        int g = pool.parent(p);
+        int u = uncle(x);
+        if ( isBlack(u) ) {//叔父节点是黑的情况
+            if (isLeftChild(x) == isLeftChild(p))
+                setRed(p, false);
+            else
+                setRed(x, false);
+            setRed(g, true);
+            int gg = pool.parent(g);
+            int r = rotateAt(x);
+            fromParentTo(gg, g, r);
+        } else {//叔父节点是红的情况
+            setRed(p, false); setHeight(p, height(p) + 1);
+            setRed(u, false); setHeight(u, height(u) + 1);
+            if ( pool.parent(g) != NIL ) setRed(g, true);
+            solveDoubleRed(g);
+        }
+    }
+
+    /**
+     * 旋转后由子树新根r替换原子树根g在父节点gg中的位置，gg为NIL则r成为树根
+     */
+    private void fromParentTo(int gg, int g, int r) {
+        if (gg == NIL) root = r;
+        else if (pool.left(gg) == g) pool.setLeft(gg, r);
+        else pool.setRight(gg, r);
+    }
+
+    /**                           b
+     * （3+4) - 重构            ↙    ↘︎
+     *                       a       c
+     *                     ↙︎  ↘︎     ↙︎ ↘︎
+     *                    t0  t1  t2   t3
+     */
+    private int connect34(int a, int b, int c, int t0, int t1, int t2, int t3) {
+        pool.setLeft(a, t0);  if (t0 != NIL) pool.setParent(t0, a);
+        pool.setRight(a, t1); if (t1 != NIL) pool.setParent(t1, a);
+        pool.setLeft(c, t2);  if (t2 != NIL) pool.setParent(t2, c);
+        pool.setRight(c, t3); if (t3 != NIL) pool.setParent(t3, c);
+        pool.setLeft(b, a);  pool.setParent(a, b);
+        pool.setRight(b, c); pool.setParent(c, b);
+        updateHeight(a); updateHeight(c); updateHeight(b);
+        return b;
+    }
+
+    /**
+     * 四种（3+4）重构场景见RedBlackTree.rotateAt
+     */
+    private int rotateAt(int v) {
+        int p = pool.parent(v), g = pool.parent(p);
+        if (isLeftChild(p)) {
+            if (isLeftChild(v)) {
+                pool.setParent(p, pool.parent(g));
+                return connect34(v, p, g, pool.left(v), pool.right(v), pool.right(p), pool.right(g));
+            } else {
+                pool.setParent(v, pool.parent(g));
+                return connect34(p, v, g, pool.left(p), pool.left(v), pool.right(v), pool.right(g));
+            }
+        } else {
+            if (!isLeftChild(v)) {
+                pool.setParent(p, pool.parent(g));
+                return connect34(g, p, v, pool.left(g), pool.left(p), pool.left(v), pool.right(v));
+            } else {
+                pool.setParent(v, pool.parent(g));
+                return connect34(g, v, p, pool.left(g), pool.left(v), pool.right(v), pool.right(p));
+            }
+        }
+    }
+
+    /**
+     * 删除的思路与RedBlackTree.remove相同：按(2,4)B树理解双黑缺陷。
+     */
+    public boolean remove(long val) {
+        int node = search(root, val);
+        if (node == NIL) return false;
+        //r 为被删除的节点的替代者。
+        int r = removeAt(node);
+        //删除后树为空 结束
+        if ( root == NIL )
+            return true;
+        //被删除的节点是根，则重新设置新根的颜色和更新树高。
+        if ( hot == NIL ) {
+            setRed(root, false);
+            updateHeight(root);
+            return true;
+        }
+        //删除完成后,被删节点的父节点hot依然平衡，则整棵树的黑高度依然没有改变，则不调整。
+        if ( blackHeightUpdated(hot) ) return true;
+        if ( isRed(r) ) {
+            setRed(r, false);
+            setHeight(r, height(r) + 1);
+            return true;
+        }
+        solveDoubleBlack(r);
+        return true;
+    }
+
+    private void solveDoubleBlack(int r) {
+        int p = ( r != NIL ) ? pool.parent(r) : hot;//获取r的父亲
+        if ( p == NIL ) return;
+        int s = (r == pool.left(p)) ? pool.right(p) : pool.left(p);
+        if ( isBlack(s) ) { //兄弟s为黑
+            int t = NIL;
+            if ( isRed(pool.right(s)) ) t = pool.right(s);
+            if ( isRed(pool.left(s)) ) t = pool.left(s);
+            if ( t != NIL ) {//兄弟s有红孩子
+                boolean oldColor = isRed(p);
+                int gg = pool.parent(p);
+                int b = rotateAt(t);
+                fromParentTo(gg, p, b);
+                setRed(pool.left(b), false); updateHeight(pool.left(b));
+                setRed(pool.right(b), false); updateHeight(pool.right(b));
+                setRed(b, oldColor); updateHeight(b);
+            } else { //黑s无红孩子
+                setRed(s, true); setHeight(s, height(s) - 1);
+                if ( isRed(p) ) { setRed(p, false); updateHeight(p); }
+                else {
+                    setHeight(p, height(p) - 1);
+                    solveDoubleBlack(p);
+                }
+            }
+        } else { //兄弟s为红
+            setRed(s, false); setRed(p, true);
+            int t = isLeftChild(s) ? pool.left(s) : pool.right(s);
+            hot = p;
+            int gg = pool.parent(p);
+            fromParentTo(gg, p, rotateAt(t));
+            solveDoubleBlack(r);
+        }
+    }
+
+    private int uncle(int x) {
+        int p = pool.parent(x);
+        if (isLeftChild(p)) return pool.right(pool.parent(p));
+        return pool.left(pool.parent(p));
+    }
+
+    private int removeAt(int x) {
+        int w = x; //实际被删除的节点
+        int succ; //实际被删除节点的接替者
+        if (pool.left(x) == NIL) {
+            succ = pool.right(x);
+        } else if (pool.right(x) == NIL) {
+            succ = pool.left(x);
+        } else {
+            w = succ(x);
+            pool.setKey(x, pool.key(w));
+            succ = pool.right(w);
+        }
+        hot = pool.parent(w);
+        if (succ != NIL) pool.setParent(succ, hot);
+        if (hot == NIL) root = succ;
+        else if (pool.left(hot) == w) pool.setLeft(hot, succ);
+        else pool.setRight(hot, succ);
+        pool.free(w);
+        return succ;
+    }
+
+    private boolean isLeftChild(int x) {
+        return pool.left(pool.parent(x)) == x;
+    }
+
+    //NIL的meta为0，即黑色
+    private boolean isRed(int x) {
+        return (pool.meta(x) & 1) != 0;
+    }
+
+    private boolean isBlack(int x) {
+        return !isRed(x);
+    }
+
+    private void setRed(int x, boolean red) {
+        pool.setMeta(x, (pool.meta(x) & ~1) | (red ? 1 : 0));
+    }
+
+    private int height(int x) {
+        return pool.meta(x) >>> 1;
+    }
+
+    private void setHeight(int x, int h) {
+        pool.setMeta(x, (h << 1) | (pool.meta(x) & 1));
+    }
+
+    /**
+     * 当前节点的直接后继节点，x为最大节点时返回NIL
+     */
+    private int succ(int x) {
+        int s;
+        if (pool.right(x) != NIL) {
+            s = pool.right(x);
+            while (pool.left(s) != NIL) s = pool.left(s);
+        } else {
+            s = x;
+            while (pool.parent(s) != NIL && pool.right(pool.parent(s)) == s) s = pool.parent(s);
+            s = pool.parent(s);
+        }
+        return s;
+    }
+
+    /**
+     * 中序遍历，沿succ逐个访问，不需要辅助栈
+     */
+    public void inOrderTraversal(LongConsumer visit) {
+        if (root == NIL) return;
+        int x = root;
+        while (pool.left(x) != NIL) x = pool.left(x);
+        for (; x != NIL; x = succ(x)) visit.accept(pool.key(x));
+    }
+
+    private void updateHeight(int x) {
+        int h = Math.max(height(pool.left(x)), height(pool.right(x)));
+        if (isBlack(x)) h++;
+        setHeight(x, h);
+    }
+
+    private boolean blackHeightUpdated(int x) {
+        int l = height(pool.left(x));
+        return l == height(pool.right(x)) &&
+                height(x) == (isRed(x) ? l : l + 1);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Pooled Red Black Tree API");
+        PooledLongRedBlackTree rb = new PooledLongRedBlackTree();
+        for (long i = 0; i < 20; i++) rb.insert(i * 7 % 20);
+        rb.remove(18);
+        rb.remove(3);
+        rb.inOrderTraversal(x -> System.out.print(x + "   "));
+        System.out.println();
+        System.out.println("size: " + rb.size() + "  search 7: " + rb.search(7));
+        PooledLongRedBlackTree offHeap = PooledLongRedBlackTree.offHeap(16);
+        for (long i = 0; i < 100000; i++) offHeap.insert(i * 7 % 100003);
+        System.out.println("off-heap size: " + offHeap.size() + "  search 7: " + offHeap.search(7));
+    }
+}
@@ -0,0 +1,575 @@
+package tree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 前缀压缩的B+树：关键码是字节串，按无符号字典序（Arrays.compareUnsigned）排列；
+ * 字符串、复合关键码按保序的方式编码成字节串即可，例如UTF-8编码的字节序就是码点序。
+ * 节点的容量不按关键码个数而按字节数计：编码后超过一页（pageSize字节）才分裂。
+ * B_Tree的节点存放关键码对象的引用，关键码越长，一页能容纳的关键码越少；这里关键码在节点内压缩存放，
+ * 同样一页能放下多得多的关键码，树更矮，每次查找经过的页更少。三种压缩：
+ *
+ * 1, 前缀截断：节点中的关键码有序，全体的公共前缀就是首末两个关键码的公共前缀，只在节点里存一份，
+ *    各关键码只存其余部分。同一棵子树中的关键码越往下越集中，公共前缀也越长。
+ * 2, 增量编码（前端编码）：每个关键码只存与前一个关键码的公共部分长度和其余的字节。
+ *    为了仍能二分查找，每BLOCK个关键码为一块，块首的关键码完整存放；查找时先按块首二分，再在块内顺序解码。
+ * 3, 分隔关键码后缀截断：叶节点分裂时，放进父节点的不是右半部分的最小关键码，
+ *    而是介于左半最大与右半最小之间的最短字节串，通常只比二者的公共前缀多一个字节。
+ *    B+树的内部节点只用来引导查找，分隔关键码不必是真实存在的关键码，这是B_Tree做不到的。
+ *
+ * 修改一个关键码只重新编码它所在的块，块长超过2*BLOCK时拆成两块；
+ * 关键码不以节点的公共前缀开头、分裂或合并时，才重新编码整个节点。
+ * 删除后节点不足四分之一页时，若能与相邻的兄弟装进一页则合并，否则保持原样。
+ */
+public class PrefixBTree implements Iterable<byte[]> {
+    private static final int BLOCK = 16;//每块的关键码数，块首的关键码完整存放
+    private static final int NODE_BYTES = 16;//一页的固定开销：关键码数、前缀长度、块数、右兄弟的页号
+    private static final int REF_BYTES = 4;//孩子的页号，以及每个块在页内的偏移
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int pageSize;
+    private Node root, first;//first为最左的叶节点
+    private int size;
+    private boolean found;//最近一次find是否找到了相等的关键码
+    private int pos;//解码时在data中的位置
+    private byte[] scratch = new byte[64];//块内顺序解码时的当前关键码（不含节点前缀）
+    private byte[] splitKey;//最近一次分裂产生的分隔关键码及右半节点，没有分裂时splitNode为null
+    private Node splitNode;
+
+    private static final class Node {
+        final boolean leaf;
+        byte[] prefix = EMPTY;//节点中全体关键码的公共前缀
+        byte[] data = EMPTY;//各块依次排列；每个关键码为 与前一个关键码共享的字节数、其余字节数（均为变长整数）、其余字节
+        int used;//data中已用的字节数，其后是为插入预留的余量
+        int[] restart = new int[0];//各块在data中的起点
+        int[] start = new int[0];//各块第一个关键码的秩
+        int count;
+        List<Node> child;//内部节点的count+1个孩子
+        Node next;//叶节点的右兄弟
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+            if (!leaf) child = new ArrayList<>();
+        }
+    }
+
+    public PrefixBTree() {
+        this(4096);
+    }
+
+    /**
+     * @param pageSize 一页的字节数，节点编码后超过它即分裂；单个关键码不能超过它的四分之一
+     */
+    public PrefixBTree(int pageSize) {
+        if (pageSize < 256) throw new IllegalArgumentException("page size must be at least 256: " + pageSize);
+        this.pageSize = pageSize;
+        this.root = this.first = new Node(true);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 树高，只有一个叶节点时为1
+     */
+    public int height() {
+        int h = 1;
+        for (Node v = root; !v.leaf; v = v.child.get(0)) h++;
+        return h;
+    }
+
+    /**
+     * 节点（页）的总数
+     */
+    public int pages() {
+        return pages(root);
+    }
+
+    private int pages(Node v) {
+        if (v.leaf) return 1;
+        int n = 1;
+        for (Node c : v.child) n += pages(c);
+        return n;
+    }
+
+    /**
+     * 全部节点编码后的字节数之和，即按页存放时实际用到的空间
+     */
+    public long bytes() {
+        return totalBytes(root);
+    }
+
+    private long totalBytes(Node v) {
+        long n = bytes(v);
+        if (!v.leaf) for (Node c : v.child) n += totalBytes(c);
+        return n;
+    }
+
+    private int bytes(Node v) {
+        int n = NODE_BYTES + v.prefix.length + v.used + REF_BYTES * v.restart.length;
+        return v.leaf ? n : n + REF_BYTES * v.child.size();
+    }
+
+    public boolean contains(byte[] key) {
+        Node v = root;
+        while (!v.leaf) v = v.child.get(find(v, key) + 1);
+        find(v, key);
+        return found;
+    }
+
+    /**
+     * 插入key，已存在时返回false
+     */
+    public boolean insert(byte[] key) {
+        if (key.length > pageSize / 4)
+            throw new IllegalArgumentException("key of " + key.length + " bytes exceeds a quarter of the page");
+        splitNode = null;
+        if (!insert(root, key)) return false;
+        if (splitNode != null) growRoot();
+        size++;
+        return true;
+    }
+
+    /**
+     * 树根分裂后，以分隔关键码和左右两半构造新的树根
+     */
+    private void growRoot() {
+        Node r = new Node(false);
+        r.child.add(root);
+        r.child.add(splitNode);
+        insertAt(r, 0, splitKey);
+        root = r;
+        splitNode = null;
+    }
+
+    /**
+     * 删除key，不存在时返回false
+     */
+    public boolean remove(byte[] key) {
+        if (!remove(root, key)) return false;
+        if (bytes(root) > pageSize) {
+            split(root);
+            growRoot();
+        }
+        while (!root.leaf && root.count == 0) root = root.child.get(0);
+        size--;
+        return true;
+    }
+
+    /**
+     * 在以v为根的子树中插入key；v分裂时把分隔关键码和右半节点留在splitKey、splitNode中
+     */
+    private boolean insert(Node v, byte[] key) {
+        int r = find(v, key);
+        if (v.leaf) {
+            if (found) return false;
+            insertAt(v, r + 1, key);
+        } else {
+            if (!insert(v.child.get(r + 1), key)) return false;
+            if (splitNode == null) return true;
+            adopt(v, r + 1);
+        }
+        if (bytes(v) > pageSize) split(v);
+        return true;
+    }
+
+    private boolean remove(Node v, byte[] key) {
+        int r = find(v, key);
+        if (v.leaf) {
+            if (!found) return false;
+            removeAt(v, r);
+            return true;
+        }
+        int i = r + 1;
+        if (!remove(v.child.get(i), key)) return false;
+        Node c = v.child.get(i);
+        if (bytes(c) > pageSize) {
+            //c的孩子合并后重新编码，前缀变短，c反而可能超过一页
+            split(c);
+            adopt(v, i);
+        } else if (bytes(c) < pageSize / 4 && v.count > 0) {
+            merge(v, (i > 0) ? i - 1 : i);
+        }
+        return true;
+    }
+
+    /**
+     * 节点v中不大于key的最后一个关键码的秩，没有则为-1；恰好相等时found为true
+     */
+    private int find(Node v, byte[] key) {
+        found = false;
+        if (v.count == 0) return -1;
+        //先与公共前缀比较，不以它开头的key要么小于、要么大于节点中的全部关键码
+        byte[] p = v.prefix;
+        int n = Math.min(p.length, key.length);
+        int c = Arrays.compareUnsigned(key, 0, n, p, 0, n);
+        if (c < 0 || c == 0 && key.length < p.length) return -1;
+        if (c > 0) return v.count - 1;
+        int from = p.length;
+        //按块首二分，找出最后一个块首不大于key的块
+        int lo = 0, hi = v.restart.length;
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            pos = v.restart[mi];
+            readVarInt(v.data);
+            int len = readVarInt(v.data);
+            if (Arrays.compareUnsigned(v.data, pos, pos + len, key, from, key.length) <= 0) lo = mi + 1;
+            else hi = mi;
+        }
+        int b = lo - 1;
+        if (b < 0) return -1;
+        //块内顺序解码
+        int end = (b + 1 < v.restart.length) ? v.restart[b + 1] : v.used;
+        int r = v.start[b] - 1;
+        pos = v.restart[b];
+        while (pos < end) {
+            int shared = readVarInt(v.data);
+            int rest = readVarInt(v.data);
+            if (scratch.length < shared + rest) scratch = Arrays.copyOf(scratch, 2 * (shared + rest));
+            System.arraycopy(v.data, pos, scratch, shared, rest);
+            pos += rest;
+            c = Arrays.compareUnsigned(scratch, 0, shared + rest, key, from, key.length);
+            if (c > 0) break;
+            r++;
+            if (c == 0) {
+                found = true;
+                break;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * 把key作为v的第i个关键码插入
+     */
+    private void insertAt(Node v, int i, byte[] key) {
+        if (!startsWith(key, v.prefix)) {
+            List<byte[]> keys = keys(v);
+            keys.add(i, key);
+            rebuild(v, keys);
+            return;
+        }
+        byte[] suffix = Arrays.copyOfRange(key, v.prefix.length, key.length);
+        int b = blockOf(v, i);
+        List<byte[]> block = suffixes(v, b, (b < v.restart.length) ? 1 : 0);
+        block.add(i - ((b < v.start.length) ? v.start[b] : 0), suffix);
+        setBlocks(v, b, (b < v.restart.length) ? 1 : 0, block);
+    }
+
+    /**
+     * 删除v的第i个关键码；公共前缀保持不变，它仍是剩余关键码的公共前缀
+     */
+    private void removeAt(Node v, int i) {
+        int b = blockOf(v, i);
+        List<byte[]> block = suffixes(v, b, 1);
+        block.remove(i - v.start[b]);
+        setBlocks(v, b, 1, block);
+    }
+
+    /**
+     * 第i个关键码所在的块；i为count（追加到末尾）时取最后一块，空节点为0
+     */
+    private int blockOf(Node v, int i) {
+        int lo = 0, hi = v.start.length;
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            if (v.start[mi] <= i) lo = mi + 1;
+            else hi = mi;
+        }
+        return Math.max(0, lo - 1);
+    }
+
+    /**
+     * 把v的块[b, b + nb)替换为suffixes的编码；不超过2*BLOCK个时编成一块，否则每BLOCK个一块
+     */
+    private void setBlocks(Node v, int b, int nb, List<byte[]> suffixes) {
+        int m = suffixes.size();
+        int per = (m <= 2 * BLOCK) ? Math.max(m, 1) : BLOCK;
+        int chunks = (m + per - 1) / per;
+        int len = 0;
+        for (int i = 0; i < m; i++) {
+            byte[] s = suffixes.get(i);
+            int shared = (i % per == 0) ? 0 : Arrays.mismatch(suffixes.get(i - 1), s);
+            if (shared < 0) shared = s.length;
+            len += varIntSize(shared) + varIntSize(s.length - shared) + s.length - shared;
+        }
+        byte[] enc = new byte[len];
+        int[] offs = new int[chunks];
+        int q = 0;
+        for (int i = 0; i < m; i++) {
+            byte[] s = suffixes.get(i);
+            int shared = 0;
+            if (i % per == 0) offs[i / per] = q;
+            else shared = Arrays.mismatch(suffixes.get(i - 1), s);
+            if (shared < 0) shared = s.length;
+            q = putVarInt(enc, q, shared);
+            q = putVarInt(enc, q, s.length - shared);
+            System.arraycopy(s, shared, enc, q, s.length - shared);
+            q += s.length - shared;
+        }
+        int blocks = v.restart.length;
+        int from = (b < blocks) ? v.restart[b] : v.used;
+        int to = (b + nb < blocks) ? v.restart[b + nb] : v.used;
+        int first = (b < blocks) ? v.start[b] : v.count;
+        int removed = ((b + nb < blocks) ? v.start[b + nb] : v.count) - first;
+        int delta = enc.length - (to - from);
+        //data留有余量，通常只需就地移动其后的块
+        byte[] data = v.data;
+        if (v.used + delta > data.length) {
+            data = new byte[v.used + delta + (v.used + delta) / 2];
+            System.arraycopy(v.data, 0, data, 0, from);
+        }
+        System.arraycopy(v.data, to, data, from + enc.length, v.used - to);
+        System.arraycopy(enc, 0, data, from, enc.length);
+        int[] restart = v.restart, start = v.start;
+        if (chunks != nb) {
+            restart = new int[blocks - nb + chunks];
+            start = new int[restart.length];
+            System.arraycopy(v.restart, 0, restart, 0, b);
+            System.arraycopy(v.start, 0, start, 0, b);
+            System.arraycopy(v.restart, b + nb, restart, b + chunks, blocks - b - nb);
+            System.arraycopy(v.start, b + nb, start, b + chunks, blocks - b - nb);
+        }
+        for (int j = 0; j < chunks; j++) {
+            restart[b + j] = from + offs[j];
+            start[b + j] = first + j * per;
+        }
+        for (int k = b + chunks; k < restart.length; k++) {
+            restart[k] += delta;
+            start[k] += m - removed;
+        }
+        v.data = data;
+        v.used += delta;
+        v.restart = restart;
+        v.start = start;
+        v.count += m - removed;
+    }
+
+    /**
+     * 解码块[b, b + nb)中的关键码（不含节点前缀）
+     */
+    private List<byte[]> suffixes(Node v, int b, int nb) {
+        List<byte[]> list = new ArrayList<>();
+        if (nb == 0) return list;
+        int end = (b + nb < v.restart.length) ? v.restart[b + nb] : v.used;
+        byte[] prev = EMPTY;
+        pos = v.restart[b];
+        while (pos < end) {
+            int shared = readVarInt(v.data);
+            int rest = readVarInt(v.data);
+            byte[] s = new byte[shared + rest];
+            System.arraycopy(prev, 0, s, 0, shared);
+            System.arraycopy(v.data, pos, s, shared, rest);
+            pos += rest;
+            list.add(s);
+            prev = s;
+        }
+        return list;
+    }
+
+    /**
+     * v中全部完整的关键码
+     */
+    private List<byte[]> keys(Node v) {
+        List<byte[]> keys = suffixes(v, 0, v.restart.length);
+        if (v.prefix.length > 0) {
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] s = keys.get(i);
+                byte[] k = Arrays.copyOf(v.prefix, v.prefix.length + s.length);
+                System.arraycopy(s, 0, k, v.prefix.length, s.length);
+                keys.set(i, k);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 以有序的keys重新编码v，公共前缀取首末两个关键码的公共前缀
+     */
+    private void rebuild(Node v, List<byte[]> keys) {
+        int p = 0;
+        if (!keys.isEmpty()) {
+            byte[] lo = keys.get(0), hi = keys.get(keys.size() - 1);
+            p = Arrays.mismatch(lo, hi);
+            if (p < 0) p = lo.length;
+        }
+        v.prefix = (p == 0) ? EMPTY : Arrays.copyOf(keys.get(0), p);
+        List<byte[]> suffixes = new ArrayList<>(keys.size());
+        for (byte[] k : keys) suffixes.add((p == 0) ? k : Arrays.copyOfRange(k, p, k.length));
+        v.data = EMPTY;
+        v.used = 0;
+        v.restart = new int[0];
+        v.start = new int[0];
+        v.count = 0;
+        setBlocks(v, 0, 0, suffixes);
+    }
+
+    /**
+     * 把上溢的v按字节数对半分开，右半作为新节点留在splitNode中。
+     * 叶节点的分隔关键码取介于两半之间的最短字节串；内部节点的中间一个分隔关键码移上去
+     */
+    private void split(Node v) {
+        List<byte[]> keys = keys(v);
+        Node u = new Node(v.leaf);
+        if (v.leaf) {
+            int mid = splitPoint(keys, 1, keys.size() - 1);
+            splitKey = separator(keys.get(mid - 1), keys.get(mid));
+            rebuild(u, new ArrayList<>(keys.subList(mid, keys.size())));
+            rebuild(v, new ArrayList<>(keys.subList(0, mid)));
+            u.next = v.next;
+            v.next = u;
+        } else {
+            int mid = splitPoint(keys, 1, keys.size() - 2);
+            splitKey = keys.get(mid);
+            List<Node> right = v.child.subList(mid + 1, v.child.size());
+            u.child.addAll(right);
+            right.clear();
+            rebuild(u, new ArrayList<>(keys.subList(mid + 1, keys.size())));
+            rebuild(v, new ArrayList<>(keys.subList(0, mid)));
+        }
+        splitNode = u;
+    }
+
+    /**
+     * [lo, hi]中使左侧关键码的总长最接近一半的位置
+     */
+    private static int splitPoint(List<byte[]> keys, int lo, int hi) {
+        if (lo > hi) return keys.size() / 2;
+        long total = 0;
+        for (byte[] k : keys) total += k.length + 2;
+        long acc = 0;
+        int i = 0;
+        while (i < hi && acc + keys.get(i).length + 2 <= total / 2) acc += keys.get(i++).length + 2;
+        return Math.max(lo, Math.min(hi, i));
+    }
+
+    /**
+     * 满足 lo < s <= hi 的最短字节串s：hi取到与lo第一个不同的字节为止
+     */
+    private static byte[] separator(byte[] lo, byte[] hi) {
+        int m = Arrays.mismatch(lo, hi);
+        return Arrays.copyOf(hi, m + 1);
+    }
+
+    /**
+     * v的第i个孩子刚刚分裂，把分隔关键码和右半节点接到v中
+     */
+    private void adopt(Node v, int i) {
+        insertAt(v, i, splitKey);
+        v.child.add(i + 1, splitNode);
+        splitNode = null;
+    }
+
+    /**
+     * 合并v的第j、j+1个孩子，估计二者合起来能装进一页时才合并。内部节点合并时，二者之间的分隔关键码移下来；
+     * 合并后公共前缀可能变短，若重新编码后超过一页，再按字节数对半分开
+     */
+    private void merge(Node v, int j) {
+        Node a = v.child.get(j), b = v.child.get(j + 1);
+        List<byte[]> keys = keys(v);
+        int extra = a.leaf ? 0 : keys.get(j).length + 2;
+        if (bytes(a) + bytes(b) - NODE_BYTES + extra > pageSize) return;
+        List<byte[]> merged = keys(a);
+        if (!a.leaf) {
+            merged.add(keys.get(j));
+            a.child.addAll(b.child);
+        } else {
+            a.next = b.next;
+        }
+        merged.addAll(keys(b));
+        rebuild(a, merged);
+        removeAt(v, j);
+        v.child.remove(j + 1);
+        if (bytes(a) > pageSize) {
+            split(a);
+            adopt(v, j);
+        }
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private int readVarInt(byte[] b) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int x = b[pos++];
+            v |= (x & 0x7F) << shift;
+            if (x >= 0) return v;
+        }
+    }
+
+    private static int putVarInt(byte[] b, int q, int v) {
+        while ((v & ~0x7F) != 0) {
+            b[q++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        b[q++] = (byte) v;
+        return q;
+    }
+
+    private static int varIntSize(int v) {
+        int n = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 升序迭代器：沿叶节点链表前进，每到一个叶节点解码它的全部关键码
+     */
+    @Override
+    public Iterator<byte[]> iterator() {
+        return new Iterator<byte[]>() {
+            private Node leaf = first;
+            private List<byte[]> keys = keys(first);
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                while (i == keys.size() && leaf.next != null) {
+                    leaf = leaf.next;
+                    keys = keys(leaf);
+                    i = 0;
+                }
+                return i < keys.size();
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return keys.get(i++);
+            }
+        };
+    }
+
+    /**
+     * 中序遍历，依次把每个关键码交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super byte[]> visit) {
+        for (byte[] k : this) visit.accept(k);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Prefix B+ Tree API");
+        PrefixBTree tree = new PrefixBTree(512);
+        for (int i = 0; i < 2000; i++)
+            tree.insert(String.format("https://example.com/users/%06d/orders", i * 7).getBytes(StandardCharsets.UTF_8));
+        System.out.println("size: " + tree.size() + "  height: " + tree.height() + "  pages: " + tree.pages()
+                + "  bytes: " + tree.bytes());
+        byte[] k = "https://example.com/users/000700/orders".getBytes(StandardCharsets.UTF_8);
+        System.out.println("contains 000700: " + tree.contains(k) + "  remove: " + tree.remove(k)
+                + "  contains: " + tree.contains(k));
+        int n = 0;
+        for (byte[] key : tree) if (n++ < 3) System.out.println(new String(key, StandardCharsets.UTF_8));
+    }
+}
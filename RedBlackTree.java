@@ -1,44 +1,699 @@
 package tree;
 
-import java.util.Stack;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class RedBlackTree<T extends Comparable<T>> {
+public class RedBlackTree<T extends Comparable<T>> implements Iterable<T> {
 
     private static final boolean RED = true;
     private static final boolean BLACK = false;
     private Node root;
     private Node hot;
     private int size;
+    private int epoch;//节点离开本树（remove、split、clear）的次数，Finger据此判断所记的节点是否还在树中
+    private final Comparator<? super T> comparator;
+    private final ToLongFunction<? super T> keyPrefix;//为null表示不缓存前缀，此时所有节点的prefix都是0
     private class Node{
         private T val;
+        private long prefix;//val的规范化前缀，见KeyPrefix
         private Node parent, left, right;
         private int height;
+        private int size;//以该节点为根的子树的规模
         private boolean color;//
         public Node(T val, Node parent, boolean color) {
             this.parent = parent;
             this.val = val;
+            this.prefix = prefixOf(val);
             this.height = 0;
+            this.size = 1;
             this.color = color;
         }
     }
 
+    public RedBlackTree() {
+        this(Comparator.naturalOrder(), null);
+    }
+
+    public RedBlackTree(Comparator<? super T> comparator) {
+        this(comparator, null);
+    }
+
+    /**
+     * @param comparator 关键码的次序
+     * @param keyPrefix 关键码的规范化前缀，须与comparator一致，见KeyPrefix；为null表示不缓存
+     */
+    public RedBlackTree(Comparator<? super T> comparator, ToLongFunction<? super T> keyPrefix) {
+        if (comparator == null) throw new NullPointerException("comparator");
+        this.comparator = comparator;
+        this.keyPrefix = keyPrefix;
+    }
+
     public int size() {
         return size;
     }
 
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    private long prefixOf(T val) {
+        return (keyPrefix == null) ? 0 : keyPrefix.applyAsLong(val);
+    }
+
+    /**
+     * 比较val与节点x的关键码，p为val的前缀，做法同AVL.compare
+     */
+    private int compare(T val, long p, Node x) {
+        if (p != x.prefix) return Long.compareUnsigned(p, x.prefix);
+        return comparator.compare(val, x.val);
+    }
+
+    private int compare(T a, T b) {
+        return comparator.compare(a, b);
+    }
+
+    private static void checkSameOrder(RedBlackTree<?> a, RedBlackTree<?> b) {
+        if (!a.comparator.equals(b.comparator) || a.keyPrefix != b.keyPrefix)
+            throw new IllegalArgumentException("trees are ordered differently");
+    }
+
+    /**
+     * 由严格递增的序列直接构造红黑树，O(n)时间。
+     * 与AVL.fromSorted一样每次取区间中点作为子树根，所有外部节点的深度至多相差1。
+     * 最深一层（深度为⌊log2(n)⌋）的节点都是叶子，染成红色，其余节点全部染黑：
+     * 任一外部节点到根的路径上恰好有⌊log2(n)⌋个黑节点，红节点没有孩子，不会出现双红。
+     * @param sorted 严格递增的关键码序列
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> fromSorted(List<? extends T> sorted) {
+        return fromSorted(sorted, Comparator.naturalOrder(), null);
+    }
+
+    /**
+     * 同fromSorted(sorted)，sorted按comparator严格递增
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> fromSorted(List<? extends T> sorted, Comparator<? super T> comparator,
+                                                                     ToLongFunction<? super T> keyPrefix) {
+        RedBlackTree<T> rb = new RedBlackTree<>(comparator, keyPrefix);
+        Object[] keys = sorted.toArray();
+        for (int i = 1; i < keys.length; i++)
+            if (rb.compare((T) keys[i - 1], (T) keys[i]) >= 0)
+                throw new IllegalArgumentException("keys are not strictly ascending at index " + i);
+        int redDepth = keys.length > 1 ? 31 - Integer.numberOfLeadingZeros(keys.length) : -1;
+        rb.root = rb.build(keys, 0, keys.length, null, 0, redDepth);
+        rb.size = keys.length;
+        return rb;
+    }
+
+    /**
+     * 由keys[lo, hi)构造子树，返回子树根；depth为子树根的深度，深度为redDepth的节点染红
+     */
+    private Node build(Object[] keys, int lo, int hi, Node parent, int depth, int redDepth) {
+        if (lo >= hi) return null;
+        int mi = (lo + hi) >>> 1;
+        Node x = new Node((T) keys[mi], parent, depth == redDepth ? RED : BLACK);
+        x.left = build(keys, lo, mi, x, depth + 1, redDepth);
+        x.right = build(keys, mi + 1, hi, x, depth + 1, redDepth);
+        updateHeight(x);
+        return x;
+    }
+
+    private static final int UNION = 0, INTERSECTION = 1, DIFFERENCE = 2;
+    //子树黑高度不低于此值时才把左右两半拆成并行任务，更小的子树直接在当前线程中递归
+    private static final int PARALLEL_HEIGHT = 7;
+
+    /**
+     * 以key为分隔把left和right接成一棵树：left中的关键码都小于key，right中的都大于key。
+     * 两棵树的树根先染黑，再沿黑高度较大一棵树的侧链下行到黑高度相等的黑节点处，以红色的key接入；
+     * 回溯时若出现双红，做一次（3+4）重构并把下方的红节点染黑，O(|黑高度差|)。
+     * left、right的节点被直接复用，调用后二者都变为空树。
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> join(RedBlackTree<T> left, T key, RedBlackTree<T> right) {
+        if (left == right) throw new IllegalArgumentException("cannot join a tree with itself");
+        checkSameOrder(left, right);
+        if (left.root != null && left.compare(left.last().val, key) >= 0 ||
+                right.root != null && right.compare(right.first().val, key) <= 0)
+            throw new IllegalArgumentException("keys of left must be less than " + key + " and keys of right greater");
+        RedBlackTree<T> t = new RedBlackTree<>(left.comparator, left.keyPrefix);
+        t.root = t.join(left.root, t.new Node(key, null, BLACK), right.root);
+        t.root.parent = null;
+        t.size = left.size + right.size + 1;
+        left.clear();
+        right.clear();
+        return t;
+    }
+
+    /**
+     * 分裂：小于key的关键码留在本树中，不小于key的关键码移到返回的新树中。
+     * 分裂本身沿查找路径做O(log n)次join，新树的规模即其树根的子树规模。
+     */
+    public RedBlackTree<T> split(T key) {
+        epoch++;
+        Split s = split(root, key);
+        RedBlackTree<T> t = new RedBlackTree<>(comparator, keyPrefix);
+        t.root = (s.mid == null) ? blacken(s.right) : join(null, s.mid, s.right);
+        if (t.root != null) t.root.parent = null;
+        root = blacken(s.left);
+        if (root != null) root.parent = null;
+        t.size = sizeOf(t.root);
+        size -= t.size;
+        return t;
+    }
+
+    /**
+     * 并集：返回包含a、b全部关键码的新树，a、b的节点被直接复用，调用后二者都变为空树。
+     * 以a的树根为界分裂b，两边各自递归求并集后再join回来；规模为m ≤ n的两棵树只需O(m log(n/m + 1))的工作量，
+     * 两边的递归在ForkJoinPool中并行执行。
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> union(RedBlackTree<T> a, RedBlackTree<T> b) {
+        return setOperation(UNION, a, b);
+    }
+
+    /**
+     * 交集，做法同union，a的树根只在b中也存在时才作为分隔保留
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> intersection(RedBlackTree<T> a, RedBlackTree<T> b) {
+        return setOperation(INTERSECTION, a, b);
+    }
+
+    /**
+     * 差集a - b：以b的树根为界分裂a，丢掉与之相等的关键码，两边各自递归
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> difference(RedBlackTree<T> a, RedBlackTree<T> b) {
+        return setOperation(DIFFERENCE, a, b);
+    }
+
+    private static <T extends Comparable<T>> RedBlackTree<T> setOperation(int op, RedBlackTree<T> a, RedBlackTree<T> b) {
+        if (a == b) throw new IllegalArgumentException("operands must be different trees");
+        checkSameOrder(a, b);
+        RedBlackTree<T> t = new RedBlackTree<>(a.comparator, a.keyPrefix);
+        LongAdder shared = new LongAdder();//两棵树中都有的关键码个数
+        t.root = t.blacken(ForkJoinPool.commonPool().invoke(t.new SetOperation(op, a.root, b.root, shared)));
+        if (t.root != null) t.root.parent = null;
+        int common = shared.intValue();
+        t.size = (op == UNION) ? a.size + b.size - common : (op == INTERSECTION) ? common : a.size - common;
+        a.clear();
+        b.clear();
+        return t;
+    }
+
+    private class SetOperation extends RecursiveTask<Node> {
+        private final int op;
+        private final Node a, b;
+        private final LongAdder shared;
+
+        SetOperation(int op, Node a, Node b, LongAdder shared) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.shared = shared;
+        }
+
+        @Override
+        protected Node compute() {
+            return setOperation(op, a, b, shared);
+        }
+    }
+
+    private Node setOperation(int op, Node a, Node b, LongAdder shared) {
+        if (a == null) return (op == UNION) ? b : null;
+        if (b == null) return (op == INTERSECTION) ? null : a;
+        Node la, lb, ra, rb;
+        Node sep;//留作分隔的节点，为null时左右两半直接拼接
+        Split s;
+        if (op == DIFFERENCE) {
+            s = split(a, b.val);
+            la = s.left; lb = b.left; ra = s.right; rb = b.right;
+            sep = null;
+        } else {
+            s = split(b, a.val);
+            la = a.left; lb = s.left; ra = a.right; rb = s.right;
+            sep = (op == UNION || s.mid != null) ? a : null;
+        }
+        if (s.mid != null) shared.increment();
+        Node l, r;
+        if (Math.max(stature(a), stature(b)) >= PARALLEL_HEIGHT) {
+            SetOperation left = new SetOperation(op, la, lb, shared);
+            left.fork();
+            r = setOperation(op, ra, rb, shared);
+            l = left.join();
+        } else {
+            l = setOperation(op, la, lb, shared);
+            r = setOperation(op, ra, rb, shared);
+        }
+        return (sep != null) ? join(l, sep, r) : join2(l, r);
+    }
+
+    /**
+     * 分裂的结果：left中的关键码都小于分裂点，right中的都大于分裂点，mid是等于分裂点的节点（没有则为null）。
+     * left、right的树根可能是红的
+     */
+    private class Split {
+        Node left, mid, right;
+    }
+
+    /**
+     * 沿查找路径分裂子树t：路径左侧的部分逐个join成left，右侧的逐个join成right
+     */
+    private Split split(Node t, T key) {
+        if (t == null) return new Split();
+        int cmp = compare(key, t.val);
+        Node l = t.left, r = t.right;
+        if (cmp == 0) {
+            Split s = new Split();
+            s.left = l; s.mid = t; s.right = r;
+            return s;
+        }
+        if (cmp < 0) {
+            Split s = split(l, key);
+            s.right = join(s.right, t, r);
+            return s;
+        }
+        Split s = split(r, key);
+        s.left = join(l, t, s.left);
+        return s;
+    }
+
+    /**
+     * 以节点k为分隔接起子树l和r，返回树根为黑的新子树
+     */
+    private Node join(Node l, Node k, Node r) {
+        l = blacken(l);
+        r = blacken(r);
+        Node t;
+        if (stature(l) > stature(r)) t = joinRight(l, k, r);
+        else if (stature(r) > stature(l)) t = joinLeft(l, k, r);
+        else {
+            k.color = BLACK;
+            t = link(l, k, r);
+        }
+        return blacken(t);
+    }
+
+    /**
+     * l的黑高度大于r（二者树根都是黑的）：沿l的右侧链下行到与r黑高度相等的黑节点t，以红色的k接起t和r后挂回原处。
+     * 新接入的k与其父亲可能构成双红，向上回溯时在黑色的祖父处做一次（3+4）重构消除，重构后的子树根仍为红色，
+     * 至多在上一层再重构一次，直到遇到红节点的父亲为黑或回到l
+     */
+    private Node joinRight(Node t, Node k, Node r) {
+        if (isBlack(t) && stature(t) == stature(r)) {
+            k.color = RED;
+            return link(t, k, r);
+        }
+        Node c = joinRight(t.right, k, r);
+        t.right = c; c.parent = t;
+        if (isBlack(t) && isRed(c) && isRed(c.right)) {
+            c.right.color = BLACK;
+            return rotateAt(c.right);
+        }
+        updateHeight(t);
+        return t;
+    }
+
+    private Node joinLeft(Node l, Node k, Node t) {
+        if (isBlack(t) && stature(t) == stature(l)) {
+            k.color = RED;
+            return link(l, k, t);
+        }
+        Node c = joinLeft(l, k, t.left);
+        t.left = c; c.parent = t;
+        if (isBlack(t) && isRed(c) && isRed(c.left)) {
+            c.left.color = BLACK;
+            return rotateAt(c.left);
+        }
+        updateHeight(t);
+        return t;
+    }
+
+    private Node link(Node l, Node k, Node r) {
+        k.left = l; if (l != null) l.parent = k;
+        k.right = r; if (r != null) r.parent = k;
+        updateHeight(k);
+        return k;
+    }
+
+    /**
+     * 红色的树根染黑，黑高度随之加一
+     */
+    private Node blacken(Node x) {
+        if (isRed(x)) {
+            x.color = BLACK;
+            x.height++;
+        }
+        return x;
+    }
+
+    /**
+     * 没有分隔节点时拼接l和r：摘下l中的最大节点作为分隔
+     */
+    private Node join2(Node l, Node r) {
+        if (l == null) return r;
+        Split s = splitLast(l);
+        return join(s.left, s.mid, r);
+    }
+
+    /**
+     * 摘下子树t中的最大节点，放在mid中，其余部分放在left中
+     */
+    private Split splitLast(Node t) {
+        if (t.right == null) {
+            Split s = new Split();
+            s.left = t.left; s.mid = t;
+            return s;
+        }
+        Node l = t.left;
+        Split s = splitLast(t.right);
+        s.left = join(l, t, s.left);
+        return s;
+    }
+
+    private Node first() {
+        Node x = root;
+        if (x != null) while (x.left != null) x = x.left;
+        return x;
+    }
+
+    private Node last() {
+        Node x = root;
+        if (x != null) while (x.right != null) x = x.right;
+        return x;
+    }
+
+    private void clear() {
+        root = null;
+        epoch++;
+        size = 0;
+    }
+
+    /**
+     * 树中小于val的关键码个数（val不必在树中），沿查找路径累加左子树的规模，O(log n)
+     */
+    public int rank(T val) {
+        int r = 0;
+        long p = prefixOf(val);
+        for (Node x = root; x != null; ) {
+            if (compare(val, p, x) <= 0) x = x.left;
+            else {
+                r += sizeOf(x.left) + 1;
+                x = x.right;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * 第k小（从0开始计）的关键码，rank(select(k)) == k，O(log n)
+     */
+    public T select(int k) {
+        if (k < 0 || k >= sizeOf(root)) throw new IndexOutOfBoundsException("rank " + k + " out of [0, " + sizeOf(root) + ")");
+        Node x = root;
+        for (;;) {
+            int l = sizeOf(x.left);
+            if (k < l) x = x.left;
+            else if (k == l) return x.val;
+            else {
+                k -= l + 1;
+                x = x.right;
+            }
+        }
+    }
+
+    /**
+     * 落在[lo, hi)中的关键码个数，即两次rank之差，O(log n)
+     */
+    public int countRange(T lo, T hi) {
+        if (compare(lo, hi) >= 0) return 0;
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * 升序迭代器：从最小节点出发，每次沿succ()走到直接后继，不借助辅助栈，也不复制关键码。
+     * 遍历期间修改树，结果未定义
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Ascending(first(), null);
+    }
+
+    /**
+     * 降序迭代器，沿pred()走到直接前驱
+     */
+    public Iterator<T> descendingIterator() {
+        return new Descending(last());
+    }
+
+    /**
+     * 全部关键码按降序排列
+     */
+    public Iterable<T> descending() {
+        return this::descendingIterator;
+    }
+
+    /**
+     * 落在[lo, hi)中的关键码，按升序排列；从lo的查找位置出发惰性地走到hi为止
+     */
+    public Iterable<T> range(T lo, T hi) {
+        return () -> new Ascending(ceiling(lo), hi);
+    }
+
+    /**
+     * 小于hi的关键码，按升序排列
+     */
+    public Iterable<T> headSet(T hi) {
+        return () -> new Ascending(first(), hi);
+    }
+
+    /**
+     * 不小于lo的关键码，按升序排列
+     */
+    public Iterable<T> tailSet(T lo) {
+        return () -> new Ascending(ceiling(lo), null);
+    }
+
+    /**
+     * 可分裂的Spliterator，stream().parallel()按子树把关键码分给多个线程
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(first(), null, 0, size());
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    private class Ascending implements Iterator<T> {
+        private Node next;
+        private final T hi;//不含，为null表示没有上界
+
+        Ascending(Node from, T hi) {
+            this.hi = hi;
+            this.next = bounded(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T val = next.val;
+            next = bounded(succ(next));
+            return val;
+        }
+
+        private Node bounded(Node x) {
+            return (x == null || hi == null || compare(x.val, hi) < 0) ? x : null;
+        }
+    }
+
+    private class Descending implements Iterator<T> {
+        private Node next;
+
+        Descending(Node from) {
+            this.next = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T val = next.val;
+            next = pred(next);
+            return val;
+        }
+    }
+
+    /**
+     * 覆盖[current, fence)中节点的Spliterator，分裂方式同java.util.TreeMap：
+     * 第一次以树根为界分成两半；此后右半部分以current的右孩子为界，左半部分以fence的左孩子为界。
+     * 分裂点都直接取自树的结构，每次大致对半分开，不需要栈，也不需要预先遍历
+     */
+    private class TreeSpliterator implements Spliterator<T> {
+        private Node current;
+        private final Node fence;//不含，为null表示一直到最大节点
+        private int side;//0：尚未分裂，1：分裂后留下的右半部分，-1：分出去的左半部分
+        private long est;//剩余规模的估计，尚未分裂时是准确值
+
+        TreeSpliterator(Node current, Node fence, int side, long est) {
+            this.current = current;
+            this.fence = fence;
+            this.side = side;
+            this.est = est;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Node e = current, f = fence;
+            Node s = (e == null || e == f) ? null :
+                    (side == 0) ? root :
+                    (side > 0) ? e.right :
+                    (f != null) ? f.left : null;
+            if (s != null && s != e && s != f && compare(e.val, s.val) < 0 &&
+                    (f == null || compare(s.val, f.val) < 0)) {
+                side = 1;
+                current = s;
+                return new TreeSpliterator(e, s, -1, est >>>= 1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Node e = current;
+            if (e == null || e == fence) return false;
+            current = succ(e);
+            action.accept(e.val);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Node f = fence;
+            for (Node e = current; e != null && e != f; e = succ(e)) action.accept(e.val);
+            current = f;
+        }
+
+        @Override
+        public long estimateSize() {
+            return est;
+        }
+
+        @Override
+        public int characteristics() {
+            return (side == 0 ? Spliterator.SIZED : 0) |
+                    Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return (comparator == Comparator.naturalOrder()) ? null : comparator;
+        }
+    }
+
+    /**
+     * 不小于lo的最小节点，没有则为null
+     */
+    private Node ceiling(T lo) {
+        Node c = null;
+        long p = prefixOf(lo);
+        for (Node x = root; x != null; ) {
+            if (compare(lo, p, x) <= 0) {
+                c = x;
+                x = x.left;
+            } else x = x.right;
+        }
+        return c;
+    }
+
     public Node search(T val) {
         return search(root, val);
     }
 
+    /**
+     * 新建一个查找游标，见Finger
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * 查找游标，做法同AVL.Finger：从上一次查找到达的节点上行到目标所在的子树，再向下查找。
+     * 有节点离开树（remove、split等）之后，下一次查找自动从树根开始。
+     */
+    public class Finger {
+        private Node last;//上一次查找到达的节点：命中的节点，或查找失败时最后访问的节点
+        private int epoch;
+
+        private Finger() {
+            this.epoch = RedBlackTree.this.epoch;
+        }
+
+        public Node search(T val) {
+            long p = prefixOf(val);
+            Node x = start(val, p);
+            while (x != null) {
+                int cmp = compare(val, p, x);
+                last = x;
+                if (cmp == 0) return x;
+                x = (cmp < 0) ? x.left : x.right;
+            }
+            return null;
+        }
+
+        /**
+         * 下行的起点：所记节点的某个祖先，val一定落在以它为根的子树中
+         */
+        private Node start(T val, long p) {
+            if (last == null || epoch != RedBlackTree.this.epoch) {
+                epoch = RedBlackTree.this.epoch;
+                last = null;
+                return root;
+            }
+            Node u = last;
+            int cmp = compare(val, p, u);
+            if (cmp > 0) {
+                while (u.parent != null && !(u == u.parent.left && compare(val, p, u.parent) < 0)) u = u.parent;
+            } else if (cmp < 0) {
+                while (u.parent != null && !(u == u.parent.right && compare(val, p, u.parent) > 0)) u = u.parent;
+            }
+            return u;
+        }
+    }
+
+
+    /**
+     * 查找路径上的每一层先比较缓存的前缀，前缀相同时才调用比较器
+     */
     private Node search(Node root, T val) {
-        if (root == null || val == root.val) {
+        long p = prefixOf(val);
+        if (root == null || compare(val, p, root) == 0) {
             hot = null;
             return root;
         }
         for (hot = root;;) {
-            int cmp = val.compareTo(hot.val);
+            int cmp = compare(val, p, hot);
             Node currentNode = (cmp < 0) ? hot.left : hot.right;
-            if (null == currentNode || val == currentNode.val)
+            if (null == currentNode || compare(val, p, currentNode) == 0)
                 return currentNode;
             hot = currentNode;
         }
@@ -47,18 +702,22 @@ public class RedBlackTree<T extends Comparable<T>> {
     public Node insert(T val) {
         Node x = search(val);
         if (x != null) return x;
-        x = new Node(val, hot, RED);
-        if (root == null) {
-            x.color = BLACK;
-            root = x;
-            return root;
-        }
+        return insertAtHot(val);
+    }
+
+    /**
+     * 在search留下的hot处接入红色的新节点并修正双红，调用前须确认val不在树中
+     */
+    private Node insertAtHot(T val) {
+        Node x = new Node(val, hot, RED);
+        if (root == null) root = x;
         if (hot != null) {
-            int cmp = val.compareTo(hot.val);
+            int cmp = compare(val, x.prefix, hot);
             if (cmp < 0)
                 hot.left = x;
             else
                 hot.right = x;
+            updateSizeAbove(hot, 1);
         }
         size++;
         Node oldNode = x;
@@ -75,15 +734,17 @@ public class RedBlackTree<T extends Comparable<T>> {
         Node g = p.parent;
         Node u = uncle(x);
         if ( isBlack(u) ) {//叔父节点是黑的情况
-            if (isLeftChild(x) && isLeftChild(p))
+            if (isLeftChild(x) == isLeftChild(p))
                 p.color = BLACK;
             else
                 x.color = BLACK;
+            g.color = RED;
             Node gg = g.parent;
             Node r = rotateAt(x);
             r.parent = gg;
+            fromParentTo(gg, g, r);
         } else {//叔父节点是红的情况
-            g.color = BLACK; g.height++;
+            p.color = BLACK; p.height++;
             u.color = BLACK; u.height++;
             if ( g.parent != null ) g.color = RED;
             solveDoubleRed(g);
@@ -108,6 +769,15 @@ public class RedBlackTree<T extends Comparable<T>> {
         return b;
     }
 
+    /**
+     * 旋转后由子树新根r替换原子树根g在父节点gg中的位置，gg为空则r成为树根
+     */
+    private void fromParentTo(Node gg, Node g, Node r) {
+        if (gg == null) root = r;
+        else if (gg.left == g) gg.left = r;
+        else gg.right = r;
+    }
+
     /**
      * 需要（3+4）旋转重构的场景包括以下四种：
      *                    场景一            场景二           场景三            场景四
@@ -148,47 +818,113 @@ public class RedBlackTree<T extends Comparable<T>> {
     public boolean remove(T val) {
         Node node = search(val);
         if (node == null) return false;
+        removeNode(node);
+        return true;
+    }
+
+    /**
+     * 删除树中的节点node并修正双黑
+     */
+    private void removeNode(Node node) {
         //r 为被删除的节点的替代则。
-        Node r = removeAt(node, hot);
+        Node r = removeAt(node);
+        epoch++;
+        updateSizeAbove(hot, -1);
         size--;
         //删除后树为空 结束
         if ( size <= 0 )
-            return true;
+            return;
 
         //被删除的节点是根，则重新设置新根的颜色和更新树高。
         if ( hot == null ) {
             root.color = BLACK;
             updateHeight(root);
-            return true;
+            return;
         }
         //删除完成后,被删节点的父节点hot依然平衡，则整棵树的黑高度依然没有改变，则不调整。
-        if ( blackHeightUpdated(hot) ) return true;
+        if ( blackHeightUpdated(hot) ) return;
         if ( isRed(r) ) {
             r.color = BLACK;
             r.height++;
-            return true;
+            return;
         }
         solveDoubleBlack(r);
-        return true;
+    }
+
+    /**
+     * 批量操作中查找的起点：从上一次操作留下的节点finger出发向上回溯，直到val必然落在当前子树中。
+     * 批量操作按升序进行，只要finger.val不大于val，子树的下界就一定小于val，只需检查上界：
+     * 当前节点是父亲的左孩子且val小于父亲时，val就在当前子树中。finger.val大于val时直接从根出发。
+     */
+    private Node climb(Node finger, T val) {
+        if (finger == null || compare(finger.val, val) > 0) return root;
+        Node u = finger;
+        while (u.parent != null && !(u == u.parent.left && compare(val, u.parent.val) < 0)) u = u.parent;
+        return u;
+    }
+
+    /**
+     * 批量插入：先把batch排序，再按升序逐个插入。
+     * 每个关键码的查找从上一个关键码所在的节点回溯出发，相邻关键码共享的那段路径不必从根重走。
+     * @return 实际插入的关键码个数
+     */
+    public int insertAll(Collection<? extends T> batch) {
+        Object[] keys = batch.toArray();
+        Arrays.sort(keys, (Comparator<Object>) comparator);
+        Node finger = null;
+        int inserted = 0;
+        for (Object k : keys) {
+            T val = (T) k;
+            Node x = search(climb(finger, val), val);
+            if (x == null) {
+                x = insertAtHot(val);
+                inserted++;
+            }
+            finger = x;
+        }
+        return inserted;
+    }
+
+    /**
+     * 批量删除，做法同insertAll；删除后以hot作为下一个关键码的起点
+     * @return 实际删除的关键码个数
+     */
+    public int removeAll(Collection<? extends T> batch) {
+        Object[] keys = batch.toArray();
+        Arrays.sort(keys, (Comparator<Object>) comparator);
+        Node finger = null;
+        int removed = 0;
+        for (Object k : keys) {
+            T val = (T) k;
+            Node x = search(climb(finger, val), val);
+            if (x != null) {
+                removeNode(x);
+                removed++;
+            }
+            finger = hot;
+        }
+        return removed;
     }
 
     private void solveDoubleBlack(Node r) {
         Node p = ( r != null ) ? r.parent : hot;//获取r的父亲
         if ( p == null ) return;
-        Node s = (r == p.left) ? r.right : r.left;
+        Node s = (r == p.left) ? p.right : p.left;
         if ( isBlack(s) ) { //兄弟s为黑
             Node t = null;
             if ( isRed(s.right) ) t = s.right;
             if ( isRed(s.left) ) t = s.left;
             if ( t != null ) {//兄弟s有红孩子
                 boolean oldColor = p.color;
+                Node gg = p.parent;
                 Node b = rotateAt(t);
+                fromParentTo(gg, p, b);
                 if ( hasLeftChild(b) ) b.left.color = BLACK; updateHeight(b.left);
                 if ( hasRightChild(b) ) b.right.color = BLACK; updateHeight(b.right);
                 b.color = oldColor; updateHeight(b);
             } else { //黑s无红孩子
                 s.color = RED; s.height--;
-                if ( isRed(p) ) p.color = BLACK;
+                if ( isRed(p) ) { p.color = BLACK; updateHeight(p); }
                 else {
                     p.height--;
                     solveDoubleBlack(p);
@@ -198,7 +934,8 @@ public class RedBlackTree<T extends Comparable<T>> {
             s.color = BLACK; p.color = RED;
             Node t = isLeftChild(s) ? s.left : s.right;
             hot = p;
-            rotateAt(t);
+            Node gg = p.parent;
+            fromParentTo(gg, p, rotateAt(t));
             solveDoubleBlack(r);
         }
     }
@@ -209,7 +946,7 @@ public class RedBlackTree<T extends Comparable<T>> {
         return p.parent.left;
     }
 
-    private Node removeAt(Node x, Node hot) {
+    private Node removeAt(Node x) {
         Node w = x; //实际被删除的节点
         Node succ = null; //实际被删除节点的接替者
         if (!hasLeftChild(x)) {
@@ -220,6 +957,7 @@ public class RedBlackTree<T extends Comparable<T>> {
             w = succ(x);
             Node tmp = x;
             x.val = w.val;
+            x.prefix = w.prefix;
             w.val = tmp.val;
             Node u = w.parent;
             if (u == x) succ = w.right;
@@ -227,7 +965,8 @@ public class RedBlackTree<T extends Comparable<T>> {
         }
         hot = w.parent;
         if (succ != null) succ.parent = hot;
-        if (hot.left == w) hot.left = succ;
+        if (hot == null) root = succ;
+        else if (hot.left == w) hot.left = succ;
         else hot.right = succ;
         return succ;
     }
@@ -250,15 +989,16 @@ public class RedBlackTree<T extends Comparable<T>> {
         return x.parent.right == x;
     }
 
+    //外部节点（null）视作黑节点
     private boolean isRed(Node x) {
-        return x.color;
+        return x != null && x.color == RED;
     }
     private boolean isBlack(Node x) {
-        return x.color;
+        return !isRed(x);
     }
 
     /**
-     * 当前节点的直接后继节点
+     * 当前节点的直接后继节点，x为最大节点时返回null
      */
     private Node succ(Node x) {
         Node s = null;
@@ -267,7 +1007,23 @@ public class RedBlackTree<T extends Comparable<T>> {
             while (s.left != null) s = s.left;
         } else {
             s = x;
-            while (s.parent.right == s) s = s.parent;
+            while (s.parent != null && s.parent.right == s) s = s.parent;
+            s = s.parent;
+        }
+        return s;
+    }
+
+    /**
+     * 当前节点的直接前驱节点，x为最小节点时返回null
+     */
+    private Node pred(Node x) {
+        Node s = null;
+        if (hasLeftChild(x)) {
+            s = x.left;
+            while (s.right != null) s = s.right;
+        } else {
+            s = x;
+            while (s.parent != null && s.parent.left == s) s = s.parent;
             s = s.parent;
         }
         return s;
@@ -277,31 +1033,73 @@ public class RedBlackTree<T extends Comparable<T>> {
      * 中序遍历
      */
     public void inOrderTraversal() {
-        Stack<RedBlackTree.Node> stack = new Stack();
-        Node nodePosi = root;
-        System.out.println(root.left.val);
-        while (true) {
-            if (nodePosi != null) {
-                stack.push(nodePosi);
-                nodePosi = nodePosi.left;
-            } else if (!stack.isEmpty()) {
-                Node x = stack.pop();
-                System.out.print(x.val + "   ");
-                nodePosi = x.right;
-            } else break;
-        }
+        for (Node x = first(); x != null; x = succ(x))
+            System.out.print(x.val + "   ");
         System.out.println();
     }
 
+    /**
+     * 中序遍历，依次把每个元素交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        for (Node x = first(); x != null; x = succ(x)) visit.accept(x.val);
+    }
+
+    /**
+     * 当前全部关键码的只读快照，做法同AVL.freeze()
+     */
+    public FrozenTree<T> freeze() {
+        Object[] sorted = new Object[size()];
+        int i = 0;
+        for (Node x = first(); x != null; x = succ(x)) sorted[i++] = x.val;
+        return new FrozenTree<>(sorted, comparator, keyPrefix);
+    }
+
+    /**
+     * 从channel的当前位置起按TreeFile的紧凑格式写出全部关键码：只有中序的关键码序列，不含节点和形状，
+     * 每个关键码由codec参照前一个编码，O(n)
+     */
+    public void writeTo(FileChannel channel, KeyCodec<? super T> codec) {
+        TreeFile.write(channel, size(), 0, 1.0, this::inOrderTraversal, codec);
+    }
+
+    /**
+     * 把TreeFile格式的文件映射进内存，读出关键码后由fromSorted直接建成处处平衡的树，不做插入和旋转，O(n)
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> load(Path file, KeyCodec<T> codec) {
+        return load(file, codec, Comparator.naturalOrder(), null);
+    }
+
+    /**
+     * 同load(file, codec)，文件中的关键码须按comparator严格递增
+     */
+    public static <T extends Comparable<T>> RedBlackTree<T> load(Path file, KeyCodec<T> codec, Comparator<? super T> comparator,
+                                                        ToLongFunction<? super T> keyPrefix) {
+        return fromSorted(TreeFile.read(file, codec).keys, comparator, keyPrefix);
+    }
+
     private void updateHeight(Node x) {
         x.height = Math.max(stature(x.left), stature(x.right));
-        x.height = isBlack(x) ? x.height++ : x.height;
+        if (isBlack(x)) x.height++;
+        x.size = sizeOf(x.left) + sizeOf(x.right) + 1;
     }
 
     private int stature(Node x) {
         return (x != null) ? x.height : 0;
     }
 
+    private int sizeOf(Node x) {
+        return (x != null) ? x.size : 0;
+    }
+
+    /**
+     * 接入或摘下一个节点后，其父亲x及x的所有祖先的子树规模都变化了delta。
+     * 须在重新平衡之前调用：之后的（3+4）重构由孩子重新计算规模，要求孩子的规模已经正确
+     */
+    private void updateSizeAbove(Node x, int delta) {
+        for (; x != null; x = x.parent) x.size += delta;
+    }
+
     private boolean blackHeightUpdated(Node x) {
         return stature(x.left) == stature(x.right) &&
         ((x).height == (isRed(x) ? stature(x.left) : stature(x.left) + 1));
@@ -327,6 +1125,17 @@ public class RedBlackTree<T extends Comparable<T>> {
         System.out.println(bst.search(20).parent.val);
         System.out.println(bst.search(20).left);
         System.out.println(bst.search(20).right.val);
+        RedBlackTree<Integer> bulk = RedBlackTree.fromSorted(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        bulk.inOrderTraversal();
+        RedBlackTree<Integer> odd = RedBlackTree.fromSorted(Arrays.asList(1, 3, 5, 7, 9, 11));
+        RedBlackTree<Integer> all = RedBlackTree.union(bulk, odd);
+        RedBlackTree<Integer> big = all.split(6);
+        all.inOrderTraversal();
+        big.inOrderTraversal();
+        System.out.println("rank 8: " + big.rank(8) + "  select 2: " + big.select(2) + "  count [7, 10): " + big.countRange(7, 10));
+        for (Integer k : big.range(7, 10)) System.out.print(k + "   ");
+        System.out.println();
+        System.out.println("sum: " + big.stream().parallel().mapToInt(Integer::intValue).sum());
     }
 
 }
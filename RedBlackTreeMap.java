@@ -0,0 +1,144 @@
+package tree;
+
+/**
+ * 以红黑树实现的有序映射，插入时修正双红、删除时修正双黑的做法与RedBlackTree相同。
+ * 与AVLMap一样，查找和单次下行的put、remove、compute、merge等都在BinaryTreeMap中，这里只有重平衡。
+ */
+public class RedBlackTreeMap<K extends Comparable<K>, V> extends BinaryTreeMap<K, V> {
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    /**
+     * 新节点染红后修正双红
+     */
+    @Override
+    void afterInsert(Node x) {
+        x.color = RED;
+        solveDoubleRed(x);
+    }
+
+    private void solveDoubleRed(Node x) {
+        if (x.parent == null) {
+            x.color = BLACK; x.height += 1; return;
+        }
+        Node p = x.parent;
+        if ( isBlack(p) ) return;
+        Node g = p.parent;
+        Node u = uncle(x);
+        if ( isBlack(u) ) {//叔父节点是黑的情况
+            if (isLeftChild(x) == isLeftChild(p))
+                p.color = BLACK;
+            else
+                x.color = BLACK;
+            g.color = RED;
+            Node gg = g.parent;
+            Node r = rotateAt(x);
+            r.parent = gg;
+            fromParentTo(gg, g, r);
+        } else {//叔父节点是红的情况
+            p.color = BLACK; p.height++;
+            u.color = BLACK; u.height++;
+            if ( g.parent != null ) g.color = RED;
+            solveDoubleRed(g);
+        }
+    }
+
+    /**
+     * 节点摘除后修正双黑，各种情况的处理同RedBlackTree.removeNode
+     */
+    @Override
+    void afterRemove(Node r) {
+        if ( count <= 0 )
+            return;
+        if ( hot == null ) {
+            root.color = BLACK;
+            updateHeight(root);
+            return;
+        }
+        if ( blackHeightUpdated(hot) ) return;
+        if ( isRed(r) ) {
+            r.color = BLACK;
+            r.height++;
+            return;
+        }
+        solveDoubleBlack(r);
+    }
+
+    private void solveDoubleBlack(Node r) {
+        Node p = ( r != null ) ? r.parent : hot;//获取r的父亲
+        if ( p == null ) return;
+        Node s = (r == p.left) ? p.right : p.left;
+        if ( isBlack(s) ) { //兄弟s为黑
+            Node t = null;
+            if ( isRed(s.right) ) t = s.right;
+            if ( isRed(s.left) ) t = s.left;
+            if ( t != null ) {//兄弟s有红孩子
+                boolean oldColor = p.color;
+                Node gg = p.parent;
+                Node b = rotateAt(t);
+                fromParentTo(gg, p, b);
+                if ( b.left != null ) { b.left.color = BLACK; updateHeight(b.left); }
+                if ( b.right != null ) { b.right.color = BLACK; updateHeight(b.right); }
+                b.color = oldColor; updateHeight(b);
+            } else { //黑s无红孩子
+                s.color = RED; s.height--;
+                if ( isRed(p) ) { p.color = BLACK; updateHeight(p); }
+                else {
+                    p.height--;
+                    solveDoubleBlack(p);
+                }
+            }
+        } else { //兄弟s为红
+            s.color = BLACK; p.color = RED;
+            Node t = isLeftChild(s) ? s.left : s.right;
+            hot = p;
+            Node gg = p.parent;
+            fromParentTo(gg, p, rotateAt(t));
+            solveDoubleBlack(r);
+        }
+    }
+
+    private Node uncle(Node x) {
+        Node p = x.parent;
+        if (isLeftChild(p)) return p.parent.right;
+        return p.parent.left;
+    }
+
+    //外部节点（null）视作黑节点
+    private boolean isRed(Node x) {
+        return x != null && x.color == RED;
+    }
+
+    private boolean isBlack(Node x) {
+        return !isRed(x);
+    }
+
+    @Override
+    void updateHeight(Node x) {
+        x.height = Math.max(stature(x.left), stature(x.right));
+        if (isBlack(x)) x.height++;
+    }
+
+    private int stature(Node x) {
+        return (x != null) ? x.height : 0;
+    }
+
+    private boolean blackHeightUpdated(Node x) {
+        return stature(x.left) == stature(x.right) &&
+        (x.height == (isRed(x) ? stature(x.left) : stature(x.left) + 1));
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Red Black Tree Map API");
+        RedBlackTreeMap<Integer, String> map = new RedBlackTreeMap<>();
+        for (int i = 1; i <= 10; i++) map.put(i * 10, "v" + i);
+        map.computeIfPresent(50, (k, v) -> v + "!");
+        map.remove(30);
+        System.out.println(map);
+        System.out.println("ceiling(35): " + map.ceilingEntry(35) + "  floor(35): " + map.floorEntry(35) +
+                "  tail from 70: " + map.tailMap(70, true));
+        System.out.println("poll first: " + map.pollFirstEntry() + "  descending head: " + map.descendingMap().headMap(60));
+        map.descendingMap().headMap(60).clear();
+        System.out.println("after clearing keys above 60: " + map);
+    }
+}
@@ -0,0 +1,245 @@
+package tree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 伸展树：不维护任何平衡条件，每次访问之后都把被访问的节点沿路径伸展到树根。
+ * 刚被访问过的关键码离树根最近，访问集中在少数热点关键码上时，热点始终停留在树的上部，
+ * 查找路径比处处平衡的AVL、红黑树更短；代价是单次操作最坏O(n)，只有分摊意义上的O(log n)。
+ *
+ * 伸展以双层为单位自下而上进行，每次把节点v连同父亲p、祖父g一起重构：
+ * zig-zag（v与p异侧）即AVL中的（3+4）重构，v成为子树根，p、g分列左右；
+ * zig-zig（v与p同侧）则把g-p-v这条链整个翻转过来，v在上，p居中，g在下，
+ * 路径上的节点深度大致减半，这是伸展树分摊复杂度的关键；最后剩一层时做一次单旋。
+ *
+ * 注意search也会改变树的结构，即使只读也不能在多个线程间共享。
+ */
+public class SplayTree<T extends Comparable<T>> implements Iterable<T> {
+    private Node root;
+    private Node hot;//查找失败时为最后访问的节点
+    private int count;
+    private class Node{
+        private T val;
+        private Node parent, left, right;
+        public Node(T val, Node parent) {
+            this.val = val;
+            this.parent = parent;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 查找val，并把命中的节点（查找失败时为最后访问的节点）伸展到树根
+     * @return 命中的节点，没有则为null
+     */
+    public Node search(T val) {
+        Node x = searchIn(val);
+        root = splay(x != null ? x : hot);
+        return x;
+    }
+
+    /**
+     * 从树根向下查找，不伸展
+     */
+    private Node searchIn(T val) {
+        hot = null;
+        for (Node x = root; x != null; ) {
+            int cmp = val.compareTo(x.val);
+            if (cmp == 0) return x;
+            hot = x;
+            x = (cmp < 0) ? x.left : x.right;
+        }
+        return null;
+    }
+
+    /**
+     * 插入val，新节点成为树根：先查找val，查找失败时hot已伸展到树根，
+     * 以val为新根，原树根连同其一侧子树挂在另一侧
+     */
+    public Node insert(T val) {
+        if (root == null) {
+            count++;
+            return root = new Node(val, null);
+        }
+        if (search(val) != null) return root;
+        Node t = root;
+        Node x = new Node(val, null);
+        if (t.val.compareTo(val) < 0) {
+            //t及其左子树都小于val，t的右子树都大于val
+            attachAsRChild(x, t.right);
+            t.right = null;
+            attachAsLChild(x, t);
+        } else {
+            attachAsLChild(x, t.left);
+            t.left = null;
+            attachAsRChild(x, t);
+        }
+        count++;
+        return root = x;
+    }
+
+    /**
+     * 删除val：查找后val已在树根，摘掉树根，再把右子树的最小节点伸展上来接住左子树
+     */
+    public boolean remove(T val) {
+        if (root == null || search(val) == null) return false;
+        Node w = root;
+        if (w.left == null) {
+            root = w.right;
+            if (root != null) root.parent = null;
+        } else if (w.right == null) {
+            root = w.left;
+            root.parent = null;
+        } else {
+            Node l = w.left;
+            l.parent = null;
+            Node r = w.right;
+            r.parent = null;
+            Node m = r;
+            while (m.left != null) m = m.left;
+            root = splay(m);//m是右子树的最小节点，伸展到根后没有左孩子
+            attachAsLChild(root, l);
+        }
+        count--;
+        return true;
+    }
+
+    /**
+     * 把v自下而上伸展到其所在子树的根，返回v
+     */
+    private Node splay(Node v) {
+        if (v == null) return null;
+        Node p, g;
+        while ((p = v.parent) != null && (g = p.parent) != null) {
+            Node gg = g.parent;
+            boolean gIsLC = gg != null && gg.left == g;
+            if (p.left == v) {
+                if (g.left == p) { //zig-zig
+                    attachAsLChild(g, p.right);
+                    attachAsLChild(p, v.right);
+                    attachAsRChild(p, g);
+                    attachAsRChild(v, p);
+                } else { //zig-zag
+                    connect34(g, v, p, g.left, v.left, v.right, p.right);
+                }
+            } else {
+                if (g.right == p) { //zag-zag
+                    attachAsRChild(g, p.left);
+                    attachAsRChild(p, v.left);
+                    attachAsLChild(p, g);
+                    attachAsLChild(v, p);
+                } else { //zag-zig
+                    connect34(p, v, g, p.left, v.left, v.right, g.right);
+                }
+            }
+            if (gg == null) v.parent = null;
+            else if (gIsLC) attachAsLChild(gg, v);
+            else attachAsRChild(gg, v);
+        }
+        if ((p = v.parent) != null) { //只剩一层，单旋
+            if (p.left == v) {
+                attachAsLChild(p, v.right);
+                attachAsRChild(v, p);
+            } else {
+                attachAsRChild(p, v.left);
+                attachAsLChild(v, p);
+            }
+        }
+        v.parent = null;
+        return v;
+    }
+
+    /**                           b
+     * （3+4) - 重构            ↙    ↘︎
+     *                       a       c
+     *                     ↙︎  ↘︎     ↙︎ ↘︎
+     *                    t0  t1  t2   t3
+     */
+    private Node connect34(Node a, Node b, Node c,
+                           Node t0, Node t1, Node t2, Node t3) {
+        a.left  = t0; if (t0 != null) t0.parent = a;
+        a.right = t1; if (t1 != null) t1.parent = a;
+        c.left  = t2; if (t2 != null) t2.parent = c;
+        c.right = t3; if (t3 != null) t3.parent = c;
+        b.left  = a; a.parent = b;
+        b.right = c; c.parent = b;
+        return b;
+    }
+
+    private void attachAsLChild(Node p, Node lc) {
+        p.left = lc;
+        if (lc != null) lc.parent = p;
+    }
+
+    private void attachAsRChild(Node p, Node rc) {
+        p.right = rc;
+        if (rc != null) rc.parent = p;
+    }
+
+    /**
+     * 当前节点的直接后继节点，x为最大节点时返回null
+     */
+    private Node succ(Node x) {
+        if (x.right != null) {
+            x = x.right;
+            while (x.left != null) x = x.left;
+            return x;
+        }
+        while (x.parent != null && x.parent.right == x) x = x.parent;
+        return x.parent;
+    }
+
+    private Node first() {
+        Node x = root;
+        if (x != null) while (x.left != null) x = x.left;
+        return x;
+    }
+
+    /**
+     * 升序迭代器，遍历本身不伸展；遍历期间修改或查找树，结果未定义
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Node next = first();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) throw new NoSuchElementException();
+                T val = next.val;
+                next = succ(next);
+                return val;
+            }
+        };
+    }
+
+    /**
+     * 中序遍历，依次把每个关键码交给visit处理
+     */
+    public void inOrderTraversal(Consumer<? super T> visit) {
+        for (Node x = first(); x != null; x = succ(x)) visit.accept(x.val);
+    }
+
+    public static void main(String args[]) {
+        System.out.println("Splay Tree API");
+        SplayTree<Integer> splay = new SplayTree<>();
+        for (int i = 1; i <= 10; i++) splay.insert(i);
+        splay.search(3);
+        System.out.println("root after search(3): " + splay.root.val);
+        splay.remove(3);
+        splay.remove(7);
+        System.out.println("root after remove(3), remove(7): " + splay.root.val);
+        for (Integer k : splay) System.out.print(k + "   ");
+        System.out.println();
+    }
+}
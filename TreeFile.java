@@ -0,0 +1,223 @@
+package tree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 树的紧凑二进制格式：只保存按中序排列的关键码，不保存节点和形状。
+ * 读回时由AVL.fromSorted、RedBlackTree.fromSorted、B_Tree.bulkLoad自底向上直接建成平衡的树，O(n)，
+ * 不做任何一次插入或旋转。AVL与红黑树的文件可以互相读取，B树的文件也可以读成二叉树；
+ * B_Tree.load需要文件中记下的阶次，只读B树写出的文件。
+ *
+ * 文件头：magic long、版本 int、B树阶次 int（二叉树为0）、B树节点的平均填充率 double、关键码个数 long；
+ * 其后是关键码，由KeyCodec参照前一个关键码编码。
+ * 读取时把文件映射进内存，按1GB的窗口顺序前进，不经过额外的读缓冲。
+ */
+public final class TreeFile {
+    private static final long MAGIC = 0x5452454546494C45L;//"TREEFILE"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8 + 4 + 4 + 8 + 8;
+
+    private TreeFile() {
+    }
+
+    /**
+     * 从channel的当前位置起写出文件头和count个按序排列的关键码
+     * @param keys 依次把每个关键码交给它的Consumer，通常是树的inOrderTraversal
+     */
+    static <T> void write(FileChannel channel, long count, int order, double fill,
+                          Consumer<Consumer<T>> keys, KeyCodec<? super T> codec) {
+        Output out = new Output(channel);
+        out.buf.putLong(MAGIC).putInt(VERSION).putInt(order).putDouble(fill).putLong(count);
+        long[] written = {0};
+        Object[] prev = {null};
+        keys.accept(key -> {
+            @SuppressWarnings("unchecked")
+            T p = (T) prev[0];
+            codec.write(p, key, out);
+            prev[0] = key;
+            written[0]++;
+        });
+        if (written[0] != count) throw new IllegalStateException("wrote " + written[0] + " keys, expected " + count);
+        out.flush();
+    }
+
+    /**
+     * 读回的内容：按序排列的关键码，以及写出时B树的阶次和填充率
+     */
+    static final class Contents<T> {
+        final List<T> keys;
+        final int order;
+        final double fill;
+
+        private Contents(List<T> keys, int order, double fill) {
+            this.keys = keys;
+            this.order = order;
+            this.fill = fill;
+        }
+    }
+
+    static <T> Contents<T> read(Path file, KeyCodec<T> codec) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            in.ensure(HEADER);
+            if (in.buf.getLong() != MAGIC) throw new IllegalArgumentException(file + " is not a tree file");
+            int version = in.buf.getInt();
+            if (version != VERSION) throw new IllegalArgumentException(file + " has unsupported version " + version);
+            int order = in.buf.getInt();
+            double fill = in.buf.getDouble();
+            long count = in.buf.getLong();
+            if (count > Integer.MAX_VALUE - 8) throw new IllegalArgumentException(file + " holds too many keys: " + count);
+            List<T> keys = new ArrayList<>((int) count);
+            T prev = null;
+            for (long i = 0; i < count; i++) {
+                prev = codec.read(prev, in);
+                keys.add(prev);
+            }
+            return new Contents<>(keys, order, fill);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写出：经64KB的缓冲区顺序写入FileChannel
+     */
+    public static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public void writeByte(int b) {
+            if (!buf.hasRemaining()) drain();
+            buf.put((byte) b);
+        }
+
+        /**
+         * 无符号变长编码：每字节7位，低位在前，最高位为1表示后面还有
+         */
+        public void writeVarLong(long v) {
+            if (buf.remaining() < 10) drain();
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        public void writeBytes(byte[] b) {
+            for (int off = 0; off < b.length; ) {
+                if (!buf.hasRemaining()) drain();
+                int n = Math.min(buf.remaining(), b.length - off);
+                buf.put(b, off, n);
+                off += n;
+            }
+        }
+
+        private void drain() {
+            buf.flip();
+            try {
+                while (buf.hasRemaining()) channel.write(buf);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buf.clear();
+        }
+
+        private void flush() {
+            drain();
+        }
+    }
+
+    /**
+     * 读取：文件按窗口映射进内存，当前窗口剩余不足时从当前位置重新映射
+     */
+    public static final class Input {
+        private static final long WINDOW = 1L << 30;
+
+        private final FileChannel channel;
+        private final long size;
+        private long base;//当前窗口在文件中的起点
+        private MappedByteBuffer buf;
+
+        private Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long pos) {
+            base = pos;
+            try {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, size - pos));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 保证当前窗口中至少还有n个字节
+         */
+        private void ensure(int n) {
+            if (buf.remaining() >= n) return;
+            long pos = base + buf.position();
+            if (size - pos < n) throw new IllegalStateException("unexpected end of tree file at byte " + pos);
+            if (n > WINDOW) throw new IllegalStateException("record of " + n + " bytes exceeds the mapping window");
+            map(pos);
+        }
+
+        public int readByte() {
+            ensure(1);
+            return buf.get() & 0xFF;
+        }
+
+        public long readVarLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+        }
+
+        public byte[] readBytes(int n) {
+            ensure(n);
+            byte[] b = new byte[n];
+            buf.get(b);
+            return b;
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        System.out.println("Tree File API");
+        Path file = Files.createTempFile("tree", ".bin");
+        RedBlackTree<Integer> rb = new RedBlackTree<>();
+        for (int i = 1; i <= 1000; i++) rb.insert(3 * i);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            rb.writeTo(channel, KeyCodec.INTEGER);
+        }
+        System.out.println("1000 keys in " + Files.size(file) + " bytes");
+        AVL<Integer> avl = AVL.load(file, KeyCodec.INTEGER);
+        B_Tree<Integer> bt = B_Tree.bulkLoad(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), 4, 1.0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            bt.writeTo(channel, KeyCodec.INTEGER);
+        }
+        bt = B_Tree.load(file, KeyCodec.INTEGER);
+        System.out.println("avl size: " + avl.size() + "  search 300: " + (avl.search(300) != null) + "  search 301: " + (avl.search(301) != null));
+        System.out.println("b-tree size: " + bt.size() + "  search 7: " + (bt.search(7) != null));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,37 @@
+package tree;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NodeSearch的向量化实现，单独成类：只有确认jdk.incubator.vector存在后才会被加载。
+ */
+final class VectorNodeSearch {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int WINDOW = 2 * LANES;//最后用向量比较的窗口，AVX-512上为16个关键码
+
+    private VectorNodeSearch() {
+    }
+
+    /**
+     * 先按NodeSearch.branchless把答案所在的区间缩小到不超过w个关键码，
+     * 再取一个含该区间、长为w且不越过n的窗口逐向量比较，数出其中不大于e的关键码
+     */
+    static int rank(long[] key, int n, long e) {
+        int w = Math.min(WINDOW, n - n % LANES);
+        if (w == 0) return NodeSearch.branchless(key, n, e);
+        int base = 0, len = n;
+        while (len > w) {
+            int half = len >>> 1;
+            base = (key[base + half - 1] <= e) ? base + half : base;
+            len -= half;
+        }
+        int s = Math.min(base, n - w);//[s, base)中的关键码都不大于e
+        int count = s;
+        for (int i = s; i < s + w; i += LANES)
+            count += LongVector.fromArray(SPECIES, key, i).compare(VectorOperators.LE, e).trueCount();
+        return count - 1;
+    }
+}
@@ -0,0 +1,191 @@
+package tree;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * 带预写日志的DiskBTree的崩溃恢复检查，在临时目录中的真实文件上反复模拟崩溃：
+ * AFTER_SYNC        sync()之后又做了一些未确认的操作时崩溃；
+ * AFTER_CHECKPOINT  检查点之后又做了一些操作（其中一部分随组提交已fsync）时崩溃；
+ * DURING_WRITE_BACK 缓冲池淘汰或检查点写回脏页时，某一页只写了一半就崩溃；
+ * LOST_RENAME       检查点写回了全部脏页、写好了新日志，但改名没有落盘就崩溃，恢复时用的仍是旧日志。
+ *
+ * 以TreeSet为模型跟踪每次成功的插入、删除。日志每fsync一次（显式sync、组提交、记页镜像前的刷日志），
+ * 此前的操作都已确认；检查点也确认此前的全部操作。重新打开后，树中的关键码必须等于
+ * 已确认的状态再依次重做未确认操作的某个前缀（日志缓冲区写满时会提前落盘一部分，但不会跳过中间的记录）。
+ * 恢复后再做一轮操作并正常关闭、重新打开，确认恢复出的树结构完好。
+ * 任一检查不通过即抛出AssertionError。
+ */
+public final class WalCrashCheck {
+    private static final int PAGE_SIZE = 512;
+    private static final int POOL_PAGES = 8;//缓冲池很小，插入、删除途中频繁淘汰脏页
+    private static final int SYNC_EVERY = 32;
+    private static final int UNIVERSE = 4000;//关键码取自[0, UNIVERSE)
+
+    private enum Scenario { AFTER_SYNC, AFTER_CHECKPOINT, DURING_WRITE_BACK, LOST_RENAME }
+
+    private final Path file, log;
+    private final Random random;
+    private DiskBTree tree;
+    private TreeSet<Long> current = new TreeSet<>();//模型：崩溃前内存中的状态
+    private TreeSet<Long> acked = new TreeSet<>();//最近一次确认时的状态
+    private final List<long[]> pending = new ArrayList<>();//此后成功的操作：{类型, 关键码}
+    private long syncs;
+    private TreeSet<Long> recovered;//崩溃后重新打开时树中的关键码
+
+    private WalCrashCheck(Path dir, long seed) {
+        this.file = dir.resolve("tree.db");
+        this.log = dir.resolve("tree.wal");
+        this.random = new Random(seed);
+    }
+
+    private DiskBTree open() {
+        return new DiskBTree(file, PAGE_SIZE, DiskBTree.maxOrder(PAGE_SIZE), POOL_PAGES, log, SYNC_EVERY);
+    }
+
+    /**
+     * 随机插入或删除一个关键码，更新模型。操作途中日志fsync过则此前的操作都已确认；
+     * 这次操作本身未必：淘汰脏页引起的fsync发生在它追加日志记录之前，所以仍把它留在pending中
+     */
+    private void step() {
+        long k = random.nextInt(UNIVERSE);
+        boolean insert = random.nextInt(100) < 60;
+        boolean changed = insert ? tree.insert(k) : tree.remove(k);
+        if (changed != (insert ? current.add(k) : current.remove(k)))
+            throw new AssertionError((insert ? "insert " : "remove ") + k + " returned " + changed);
+        if (tree.writeAheadLog().syncs() != syncs) {
+            ack();
+            if (changed) {
+                if (insert) acked.remove(k);
+                else acked.add(k);
+            }
+        }
+        if (changed) pending.add(new long[]{insert ? WriteAheadLog.INSERT : WriteAheadLog.REMOVE, k});
+    }
+
+    private void ack() {
+        syncs = tree.writeAheadLog().syncs();
+        acked = new TreeSet<>(current);
+        pending.clear();
+    }
+
+    private void run(Scenario scenario) {
+        tree = open();
+        syncs = tree.writeAheadLog().syncs();
+        int ops = 2000 + random.nextInt(4000);
+        switch (scenario) {
+            case AFTER_SYNC:
+                for (int i = 0; i < ops; i++) step();
+                tree.sync();
+                ack();
+                for (int i = random.nextInt(2 * SYNC_EVERY); i > 0; i--) step();
+                break;
+            case AFTER_CHECKPOINT:
+                for (int i = 0; i < ops; i++) step();
+                tree.checkpoint();
+                ack();
+                for (int i = random.nextInt(4 * SYNC_EVERY); i > 0; i--) step();
+                break;
+            case DURING_WRITE_BACK:
+                for (int i = 0; i < ops / 2; i++) step();
+                tree.bufferPool().tearAfterWrites(random.nextInt(200));
+                try {
+                    for (int i = 0; i < ops / 2; i++) step();
+                    tree.checkpoint();//淘汰时还没有撕裂的话，检查点写回全部脏页时一定会
+                    throw new AssertionError("no torn write happened");
+                } catch (BufferPool.SimulatedCrash expected) {
+                    //正在进行的那次操作没有写日志，不在pending中
+                }
+                break;
+            case LOST_RENAME:
+                for (int i = 0; i < ops; i++) step();
+                tree.writeAheadLog().loseNextRename();
+                try {
+                    tree.checkpoint();
+                    throw new AssertionError("checkpoint did not crash");
+                } catch (BufferPool.SimulatedCrash expected) {
+                    ack();//数据文件已写回并fsync，检查点之前的操作都应当持久
+                }
+                break;
+        }
+        tree.crash();
+        verify(recovered());
+        //恢复出的树继续使用，正常关闭后重新打开应与模型完全一致
+        tree = open();
+        current = recovered();
+        syncs = tree.writeAheadLog().syncs();
+        for (int i = 0; i < 500; i++) step();
+        tree.close();
+        tree = open();
+        TreeSet<Long> reopened = keys();
+        tree.close();
+        if (!reopened.equals(current)) throw new AssertionError(scenario + ": reopened tree differs after recovery");
+    }
+
+    /**
+     * 重新打开（即恢复）后树中的关键码，只在每次崩溃后读一次
+     */
+    private TreeSet<Long> recovered() {
+        if (recovered == null) {
+            tree = open();
+            recovered = keys();
+            tree.close();
+        }
+        return new TreeSet<>(recovered);
+    }
+
+    private TreeSet<Long> keys() {
+        TreeSet<Long> keys = new TreeSet<>();
+        for (long k = 0; k < UNIVERSE; k++) if (tree.search(k)) keys.add(k);
+        if (tree.size() != keys.size())
+            throw new AssertionError("size " + tree.size() + " but " + keys.size() + " keys found");
+        return keys;
+    }
+
+    /**
+     * 恢复出的状态必须是已确认的状态加上未确认操作的某个前缀
+     */
+    private void verify(TreeSet<Long> got) {
+        TreeSet<Long> expect = new TreeSet<>(acked);
+        if (got.equals(expect)) return;
+        for (long[] op : pending) {
+            if (op[0] == WriteAheadLog.INSERT) expect.add(op[1]);
+            else expect.remove(op[1]);
+            if (got.equals(expect)) return;
+        }
+        TreeSet<Long> lost = new TreeSet<>(acked);
+        lost.removeAll(got);
+        TreeSet<Long> extra = new TreeSet<>(got);
+        extra.removeAll(acked);
+        throw new AssertionError("recovered " + got.size() + " keys, acknowledged " + acked.size()
+                + ", pending " + pending.size() + "; missing e.g. " + first(lost) + ", unexpected e.g. " + first(extra));
+    }
+
+    private static Object first(TreeSet<Long> s) {
+        return s.isEmpty() ? "none" : s.first();
+    }
+
+    public static void main(String args[]) throws Exception {
+        int seeds = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        for (Scenario scenario : Scenario.values()) {
+            for (long seed = 0; seed < seeds; seed++) {
+                Path dir = Files.createTempDirectory("wal-crash");
+                try {
+                    new WalCrashCheck(dir, seed).run(scenario);
+                } catch (AssertionError | RuntimeException e) {
+                    throw new AssertionError(scenario + " failed with seed " + seed, e);
+                } finally {
+                    Files.deleteIfExists(dir.resolve("tree.db"));
+                    Files.deleteIfExists(dir.resolve("tree.wal"));
+                    Files.deleteIfExists(dir.resolve("tree.wal.tmp"));
+                    Files.delete(dir);
+                }
+            }
+            System.out.println(scenario + ": " + seeds + " crashes recovered");
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package tree;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * DiskBTree的预写日志（write-ahead log）。
+ *
+ * 日志中有两种记录：
+ * 1, 逻辑记录 INSERT e / REMOVE e：每次成功的插入、删除追加一条，13字节，不论它引起了多少次分裂、旋转与合并。
+ * 2, 页镜像 PAGE p：检查点之后第p页第一次被写回数据文件之前，先把它在数据文件中的旧内容记下，
+ *    此时文件中的内容一定还是检查点时的内容。同一页在两个检查点之间只记一次。
+ *
+ * 缓冲池随时可能把脏页写回数据文件（淘汰或flush），solveOverflow、solveUnderflow做到一半时也不例外，
+ * 数据文件因此可能停在一次分裂或合并的中间。但被覆盖过的页都在日志中留有镜像：恢复时把镜像写回，
+ * 再截掉检查点之后新分配的页，数据文件就精确地回到检查点时的状态；然后按顺序重做逻辑记录，
+ * 结构修改由insert、remove本身重新完成。页镜像必须先于页落盘，因此记下镜像后、写回页之前要刷一次日志。
+ *
+ * 组提交：逻辑记录先进内存缓冲区，每syncEvery条才写入文件并fsync一次，一次fsync的代价由一批操作分摊；
+ * 崩溃时最后不满一批的操作可能丢失，需要确认持久的调用者可以随时调用sync()。
+ *
+ * 检查点：DiskBTree先fsync日志，再写回全部脏页并fsync数据文件（首次覆盖的页照样先记镜像），
+ * 然后由checkpoint(pages)用一个只有文件头的新日志原子地替换旧日志，并fsync所在目录使改名落盘。
+ * 改名若没有落盘，恢复时用的仍是旧日志：数据文件回到上一个检查点，再重做旧日志中的全部记录，
+ * 所以旧日志必须在写回脏页之前就包含检查点之前的全部逻辑记录。
+ *
+ * 文件头：magic long、页大小 int、检查点时数据文件的页数 int、CRC int；
+ * 记录：类型 byte、关键码 long（或页号 int + 一页内容）、CRC int，CRC覆盖类型和内容。
+ * 恢复时读到第一条不完整或CRC不符的记录为止，其后是崩溃时没有写完的部分，截掉。
+ */
+public class WriteAheadLog implements Closeable {
+    static final byte INSERT = 1;
+    static final byte REMOVE = 2;
+    private static final byte PAGE = 3;
+    private static final long MAGIC = 0x57414C4C4F47L;//"WALLOG"
+    private static final int HEADER = 20;
+    private static final int KEY_RECORD = 1 + 8 + 4;
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private final Path file;
+    private final int pageSize;
+    private final int syncEvery;
+    private final FileChannel data;//数据文件，用来读出页镜像，恢复时写回
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);//尚未写入日志文件的记录
+    private final CRC32C crc = new CRC32C();
+    private final BitSet imaged = new BitSet();//检查点之后已记下镜像的页
+    private int checkpointPages;//检查点时数据文件的页数，此后新分配的页不需要镜像
+    private long length;//已写入日志文件的字节数
+    private int pending;//上次fsync之后追加的逻辑记录数
+    private long syncs;
+    private boolean loseRename;//模拟崩溃：下一次检查点写好新日志后、改名之前崩溃
+    //恢复时读出的逻辑记录，等待DiskBTree重做
+    private byte[] redoType = new byte[0];
+    private long[] redoKey = new long[0];
+    private int redoCount;
+
+    /**
+     * 打开或新建日志。日志已存在时立即做恢复的前一半：写回页镜像、截断数据文件，
+     * 逻辑记录留给replay()重做；日志不存在时认为数据文件本身就是一个检查点。
+     * 必须在数据文件被BufferPool打开之前调用。
+     * @param syncEvery 每多少条逻辑记录fsync一次日志，1表示每次操作都fsync
+     */
+    public WriteAheadLog(Path file, Path dataFile, int pageSize, int syncEvery) {
+        if (syncEvery < 1) throw new IllegalArgumentException("syncEvery must be positive");
+        this.file = file;
+        this.pageSize = pageSize;
+        this.syncEvery = syncEvery;
+        try {
+            this.data = FileChannel.open(dataFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (Files.exists(file)) {
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                recover();
+            } else {
+                checkpoint((int) (data.size() / pageSize));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 上次fsync以来的逻辑记录数达到syncEvery时自动fsync
+     */
+    void append(byte type, long key) {
+        if (buffer.remaining() < KEY_RECORD) drain();
+        int start = buffer.position();
+        buffer.put(type).putLong(key);
+        crc.reset();
+        crc.update(buffer.array(), start, 9);
+        buffer.putInt((int) crc.getValue());
+        if (++pending >= syncEvery) sync();
+    }
+
+    /**
+     * 把缓冲区中的记录写入日志文件并fsync，此前的操作都已持久
+     */
+    public void sync() {
+        drain();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pending = 0;
+        syncs++;
+    }
+
+    /**
+     * 缓冲池写回这些页之前的回调：检查点之后首次覆盖的页，先从数据文件读出旧内容记为镜像，再刷日志
+     */
+    void beforeWriteBack(int[] pageIds) {
+        boolean logged = false;
+        ByteBuffer record = null;
+        try {
+            for (int p : pageIds) {
+                if (p >= checkpointPages || imaged.get(p)) continue;
+                if (record == null) {
+                    drain();
+                    record = ByteBuffer.allocate(1 + 4 + pageSize + 4);
+                }
+                record.clear();
+                record.put(PAGE).putInt(p);
+                record.limit(5 + pageSize);
+                while (record.hasRemaining()) {
+                    if (data.read(record, (long) p * pageSize + record.position() - 5) < 0) break;
+                }
+                while (record.hasRemaining()) record.put((byte) 0);
+                record.limit(record.capacity());
+                crc.reset();
+                crc.update(record.array(), 0, 5 + pageSize);
+                record.putInt((int) crc.getValue());
+                record.flip();
+                while (record.hasRemaining()) length += channel.write(record, length);
+                imaged.set(p);
+                logged = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (logged) sync();
+    }
+
+    /**
+     * 数据文件已与内存一致并fsync后调用：以只有文件头的新日志原子地替换旧日志
+     * @param pages 此时数据文件的页数
+     */
+    void checkpoint(int pages) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        head.putLong(MAGIC).putInt(pageSize).putInt(pages);
+        crc.reset();
+        crc.update(head.array(), 0, 16);
+        head.putInt((int) crc.getValue());
+        head.flip();
+        try {
+            try (FileChannel c = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (head.hasRemaining()) c.write(head);
+                c.force(true);
+            }
+            if (loseRename) {
+                loseRename = false;
+                throw new BufferPool.SimulatedCrash("rename of " + tmp + " lost");
+            }
+            if (channel != null) channel.close();
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(file);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = HEADER;
+        buffer.clear();
+        pending = 0;
+        imaged.clear();
+        checkpointPages = pages;
+    }
+
+    /**
+     * 模拟崩溃：下一次检查点写好新日志后不改名，抛出SimulatedCrash，效果同改名没有落盘
+     */
+    void loseNextRename() {
+        this.loseRename = true;
+    }
+
+    /**
+     * fsync文件所在的目录，新建、改名的目录项才真正落盘；Windows上不能打开目录，跳过
+     */
+    static void syncDirectory(Path file) throws IOException {
+        if (File.separatorChar == '\\') return;
+        try (FileChannel dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+
+    /**
+     * 依次重做恢复时读出的逻辑记录，之后丢弃它们
+     */
+    void replay(LongConsumer insert, LongConsumer remove) {
+        for (int i = 0; i < redoCount; i++) {
+            if (redoType[i] == INSERT) insert.accept(redoKey[i]);
+            else remove.accept(redoKey[i]);
+        }
+        redoType = new byte[0];
+        redoKey = new long[0];
+        redoCount = 0;
+    }
+
+    /**
+     * 日志的字节数，含尚在缓冲区中的记录；DiskBTree据此决定何时做检查点
+     */
+    public long length() {
+        return length + buffer.position();
+    }
+
+    /**
+     * fsync的次数
+     */
+    public long syncs() {
+        return syncs;
+    }
+
+    @Override
+    public void close() {
+        sync();
+        try {
+            channel.close();
+            data.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 模拟崩溃：缓冲区中的记录直接丢弃
+     */
+    void abandon() {
+        try {
+            channel.close();
+            data.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) length += channel.write(buffer, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 读出全部完好的记录：页镜像立即写回数据文件，逻辑记录暂存；截掉日志的残缺尾部和检查点之后新分配的页
+     */
+    private void recover() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)), BUFFER_SIZE));
+        byte[] head = new byte[HEADER];
+        try {
+            in.readFully(head);
+        } catch (EOFException e) {
+            throw new IllegalStateException(file + " has a truncated header");
+        }
+        ByteBuffer h = ByteBuffer.wrap(head);
+        crc.reset();
+        crc.update(head, 0, 16);
+        if (h.getLong(0) != MAGIC || h.getInt(16) != (int) crc.getValue())
+            throw new IllegalStateException(file + " is not a write-ahead log");
+        if (h.getInt(8) != pageSize)
+            throw new IllegalArgumentException(file + " was written with page size " + h.getInt(8));
+        checkpointPages = h.getInt(12);
+        long pos = HEADER;
+        byte[] record = new byte[1 + 4 + pageSize + 4];
+        while (true) {
+            int type = in.read();
+            int body = (type == INSERT || type == REMOVE) ? 8 : (type == PAGE) ? 4 + pageSize : -1;
+            if (body < 0) break;
+            record[0] = (byte) type;
+            try {
+                in.readFully(record, 1, body + 4);
+            } catch (EOFException e) {
+                break;
+            }
+            ByteBuffer r = ByteBuffer.wrap(record);
+            crc.reset();
+            crc.update(record, 0, 1 + body);
+            if (r.getInt(1 + body) != (int) crc.getValue()) break;
+            if (type == PAGE) {
+                int p = r.getInt(1);
+                ByteBuffer page = ByteBuffer.wrap(record, 5, pageSize);
+                while (page.hasRemaining()) data.write(page, (long) p * pageSize + page.position() - 5);
+                imaged.set(p);
+            } else {
+                if (redoCount == redoKey.length) {
+                    int cap = Math.max(16, 2 * redoCount);
+                    redoType = Arrays.copyOf(redoType, cap);
+                    redoKey = Arrays.copyOf(redoKey, cap);
+                }
+                redoType[redoCount] = (byte) type;
+                redoKey[redoCount++] = r.getLong(1);
+            }
+            pos += 1 + body + 4;
+        }
+        data.truncate((long) checkpointPages * pageSize);
+        data.force(false);
+        channel.truncate(pos);
+        channel.force(false);
+        length = pos;
+    }
+}
@@ -0,0 +1,105 @@
+package array;
+
+import java.util.Arrays;
+
+/**
+ * 向量：以数组实现的线性表，元素按秩（下标）访问，容量不足时加倍、装填因子过低时减半。
+ * 树一章的B_Tree、BPlusTree、BTreeMap用它存放节点中的关键码和孩子。
+ */
+public class Vector<T> {
+    private static final int DEFAULT_CAPACITY = 3;//默认的初始容量
+    private Object[] elem;
+    private int size;
+
+    public Vector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Vector(int capacity) {
+        elem = new Object[Math.max(capacity, DEFAULT_CAPACITY)];
+        size = 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int r) {
+        checkRank(r, size);
+        return (T) elem[r];
+    }
+
+    /**
+     * 以e替换秩为r的元素，返回原来的元素
+     */
+    public T put(int r, T e) {
+        T old = get(r);
+        elem[r] = e;
+        return old;
+    }
+
+    /**
+     * 把e插入为秩为r的元素，0 <= r <= size
+     */
+    public void insert(int r, T e) {
+        checkRank(r, size + 1);
+        expand();
+        System.arraycopy(elem, r, elem, r + 1, size - r);
+        elem[r] = e;
+        size++;
+    }
+
+    /**
+     * 删除秩为r的元素并返回它
+     */
+    public T remove(int r) {
+        T e = get(r);
+        System.arraycopy(elem, r + 1, elem, r, size - r - 1);
+        elem[--size] = null;
+        shrink();
+        return e;
+    }
+
+    /**
+     * 有序向量的二分查找：返回不大于e的最后一个元素的秩，e小于所有元素时为-1；
+     * 有多个元素等于e时返回其中秩最大者，失败时返回值+1即为e应插入的位置
+     */
+    @SuppressWarnings("unchecked")
+    public int search(T e) {
+        Comparable<? super T> key = (Comparable<? super T>) e;
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            if (key.compareTo((T) elem[mi]) < 0) hi = mi;
+            else lo = mi + 1;
+        }
+        return lo - 1;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(elem, size));
+    }
+
+    //空间不足时扩容一倍
+    private void expand() {
+        if (size < elem.length) return;
+        elem = Arrays.copyOf(elem, Math.max(DEFAULT_CAPACITY, elem.length << 1));
+    }
+
+    //装填因子低于25%时缩容一半
+    private void shrink() {
+        if (elem.length < DEFAULT_CAPACITY << 1) return;
+        if (size << 2 > elem.length) return;
+        elem = Arrays.copyOf(elem, elem.length >> 1);
+    }
+
+    private static void checkRank(int r, int bound) {
+        if (r < 0 || r >= bound) throw new IndexOutOfBoundsException("rank " + r + " out of [0, " + bound + ")");
+    }
+}
@@ -0,0 +1,135 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.B_Tree;
+import tree.DiskBTree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * B树阶次对search/insert吞吐量的影响，内存B_Tree和外存DiskBTree分开测。
+ * 内存版直接给定阶次；外存版按页大小取一页能容纳的最大阶次，poolPages控制缓冲池能缓存多大比例的页。
+ * 与TreeBenchmark一样，写操作成对计时：每次调用插入一个新关键码再删掉，树的规模保持不变，
+ * 每次调用不带任何准备工作。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeOrderBenchmark {
+
+    private static final int MAX_OPS = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class MemoryState {
+        @Param({"3", "4", "8", "16", "32", "64", "128", "256"})
+        public int order;
+
+        @Param({"100000", "1000000"})
+        public int size;
+
+        B_Tree<Integer> tree;
+        Integer[] hits, misses;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void build() {
+            tree = new B_Tree<>(order);
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) tree.insert(k);
+            int len = Math.min(size, MAX_OPS);
+            hits = KeyStream.RANDOM.operations(size, len, 0, 7);
+            misses = KeyStream.RANDOM.operations(size, len, 1, 11);
+        }
+
+        int next() {
+            int i = cursor;
+            if (++cursor == hits.length) cursor = 0;
+            return i;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DiskState {
+        @Param({"512", "1024", "4096", "8192", "16384"})
+        public int pageSize;
+
+        @Param({"64", "65536"})
+        public int poolPages;
+
+        @Param({"1000000"})
+        public int size;
+
+        Path file;
+        DiskBTree tree;
+        long[] hits, misses;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void build() throws IOException {
+            file = Files.createTempFile("btree-order", ".db");
+            tree = new DiskBTree(file, pageSize, poolPages);
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) tree.insert(k);
+            int len = Math.min(size, MAX_OPS);
+            hits = toLong(KeyStream.RANDOM.operations(size, len, 0, 7));
+            misses = toLong(KeyStream.RANDOM.operations(size, len, 1, 11));
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            tree.close();
+            Files.deleteIfExists(file);
+        }
+
+        int next() {
+            int i = cursor;
+            if (++cursor == hits.length) cursor = 0;
+            return i;
+        }
+
+        private static long[] toLong(Integer[] keys) {
+            long[] a = new long[keys.length];
+            for (int i = 0; i < a.length; i++) a[i] = keys[i];
+            return a;
+        }
+    }
+
+    @Benchmark
+    public Object memorySearch(MemoryState s) {
+        return s.tree.search(s.hits[s.next()]);
+    }
+
+    @Benchmark
+    public boolean memoryInsertRemove(MemoryState s) {
+        Integer k = s.misses[s.next()];
+        s.tree.insert(k);
+        return s.tree.remove(k);
+    }
+
+    @Benchmark
+    public boolean diskSearch(DiskState s) {
+        return s.tree.search(s.hits[s.next()]);
+    }
+
+    @Benchmark
+    public boolean diskInsertRemove(DiskState s) {
+        long k = s.misses[s.next()];
+        s.tree.insert(k);
+        return s.tree.remove(k);
+    }
+}
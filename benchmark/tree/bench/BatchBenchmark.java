@@ -0,0 +1,106 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.B_Tree;
+import tree.RedBlackTree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 微批次写入：每次调用把batch个新关键码写入已有size个关键码的树，逐个insert与insertAll对比。
+ * 计时单位是整批，除以batch即为每个关键码的开销。用SingleShotTime，每轮迭代只调用一次，
+ * 轮与轮之间（@Setup(Level.Iteration)）用removeAll撤销上一批，树的规模保持不变，撤销不计入时间；
+ * 小批次只有几百微秒，迭代轮数因此取得较多。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 50)
+@Measurement(iterations = 100)
+@Fork(1)
+public class BatchBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"AVL", "RED_BLACK", "B_TREE"})
+        public TreeKind tree;
+
+        @Param({"1000", "10000", "100000"})
+        public int batch;
+
+        @Param({"1000000"})
+        public int size;
+
+        AVL<Integer> avl;
+        RedBlackTree<Integer> rb;
+        B_Tree<Integer> btree;
+        List<Integer>[] batches;
+        int cursor;
+        List<Integer> last;
+
+        @Setup(Level.Trial)
+        public void build() {
+            List<Integer> sorted = Arrays.asList(KeyStream.SEQUENTIAL.preload(size, 42));
+            switch (tree) {
+                case AVL: avl = AVL.fromSorted(sorted); break;
+                case RED_BLACK: rb = RedBlackTree.fromSorted(sorted); break;
+                case B_TREE: btree = B_Tree.bulkLoad(sorted, 64, 0.7); break;
+                default: throw new IllegalArgumentException("unsupported tree " + tree);
+            }
+            //新关键码为奇数，一定不在树中；批次内部无序，由insertAll自行排序
+            Integer[] ops = KeyStream.RANDOM.operations(size, Math.max(batch, Math.min(size, 1 << 20)), 1, 7);
+            batches = new List[Math.max(1, ops.length / batch)];
+            for (int i = 0; i < batches.length; i++)
+                batches[i] = Arrays.asList(Arrays.copyOfRange(ops, i * batch, (i + 1) * batch));
+        }
+
+        @Setup(Level.Iteration)
+        public void undo() {
+            if (last != null) {
+                switch (tree) {
+                    case AVL: avl.removeAll(last); break;
+                    case RED_BLACK: rb.removeAll(last); break;
+                    default: btree.removeAll(last); break;
+                }
+            }
+            last = batches[cursor];
+            if (++cursor == batches.length) cursor = 0;
+        }
+    }
+
+    @Benchmark
+    public int insertEach(TreeState s) {
+        int n = 0;
+        for (Integer k : s.last) {
+            switch (s.tree) {
+                case AVL: s.avl.insert(k); break;
+                case RED_BLACK: s.rb.insert(k); break;
+                default: s.btree.insert(k); break;
+            }
+            n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int insertAll(TreeState s) {
+        switch (s.tree) {
+            case AVL: return s.avl.insertAll(s.last);
+            case RED_BLACK: return s.rb.insertAll(s.last);
+            default: return s.btree.insertAll(s.last);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.B_Tree;
+import tree.RedBlackTree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由有序序列重建整棵树的耗时：逐个insert与fromSorted/bulkLoad对比。
+ * 每次调用都从空树开始构造全部size个关键码，用SingleShotTime计时。
+ * B树两种方式都取64阶；fillFactor只影响bulkLoad构造的B树。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"AVL", "RED_BLACK", "B_TREE"})
+        public TreeKind tree;
+
+        @Param({"100000", "1000000", "10000000"})
+        public int size;
+
+        @Param({"0.7", "1.0"})
+        public double fillFactor;
+
+        List<Integer> sorted;
+
+        @Setup(Level.Trial)
+        public void build() {
+            sorted = Arrays.asList(KeyStream.SEQUENTIAL.preload(size, 42));
+        }
+    }
+
+    private static final int B_TREE_ORDER = 64;
+
+    @Benchmark
+    public Object insertEach(Input in) {
+        switch (in.tree) {
+            case AVL: {
+                AVL<Integer> t = new AVL<>();
+                for (Integer k : in.sorted) t.insert(k);
+                return t;
+            }
+            case RED_BLACK: {
+                RedBlackTree<Integer> t = new RedBlackTree<>();
+                for (Integer k : in.sorted) t.insert(k);
+                return t;
+            }
+            case B_TREE: {
+                B_Tree<Integer> t = new B_Tree<>(B_TREE_ORDER);
+                for (Integer k : in.sorted) t.insert(k);
+                return t;
+            }
+            default: throw new IllegalArgumentException("unsupported tree " + in.tree);
+        }
+    }
+
+    @Benchmark
+    public Object bulk(Input in) {
+        switch (in.tree) {
+            case AVL: return AVL.fromSorted(in.sorted);
+            case RED_BLACK: return RedBlackTree.fromSorted(in.sorted);
+            case B_TREE: return B_Tree.bulkLoad(in.sorted, B_TREE_ORDER, in.fillFactor);
+            default: throw new IllegalArgumentException("no bulk build for " + in.tree);
+        }
+    }
+}
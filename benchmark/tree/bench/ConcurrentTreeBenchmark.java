@@ -0,0 +1,173 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tree.AVL;
+import tree.ConcurrentAVL;
+import tree.LockFreeSkipList;
+import tree.PersistentRedBlackTree;
+import tree.RedBlackTree;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程混合负载：所有线程共享一棵树，每次操作以readPercent%的概率查找，其余为插入或删除。
+ * readPercent为0、50时是写密集的导入场景，90、99时是读多写少的场景。
+ * 写操作作用在奇数关键码上，插入失败就删除，树的规模大致保持在size附近；查找覆盖奇偶两类关键码。
+ * 线程数用JMH的 -t 参数指定，例如：
+ *   java -jar target/benchmarks.jar ConcurrentTreeBenchmark -t 32
+ * 也可以直接运行本类的main，依次在1、2、4……64个线程下各跑一遍（其余命令行参数照常传给JMH）：
+ *   java -cp target/benchmarks.jar tree.bench.ConcurrentTreeBenchmark -p readPercent=0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentTreeBenchmark {
+
+    public enum Impl {
+        /** Bronson式乐观并发AVL，查找不加锁 */
+        CONCURRENT_AVL {
+            @Override
+            SharedSet create() {
+                ConcurrentAVL<Integer> tree = new ConcurrentAVL<>();
+                return new SharedSet() {
+                    public boolean insert(Integer k) { return tree.insert(k); }
+                    public boolean contains(Integer k) { return tree.search(k); }
+                    public boolean remove(Integer k) { return tree.remove(k); }
+                };
+            }
+        },
+        /** CAS实现的无锁跳表 */
+        LOCK_FREE_SKIP_LIST {
+            @Override
+            SharedSet create() {
+                LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+                return new SharedSet() {
+                    public boolean insert(Integer k) { return list.insert(k); }
+                    public boolean contains(Integer k) { return list.search(k); }
+                    public boolean remove(Integer k) { return list.remove(k); }
+                };
+            }
+        },
+        /** 路径复制的可持久化红黑树，写者串行，查找读volatile的树根后不加锁 */
+        PERSISTENT_RED_BLACK {
+            @Override
+            SharedSet create() {
+                PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+                return new SharedSet() {
+                    public boolean insert(Integer k) { return tree.insert(k); }
+                    public boolean contains(Integer k) { return tree.contains(k); }
+                    public boolean remove(Integer k) { return tree.remove(k); }
+                };
+            }
+        },
+        /** 整棵红黑树包在一把全局锁里 */
+        SYNCHRONIZED_RED_BLACK {
+            @Override
+            SharedSet create() {
+                RedBlackTree<Integer> tree = new RedBlackTree<>();
+                return new SharedSet() {
+                    public synchronized boolean insert(Integer k) {
+                        int before = tree.size();
+                        tree.insert(k);
+                        return tree.size() != before;
+                    }
+                    public synchronized boolean contains(Integer k) { return tree.search(k) != null; }
+                    public synchronized boolean remove(Integer k) { return tree.remove(k); }
+                };
+            }
+        },
+        /** 整棵AVL包在一把全局锁里，查找同样要抢锁 */
+        SYNCHRONIZED_AVL {
+            @Override
+            SharedSet create() {
+                AVL<Integer> tree = new AVL<>();
+                return new SharedSet() {
+                    public synchronized boolean insert(Integer k) {
+                        int before = tree.size();
+                        tree.insert(k);
+                        return tree.size() != before;
+                    }
+                    public synchronized boolean contains(Integer k) { return tree.search(k) != null; }
+                    public synchronized boolean remove(Integer k) { return tree.remove(k); }
+                };
+            }
+        };
+
+        abstract SharedSet create();
+    }
+
+    interface SharedSet {
+        boolean insert(Integer k);
+        boolean contains(Integer k);
+        boolean remove(Integer k);
+    }
+
+    @State(Scope.Benchmark)
+    public static class TreeState {
+        @Param({"CONCURRENT_AVL", "LOCK_FREE_SKIP_LIST", "PERSISTENT_RED_BLACK", "SYNCHRONIZED_RED_BLACK", "SYNCHRONIZED_AVL"})
+        public Impl impl;
+
+        @Param({"0", "50", "90", "99"})
+        public int readPercent;
+
+        @Param({"1000000"})
+        public int size;
+
+        SharedSet set;
+
+        @Setup(Level.Trial)
+        public void build() {
+            set = impl.create();
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) set.insert(k);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void seed() {
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+    }
+
+    @Benchmark
+    public boolean mixed(TreeState s, ThreadState t) {
+        int k = t.random.nextInt(2 * s.size);
+        if (t.random.nextInt(100) < s.readPercent) return s.set.contains(k);
+        k |= 1;
+        return s.set.insert(k) || s.set.remove(k);
+    }
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .include(ConcurrentTreeBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.BST;
+import tree.RedBlackTree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 局部性很强的查找流：每次从树根出发的search与从上一次位置出发的Finger.search对比。
+ * SORTED_SCAN    按升序依次查找全部关键码
+ * SLIDING_WINDOW 窗口中心每次前移一个关键码，在中心前后window个关键码内随机查找
+ * 树中的关键码按随机顺序插入，BST也不会退化；关键码都在树中。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerSearchBenchmark {
+
+    public enum Workload { SORTED_SCAN, SLIDING_WINDOW }
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"BST", "AVL", "RED_BLACK"})
+        public TreeKind tree;
+
+        @Param({"SORTED_SCAN", "SLIDING_WINDOW"})
+        public Workload workload;
+
+        @Param({"1000000"})
+        public int size;
+
+        @Param({"64"})
+        public int window;
+
+        BST<Integer> bst;
+        AVL<Integer> avl;
+        RedBlackTree<Integer> rb;
+        BST<Integer>.Finger bstFinger;
+        AVL<Integer>.Finger avlFinger;
+        RedBlackTree<Integer>.Finger rbFinger;
+        Integer[] ops;
+        int cursor;
+
+        @Setup
+        public void build() {
+            switch (tree) {
+                case BST: bst = new BST<>(); break;
+                case AVL: avl = new AVL<>(); break;
+                case RED_BLACK: rb = new RedBlackTree<>(); break;
+                default: throw new IllegalArgumentException("no finger search in " + tree);
+            }
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) {
+                switch (tree) {
+                    case BST: bst.insert(k); break;
+                    case AVL: avl.insert(k); break;
+                    default: rb.insert(k); break;
+                }
+            }
+            if (bst != null) bstFinger = bst.finger();
+            if (avl != null) avlFinger = avl.finger();
+            if (rb != null) rbFinger = rb.finger();
+            ops = new Integer[size];
+            Random random = new Random(7);
+            for (int i = 0; i < size; i++) {
+                int rank = (workload == Workload.SORTED_SCAN) ? i :
+                        Math.min(size - 1, Math.max(0, i + random.nextInt(2 * window + 1) - window));
+                ops[i] = 2 * rank;
+            }
+        }
+
+        Integer next() {
+            Integer k = ops[cursor];
+            if (++cursor == ops.length) cursor = 0;
+            return k;
+        }
+    }
+
+    @Benchmark
+    public Object rootSearch(TreeState s) {
+        switch (s.tree) {
+            case BST: return s.bst.search(s.next());
+            case AVL: return s.avl.search(s.next());
+            default: return s.rb.search(s.next());
+        }
+    }
+
+    @Benchmark
+    public Object fingerSearch(TreeState s) {
+        switch (s.tree) {
+            case BST: return s.bstFinger.search(s.next());
+            case AVL: return s.avlFinger.search(s.next());
+            default: return s.rbFinger.search(s.next());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.FrozenTree;
+import tree.KeyPrefix;
+import tree.RedBlackTree;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一组关键码上，可修改的树与其freeze()得到的Eytzinger快照的查找耗时对比。
+ * prefix为true时树与快照都缓存KeyPrefix.INTEGER，快照下行时只比较long[]中的前缀；
+ * 为false时快照的每一层仍要访问关键码对象，只剩下布局和无分支的好处。
+ * 关键码按随机顺序插入，查找均匀随机且都命中。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrozenSearchBenchmark {
+
+    private static final int OPS = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"AVL", "RED_BLACK"})
+        public TreeKind tree;
+
+        @Param({"false", "true"})
+        public boolean prefix;
+
+        @Param({"10000", "1000000"})
+        public int size;
+
+        AVL<Integer> avl;
+        RedBlackTree<Integer> rb;
+        FrozenTree<Integer> frozen;
+        Integer[] ops;
+        int cursor;
+
+        @Setup
+        public void build() {
+            switch (tree) {
+                case AVL:
+                    avl = prefix ? new AVL<>(Comparator.naturalOrder(), KeyPrefix.INTEGER) : new AVL<>();
+                    for (Integer k : KeyStream.RANDOM.preload(size, 42)) avl.insert(k);
+                    frozen = avl.freeze();
+                    break;
+                case RED_BLACK:
+                    rb = prefix ? new RedBlackTree<>(Comparator.naturalOrder(), KeyPrefix.INTEGER) : new RedBlackTree<>();
+                    for (Integer k : KeyStream.RANDOM.preload(size, 42)) rb.insert(k);
+                    frozen = rb.freeze();
+                    break;
+                default: throw new IllegalArgumentException("no freeze in " + tree);
+            }
+            ops = KeyStream.RANDOM.operations(size, OPS, 0, 7);
+        }
+
+        Integer next() {
+            Integer k = ops[cursor];
+            if (++cursor == ops.length) cursor = 0;
+            return k;
+        }
+    }
+
+    @Benchmark
+    public Object treeSearch(TreeState s) {
+        return (s.tree == TreeKind.AVL) ? s.avl.search(s.next()) : s.rb.search(s.next());
+    }
+
+    @Benchmark
+    public boolean frozenSearch(TreeState s) {
+        return s.frozen.contains(s.next());
+    }
+}
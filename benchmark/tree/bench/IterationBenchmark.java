@@ -0,0 +1,117 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.BPlusTree;
+import tree.BST;
+import tree.RedBlackTree;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 枚举关键码的开销：for-each遍历整棵树、从随机起点扫描rangeLength个关键码的区间、
+ * 以及stream().parallel()求和（并行度即ForkJoinPool公共池的大小）。
+ * 整树遍历与TreeBenchmark.inOrder对照，可以看出惰性迭代器相对回调式遍历的差别。
+ * B+树取64阶，区间扫描只下行一次，之后沿叶节点链表顺序前进。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+    private static final int B_PLUS_TREE_ORDER = 64;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"BST", "AVL", "RED_BLACK", "B_PLUS_TREE"})
+        public TreeKind tree;
+
+        @Param({"1000000"})
+        public int size;
+
+        @Param({"1000"})
+        public int rangeLength;
+
+        Iterable<Integer> keys;
+        RangeScan scan;
+        StreamSource source;
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void build() {
+            Integer[] preload = KeyStream.RANDOM.preload(size, 42);
+            switch (tree) {
+                case BST: {
+                    BST<Integer> t = new BST<>();
+                    for (Integer k : preload) t.insert(k);
+                    keys = t; scan = t::range; source = t::stream;
+                    break;
+                }
+                case AVL: {
+                    AVL<Integer> t = new AVL<>();
+                    for (Integer k : preload) t.insert(k);
+                    keys = t; scan = t::range; source = t::stream;
+                    break;
+                }
+                case RED_BLACK: {
+                    RedBlackTree<Integer> t = new RedBlackTree<>();
+                    for (Integer k : preload) t.insert(k);
+                    keys = t; scan = t::range; source = t::stream;
+                    break;
+                }
+                case B_PLUS_TREE: {
+                    BPlusTree<Integer> t = new BPlusTree<>(B_PLUS_TREE_ORDER);
+                    for (Integer k : preload) t.insert(k);
+                    keys = t; scan = t::range; source = t::stream;
+                    break;
+                }
+                default: throw new IllegalArgumentException("no iterator for " + tree);
+            }
+            random = new SplittableRandom(7);
+        }
+    }
+
+    interface RangeScan {
+        Iterable<Integer> range(Integer lo, Integer hi);
+    }
+
+    interface StreamSource {
+        Stream<Integer> stream();
+    }
+
+    @Benchmark
+    public long iterate(TreeState s) {
+        long sum = 0;
+        for (Integer k : s.keys) sum += k;
+        return sum;
+    }
+
+    @Benchmark
+    public long range(TreeState s) {
+        //树中的关键码为 0, 2, ..., 2(size-1)
+        int lo = 2 * s.random.nextInt(s.size - s.rangeLength);
+        long sum = 0;
+        for (Integer k : s.scan.range(lo, lo + 2 * s.rangeLength)) sum += k;
+        return sum;
+    }
+
+    @Benchmark
+    public long parallelSum(TreeState s) {
+        return s.source.stream().parallel().mapToLong(Integer::longValue).sum();
+    }
+}
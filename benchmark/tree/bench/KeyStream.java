@@ -0,0 +1,105 @@
+package tree.bench;
+
+import java.util.Random;
+
+/**
+ * 基准测试用的关键码序列。
+ * 树中预置的关键码为偶数 0, 2, ..., 2(n-1)；插入测试使用的新关键码为奇数，保证一定不在树中。
+ * 预置顺序和操作顺序都由分布决定：
+ * SEQUENTIAL  升序，模拟自增ID
+ * RANDOM      均匀随机
+ * ZIPFIAN     预置顺序随机，操作按Zipf(0.99)分布集中在少数热点关键码上
+ * ADVERSARIAL 两端交替（最小、最大、次小、次大……）的有序序列，BST会退化成一条之字形链
+ */
+public enum KeyStream {
+    SEQUENTIAL, RANDOM, ZIPFIAN, ADVERSARIAL;
+
+    private static final double ZIPF_THETA = 0.99;
+
+    /**
+     * 预置到树中的n个关键码，按插入顺序排列
+     */
+    public Integer[] preload(int n, long seed) {
+        int[] rank = order(n, new Random(seed));
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) keys[i] = 2 * rank[i];
+        return keys;
+    }
+
+    /**
+     * 长度为len的操作序列，取自n个关键码 2*i + offset（offset为0表示命中已有关键码，为1表示新关键码）
+     */
+    public Integer[] operations(int n, int len, int offset, long seed) {
+        Random random = new Random(seed);
+        Integer[] ops = new Integer[len];
+        if (this == ZIPFIAN) {
+            Zipf zipf = new Zipf(n, ZIPF_THETA, random);
+            for (int i = 0; i < len; i++) ops[i] = 2 * scramble(zipf.next(), n) + offset;
+            return ops;
+        }
+        int[] rank = order(n, random);
+        for (int i = 0; i < len; i++) ops[i] = 2 * rank[i % n] + offset;
+        return ops;
+    }
+
+    private int[] order(int n, Random random) {
+        int[] rank = new int[n];
+        switch (this) {
+            case SEQUENTIAL:
+                for (int i = 0; i < n; i++) rank[i] = i;
+                break;
+            case ADVERSARIAL:
+                for (int i = 0, lo = 0, hi = n - 1; i < n; i++)
+                    rank[i] = (i & 1) == 0 ? lo++ : hi--;
+                break;
+            default:
+                for (int i = 0; i < n; i++) rank[i] = i;
+                for (int i = n - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = rank[i]; rank[i] = rank[j]; rank[j] = tmp;
+                }
+        }
+        return rank;
+    }
+
+    /**
+     * 把Zipf的秩打散到整个关键码区间，热点关键码不会都挤在树的最左侧
+     */
+    private static int scramble(int rank, int n) {
+        long h = rank * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) Math.floorMod(h, (long) n);
+    }
+
+    /**
+     * Gray等人的Zipf生成器（YCSB同款），返回 [0, n) 内的秩，秩越小越热
+     */
+    private static final class Zipf {
+        private final int n;
+        private final double theta, alpha, zetan, eta;
+        private final Random random;
+
+        Zipf(int n, double theta, Random random) {
+            this.n = n;
+            this.theta = theta;
+            this.random = random;
+            this.zetan = zeta(n, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) sum += 1 / Math.pow(i, theta);
+            return sum;
+        }
+
+        int next() {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1.0) return 0;
+            if (uz < 1.0 + Math.pow(0.5, theta)) return Math.min(1, n - 1);
+            return (int) Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+}
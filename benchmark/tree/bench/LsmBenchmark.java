@@ -0,0 +1,107 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.DiskBTree;
+import tree.LsmTree;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入密集时LsmTree与就地更新的DiskBTree对比。
+ * ingest  从空开始持续插入随机long，LSM的后台写出与合并开销一并计入
+ * lookup  预置size个关键码并flush之后，查找均匀随机的关键码，一半命中一半不命中
+ * 两者的缓冲（memtable、缓冲池）都约为64K条记录。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LsmBenchmark {
+
+    public enum Impl { LSM, DISK_BTREE }
+
+    @State(Scope.Thread)
+    public static class StoreState {
+        @Param({"LSM", "DISK_BTREE"})
+        public Impl impl;
+
+        @Param({"1000000"})
+        public int size;
+
+        Path dir;
+        LsmTree lsm;
+        DiskBTree btree;
+        SplittableRandom random;
+
+        void open() throws IOException {
+            dir = Files.createTempDirectory("lsm-bench");
+            if (impl == Impl.LSM) lsm = new LsmTree(dir, 1 << 16, 8);
+            else btree = new DiskBTree(dir.resolve("btree.db"), 4096, 256);
+            random = new SplittableRandom(42);
+        }
+
+        void insert(long e) {
+            if (lsm != null) lsm.insert(e);
+            else btree.insert(e);
+        }
+
+        boolean contains(long e) {
+            return (lsm != null) ? lsm.contains(e) : btree.search(e);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            if (lsm != null) lsm.close();
+            else btree.close();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) Files.delete(f);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    public static class IngestState extends StoreState {
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            open();
+        }
+    }
+
+    public static class LookupState extends StoreState {
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            open();
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) insert(k);
+            if (lsm != null) lsm.flush();
+            else btree.flush();
+        }
+    }
+
+    @Benchmark
+    public void ingest(IngestState s) {
+        s.insert(s.random.nextLong());
+    }
+
+    @Benchmark
+    public boolean lookup(LookupState s) {
+        return s.contains(s.random.nextInt(2 * s.size));
+    }
+}
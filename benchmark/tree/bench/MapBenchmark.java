@@ -0,0 +1,105 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.AVLMap;
+import tree.BTreeMap;
+import tree.B_Tree;
+import tree.RedBlackTree;
+import tree.RedBlackTreeMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有序映射上的计数更新（不存在则插入1，存在则加1），操作按Zipf分布，约一半的关键码是新的。
+ * sideMap是原来的做法：树里只有关键码，值放在旁边的HashMap中，每次更新查两次；
+ * merge直接调用AVLMap、RedBlackTreeMap、BTreeMap的merge，只沿树下行一次。
+ * B树两种做法都取64阶。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    @State(Scope.Thread)
+    public static class MapState {
+        @Param({"AVL", "RED_BLACK", "B_TREE"})
+        public TreeKind tree;
+
+        @Param({"1000000"})
+        public int size;
+
+        AVL<Integer> avl;
+        RedBlackTree<Integer> rb;
+        B_Tree<Integer> btree;
+        Map<Integer, Integer> values;
+        Map<Integer, Integer> map;
+        Integer[] ops;
+        int cursor;
+
+        @Setup
+        public void build() {
+            values = new HashMap<>();
+            switch (tree) {
+                case AVL: avl = new AVL<>(); map = new AVLMap<>(); break;
+                case RED_BLACK: rb = new RedBlackTree<>(); map = new RedBlackTreeMap<>(); break;
+                case B_TREE: btree = new B_Tree<>(64); map = new BTreeMap<>(64); break;
+                default: throw new IllegalArgumentException("no map for " + tree);
+            }
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) {
+                switch (tree) {
+                    case AVL: avl.insert(k); break;
+                    case RED_BLACK: rb.insert(k); break;
+                    default: btree.insert(k); break;
+                }
+                values.put(k, 1);
+                map.put(k, 1);
+            }
+            //偶数命中已有关键码，奇数为新关键码
+            Integer[] hits = KeyStream.ZIPFIAN.operations(size, 1 << 19, 0, 7);
+            Integer[] misses = KeyStream.ZIPFIAN.operations(size, 1 << 19, 1, 11);
+            ops = new Integer[hits.length + misses.length];
+            for (int i = 0; i < hits.length; i++) {
+                ops[2 * i] = hits[i];
+                ops[2 * i + 1] = misses[i];
+            }
+        }
+
+        Integer next() {
+            Integer k = ops[cursor];
+            if (++cursor == ops.length) cursor = 0;
+            return k;
+        }
+    }
+
+    @Benchmark
+    public Integer sideMap(MapState s) {
+        Integer k = s.next();
+        boolean present;
+        switch (s.tree) {
+            case AVL: present = s.avl.search(k) != null; if (!present) s.avl.insert(k); break;
+            case RED_BLACK: present = s.rb.search(k) != null; if (!present) s.rb.insert(k); break;
+            default: present = s.btree.search(k) != null; if (!present) s.btree.insert(k); break;
+        }
+        return s.values.merge(k, 1, Integer::sum);
+    }
+
+    @Benchmark
+    public Integer merge(MapState s) {
+        return s.map.merge(s.next(), 1, Integer::sum);
+    }
+}
@@ -0,0 +1,114 @@
+package tree.bench;
+
+import array.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.NodeSearch;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个B树节点内的查找耗时，节点有16 ~ 256个关键码：
+ * BOXED      B_Tree现在的做法，Vector<Long>上按comparator二分；
+ * BINARY     long[]上的普通二分（LongBTree原先的做法）；
+ * BRANCHLESS long[]上无分支的二分（LongBTree现在的做法）；
+ * VECTOR     缩小到几个向量宽度后用Vector API比较，需要jdk.incubator.vector。
+ * 共NODES个节点，每次查找随机取一个节点和一个关键码，约一半命中，节点全部在缓存中，测的是比较和分支本身的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NodeSearchBenchmark {
+
+    private static final int NODES = 64;
+    private static final int OPS = 1 << 16;
+
+    public enum Impl { BOXED, BINARY, BRANCHLESS, VECTOR }
+
+    @State(Scope.Thread)
+    public static class Nodes {
+        @Param({"BOXED", "BINARY", "BRANCHLESS", "VECTOR"})
+        public Impl impl;
+
+        @Param({"16", "32", "64", "128", "256"})
+        public int keys;
+
+        long[][] key;
+        Vector<Long>[] boxed;
+        Comparator<Long> comparator = Comparator.naturalOrder();
+        int[] node;
+        long[] query;
+        int cursor;
+
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void build() {
+            Random random = new Random(42);
+            key = new long[NODES][];
+            boxed = new Vector[NODES];
+            for (int i = 0; i < NODES; i++) {
+                //节点中的关键码是偶数，查找奇数必然落空
+                long[] k = new long[keys];
+                for (int j = 0; j < keys; j++) k[j] = 2L * random.nextInt(1 << 30);
+                Arrays.sort(k);
+                for (int j = 1; j < keys; j++) if (k[j] <= k[j - 1]) k[j] = k[j - 1] + 2;
+                key[i] = k;
+                boxed[i] = new Vector<>();
+                for (int j = 0; j < keys; j++) boxed[i].insert(j, k[j]);
+            }
+            node = new int[OPS];
+            query = new long[OPS];
+            for (int i = 0; i < OPS; i++) {
+                node[i] = random.nextInt(NODES);
+                long[] k = key[node[i]];
+                query[i] = k[random.nextInt(keys)] + (random.nextBoolean() ? 0 : 1);
+            }
+        }
+
+        int next() {
+            int i = cursor;
+            if (++cursor == OPS) cursor = 0;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public int search(Nodes s) {
+        int i = s.next();
+        int v = s.node[i];
+        long e = s.query[i];
+        switch (s.impl) {
+            case BOXED: return boxedSearch(s.boxed[v], e, s.comparator);
+            case BINARY: return NodeSearch.binary(s.key[v], s.keys, e);
+            case BRANCHLESS: return NodeSearch.branchless(s.key[v], s.keys, e);
+            default: return NodeSearch.vector(s.key[v], s.keys, e);
+        }
+    }
+
+    /**
+     * 同B_Tree.search(Vector, T)
+     */
+    private static int boxedSearch(Vector<Long> key, Long e, Comparator<Long> comparator) {
+        int lo = 0, hi = key.getSize();
+        while (lo < hi) {
+            int mi = (lo + hi) >>> 1;
+            if (comparator.compare(e, key.get(mi)) < 0) hi = mi;
+            else lo = mi + 1;
+        }
+        return lo - 1;
+    }
+}
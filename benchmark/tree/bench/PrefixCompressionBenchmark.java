@@ -0,0 +1,98 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.B_Tree;
+import tree.PrefixBTree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享长前缀的字符串关键码：B_Tree节点中存放String引用，与PrefixBTree在页内前缀截断、增量编码对比。
+ * 关键码形如 https://example.com/users/00012345/orders，前26个字节完全相同。
+ * search为命中的查找，insert为向已有size个关键码的树中插入一个新关键码（随后删掉，树的规模不变）。
+ * B_Tree取64阶，PrefixBTree的页取4KB；PrefixBTree的关键码为UTF-8字节串，查找时的编码开销计入在内。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixCompressionBenchmark {
+
+    private static final String FORMAT = "https://example.com/users/%08d/orders";
+    private static final int B_TREE_ORDER = 64;
+    private static final int PAGE_SIZE = 4096;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"B_TREE", "PREFIX"})
+        public String tree;
+
+        @Param({"1000000"})
+        public int size;
+
+        B_Tree<String> bt;
+        PrefixBTree pt;
+        String[] hits, misses;
+        int cursor;
+
+        @Setup
+        public void build() {
+            Random random = new Random(42);
+            hits = new String[size];
+            misses = new String[size];
+            for (int i = 0; i < size; i++) {
+                int id = 2 * random.nextInt(50_000_000);
+                hits[i] = String.format(FORMAT, id);
+                misses[i] = String.format(FORMAT, id + 1);
+            }
+            if (tree.equals("B_TREE")) {
+                bt = new B_Tree<>(B_TREE_ORDER);
+                for (String k : hits) bt.insert(k);
+            } else {
+                pt = new PrefixBTree(PAGE_SIZE);
+                for (String k : hits) pt.insert(k.getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                String tmp = hits[i]; hits[i] = hits[j]; hits[j] = tmp;
+            }
+        }
+
+        int next() {
+            int i = cursor;
+            if (++cursor == size) cursor = 0;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public boolean search(TreeState s) {
+        String k = s.hits[s.next()];
+        return (s.bt != null) ? s.bt.search(k) != null : s.pt.contains(k.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public boolean insert(TreeState s) {
+        String k = s.misses[s.next()];
+        if (s.bt != null) {
+            s.bt.insert(k);
+            return s.bt.remove(k);
+        }
+        byte[] b = k.getBytes(StandardCharsets.UTF_8);
+        s.pt.insert(b);
+        return s.pt.remove(b);
+    }
+}
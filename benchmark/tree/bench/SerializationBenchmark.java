@@ -0,0 +1,130 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.B_Tree;
+import tree.KeyCodec;
+import tree.RedBlackTree;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重启后恢复整棵树的耗时：从TreeFile文件load与按原来的随机顺序逐个insert重建对比，另测writeTo写出的耗时。
+ * 文件在Trial开始时由逐个insert建成的树写出；关键码为随机的int，KeyCodec.INTEGER按差值变长编码。
+ * 每次调用都构造或写出全部size个关键码，用SingleShotTime计时。B树取64阶。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final int B_TREE_ORDER = 64;
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"AVL", "RED_BLACK", "B_TREE"})
+        public TreeKind tree;
+
+        @Param({"1000000", "10000000"})
+        public int size;
+
+        Integer[] keys;
+        AVL<Integer> avl;
+        RedBlackTree<Integer> rb;
+        B_Tree<Integer> bt;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void build() throws IOException {
+            keys = KeyStream.RANDOM.preload(size, 42);
+            file = Files.createTempFile("tree", ".bin");
+            switch (tree) {
+                case AVL:
+                    avl = new AVL<>();
+                    for (Integer k : keys) avl.insert(k);
+                    break;
+                case RED_BLACK:
+                    rb = new RedBlackTree<>();
+                    for (Integer k : keys) rb.insert(k);
+                    break;
+                case B_TREE:
+                    bt = new B_Tree<>(B_TREE_ORDER);
+                    for (Integer k : keys) bt.insert(k);
+                    break;
+                default: throw new IllegalArgumentException("no writeTo in " + tree);
+            }
+            write();
+        }
+
+        void write() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                switch (tree) {
+                    case AVL: avl.writeTo(channel, KeyCodec.INTEGER); break;
+                    case RED_BLACK: rb.writeTo(channel, KeyCodec.INTEGER); break;
+                    default: bt.writeTo(channel, KeyCodec.INTEGER); break;
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public Object load(Input in) {
+        switch (in.tree) {
+            case AVL: return AVL.load(in.file, KeyCodec.INTEGER);
+            case RED_BLACK: return RedBlackTree.load(in.file, KeyCodec.INTEGER);
+            default: return B_Tree.load(in.file, KeyCodec.INTEGER);
+        }
+    }
+
+    @Benchmark
+    public Object reinsert(Input in) {
+        switch (in.tree) {
+            case AVL: {
+                AVL<Integer> t = new AVL<>();
+                for (Integer k : in.keys) t.insert(k);
+                return t;
+            }
+            case RED_BLACK: {
+                RedBlackTree<Integer> t = new RedBlackTree<>();
+                for (Integer k : in.keys) t.insert(k);
+                return t;
+            }
+            default: {
+                B_Tree<Integer> t = new B_Tree<>(B_TREE_ORDER);
+                for (Integer k : in.keys) t.insert(k);
+                return t;
+            }
+        }
+    }
+
+    @Benchmark
+    public long writeTo(Input in) throws IOException {
+        in.write();
+        return Files.size(in.file);
+    }
+}
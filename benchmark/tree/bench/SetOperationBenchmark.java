@@ -0,0 +1,92 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.RedBlackTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并两棵各有size个关键码的树：遍历b逐个insert到a中，与join-based的union对比。
+ * a中是2的倍数，b中是3的倍数，二者约有三分之一的关键码重合。
+ * union会拆掉两棵输入树，每轮迭代前（@Setup(Level.Iteration)）重新构造，用SingleShotTime计时，
+ * 每轮只调用一次；并行度即ForkJoinPool公共池的大小。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SetOperationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"AVL", "RED_BLACK"})
+        public TreeKind tree;
+
+        @Param({"1000000", "10000000"})
+        public int size;
+
+        List<Integer> evens, triples;
+        AVL<Integer> avlA, avlB;
+        RedBlackTree<Integer> rbA, rbB;
+
+        @Setup(Level.Trial)
+        public void keys() {
+            evens = new ArrayList<>(size);
+            triples = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                evens.add(2 * i);
+                triples.add(3 * i);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void build() {
+            switch (tree) {
+                case AVL:
+                    avlA = AVL.fromSorted(evens);
+                    avlB = AVL.fromSorted(triples);
+                    break;
+                case RED_BLACK:
+                    rbA = RedBlackTree.fromSorted(evens);
+                    rbB = RedBlackTree.fromSorted(triples);
+                    break;
+                default: throw new IllegalArgumentException("no set operations for " + tree);
+            }
+        }
+    }
+
+    @Benchmark
+    public int insertEach(Input in) {
+        switch (in.tree) {
+            case AVL:
+                in.avlB.inOrderTraversal(k -> in.avlA.insert(k));
+                return in.avlA.size();
+            default:
+                in.rbB.inOrderTraversal(k -> in.rbA.insert(k));
+                return in.rbA.size();
+        }
+    }
+
+    @Benchmark
+    public int union(Input in) {
+        switch (in.tree) {
+            case AVL: return AVL.union(in.avlA, in.avlB).size();
+            default: return RedBlackTree.union(in.rbA, in.rbB).size();
+        }
+    }
+}
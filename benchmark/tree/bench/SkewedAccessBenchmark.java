@@ -0,0 +1,84 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问集中在少数热点上时，伸展树与处处平衡的AVL、红黑树的查找耗时对比。
+ * UNIFORM  均匀随机，没有热点
+ * ZIPFIAN  Zipf(0.99)，同KeyStream.ZIPFIAN
+ * HOT_SET  90%的查找落在随机选出的1%关键码上，其余10%均匀随机
+ * 关键码都在树中，树按随机顺序预置。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkewedAccessBenchmark {
+
+    public enum Skew { UNIFORM, ZIPFIAN, HOT_SET }
+
+    private static final int OPS = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"AVL", "RED_BLACK", "SPLAY"})
+        public TreeKind tree;
+
+        @Param({"UNIFORM", "ZIPFIAN", "HOT_SET"})
+        public Skew skew;
+
+        @Param({"1000000"})
+        public int size;
+
+        TreeKind.OrderedSet<Integer> set;
+        Integer[] ops;
+        int cursor;
+
+        @Setup
+        public void build() {
+            set = tree.create();
+            for (Integer k : KeyStream.RANDOM.preload(size, 42)) set.insert(k);
+            switch (skew) {
+                case UNIFORM: ops = KeyStream.RANDOM.operations(size, OPS, 0, 7); break;
+                case ZIPFIAN: ops = KeyStream.ZIPFIAN.operations(size, OPS, 0, 7); break;
+                default: ops = hotSet(size, OPS, new Random(7));
+            }
+        }
+
+        private static Integer[] hotSet(int n, int len, Random random) {
+            int[] hot = new int[Math.max(1, n / 100)];
+            for (int i = 0; i < hot.length; i++) hot[i] = random.nextInt(n);
+            Integer[] ops = new Integer[len];
+            for (int i = 0; i < len; i++) {
+                int rank = (random.nextInt(10) < 9) ? hot[random.nextInt(hot.length)] : random.nextInt(n);
+                ops[i] = 2 * rank;
+            }
+            return ops;
+        }
+
+        Integer next() {
+            Integer k = ops[cursor];
+            if (++cursor == ops.length) cursor = 0;
+            return k;
+        }
+    }
+
+    @Benchmark
+    public boolean search(TreeState s) {
+        return s.set.contains(s.next());
+    }
+}
@@ -0,0 +1,87 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.AVL;
+import tree.KeyPrefix;
+import tree.RedBlackTree;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以String为关键码的查找：逐层调用compareTo与先比较节点中缓存的8字节前缀（KeyPrefix.STRING）对比。
+ * 关键码是16个字母的随机串，开头4个字符已足以区分绝大多数关键码，前缀相等时才回退到compareTo。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringKeyBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"AVL", "RED_BLACK"})
+        public TreeKind tree;
+
+        @Param({"false", "true"})
+        public boolean prefix;
+
+        @Param({"1000000"})
+        public int size;
+
+        AVL<String> avl;
+        RedBlackTree<String> rb;
+        String[] keys;
+        int cursor;
+
+        @Setup
+        public void build() {
+            Random random = new Random(42);
+            keys = new String[size];
+            char[] buf = new char[16];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < buf.length; j++) buf[j] = (char) ('a' + random.nextInt(26));
+                keys[i] = new String(buf);
+            }
+            switch (tree) {
+                case AVL:
+                    avl = prefix ? new AVL<>(Comparator.naturalOrder(), KeyPrefix.STRING) : new AVL<>();
+                    for (String k : keys) avl.insert(k);
+                    break;
+                case RED_BLACK:
+                    rb = prefix ? new RedBlackTree<>(Comparator.naturalOrder(), KeyPrefix.STRING) : new RedBlackTree<>();
+                    for (String k : keys) rb.insert(k);
+                    break;
+                default: throw new IllegalArgumentException("no comparator support in " + tree);
+            }
+            //查找顺序与插入顺序不同，避免顺着上一次的路径命中缓存
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                String tmp = keys[i]; keys[i] = keys[j]; keys[j] = tmp;
+            }
+        }
+
+        String next() {
+            String k = keys[cursor];
+            if (++cursor == keys.length) cursor = 0;
+            return k;
+        }
+    }
+
+    @Benchmark
+    public Object search(TreeState s) {
+        return (s.tree == TreeKind.AVL) ? s.avl.search(s.next()) : s.rb.search(s.next());
+    }
+}
@@ -0,0 +1,108 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BST、AVL、红黑树、B树的 insert / search / remove / 中序遍历 基准测试。
+ * Throughput给出ops/s，SampleTime给出p99等分位延迟，配合 -prof gc（BenchmarkRunner默认开启）
+ * 得到每次操作分配的字节数 gc.alloc.rate.norm。
+ *
+ * 写操作成对计时：insertRemove插入一个新关键码再删掉，removeInsert删除一个已有关键码再插回，
+ * 树的规模在整个测量过程中保持为size。不用@Setup(Level.Invocation)逐次撤销：单次操作只有百纳秒上下，
+ * 逐次计时的开销和准备工作的副作用会淹没吞吐量和p99。
+ * 注意：BST在SEQUENTIAL和ADVERSARIAL序列下退化为链表，预置耗时O(n^2)，
+ * 大规模时请用 -p size=... 或 -p tree=... 排除；10^7以上的规模需要相应调大 -Xmx。
+ * OFF_HEAP_RED_BLACK的节点占直接内存，每个24字节，10^8个约2.4GB，超过默认上限（与-Xmx相同），
+ * 所以fork带上 -XX:MaxDirectMemorySize=4g；命令行另给 -jvmArgsAppend 时会覆盖这里，需要一并写上。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+public class TreeBenchmark {
+
+    /** 操作序列的最大长度，循环使用 */
+    private static final int MAX_OPS = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"BST", "AVL", "RED_BLACK", "B_TREE", "B_PLUS_TREE", "SPLAY", "LONG_AVL", "LONG_RED_BLACK", "LONG_B_TREE",
+                "POOLED_AVL", "POOLED_RED_BLACK", "OFF_HEAP_RED_BLACK"})
+        public TreeKind tree;
+
+        @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "ADVERSARIAL"})
+        public KeyStream keys;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000", "100000000"})
+        public int size;
+
+        TreeKind.OrderedSet<Integer> set;
+        Integer[] ops;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void build() {
+            set = tree.create();
+            for (Integer k : keys.preload(size, 42)) set.insert(k);
+            ops = keys.operations(size, Math.min(size, MAX_OPS), offset(), 7);
+        }
+
+        /** 操作序列取已有关键码（0）还是新关键码（1） */
+        int offset() {
+            return 0;
+        }
+
+        Integer next() {
+            Integer k = ops[cursor];
+            if (++cursor == ops.length) cursor = 0;
+            return k;
+        }
+    }
+
+    public static class InsertState extends TreeState {
+        @Override
+        int offset() {
+            return 1;
+        }
+    }
+
+    @Benchmark
+    public boolean search(TreeState s) {
+        return s.set.contains(s.next());
+    }
+
+    @Benchmark
+    public boolean insertRemove(InsertState s) {
+        Integer k = s.next();
+        s.set.insert(k);
+        return s.set.remove(k);
+    }
+
+    @Benchmark
+    public boolean removeInsert(TreeState s) {
+        Integer k = s.next();
+        boolean removed = s.set.remove(k);
+        s.set.insert(k);
+        return removed;
+    }
+
+    @Benchmark
+    public void inOrder(TreeState s, Blackhole bh) {
+        s.set.inOrder(bh::consume);
+    }
+}
@@ -0,0 +1,193 @@
+package tree.bench;
+
+import tree.AVL;
+import tree.BPlusTree;
+import tree.BST;
+import tree.B_Tree;
+import tree.LongAVL;
+import tree.LongBTree;
+import tree.LongRedBlackTree;
+import tree.PooledLongAVL;
+import tree.PooledLongRedBlackTree;
+import tree.RedBlackTree;
+import tree.SplayTree;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 参与基准测试的树。
+ * 各棵树没有公共接口，这里用OrderedSet把insert/search/remove/中序遍历统一起来。
+ * LONG_开头的是关键码为long的版本，适配时只拆箱，不产生分配；POOLED_开头的节点存放在NodePool中，
+ * OFF_HEAP_RED_BLACK的节点在堆外。
+ */
+public enum TreeKind {
+    BST {
+        @Override
+        public OrderedSet<Integer> create() {
+            BST<Integer> t = new BST<>();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(e -> visit.accept(e)); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    AVL {
+        @Override
+        public OrderedSet<Integer> create() {
+            AVL<Integer> t = new AVL<>();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(e -> visit.accept(e)); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    RED_BLACK {
+        @Override
+        public OrderedSet<Integer> create() {
+            RedBlackTree<Integer> t = new RedBlackTree<>();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(e -> visit.accept(e)); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    B_TREE {
+        @Override
+        public OrderedSet<Integer> create() {
+            B_Tree<Integer> t = new B_Tree<>();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(e -> visit.accept(e)); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    B_PLUS_TREE {
+        @Override
+        public OrderedSet<Integer> create() {
+            BPlusTree<Integer> t = new BPlusTree<>();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e); }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(e -> visit.accept(e)); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    SPLAY {
+        @Override
+        public OrderedSet<Integer> create() {
+            SplayTree<Integer> t = new SplayTree<>();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(e -> visit.accept(e)); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    LONG_AVL {
+        @Override
+        public OrderedSet<Integer> create() {
+            LongAVL t = new LongAVL();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(visit); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    LONG_RED_BLACK {
+        @Override
+        public OrderedSet<Integer> create() {
+            LongRedBlackTree t = new LongRedBlackTree();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(visit); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    LONG_B_TREE {
+        @Override
+        public OrderedSet<Integer> create() {
+            LongBTree t = new LongBTree();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e) != null; }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(visit); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    POOLED_AVL {
+        @Override
+        public OrderedSet<Integer> create() {
+            PooledLongAVL t = new PooledLongAVL();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e); }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(visit); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    POOLED_RED_BLACK {
+        @Override
+        public OrderedSet<Integer> create() {
+            PooledLongRedBlackTree t = new PooledLongRedBlackTree();
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e); }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(visit); }
+                public int size() { return t.size(); }
+            };
+        }
+    },
+    OFF_HEAP_RED_BLACK {
+        @Override
+        public OrderedSet<Integer> create() {
+            PooledLongRedBlackTree t = PooledLongRedBlackTree.offHeap(16);
+            return new OrderedSet<>() {
+                public void insert(Integer e) { t.insert(e); }
+                public boolean contains(Integer e) { return t.search(e); }
+                public boolean remove(Integer e) { return t.remove(e); }
+                public void inOrder(LongConsumer visit) { t.inOrderTraversal(visit); }
+                public int size() { return t.size(); }
+            };
+        }
+    };
+
+    public abstract OrderedSet<Integer> create();
+
+    public interface OrderedSet<T> {
+        void insert(T e);
+        boolean contains(T e);
+        boolean remove(T e);
+        /**
+         * 关键码以long交给visit：LONG_、POOLED_、OFF_HEAP_的树直接传入，不装箱；其他树只拆箱
+         */
+        void inOrder(LongConsumer visit);
+        int size();
+    }
+}
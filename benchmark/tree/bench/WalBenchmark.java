@@ -0,0 +1,73 @@
+package tree.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tree.DiskBTree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DiskBTree带预写日志时的插入吞吐量：syncEvery为组提交的批量，每多少次插入fsync一次日志；
+ * 0表示不记日志，只有close()之后才持久，作为上限参照。
+ * 关键码是随机的long，树从空开始一直增长，日志超过阈值时自动做检查点，检查点的开销也计入。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"0", "1", "16", "256"})
+        public int syncEvery;
+
+        @Param({"4096"})
+        public int pageSize;
+
+        @Param({"1024"})
+        public int poolPages;
+
+        Path file, log;
+        DiskBTree tree;
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            file = Files.createTempFile("btree-wal", ".db");
+            Files.delete(file);
+            log = file.resolveSibling(file.getFileName() + ".wal");
+            tree = (syncEvery == 0) ? new DiskBTree(file, pageSize, poolPages)
+                    : new DiskBTree(file, pageSize, DiskBTree.maxOrder(pageSize), poolPages, log, syncEvery);
+            random = new SplittableRandom(42);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            tree.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(log);
+        }
+    }
+
+    @Benchmark
+    public boolean insert(TreeState s) {
+        return s.tree.insert(s.random.nextLong());
+    }
+}